@@ -0,0 +1,53 @@
+package com.github.balintrudas.qrsql.benchmark;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Proxy;
+import java.util.StringJoiner;
+
+/**
+ * Shared fixtures of the front-end benchmarks. The benchmarks run without database,
+ * so the entity manager is a proxy which fails on every call.
+ */
+public final class BenchmarkSupport {
+
+    public static final String SIMPLE_EQUALITY = "simpleEquality";
+    public static final String DEEP_NESTED_PATH = "deepNestedPath";
+    public static final String BIG_IN_LIST = "bigInList";
+    public static final String DATE_RANGE = "dateRange";
+    public static final String MANY_OR_BRANCHES = "manyOrBranches";
+
+    private BenchmarkSupport() {
+    }
+
+    public static EntityManager entityManager() {
+        return (EntityManager) Proxy.newProxyInstance(BenchmarkSupport.class.getClassLoader(),
+                new Class[]{EntityManager.class}, (proxy, method, args) -> {
+                    throw new UnsupportedOperationException("No database in front-end benchmarks: " + method.getName());
+                });
+    }
+
+    public static String filter(String name) {
+        switch (name) {
+            case SIMPLE_EQUALITY:
+                return "name=='Béla1'";
+            case DEEP_NESTED_PATH:
+                return "engine.screws.name=con='name';engine.screws.screwType==BIG";
+            case BIG_IN_LIST:
+                StringJoiner ids = new StringJoiner(",", "id=in=(", ")");
+                for (int i = 0; i < 1000; i++) {
+                    ids.add(String.valueOf(i));
+                }
+                return ids.toString();
+            case DATE_RANGE:
+                return "mfgdt=after='2018-01-01';mfgdt=before='2019-01-01 12:00'";
+            case MANY_OR_BRANCHES:
+                StringJoiner branches = new StringJoiner(",");
+                for (int i = 0; i < 50; i++) {
+                    branches.add("name=='Béla" + i + "'");
+                }
+                return branches.toString();
+            default:
+                throw new IllegalArgumentException("Unknown filter: " + name);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.balintrudas.qrsql.benchmark;
+
+import com.github.balintrudas.qrsql.util.DateUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the date value conversion with and without explicit date format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DateUtilBenchmark {
+
+    @Param({"2018-03-01", "2018/03/01 12:30:15", "01 march 2018"})
+    public String date;
+
+    @Benchmark
+    public Date parseWithDetectedFormat() throws ParseException {
+        return DateUtil.parse(date);
+    }
+
+    @Benchmark
+    public Date parseWithFormat() throws ParseException {
+        return DateUtil.parse("2018-03-01", "yyyy-MM-dd");
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.balintrudas.qrsql.benchmark;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.test.model.Car;
+import com.github.balintrudas.qrsql.util.QrsqlUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of resolving the {@link FieldMetadata} of a field selector.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FieldSelectorBenchmark {
+
+    @Param({"name", "engine.name", "engine.screws.screwType", "screws[0].size"})
+    public String selector;
+
+    @Benchmark
+    public List<FieldMetadata> parseFieldSelector() {
+        return QrsqlUtil.parseFieldSelector(Car.class, selector);
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.balintrudas.qrsql.benchmark;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
+import com.github.balintrudas.qrsql.operator.QrsqlOperator;
+import com.github.balintrudas.qrsql.test.model.Car;
+import com.github.balintrudas.qrsql.util.QrsqlUtil;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the value conversion and the expression creation of the field type handlers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FieldTypeHandlerBenchmark {
+
+    @Param({"id", "name", "mfgdt", "active"})
+    public String selector;
+
+    private QrsqlConfig<Car> config;
+    private FieldTypeHandler handler;
+    private FieldMetadata fieldMetadata;
+    private Path path;
+    private List<String> singleValue;
+    private List<String> inValues;
+    private Object value;
+    private Object listValue;
+    private QrsqlOperator equals = new QrsqlOperator("==");
+    private QrsqlOperator in = new QrsqlOperator("=in=");
+
+    @Setup
+    public void setup() {
+        config = new QrsqlConfig.Builder<Car>(BenchmarkSupport.entityManager()).build();
+        fieldMetadata = QrsqlUtil.parseFieldSelector(Car.class, selector).get(0);
+        handler = config.getFieldTypeHandler(fieldMetadata.getType());
+        path = handler.getPath(fieldMetadata, Expressions.path(Car.class, "car"), config);
+        singleValue = Collections.singletonList(sample(0));
+        inValues = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            inValues.add(sample(i));
+        }
+        value = handler.getValue(singleValue, fieldMetadata, config);
+        listValue = handler.getValue(inValues, fieldMetadata, config);
+    }
+
+    private String sample(int i) {
+        switch (selector) {
+            case "id":
+                return String.valueOf(i);
+            case "mfgdt":
+                return "2018-03-" + (i % 28 + 1);
+            case "active":
+                return String.valueOf(i % 2 == 0);
+            default:
+                return "Béla" + i;
+        }
+    }
+
+    @Benchmark
+    public Object getValue() {
+        return handler.getValue(singleValue, fieldMetadata, config);
+    }
+
+    @Benchmark
+    public Object getValueOfInList() {
+        return handler.getValue(inValues, fieldMetadata, config);
+    }
+
+    @Benchmark
+    public BooleanExpression getExpression() {
+        return handler.getExpression(path, fieldMetadata, value, equals, config);
+    }
+
+    @Benchmark
+    public BooleanExpression getExpressionOfInList() {
+        return handler.getExpression(path, fieldMetadata, listValue, in, config);
+    }
+}
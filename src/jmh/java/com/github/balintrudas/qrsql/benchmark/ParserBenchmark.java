@@ -0,0 +1,47 @@
+package com.github.balintrudas.qrsql.benchmark;
+
+import com.github.balintrudas.qrsql.parser.QrsqlParser;
+import com.github.balintrudas.qrsql.util.QrsqlUtil;
+import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.ast.ComparisonOperator;
+import cz.jirutka.rsql.parser.ast.Node;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing a where expression with the {@link RSQLParser} and with the built-in {@link QrsqlParser}.
+ * Run with <tt>-prof gc</tt> to compare the allocation rate too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParserBenchmark {
+
+    @Param({BenchmarkSupport.SIMPLE_EQUALITY, BenchmarkSupport.DEEP_NESTED_PATH, BenchmarkSupport.BIG_IN_LIST,
+            BenchmarkSupport.DATE_RANGE, BenchmarkSupport.MANY_OR_BRANCHES})
+    public String filter;
+
+    private String where;
+    private RSQLParser rsqlParser;
+    private QrsqlParser qrsqlParser;
+
+    @Setup
+    public void setup() {
+        Set<ComparisonOperator> operators = QrsqlUtil.getOperators(null);
+        where = BenchmarkSupport.filter(filter);
+        rsqlParser = new RSQLParser(operators);
+        qrsqlParser = new QrsqlParser(operators);
+    }
+
+    @Benchmark
+    public Node rsqlParser() {
+        return rsqlParser.parse(where);
+    }
+
+    @Benchmark
+    public Node builtInParser() {
+        return qrsqlParser.parse(where);
+    }
+}
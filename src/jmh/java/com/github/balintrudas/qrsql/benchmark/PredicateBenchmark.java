@@ -0,0 +1,52 @@
+package com.github.balintrudas.qrsql.benchmark;
+
+import com.github.balintrudas.qrsql.Qrsql;
+import com.github.balintrudas.qrsql.test.model.Car;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing and converting a where expression with {@link Qrsql#buildPredicate()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PredicateBenchmark {
+
+    @Param({BenchmarkSupport.SIMPLE_EQUALITY, BenchmarkSupport.DEEP_NESTED_PATH, BenchmarkSupport.BIG_IN_LIST,
+            BenchmarkSupport.DATE_RANGE, BenchmarkSupport.MANY_OR_BRANCHES})
+    public String filter;
+
+    private Qrsql<Car> qrsql;
+
+    @Setup
+    public void setup() {
+        qrsql = new Qrsql.Builder<Car>(BenchmarkSupport.entityManager())
+                .selectFrom(Car.class)
+                .where(BenchmarkSupport.filter(filter))
+                .sort("engine.name.asc,id.desc")
+                .build();
+    }
+
+    @Benchmark
+    public Predicate buildPredicate() {
+        return qrsql.buildPredicate();
+    }
+
+    @Benchmark
+    public OrderSpecifier[] buildOrder() {
+        return qrsql.buildOrder();
+    }
+
+    @Benchmark
+    public Predicate buildAndConvert() {
+        return new Qrsql.Builder<Car>(BenchmarkSupport.entityManager())
+                .selectFrom(Car.class)
+                .where(BenchmarkSupport.filter(filter))
+                .build()
+                .buildPredicate();
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.balintrudas.qrsql.benchmark;
+
+import com.github.balintrudas.qrsql.PreparedQrsql;
+import com.github.balintrudas.qrsql.Qrsql;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.test.model.Car;
+import com.querydsl.core.types.Predicate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of binding a {@link PreparedQrsql} compared to building the same query from scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PreparedQrsqlBenchmark {
+
+    private static final String TEMPLATE = "engine.screws.size=gt=:size;active==:active;name=like=:name";
+
+    private QrsqlConfig<Car> config;
+    private PreparedQrsql<Car> prepared;
+
+    @Setup
+    public void setup() {
+        config = new QrsqlConfig.Builder<Car>(BenchmarkSupport.entityManager()).build();
+        prepared = new Qrsql.Builder<>(config).selectFrom(Car.class).where(TEMPLATE).prepare();
+    }
+
+    @Benchmark
+    public Predicate bind() {
+        return prepared.bind().set("size", 10L).set("active", true).set("name", "Car%").buildPredicate();
+    }
+
+    @Benchmark
+    public Predicate build() {
+        return new Qrsql.Builder<>(config)
+                .selectFrom(Car.class)
+                .where("engine.screws.size=gt=10;active==true;name=like='Car%'")
+                .build()
+                .buildPredicate();
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.balintrudas.qrsql.benchmark.macro;
+
+import com.github.balintrudas.qrsql.test.model.ScrewType;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic generator of the Car / Engine / Screw dataset. The same seed, size and skew always produce
+ * the same rows, so the results of different runs are comparable.
+ * <p>
+ * Names, screw types and the number of screws per car follow a Zipf distribution with the given exponent,
+ * exponent 0 means uniform distribution.
+ */
+public class DatasetGenerator {
+
+    public static final int DISTINCT_NAMES = 1000;
+    private static final int MAX_SCREWS_PER_CAR = 10;
+    private static final int BATCH_SIZE = 5000;
+    private static final long START_DATE = Timestamp.valueOf("2015-01-01 00:00:00").getTime();
+    private static final long DATE_RANGE = Timestamp.valueOf("2020-01-01 00:00:00").getTime() - START_DATE;
+
+    private final long seed;
+    private final int cars;
+    private final double skew;
+
+    public DatasetGenerator(long seed, int cars, double skew) {
+        this.seed = seed;
+        this.cars = cars;
+        this.skew = skew;
+    }
+
+    /**
+     * Insert the dataset with jdbc batches.
+     *
+     * @param dataSource target database, the tables must exist and be empty
+     * @return number of inserted rows
+     * @throws SQLException if the insert fails
+     */
+    public long generate(DataSource dataSource) throws SQLException {
+        Random random = new Random(seed);
+        Zipf names = new Zipf(DISTINCT_NAMES, skew);
+        Zipf screwTypes = new Zipf(ScrewType.values().length, skew);
+        Zipf screwCounts = new Zipf(MAX_SCREWS_PER_CAR, skew);
+        long rows = 0;
+        long screwId = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement engine = connection.prepareStatement(
+                    "insert into engine (id, name, description) values (?, ?, ?)");
+                 PreparedStatement car = connection.prepareStatement(
+                         "insert into car (id, name, description, active, mfgdt, engine_id, registered, serviced, created, " +
+                                 "serial) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement screw = connection.prepareStatement(
+                         "insert into screw (id, name, description, size, screw_type) values (?, ?, ?, ?, ?)");
+                 PreparedStatement carScrews = connection.prepareStatement(
+                         "insert into car_screws (car_id, screws_id) values (?, ?)");
+                 PreparedStatement engineScrews = connection.prepareStatement(
+                         "insert into engine_screws (engine_id, screws_id) values (?, ?)")) {
+                for (int i = 1; i <= cars; i++) {
+                    int name = names.sample(random);
+                    engine.setLong(1, i);
+                    engine.setString(2, "Engine " + name);
+                    engine.setString(3, "Engine description " + i);
+                    engine.addBatch();
+
+                    car.setLong(1, i);
+                    car.setString(2, "Car " + name);
+                    car.setString(3, "Car description " + i);
+                    car.setBoolean(4, random.nextBoolean());
+                    Timestamp mfgdt = new Timestamp(START_DATE + (long) (random.nextDouble() * DATE_RANGE));
+                    car.setTimestamp(5, mfgdt);
+                    car.setLong(6, i);
+                    //The java.time and uuid columns are derived without random draws, so the other columns don't change
+                    car.setDate(7, Date.valueOf(mfgdt.toLocalDateTime().toLocalDate()));
+                    car.setTimestamp(8, Timestamp.valueOf(mfgdt.toLocalDateTime().plusDays(i % 365)));
+                    car.setTimestamp(9, mfgdt);
+                    car.setObject(10, new UUID(seed, i));
+                    car.addBatch();
+                    rows += 2;
+
+                    int screwCount = screwCounts.sample(random) + 1;
+                    for (int j = 0; j < screwCount; j++) {
+                        screwId++;
+                        screw.setLong(1, screwId);
+                        screw.setString(2, "Screw " + names.sample(random));
+                        screw.setString(3, "Screw description " + screwId);
+                        screw.setLong(4, random.nextInt(100) + 1);
+                        screw.setString(5, ScrewType.values()[screwTypes.sample(random)].name());
+                        screw.addBatch();
+                        carScrews.setLong(1, i);
+                        carScrews.setLong(2, screwId);
+                        carScrews.addBatch();
+                        engineScrews.setLong(1, i);
+                        engineScrews.setLong(2, screwId);
+                        engineScrews.addBatch();
+                        rows += 3;
+                    }
+                    if (i % BATCH_SIZE == 0 || i == cars) {
+                        //Parents first because of the foreign keys
+                        engine.executeBatch();
+                        car.executeBatch();
+                        screw.executeBatch();
+                        carScrews.executeBatch();
+                        engineScrews.executeBatch();
+                        connection.commit();
+                    }
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("alter sequence hibernate_sequence restart with " + (Math.max(cars, screwId) + 1));
+            }
+            connection.commit();
+        }
+        return rows;
+    }
+
+    /**
+     * Zipf distribution over {@code [0, size)} sampled by binary search on the cumulative probabilities.
+     */
+    static class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int size, double exponent) {
+            cumulative = new double[size];
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += 1d / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < size; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        int sample(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.balintrudas.qrsql.benchmark.macro;
+
+import com.github.balintrudas.qrsql.Qrsql;
+import com.github.balintrudas.qrsql.sql.SqlEntityMappings;
+import com.github.balintrudas.qrsql.sql.SqlQrsql;
+import com.github.balintrudas.qrsql.test.QrsqlApplication;
+import com.github.balintrudas.qrsql.test.model.Car;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end benchmark which runs a fixed catalog of Qrsql queries against a generated H2 dataset and reports
+ * latency percentiles, executed statements and fetched rows per second for each query.
+ * <p>
+ * Configuration with system properties:
+ * <ul>
+ * <li>{@code qrsql.benchmark.url} H2 jdbc url, default in-memory database</li>
+ * <li>{@code qrsql.benchmark.cars} number of generated cars, default 100000</li>
+ * <li>{@code qrsql.benchmark.skew} Zipf exponent of the generated values, default 1.0</li>
+ * <li>{@code qrsql.benchmark.seed} seed of the generator, default 42</li>
+ * <li>{@code qrsql.benchmark.reuse} keep an already generated file database, default false</li>
+ * <li>{@code qrsql.benchmark.warmup} warmup executions per query, default 20</li>
+ * <li>{@code qrsql.benchmark.iterations} measured executions per query, default 100</li>
+ * <li>{@code qrsql.benchmark.query} run only the queries whose name contains this value</li>
+ * </ul>
+ */
+public class MacroBenchmark {
+
+    private static final String PREFIX = "qrsql.benchmark.";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Statistics statistics;
+    private final int warmup;
+    private final int iterations;
+
+    public MacroBenchmark(EntityManagerFactory entityManagerFactory, int warmup, int iterations) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.statistics.setStatisticsEnabled(true);
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty(PREFIX + "url", "jdbc:h2:mem:qrsql-benchmark;DB_CLOSE_DELAY=-1");
+        int cars = Integer.getInteger(PREFIX + "cars", 100_000);
+        double skew = Double.parseDouble(System.getProperty(PREFIX + "skew", "1.0"));
+        long seed = Long.getLong(PREFIX + "seed", 42L);
+        boolean reuse = Boolean.getBoolean(PREFIX + "reuse");
+        String filter = System.getProperty(PREFIX + "query", "");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(QrsqlApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=" + url,
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.hibernate.ddl-auto=" + (reuse ? "update" : "create-drop"),
+                        "logging.level.root=WARN")
+                .run(args)) {
+            DataSource dataSource = context.getBean(DataSource.class);
+            if (!reuse || countCars(dataSource) == 0) {
+                long start = System.nanoTime();
+                long rows = new DatasetGenerator(seed, cars, skew).generate(dataSource);
+                System.out.printf(Locale.ENGLISH, "Generated %d rows (%d cars, skew %.2f, seed %d) in %.1f s%n",
+                        rows, cars, skew, seed, (System.nanoTime() - start) / 1e9);
+            }
+            MacroBenchmark benchmark = new MacroBenchmark(context.getBean(EntityManagerFactory.class),
+                    Integer.getInteger(PREFIX + "warmup", 20), Integer.getInteger(PREFIX + "iterations", 100));
+            System.out.printf("%-24s %9s %9s %9s %9s %11s %9s %12s%n",
+                    "query", "p50 ms", "p90 ms", "p99 ms", "max ms", "stmts/op", "rows/op", "rows/s");
+            for (Map.Entry<String, Function<EntityManager, Qrsql<Car>>> query : catalog().entrySet()) {
+                if (query.getKey().contains(filter)) {
+                    System.out.println(benchmark.run(query.getKey(), () -> benchmark.execute(query.getValue())));
+                }
+            }
+            SQLQueryFactory queryFactory = new SQLQueryFactory(new Configuration(H2Templates.builder().build()),
+                    dataSource);
+            SqlEntityMappings mappings = new SqlEntityMappings(queryFactory.getConfiguration());
+            for (Map.Entry<String, Supplier<SqlQrsql<Car>>> query : sqlCatalog(queryFactory, mappings).entrySet()) {
+                if (query.getKey().contains(filter)) {
+                    System.out.println(benchmark.run(query.getKey(), () -> query.getValue().get().fetch().size()));
+                }
+            }
+        }
+    }
+
+    /**
+     * The fixed query catalog. Every query is created with a new entity manager, so the persistence context
+     * doesn't hide the statements.
+     *
+     * @return queries by name
+     */
+    public static Map<String, Function<EntityManager, Qrsql<Car>>> catalog() {
+        Map<String, Function<EntityManager, Qrsql<Car>>> catalog = new LinkedHashMap<>();
+        catalog.put("equality", entityManager -> new Qrsql.Builder<Car>(entityManager)
+                .selectFrom(Car.class).where("active==true").sort("id.asc").page(0L, 50L).build());
+        catalog.put("hotValue", entityManager -> new Qrsql.Builder<Car>(entityManager)
+                .selectFrom(Car.class).where("name=='Car 0'").size(100L).build());
+        catalog.put("coldValue", entityManager -> new Qrsql.Builder<Car>(entityManager)
+                .selectFrom(Car.class).where("name=='Car 999'").size(100L).build());
+        catalog.put("inList", entityManager -> new Qrsql.Builder<Car>(entityManager)
+                .selectFrom(Car.class).where(inList(100)).build());
+        catalog.put("collectionTraversal", entityManager -> new Qrsql.Builder<Car>(entityManager)
+                .selectFrom(Car.class).where("engine.screws.screwType==SMALL;screws.size=gt=90").size(50L).build());
+        catalog.put("deepPagination", entityManager -> new Qrsql.Builder<Car>(entityManager)
+                .selectFrom(Car.class).where("active==true").sort("id.asc").page(150L, 50L).build());
+        catalog.put("projection", entityManager -> new Qrsql.Builder<Car>(entityManager)
+                .select("name,description").from(Car.class).where("name=like='Car 1%'").size(100L).build());
+        catalog.put("nestedSort", entityManager -> new Qrsql.Builder<Car>(entityManager)
+                .selectFrom(Car.class).where("mfgdt=after='2019-06-01'").sort("engine.name.desc,id.asc").size(50L).build());
+        catalog.put("orBranches", entityManager -> new Qrsql.Builder<Car>(entityManager)
+                .select("name").from(Car.class).where(orBranches(20)).size(100L).build());
+        return catalog;
+    }
+
+    /**
+     * Queries of the catalog executed with the sql backend, to compare them with the JPA path. Their statements
+     * are not seen by Hibernate, so the statement count is always zero.
+     *
+     * @param queryFactory querydsl sql query factory
+     * @param mappings     entity mappings
+     * @return queries by name
+     */
+    public static Map<String, Supplier<SqlQrsql<Car>>> sqlCatalog(SQLQueryFactory queryFactory, SqlEntityMappings mappings) {
+        Map<String, Supplier<SqlQrsql<Car>>> catalog = new LinkedHashMap<>();
+        catalog.put("sql.equality", () -> new SqlQrsql.Builder<Car>(queryFactory, mappings, null)
+                .from(Car.class).where("active==true").sort("id.asc").page(0L, 50L).build());
+        catalog.put("sql.collectionTraversal", () -> new SqlQrsql.Builder<Car>(queryFactory, mappings, null)
+                .from(Car.class).where("engine.screws.screwType==SMALL;screws.size=gt=90").limit(0L, 50L).build());
+        catalog.put("sql.projection", () -> new SqlQrsql.Builder<Car>(queryFactory, mappings, null)
+                .select("name,description").from(Car.class).where("name=like='Car 1%'").limit(0L, 100L).build());
+        catalog.put("sql.nestedSort", () -> new SqlQrsql.Builder<Car>(queryFactory, mappings, null)
+                .select("id,name,engine.name").from(Car.class).where("mfgdt=after='2019-06-01'")
+                .sort("engine.name.desc,id.asc").limit(0L, 50L).build());
+        return catalog;
+    }
+
+    /**
+     * Execute the query and collect the latency, statement and row counts.
+     *
+     * @param name      query name
+     * @param execution executes the query and returns the row count
+     * @return formatted result line
+     */
+    public String run(String name, IntSupplier execution) {
+        for (int i = 0; i < warmup; i++) {
+            execution.getAsInt();
+        }
+        long[] latencies = new long[iterations];
+        statistics.clear();
+        long rows = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            rows += execution.getAsInt();
+            latencies[i] = System.nanoTime() - start;
+        }
+        long statements = statistics.getPrepareStatementCount();
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        Arrays.sort(latencies);
+        return String.format(Locale.ENGLISH, "%-24s %9.3f %9.3f %9.3f %9.3f %11.1f %9.1f %12.0f", name,
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                latencies[latencies.length - 1] / 1e6, (double) statements / iterations, (double) rows / iterations,
+                rows / (total / 1e9));
+    }
+
+    /**
+     * Execute the query with a new entity manager.
+     *
+     * @param query query factory
+     * @return row count
+     */
+    public int execute(Function<EntityManager, Qrsql<Car>> query) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return query.apply(entityManager).fetch().size();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static double percentile(long[] sortedLatencies, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1e6;
+    }
+
+    private static String inList(int size) {
+        StringJoiner ids = new StringJoiner(",", "id=in=(", ")");
+        for (int i = 1; i <= size; i++) {
+            ids.add(String.valueOf(i * 97));
+        }
+        return ids.toString();
+    }
+
+    private static String orBranches(int size) {
+        StringJoiner branches = new StringJoiner(",");
+        for (int i = 0; i < size; i++) {
+            branches.add("name=='Car " + (i * 37) + "'");
+        }
+        return branches.toString();
+    }
+
+    private static long countCars(DataSource dataSource) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from car")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
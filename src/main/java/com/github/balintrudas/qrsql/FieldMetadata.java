@@ -24,6 +24,8 @@
  */
 package com.github.balintrudas.qrsql;
 
+import com.github.balintrudas.qrsql.metadata.SelectorField;
+import com.github.balintrudas.qrsql.metadata.SelectorTable;
 import com.querydsl.codegen.EntityType;
 import com.querydsl.codegen.TypeFactory;
 import com.querydsl.core.alias.DefaultTypeSystem;
@@ -44,11 +46,12 @@ public class FieldMetadata {
 
     private String fieldSelector;
     private Integer fieldSelectorIndex;
-    private Field field;
+    private Class ownerClass;
+    private volatile Field field;
     private Class type;
     private Class parameterizedType;
     private Boolean isCollection;
-    private EntityType entityType;
+    private volatile EntityType entityType;
     private Class<? extends Path> pathType;
     private FieldMetadata parent;
 
@@ -61,19 +64,37 @@ public class FieldMetadata {
         this.fieldSelector = fieldSelector;
         this.fieldSelectorIndex = parseFieldSelector(fieldSelector);
         this.parent = parent;
-        this.field = getField(parent, fieldSelector);
-        this.type = getClass(this.field);
-        this.entityType = getEntityType(parameterizedType != null ? parameterizedType : type);
-        this.pathType = getPathType(this.entityType);
+        this.ownerClass = parent.getCollectionType();
+        resolve(fieldSelector, parent);
     }
 
     public FieldMetadata(String fieldSelector, Class rootClass) {
         this.fieldSelector = fieldSelector;
         this.fieldSelectorIndex = parseFieldSelector(fieldSelector);
-        this.field = getField(rootClass, fieldSelector, this);
-        this.type = getClass(this.field);
-        this.entityType = getEntityType(parameterizedType != null ? parameterizedType : type);
-        this.pathType = getPathType(this.entityType);
+        this.ownerClass = rootClass;
+        resolve(fieldSelector, this);
+    }
+
+    /**
+     * Resolve the field from the generated {@link SelectorTable} of the owner class if it's present,
+     * otherwise with reflection.
+     */
+    private void resolve(String fieldName, FieldMetadata fieldMetadata) {
+        SelectorTable selectorTable = SelectorTable.of(this.ownerClass);
+        SelectorField selectorField = selectorTable != null ? selectorTable.getField(fieldName) : null;
+        if (selectorField != null) {
+            this.type = selectorField.getType();
+            if (selectorField.isCollection()) {
+                this.isCollection = true;
+                this.parameterizedType = selectorField.getElementType();
+            }
+            this.pathType = selectorField.getPathType();
+        } else {
+            this.field = getField(this.ownerClass, fieldName, fieldMetadata);
+            this.type = getClass(this.field);
+            this.entityType = getEntityType(parameterizedType != null ? parameterizedType : type);
+            this.pathType = getPathType(this.entityType);
+        }
     }
 
     private Integer parseFieldSelector(String fieldSelector) {
@@ -133,11 +154,6 @@ public class FieldMetadata {
         return pathType;
     }
 
-    private Field getField(FieldMetadata fieldMetadata, String fieldName) {
-        return this.getField(fieldMetadata.getParameterizedType() != null ? fieldMetadata.getParameterizedType() :
-                fieldMetadata.getType(), fieldName, fieldMetadata);
-    }
-
     private Field getField(Class<?> clazz, String fieldName, FieldMetadata fieldMetadata) {
         try {
             return clazz.getDeclaredField(fieldName);
@@ -189,6 +205,9 @@ public class FieldMetadata {
     }
 
     public Field getField() {
+        if (field == null && ownerClass != null) {
+            field = getField(ownerClass, fieldSelector, this);
+        }
         return field;
     }
 
@@ -209,6 +228,9 @@ public class FieldMetadata {
     }
 
     public EntityType getEntityType() {
+        if (entityType == null && type != null && fieldSelector != null) {
+            entityType = getEntityType(getCollectionType());
+        }
         return entityType;
     }
 
@@ -27,12 +27,9 @@ package com.github.balintrudas.qrsql;
 import com.github.balintrudas.qrsql.exception.TypeNotSupportedException;
 import com.github.balintrudas.qrsql.operator.QrsqlOperator;
 import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
-import com.github.balintrudas.qrsql.util.QrsqlUtil;
 import com.querydsl.core.types.Path;
 import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.core.types.dsl.Expressions;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -41,6 +38,7 @@ import java.util.List;
 public class PredicateBuilder {
 
     private QrsqlConfig qrsqlConfig;
+    private final ThreadLocal<long[]> metadataResolutionTime = ThreadLocal.withInitial(() -> new long[1]);
 
     public PredicateBuilder(QrsqlConfig qrsqlConfig) {
         this.qrsqlConfig = qrsqlConfig;
@@ -50,6 +48,19 @@ public class PredicateBuilder {
         return qrsqlConfig;
     }
 
+    /**
+     * Return the time spent with {@link FieldMetadata} resolution on the current thread since the last call and reset
+     * the counter. It is measured only if {@link QrsqlConfig#isTimed()} is true.
+     *
+     * @return elapsed time in nanoseconds
+     */
+    public long resetMetadataResolutionTime() {
+        long[] time = this.metadataResolutionTime.get();
+        long result = time[0];
+        time[0] = 0L;
+        return result;
+    }
+
     /**
      *
      * @param rootClass The base class
@@ -60,16 +71,30 @@ public class PredicateBuilder {
      * @throws TypeNotSupportedException If the requested field type is not supported
      */
     public BooleanExpression getExpression(Class rootClass, String fieldSelector, List<String> values, QrsqlOperator operator) throws TypeNotSupportedException {
-        List<FieldMetadata> fieldMetadataList = QrsqlUtil.parseFieldSelector(rootClass, fieldSelector);
-        Path rootPath = Expressions.path(rootClass, rootClass.getSimpleName().toLowerCase());
-        List<Path> processedPaths = new ArrayList<>();
-        FieldTypeHandler fieldType = null;
-        for (int i = 0; i < fieldMetadataList.size(); i++) {
-            fieldType = this.qrsqlConfig.getFieldTypeHandler(fieldMetadataList.get(i).getType());
-            processedPaths.add(fieldType.getPath(fieldMetadataList.get(i), i == 0 ? rootPath : processedPaths.get(i - 1), this.qrsqlConfig));
+        boolean timed = this.qrsqlConfig.isTimed();
+        long startTime = timed ? System.nanoTime() : 0L;
+        List<FieldMetadata> fieldMetadataList = this.qrsqlConfig.getFieldMetadata(rootClass, fieldSelector);
+        if (timed) {
+            this.metadataResolutionTime.get()[0] += System.nanoTime() - startTime;
         }
-        Object value = fieldType.getValue(values, fieldMetadataList.get(fieldMetadataList.size() - 1), this.qrsqlConfig);
-        return fieldType.getExpression(processedPaths.get(processedPaths.size() - 1), fieldMetadataList.get(fieldMetadataList.size() - 1), value, operator, this.qrsqlConfig);
+        Path path = getPath(rootClass, fieldMetadataList);
+        FieldMetadata fieldMetadata = fieldMetadataList.get(fieldMetadataList.size() - 1);
+        FieldTypeHandler fieldType = this.qrsqlConfig.getFieldTypeHandler(fieldMetadata.getType());
+        Object value = fieldType.getValue(values, fieldMetadata, this.qrsqlConfig);
+        return fieldType.getExpression(path, fieldMetadata, value, operator, this.qrsqlConfig);
+    }
+
+    /**
+     * Return the querydsl path of the resolved field selector. The paths are interned by the
+     * {@link com.github.balintrudas.qrsql.plan.QrsqlPathCache} of the configuration.
+     *
+     * @param rootClass The base class
+     * @param fieldMetadataList Resolved field selector
+     * @return querydsl {@link Path}
+     * @throws TypeNotSupportedException If the requested field type is not supported
+     */
+    public Path getPath(Class rootClass, List<FieldMetadata> fieldMetadataList) throws TypeNotSupportedException {
+        return this.qrsqlConfig.getPathCache().getPath(rootClass, fieldMetadataList, this.qrsqlConfig);
     }
 
 }
@@ -0,0 +1,484 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql;
+
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
+import com.github.balintrudas.qrsql.metrics.QrsqlFingerprint;
+import com.github.balintrudas.qrsql.operator.QrsqlOperator;
+import com.querydsl.core.types.*;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import cz.jirutka.rsql.parser.ast.*;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled {@link Qrsql} template. The where expression is parsed once, the field selectors, the field type
+ * handlers and the paths are resolved once, the comparisons without placeholders are converted once. Every
+ * execution binds only the placeholder values and the paging. The bound values are passed as query parameters,
+ * so the executions with the same shape of values generate the same JPQL and reuse the query plan of the JPA
+ * provider. The shape can depend on the values: the patterns of the like operators are planned per binding, a
+ * pattern becomes an equality, a <tt>startsWith</tt> or a general like by its wildcards, and a collection is
+ * expanded to one parameter per element.
+ * <p>
+ * A placeholder is an argument of the where expression in the form of <tt>:name</tt>, e.g.
+ * <tt>engine.id==:engineId;active==true</tt> or <tt>id=in=:ids</tt>. The instance is immutable and thread-safe,
+ * the per execution state is held by {@link Binding}.
+ *
+ * @param <E> Target type
+ * @author Balint Rudas
+ */
+public class PreparedQrsql<E> {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile(":[a-zA-Z_][a-zA-Z0-9_]*");
+
+    private final QrsqlConfig<E> qrsqlConfig;
+    private final Class entityClass;
+    private final Expression select;
+    private final Predicate predicate;
+    private final CompiledNode compiledWhere;
+    private final List<OrderSpecifier> orderSpecifiers;
+    private final Long offset;
+    private final Long size;
+    private final QrsqlFingerprint fingerprint;
+    private final Set<String> placeholders;
+
+    PreparedQrsql(Qrsql<E> qrsql) {
+        this.qrsqlConfig = qrsql.getQrsqlConfig();
+        this.entityClass = qrsql.getEntityClass();
+        this.select = qrsql.getSelectExpression();
+        this.orderSpecifiers = Collections.unmodifiableList(Arrays.asList(qrsql.buildOrder()));
+        this.offset = qrsql.getOffset();
+        this.size = qrsql.getSize();
+        this.fingerprint = qrsql.getFingerprint();
+        Set<String> names = new LinkedHashSet<>();
+        if (qrsql.getPredicateWhere() != null || qrsql.getWhere() == null) {
+            this.predicate = qrsql.getPredicateWhere();
+            this.compiledWhere = null;
+        } else {
+            CompiledNode compiled = qrsql.parseWhere().accept(new Compiler(qrsql.getPredicateBuilder(), names, this.entityClass));
+            this.predicate = compiled.isConstant() ? compiled.bind(Collections.<String, Object>emptyMap()) : null;
+            this.compiledWhere = compiled.isConstant() ? null : compiled;
+        }
+        this.placeholders = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Return the names of the placeholders, without the leading colon.
+     *
+     * @return unmodifiable set of the placeholder names
+     */
+    public Set<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * Return the fingerprint of the template. It's the same for every execution.
+     *
+     * @return {@link QrsqlFingerprint}
+     */
+    public QrsqlFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Start a new execution of the template.
+     *
+     * @return new {@link Binding}
+     */
+    public Binding<E> bind() {
+        return new Binding<E>(this);
+    }
+
+    /**
+     * Start a new execution of the template with the given placeholder values.
+     *
+     * @param values values by placeholder name
+     * @return new {@link Binding}
+     */
+    public Binding<E> bind(Map<String, ?> values) {
+        Binding<E> binding = new Binding<E>(this);
+        for (Map.Entry<String, ?> value : values.entrySet()) {
+            binding.set(value.getKey(), value.getValue());
+        }
+        return binding;
+    }
+
+    /**
+     * Holds the placeholder values and the paging of one execution of a {@link PreparedQrsql}.
+     * Not thread-safe, create a new one for every execution.
+     *
+     * @param <E> Target type
+     */
+    public static class Binding<E> {
+
+        private final PreparedQrsql<E> preparedQrsql;
+        private final Map<String, Object> values = new HashMap<>();
+        private QrsqlConfig<E> qrsqlConfig;
+        private Long offset;
+        private Long size;
+
+        private Binding(PreparedQrsql<E> preparedQrsql) {
+            this.preparedQrsql = preparedQrsql;
+            this.qrsqlConfig = preparedQrsql.qrsqlConfig;
+            this.offset = preparedQrsql.offset;
+            this.size = preparedQrsql.size;
+        }
+
+        /**
+         * Bind the value of a placeholder. String values are converted by the field type handler of the field
+         * like the values of the where expression, other values are used as they are. Collection and array values
+         * are bound as multiple arguments.
+         *
+         * @param name  placeholder name, with or without the leading colon
+         * @param value value
+         * @return {@link Binding}
+         */
+        public Binding<E> set(String name, Object value) {
+            String placeholder = name.startsWith(":") ? name.substring(1) : name;
+            if (!preparedQrsql.placeholders.contains(placeholder)) {
+                throw new IllegalArgumentException("Unknown placeholder: '" + name + "' . Available placeholders: " +
+                        preparedQrsql.placeholders);
+            }
+            this.values.put(placeholder, value);
+            return this;
+        }
+
+        /**
+         * Execute the query with the given entity manager instead of the configured one.
+         *
+         * @param entityManager entityManager
+         * @return {@link Binding}
+         */
+        public Binding<E> entityManager(EntityManager entityManager) {
+            this.qrsqlConfig = this.qrsqlConfig.withEntityManager(entityManager);
+            return this;
+        }
+
+        /**
+         * Defines the limit / max results and the offset for the query results.
+         *
+         * @param offset row offset
+         * @param size   max rows
+         * @return {@link Binding}
+         */
+        public Binding<E> limit(Long offset, Long size) {
+            this.offset = offset;
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Defines the limit / max results and the offset for the query results with pagination logic.
+         *
+         * @param pageNumber Zero based
+         * @param pageSize   max rows
+         * @return {@link Binding}
+         */
+        public Binding<E> page(Long pageNumber, Long pageSize) {
+            this.size = pageSize;
+            this.offset = pageNumber * pageSize;
+            return this;
+        }
+
+        /**
+         * Defines the offset for the query results.
+         *
+         * @param offset row offset
+         * @return {@link Binding}
+         */
+        public Binding<E> offset(Long offset) {
+            this.offset = offset;
+            return this;
+        }
+
+        /**
+         * Defines the limit / max results for the query results.
+         *
+         * @param size max rows
+         * @return {@link Binding}
+         */
+        public Binding<E> size(Long size) {
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Create the {@link Predicate} with the bound values.
+         *
+         * @return Querydsl {@link Predicate}
+         * @throws QrsqlException If a placeholder is not bound or a value can't be converted.
+         */
+        public Predicate buildPredicate() throws QrsqlException {
+            if (preparedQrsql.compiledWhere == null) {
+                return preparedQrsql.predicate;
+            }
+            try {
+                return preparedQrsql.compiledWhere.bind(this.values);
+            } catch (QrsqlException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new QrsqlException(ex);
+            }
+        }
+
+        /**
+         * Create a {@link Qrsql} with the bound values.
+         *
+         * @return new Qrsql
+         * @throws QrsqlException If a placeholder is not bound or a value can't be converted.
+         */
+        public Qrsql<E> build() throws QrsqlException {
+            Qrsql.Builder<E> builder = new Qrsql.Builder<E>(this.qrsqlConfig);
+            Qrsql.Builder.FromBuilder<E> fromBuilder = preparedQrsql.select != null ?
+                    builder.select(preparedQrsql.select).from(preparedQrsql.entityClass) :
+                    builder.selectFrom(preparedQrsql.entityClass);
+            return fromBuilder.where(buildPredicate())
+                    .sort(preparedQrsql.orderSpecifiers)
+                    .offset(this.offset)
+                    .size(this.size)
+                    .fingerprint(preparedQrsql.fingerprint)
+                    .build();
+        }
+
+        /**
+         * Fetch multiple result sets.
+         *
+         * @return List of fetched records
+         * @throws QrsqlException If some exception occurred during building or executing the query.
+         */
+        public List<E> fetch() throws QrsqlException {
+            return build().fetch();
+        }
+
+        /**
+         * Fetch a single result.
+         *
+         * @return Fetched record
+         * @throws QrsqlException If some exception occurred during building or executing the query.
+         */
+        public Object fetchOne() throws QrsqlException {
+            return build().fetchOne();
+        }
+
+        /**
+         * Count the records which match the where expression.
+         *
+         * @return Number of the matching records
+         * @throws QrsqlException If some exception occurred during building or executing the query.
+         */
+        public long fetchCount() throws QrsqlException {
+            return build().fetchCount();
+        }
+    }
+
+    /**
+     * Node of the compiled where expression.
+     */
+    private interface CompiledNode {
+
+        boolean isConstant();
+
+        BooleanExpression bind(Map<String, Object> values);
+    }
+
+    private static class LogicalCompiledNode implements CompiledNode {
+
+        private final Ops logicalOperator;
+        private final List<CompiledNode> children;
+        private final boolean constant;
+
+        LogicalCompiledNode(Ops logicalOperator, List<CompiledNode> children) {
+            this.logicalOperator = logicalOperator;
+            this.children = children;
+            boolean allConstant = true;
+            for (CompiledNode child : children) {
+                allConstant &= child.isConstant();
+            }
+            this.constant = allConstant;
+        }
+
+        @Override
+        public boolean isConstant() {
+            return constant;
+        }
+
+        @Override
+        public BooleanExpression bind(Map<String, Object> values) {
+            BooleanExpression predicate = children.get(0).bind(values);
+            for (int i = 1; i < children.size(); i++) {
+                BooleanExpression subPredicate = children.get(i).bind(values);
+                predicate = Ops.AND.equals(logicalOperator) ? predicate.and(subPredicate) : predicate.or(subPredicate);
+            }
+            return predicate;
+        }
+    }
+
+    private static class ComparisonCompiledNode implements CompiledNode {
+
+        private final QrsqlConfig qrsqlConfig;
+        private final FieldMetadata fieldMetadata;
+        private final FieldTypeHandler fieldType;
+        private final Path path;
+        private final QrsqlOperator operator;
+        private final List<String> arguments;
+        private final boolean constant;
+        private final BooleanExpression expression;
+
+        ComparisonCompiledNode(PredicateBuilder predicateBuilder, Class rootClass, ComparisonNode node) {
+            this.qrsqlConfig = predicateBuilder.getQrsqlConfig();
+            List<FieldMetadata> fieldMetadataList = this.qrsqlConfig.getFieldMetadata(rootClass, node.getSelector());
+            this.fieldMetadata = fieldMetadataList.get(fieldMetadataList.size() - 1);
+            this.fieldType = this.qrsqlConfig.getFieldTypeHandler(this.fieldMetadata.getType());
+            this.path = predicateBuilder.getPath(rootClass, fieldMetadataList);
+            this.operator = new QrsqlOperator(node.getOperator().getSymbol());
+            this.arguments = node.getArguments();
+            boolean hasPlaceholder = false;
+            for (String argument : this.arguments) {
+                hasPlaceholder |= isPlaceholder(argument);
+            }
+            this.constant = !hasPlaceholder;
+            this.expression = this.constant ? toExpression(this.fieldType.getValue(this.arguments, this.fieldMetadata,
+                    this.qrsqlConfig)) : null;
+        }
+
+        @Override
+        public boolean isConstant() {
+            return constant;
+        }
+
+        @Override
+        public BooleanExpression bind(Map<String, Object> values) {
+            if (this.constant) {
+                return this.expression;
+            }
+            List<Object> boundValues = new ArrayList<>();
+            boolean multiValue = this.arguments.size() > 1;
+            boolean allString = true;
+            for (String argument : this.arguments) {
+                if (!isPlaceholder(argument)) {
+                    boundValues.add(argument);
+                    continue;
+                }
+                String name = argument.substring(1);
+                if (!values.containsKey(name)) {
+                    throw new QrsqlException("Placeholder is not bound: '" + argument + "'");
+                }
+                Object value = values.get(name);
+                if (value instanceof Collection) {
+                    boundValues.addAll((Collection) value);
+                    multiValue = true;
+                } else if (value != null && value.getClass().isArray()) {
+                    for (int i = 0; i < Array.getLength(value); i++) {
+                        boundValues.add(Array.get(value, i));
+                    }
+                    multiValue = true;
+                } else {
+                    boundValues.add(value);
+                }
+            }
+            for (Object value : boundValues) {
+                allString &= value instanceof String;
+            }
+            Object value;
+            if (allString && (!multiValue || boundValues.size() > 1)) {
+                //Same conversion as the not prepared query
+                value = this.fieldType.getValue((List) boundValues, this.fieldMetadata, this.qrsqlConfig);
+            } else if (!multiValue) {
+                value = boundValues.get(0);
+            } else {
+                List<Object> converted = new ArrayList<>(boundValues.size());
+                for (Object boundValue : boundValues) {
+                    converted.add(boundValue instanceof String ? this.fieldType.getValue(
+                            Collections.singletonList((String) boundValue), this.fieldMetadata, this.qrsqlConfig) :
+                            boundValue);
+                }
+                value = converted;
+            }
+            return toExpression(value);
+        }
+
+        private BooleanExpression toExpression(Object value) {
+            BooleanExpression result = this.fieldType.getExpression(this.path, this.fieldMetadata, value,
+                    this.operator, this.qrsqlConfig);
+            if (result == null) {
+                throw new QrsqlException("Can't build predicate with selector: " + this.fieldMetadata.getFieldSelector() +
+                        " operator: " + Arrays.toString(this.operator.getSymbols()) + " value: " + value);
+            }
+            return result;
+        }
+    }
+
+    private static boolean isPlaceholder(String argument) {
+        return PLACEHOLDER.matcher(argument).matches();
+    }
+
+    /**
+     * Compile the rsql tree and collect the placeholder names.
+     */
+    private static class Compiler implements RSQLVisitor<CompiledNode, Void> {
+
+        private final PredicateBuilder predicateBuilder;
+        private final Set<String> placeholders;
+        private final Class rootClass;
+
+        Compiler(PredicateBuilder predicateBuilder, Set<String> placeholders, Class rootClass) {
+            this.predicateBuilder = predicateBuilder;
+            this.placeholders = placeholders;
+            this.rootClass = rootClass;
+        }
+
+        @Override
+        public CompiledNode visit(AndNode node, Void param) {
+            return visitLogical(node, Ops.AND);
+        }
+
+        @Override
+        public CompiledNode visit(OrNode node, Void param) {
+            return visitLogical(node, Ops.OR);
+        }
+
+        @Override
+        public CompiledNode visit(ComparisonNode node, Void param) {
+            for (String argument : node.getArguments()) {
+                if (isPlaceholder(argument)) {
+                    this.placeholders.add(argument.substring(1));
+                }
+            }
+            return new ComparisonCompiledNode(this.predicateBuilder, this.rootClass, node);
+        }
+
+        private CompiledNode visitLogical(LogicalNode node, Ops logicalOperator) {
+            List<CompiledNode> children = new ArrayList<>();
+            for (Node child : node.getChildren()) {
+                children.add(child.accept(this));
+            }
+            return new LogicalCompiledNode(logicalOperator, children);
+        }
+    }
+}
@@ -24,25 +24,67 @@
  */
 package com.github.balintrudas.qrsql;
 
+import com.github.balintrudas.qrsql.aggregate.QrsqlAggregation;
+import com.github.balintrudas.qrsql.aggregate.QrsqlFacet;
+import com.github.balintrudas.qrsql.allowlist.SelectorAllowlist;
 import com.github.balintrudas.qrsql.exception.EntityNotFoundException;
 import com.github.balintrudas.qrsql.exception.QrsqlException;
-import com.github.balintrudas.qrsql.exception.TypeNotSupportedException;
+import com.github.balintrudas.qrsql.exception.QueryCancelledException;
+import com.github.balintrudas.qrsql.exception.QueryDeadlineExceededException;
+import com.github.balintrudas.qrsql.execution.AdmissionController;
+import com.github.balintrudas.qrsql.execution.CancellationHandle;
+import com.github.balintrudas.qrsql.execution.QrsqlPage;
+import com.github.balintrudas.qrsql.execution.QueryCoalescer;
+import com.github.balintrudas.qrsql.execution.QueryDeadline;
+import com.github.balintrudas.qrsql.execution.SortedIdSet;
+import com.github.balintrudas.qrsql.explain.QrsqlExplanation;
+import com.github.balintrudas.qrsql.explain.SqlExplainer;
+import com.github.balintrudas.qrsql.memory.QrsqlColumnSnapshot;
+import com.github.balintrudas.qrsql.memory.QrsqlEntityStore;
 import com.github.balintrudas.qrsql.operator.QrsqlOperator;
 import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
+import com.github.balintrudas.qrsql.metrics.QrsqlFingerprint;
+import com.github.balintrudas.qrsql.metrics.QrsqlMetrics;
+import com.github.balintrudas.qrsql.metrics.QrsqlPhase;
+import com.github.balintrudas.qrsql.metrics.QrsqlTimings;
+import com.github.balintrudas.qrsql.metrics.SlowQueryLog;
 import com.github.balintrudas.qrsql.util.QrsqlUtil;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.*;
 import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPADeleteClause;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
-import cz.jirutka.rsql.parser.RSQLParser;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
 import cz.jirutka.rsql.parser.ast.Node;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * Base class for create querydsl based query from rsql expression.
@@ -52,6 +94,10 @@ import java.util.Map;
  */
 public class Qrsql<E> {
 
+    private static final String QUERY_TIMEOUT_HINT = "javax.persistence.query.timeout";
+    //Rendered as a literal, a constant would be bound as a parameter of the select clause
+    private static final Expression<Integer> ONE = Expressions.numberTemplate(Integer.class, "1");
+
     private PredicateBuilder predicateBuilder;
     private Class entityClass;
     private String select;
@@ -62,7 +108,13 @@ public class Qrsql<E> {
     private Long size;
     private String sort;
     private List<OrderSpecifier> orderSpecifiers;
+    private String groupBy;
+    private String aggregate;
+    private String having;
     private QrsqlConfig<E> qrsqlConfig;
+    private volatile QrsqlFingerprint fingerprint;
+    private QueryDeadline deadline;
+    private CancellationHandle cancellation;
 
     /**
      * Validate the required parameters and create a new instance of {@link Qrsql}.
@@ -73,14 +125,11 @@ public class Qrsql<E> {
     private Qrsql(Builder<E> builder) throws EntityNotFoundException {
         this.qrsqlConfig = builder.qrsqlConfig;
         this.predicateBuilder = new PredicateBuilder(this.qrsqlConfig);
-        if (this.qrsqlConfig.getOperators() != null) {
-            QrsqlUtil.validateOperators(this.qrsqlConfig.getOperators());
-        }
         if (this.qrsqlConfig.getEntityManager() == null) {
             throw new IllegalArgumentException("Entity manager cannot be null.");
         }
         this.entityClass = builder.entityClass != null ? builder.entityClass :
-                QrsqlUtil.getClassForEntityString(builder.entityName, this.qrsqlConfig.getEntityManager());
+                this.qrsqlConfig.getEntityClass(builder.entityName);
         if (this.entityClass == null) {
             throw new EntityNotFoundException("Can't find entity with name: ".concat(builder.entityName));
         }
@@ -92,21 +141,30 @@ public class Qrsql<E> {
         this.size = builder.size;
         this.sort = builder.sort;
         this.orderSpecifiers = builder.orderSpecifiers;
+        this.groupBy = builder.groupBy;
+        this.aggregate = builder.aggregate;
+        this.having = builder.having;
+        this.fingerprint = builder.fingerprint;
+        this.deadline = builder.deadline;
+        this.cancellation = builder.cancellation;
     }
 
     /**
      * Build a {@link JPAQuery}.
      *
      * @param selectFieldPath Converted selection expression. It can be null.
+     * @param entityManager   Entity manager of the query
+     * @param timer           Timings of the execution, or null if it is not timed
      * @return querydsl {@code JPAQuery} to fetch from database
      * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
      */
-    private JPAQuery buildQuery(List<Path> selectFieldPath) throws QrsqlException {
+    private JPAQuery buildQuery(List<Path> selectFieldPath, EntityManager entityManager, ExecutionTimer timer)
+            throws QrsqlException {
         try {
             //Build predicate
-            Predicate predicate = this.predicateWhere != null ? this.predicateWhere : buildPredicate();
-            JPAQueryFactory query = new JPAQueryFactory(this.qrsqlConfig.getEntityManager());
-            PathBuilder fromPath = new PathBuilder(this.entityClass, this.entityClass.getSimpleName().toLowerCase());
+            Predicate predicate = this.predicateWhere != null ? this.predicateWhere : buildPredicate(timer);
+            JPAQueryFactory query = new JPAQueryFactory(entityManager);
+            PathBuilder fromPath = new PathBuilder(this.entityClass, getAlias());
 
             JPAQuery jpaQuery;
             //Build select
@@ -129,7 +187,7 @@ public class Qrsql<E> {
                 jpaQuery.limit(this.size);
             }
             //OrderBy part
-            OrderSpecifier[] orderSpecifiers = buildOrder();
+            OrderSpecifier[] orderSpecifiers = buildOrder(timer);
             if (orderSpecifiers.length > 0) {
                 jpaQuery.orderBy(orderSpecifiers);
             }
@@ -148,15 +206,27 @@ public class Qrsql<E> {
      * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
      */
     public List<E> fetch() throws QrsqlException {
+        return coalesce(QueryKind.LIST, this::fetch);
+    }
+
+    private List<E> fetch(EntityManager entityManager, QueryDeadline queryDeadline) throws QrsqlException {
+        boolean timed = this.qrsqlConfig.isTimed();
+        ExecutionTimer timer = startQuery(timed);
         List result = new ArrayList();
         List<Path> selectFieldPath = buildSelectPath();
-        JPAQuery jpaQuery = buildQuery(selectFieldPath);
+        JPAQuery jpaQuery = applyTimeout(buildQuery(selectFieldPath, entityManager, timer), queryDeadline);
+        long startTime = timed ? System.nanoTime() : 0L;
         if (selectFieldPath != null && selectFieldPath.size() > 0) {
             List<Tuple> tupleList = jpaQuery.fetch();
             result = tupleList;
         } else {
             result = jpaQuery.fetch();
         }
+        if (timed) {
+            recordTime(timer, QrsqlPhase.EXECUTION, startTime);
+            recordCount(timer, result.size());
+            recordQuery(timer, jpaQuery);
+        }
         return result;
     }
 
@@ -167,14 +237,831 @@ public class Qrsql<E> {
      * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
      */
     public Object fetchOne() throws QrsqlException {
+        return coalesce(QueryKind.ONE, this::fetchOne);
+    }
+
+    private Object fetchOne(EntityManager entityManager, QueryDeadline queryDeadline) throws QrsqlException {
+        boolean timed = this.qrsqlConfig.isTimed();
+        ExecutionTimer timer = startQuery(timed);
         List<Path> selectFieldPath = buildSelectPath();
-        JPAQuery jpaQuery = buildQuery(selectFieldPath);
+        JPAQuery jpaQuery = applyTimeout(buildQuery(selectFieldPath, entityManager, timer), queryDeadline);
+        long startTime = timed ? System.nanoTime() : 0L;
+        Object result;
         if (selectFieldPath != null && selectFieldPath.size() > 0) {
             Tuple tuple = (Tuple) jpaQuery.fetchOne();
-            return tuple;
+            result = tuple;
+        } else {
+            result = jpaQuery.fetchOne();
+        }
+        if (timed) {
+            recordTime(timer, QrsqlPhase.EXECUTION, startTime);
+            recordCount(timer, result != null ? 1 : 0);
+            recordQuery(timer, jpaQuery);
+        }
+        return result;
+    }
+
+    /**
+     * Count the records which match the where expression. The select, the sort and the paging are ignored.
+     *
+     * @return Number of the matching records
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public long fetchCount() throws QrsqlException {
+        return coalesce(QueryKind.COUNT, this::fetchCount);
+    }
+
+    private long fetchCount(EntityManager entityManager, QueryDeadline queryDeadline) throws QrsqlException {
+        boolean timed = this.qrsqlConfig.isTimed();
+        ExecutionTimer timer = startQuery(timed);
+        JPAQuery jpaQuery;
+        try {
+            Predicate predicate = this.predicateWhere != null ? this.predicateWhere : buildPredicate(timer);
+            jpaQuery = new JPAQueryFactory(entityManager)
+                    .from(new PathBuilder(this.entityClass, getAlias()))
+                    .where(predicate);
+            applyTimeout(jpaQuery, queryDeadline);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+        long startTime = timed ? System.nanoTime() : 0L;
+        long count = jpaQuery.fetchCount();
+        if (timed) {
+            recordTime(timer, QrsqlPhase.EXECUTION, startTime);
+            recordQuery(timer, jpaQuery);
+        }
+        return count;
+    }
+
+    /**
+     * Whether any record matches the where expression. Only a constant is selected for the first matching record, so
+     * no column has to be read; the select, the sort and the paging are ignored.
+     *
+     * @return true if at least one record matches
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public boolean exists() throws QrsqlException {
+        return coalesce(QueryKind.EXISTS, this::exists);
+    }
+
+    private Boolean exists(EntityManager entityManager, QueryDeadline queryDeadline) throws QrsqlException {
+        boolean timed = this.qrsqlConfig.isTimed();
+        ExecutionTimer timer = startQuery(timed);
+        JPAQuery<?> jpaQuery = buildIdQuery(entityManager, false, queryDeadline, timer).select(ONE);
+        long startTime = timed ? System.nanoTime() : 0L;
+        boolean exists = jpaQuery.fetchFirst() != null;
+        if (timed) {
+            recordTime(timer, QrsqlPhase.EXECUTION, startTime);
+            recordCount(timer, exists ? 1 : 0);
+            recordQuery(timer, jpaQuery);
+        }
+        return exists;
+    }
+
+    /**
+     * Fetch the ids of the matching records without hydrating the entities. The select is ignored, the sort and the
+     * paging are applied. The id must be numeric.
+     *
+     * @return Ids in the order of the sort expression, or in the order of the database without sort
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public long[] fetchIds() throws QrsqlException {
+        return coalesce(QueryKind.IDS,
+                (entityManager, queryDeadline) -> fetchIds(entityManager, true, queryDeadline)).clone();
+    }
+
+    /**
+     * Fetch the ids of the matching records into a {@link SortedIdSet}. The select is ignored, the sort is applied
+     * only together with the paging, because a set has no order.
+     *
+     * @return Sorted set of the ids
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public SortedIdSet fetchIdSet() throws QrsqlException {
+        boolean paged = this.offset != null || this.size != null;
+        return SortedIdSet.of(coalesce(QueryKind.ID_SET,
+                (entityManager, queryDeadline) -> fetchIds(entityManager, paged, queryDeadline)));
+    }
+
+    private long[] fetchIds(EntityManager entityManager, boolean ordered, QueryDeadline queryDeadline)
+            throws QrsqlException {
+        boolean timed = this.qrsqlConfig.isTimed();
+        ExecutionTimer timer = startQuery(timed);
+        Class<?> idType = getIdAttribute(entityManager).getJavaType();
+        if (!Number.class.isAssignableFrom(idType) && (!idType.isPrimitive() || idType == boolean.class)) {
+            throw new QrsqlException("Id must be numeric: " + this.entityClass.getName());
+        }
+        JPAQuery<?> jpaQuery = buildIdQuery(entityManager, ordered, queryDeadline, timer);
+        long startTime = timed ? System.nanoTime() : 0L;
+        List<?> result = jpaQuery.fetch();
+        long[] ids = new long[result.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ((Number) result.get(i)).longValue();
+        }
+        if (timed) {
+            recordTime(timer, QrsqlPhase.EXECUTION, startTime);
+            recordCount(timer, ids.length);
+            recordQuery(timer, jpaQuery);
+        }
+        return ids;
+    }
+
+    /**
+     * Build the query which selects the id of the root entity. The paging and the sort are applied only for the
+     * ordered queries.
+     */
+    private JPAQuery<?> buildIdQuery(EntityManager entityManager, boolean ordered, QueryDeadline queryDeadline,
+                                     ExecutionTimer timer) throws QrsqlException {
+        try {
+            SingularAttribute<?, ?> idAttribute = getIdAttribute(entityManager);
+            PathBuilder root = new PathBuilder(this.entityClass, getAlias());
+            Predicate predicate = this.predicateWhere != null ? this.predicateWhere :
+                    (this.where != null ? buildPredicate(timer) : null);
+            JPAQuery<?> jpaQuery = new JPAQueryFactory(entityManager)
+                    .select((Expression<?>) root.get(idAttribute.getName(), idAttribute.getJavaType())).from(root);
+            if (predicate != null) {
+                jpaQuery.where(predicate);
+            }
+            if (ordered) {
+                OrderSpecifier[] orders = buildOrder(timer);
+                if (orders.length > 0) {
+                    jpaQuery.orderBy(orders);
+                }
+                if (this.offset != null) {
+                    jpaQuery.offset(this.offset);
+                }
+                if (this.size != null) {
+                    jpaQuery.limit(this.size);
+                }
+            }
+            return applyTimeout(jpaQuery, queryDeadline);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    /**
+     * Fetch the summary rows of the aggregate expression, grouped by the group by selectors and filtered by the having
+     * expression. The aggregation runs in the database, see {@link QrsqlAggregation} for the syntax. The select is
+     * ignored, the sort expression can refer to the group by selectors and the aggregate aliases.
+     *
+     * @return Summary rows keyed by the group by selectors and the aggregate aliases
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public List<Map<String, Object>> fetchAggregate() throws QrsqlException {
+        if (this.aggregate == null) {
+            throw new QrsqlException("Aggregate expression is required.");
+        }
+        return coalesce(QueryKind.AGGREGATE, this::fetchAggregate);
+    }
+
+    private List<Map<String, Object>> fetchAggregate(EntityManager entityManager, QueryDeadline queryDeadline)
+            throws QrsqlException {
+        boolean timed = this.qrsqlConfig.isTimed();
+        ExecutionTimer timer = startQuery(timed);
+        QrsqlAggregation aggregation;
+        JPAQuery<Tuple> jpaQuery;
+        try {
+            aggregation = new QrsqlAggregation(this.qrsqlConfig, this.entityClass, this.groupBy, this.aggregate,
+                    this::checkSelector);
+            Predicate predicate = this.predicateWhere != null ? this.predicateWhere :
+                    (this.where != null ? buildPredicate(timer) : null);
+            jpaQuery = new JPAQueryFactory(entityManager).select(aggregation.getSelect())
+                    .from(new PathBuilder(this.entityClass, getAlias()));
+            Node havingNode = null;
+            if (this.having != null) {
+                havingNode = this.qrsqlConfig.parseWhere(this.having);
+            }
+            aggregation.apply(jpaQuery, havingNode);
+            if (predicate != null) {
+                jpaQuery.where(predicate);
+            }
+            if (this.sort != null) {
+                jpaQuery.orderBy(aggregation.getOrder(this.sort));
+            }
+            if (this.offset != null) {
+                jpaQuery.offset(this.offset);
+            }
+            if (this.size != null) {
+                jpaQuery.limit(this.size);
+            }
+            applyTimeout(jpaQuery, queryDeadline);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+        long startTime = timed ? System.nanoTime() : 0L;
+        List<Tuple> tuples = jpaQuery.fetch();
+        if (timed) {
+            recordTime(timer, QrsqlPhase.EXECUTION, startTime);
+            recordCount(timer, tuples.size());
+            recordQuery(timer, jpaQuery);
+        }
+        return aggregation.toRows(tuples);
+    }
+
+    /**
+     * Count the matching records per value of every facet selector. The predicate is built once and shared by the
+     * facet queries, which run one after the other. The select, the sort and the paging are ignored.
+     *
+     * @param facets facet expression, see {@link QrsqlFacet}, e.g. <tt>active,engine.name:10</tt>
+     * @return Value to count maps by the facet selectors, the values are ordered by descending count
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public Map<String, Map<Object, Long>> fetchFacets(String facets) throws QrsqlException {
+        return fetchFacets(facets, null);
+    }
+
+    /**
+     * Count the matching records per value of every facet selector. The facet queries run in parallel on the
+     * executor, each with its own {@link EntityManager} of the factory, and share the built predicate. JPQL has no
+     * grouping sets, every facet is a grouped query of its own.
+     *
+     * @param facets   facet expression, see {@link QrsqlFacet}, e.g. <tt>active,engine.name:10</tt>
+     * @param executor executor of the facet queries, or null to run them on the current thread
+     * @return Value to count maps by the facet selectors, the values are ordered by descending count
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public Map<String, Map<Object, Long>> fetchFacets(String facets, Executor executor) throws QrsqlException {
+        boolean timed = this.qrsqlConfig.isTimed();
+        ExecutionTimer timer = startQuery(timed);
+        List<QrsqlFacet> facetList = QrsqlFacet.parse(facets);
+        Predicate predicate;
+        try {
+            predicate = this.predicateWhere != null ? this.predicateWhere :
+                    (this.where != null ? buildPredicate(timer) : null);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+        long startTime = timed ? System.nanoTime() : 0L;
+        Map<String, Map<Object, Long>> result = new LinkedHashMap<>();
+        if (executor == null || facetList.size() == 1) {
+            for (QrsqlFacet facet : facetList) {
+                result.put(facet.getSelector(), admit(QueryKind.FACET, guard(fetchFacet(facet, predicate)))
+                        .apply(this.qrsqlConfig.getEntityManager()));
+            }
         } else {
-            return jpaQuery.fetchOne();
+            EntityManagerFactory entityManagerFactory = this.qrsqlConfig.getEntityManager().getEntityManagerFactory();
+            List<CompletableFuture<Map<Object, Long>>> futures = new ArrayList<>(facetList.size());
+            for (QrsqlFacet facet : facetList) {
+                Function<EntityManager, Map<Object, Long>> query = admit(QueryKind.FACET,
+                        guard(fetchFacet(facet, predicate)));
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    EntityManager entityManager = entityManagerFactory.createEntityManager();
+                    try {
+                        return query.apply(entityManager);
+                    } finally {
+                        entityManager.close();
+                    }
+                }, executor));
+            }
+            for (int i = 0; i < facetList.size(); i++) {
+                try {
+                    result.put(facetList.get(i).getSelector(), futures.get(i).join());
+                } catch (CompletionException ex) {
+                    futures.forEach(future -> future.cancel(false));
+                    if (ex.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) ex.getCause();
+                    }
+                    throw new QrsqlException(ex.getCause());
+                }
+            }
+        }
+        if (timed) {
+            recordTime(timer, QrsqlPhase.EXECUTION, startTime);
+            recordCount(timer, result.values().stream().mapToLong(Map::size).sum());
+        }
+        return result;
+    }
+
+    private BiFunction<EntityManager, QueryDeadline, Map<Object, Long>> fetchFacet(QrsqlFacet facet,
+                                                                               Predicate predicate) {
+        return (entityManager, queryDeadline) -> {
+            JPAQuery<Tuple> jpaQuery;
+            try {
+                QrsqlAggregation aggregation = new QrsqlAggregation(this.qrsqlConfig, this.entityClass,
+                        facet.getSelector(), QrsqlAggregation.COUNT_ALIAS + "()", this::checkSelector);
+                jpaQuery = new JPAQueryFactory(entityManager).select(aggregation.getSelect())
+                        .from(new PathBuilder(this.entityClass, getAlias()));
+                aggregation.apply(jpaQuery, null);
+                if (predicate != null) {
+                    jpaQuery.where(predicate);
+                }
+                jpaQuery.orderBy(aggregation.getOrder(QrsqlAggregation.COUNT_ALIAS + ".desc," +
+                        facet.getSelector() + ".asc"));
+                if (facet.getLimit() != null) {
+                    jpaQuery.limit(facet.getLimit());
+                }
+                applyTimeout(jpaQuery, queryDeadline);
+            } catch (QrsqlException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new QrsqlException(ex);
+            }
+            Map<Object, Long> counts = new LinkedHashMap<>();
+            for (Tuple tuple : jpaQuery.fetch()) {
+                counts.put(tuple.get(0, Object.class), tuple.get(1, Long.class));
+            }
+            return counts;
+        };
+    }
+
+    /**
+     * Fetch the matching entities from an in-memory store instead of the database. The where, the sort and the
+     * paging of the query are evaluated by the indexes of the store.
+     *
+     * @param store in-memory store of the entity
+     * @return List of the matching entities
+     * @throws QrsqlException If the query uses a feature which is not supported by the store.
+     */
+    public List<E> fetchFrom(QrsqlEntityStore<E> store) throws QrsqlException {
+        Node where = checkInMemoryQuery(store.getEntityClass());
+        return store.fetch(where, this.sort, this.offset, this.size);
+    }
+
+    /**
+     * Count the matching entities of an in-memory store instead of the database. The sort and the paging are ignored.
+     *
+     * @param store in-memory store of the entity
+     * @return Number of the matching entities
+     * @throws QrsqlException If the query uses a feature which is not supported by the store.
+     */
+    public long fetchCountFrom(QrsqlEntityStore<E> store) throws QrsqlException {
+        return store.count(checkInMemoryQuery(store.getEntityClass()));
+    }
+
+    /**
+     * Count the matching rows of a columnar snapshot instead of the database. The sort and the paging are ignored.
+     *
+     * @param snapshot columnar snapshot of the entity
+     * @return Number of the matching rows
+     * @throws QrsqlException If the query uses a feature which is not supported by the snapshot.
+     */
+    public long fetchCountFrom(QrsqlColumnSnapshot<E> snapshot) throws QrsqlException {
+        return snapshot.count(checkInMemoryQuery(snapshot.getEntityClass()));
+    }
+
+    private Node checkInMemoryQuery(Class storeClass) {
+        if (!storeClass.equals(this.entityClass)) {
+            throw new QrsqlException("The store contains " + storeClass.getName() + " entities.");
+        }
+        if (this.predicateWhere != null || this.select != null || this.expressionSelect != null ||
+                this.orderSpecifiers != null || this.groupBy != null || this.aggregate != null) {
+            throw new QrsqlException("The in-memory store supports only the where, sort and paging expressions.");
+        }
+        if (this.sort != null) {
+            QrsqlUtil.parseSortExpression(this.sort).keySet().forEach(this::checkSelector);
+        }
+        return this.where != null ? parseWhere() : null;
+    }
+
+    /**
+     * Update the records which match the where expression with one set-based statement. The select, the sort and the
+     * paging are ignored. If the where expression traverses an association or a collection, it is rewritten into an
+     * id subquery, because the bulk statements can't join. The statement bypasses the persistence context, the managed
+     * entities are not refreshed. It requires an active transaction.
+     *
+     * @param values New values by the selectors of the basic fields of the root entity, null sets the field to null
+     * @return Number of the updated records
+     * @throws QrsqlException If some exception occurred during building or executing the statement.
+     */
+    public long update(Map<String, ?> values) throws QrsqlException {
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("Values of the update can't be empty.");
+        }
+        return admit(QueryKind.UPDATE, guard((entityManager, queryDeadline) -> {
+            try {
+                PathBuilder target = getBulkTarget();
+                JPAUpdateClause updateClause = new JPAUpdateClause(entityManager, target);
+                for (Map.Entry<String, ?> value : values.entrySet()) {
+                    Path path = getUpdatePath(target, value.getKey());
+                    if (value.getValue() == null) {
+                        updateClause.setNull(path);
+                    } else {
+                        updateClause.set(path, value.getValue());
+                    }
+                }
+                Predicate predicate = buildBulkPredicate(target, entityManager);
+                if (predicate != null) {
+                    updateClause.where(predicate);
+                }
+                return updateClause.execute();
+            } catch (QrsqlException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new QrsqlException(ex);
+            }
+        })).apply(this.qrsqlConfig.getEntityManager());
+    }
+
+    /**
+     * Delete the records which match the where expression with one set-based statement. The select, the sort and the
+     * paging are ignored. If the where expression traverses an association or a collection, it is rewritten into an
+     * id subquery. The statement doesn't cascade and bypasses the persistence context. It requires an active
+     * transaction.
+     *
+     * @return Number of the deleted records
+     * @throws QrsqlException If some exception occurred during building or executing the statement.
+     */
+    public long delete() throws QrsqlException {
+        return admit(QueryKind.DELETE, guard((entityManager, queryDeadline) -> {
+            try {
+                PathBuilder target = getBulkTarget();
+                JPADeleteClause deleteClause = new JPADeleteClause(entityManager, target);
+                Predicate predicate = buildBulkPredicate(target, entityManager);
+                if (predicate != null) {
+                    deleteClause.where(predicate);
+                }
+                return deleteClause.execute();
+            } catch (QrsqlException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new QrsqlException(ex);
+            }
+        })).apply(this.qrsqlConfig.getEntityManager());
+    }
+
+    /**
+     * Root of the bulk statement. It has the alias of the predicate if the predicate can be applied directly,
+     * otherwise a distinct alias for the outer statement of the id subquery.
+     */
+    private PathBuilder getBulkTarget() {
+        String alias = getAlias();
+        return new PathBuilder(this.entityClass, requiresIdSubquery() ? alias + "_bulk" : alias);
+    }
+
+    private Path getUpdatePath(PathBuilder target, String selector) {
+        checkSelector(selector);
+        List<FieldMetadata> fieldMetadataList = this.qrsqlConfig.getFieldMetadata(this.entityClass, selector);
+        if (fieldMetadataList.size() != 1 || Boolean.TRUE.equals(fieldMetadataList.get(0).getCollection())) {
+            throw new QrsqlException("Only the basic fields of the root entity can be updated: " + selector);
+        }
+        return target.get(selector, fieldMetadataList.get(0).getType());
+    }
+
+    private Predicate buildBulkPredicate(PathBuilder target, EntityManager entityManager) {
+        Predicate predicate = this.predicateWhere != null ? this.predicateWhere :
+                (this.where != null ? buildPredicate() : null);
+        if (predicate == null || !requiresIdSubquery()) {
+            return predicate;
+        }
+        SingularAttribute<?, ?> idAttribute = getIdAttribute(entityManager);
+        PathBuilder root = new PathBuilder(this.entityClass, getAlias());
+        Expression<?> idPath = target.get(idAttribute.getName(), idAttribute.getJavaType());
+        JPQLQuery<?> idSubquery = JPAExpressions.select((Expression<?>) root.get(idAttribute.getName(),
+                idAttribute.getJavaType()));
+        idSubquery.from(root).where(predicate);
+        return Expressions.booleanOperation(Ops.IN, idPath, idSubquery);
+    }
+
+    private SingularAttribute<?, ?> getIdAttribute(EntityManager entityManager) {
+        EntityType<?> entityType = entityManager.getMetamodel().entity(this.entityClass);
+        if (!entityType.hasSingleIdAttribute()) {
+            throw new QrsqlException("Entity must have a single id attribute: " + this.entityClass.getName());
+        }
+        return entityType.getId(entityType.getIdType().getJavaType());
+    }
+
+    /**
+     * Whether the where expression traverses an association or a collection. The querydsl predicates can't be
+     * inspected, they are always applied through the id subquery.
+     */
+    private boolean requiresIdSubquery() {
+        if (this.where == null) {
+            return this.predicateWhere != null;
+        }
+        Deque<Node> nodes = new ArrayDeque<>();
+        nodes.push(parseWhere());
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            if (node instanceof LogicalNode) {
+                for (Node child : ((LogicalNode) node).getChildren()) {
+                    nodes.push(child);
+                }
+            } else if (node instanceof ComparisonNode) {
+                List<FieldMetadata> fieldMetadataList = this.qrsqlConfig.getFieldMetadata(this.entityClass,
+                        ((ComparisonNode) node).getSelector());
+                if (fieldMetadataList.size() > 1 || Boolean.TRUE.equals(fieldMetadataList.get(0).getCollection())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Explain the query without fetching its rows.
+     *
+     * @return {@link QrsqlExplanation} without the database plan
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public QrsqlExplanation explain() throws QrsqlException {
+        return explain(false);
+    }
+
+    /**
+     * Explain the query without fetching its rows: the canonical parsed where expression, the predicate, the JPQL
+     * with its bind parameters and the SQL translated by the {@link SqlExplainer} of the configuration.
+     *
+     * @param databasePlan explain the SQL statements with the database too
+     * @return {@link QrsqlExplanation}
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public QrsqlExplanation explain(boolean databasePlan) throws QrsqlException {
+        try {
+            EntityManager entityManager = this.qrsqlConfig.getEntityManager();
+            String parsedTree = this.where != null ? parseWhere().toString() : null;
+            JPAQuery jpaQuery = buildQuery(buildSelectPath(), entityManager, null);
+            Predicate predicate = jpaQuery.getMetadata().getWhere();
+            JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(entityManager), entityManager);
+            serializer.serialize(jpaQuery.getMetadata(), false, null);
+            String jpql = serializer.toString();
+            Map<String, Object> parameters = new TreeMap<>(Comparator.comparingInt((String label) ->
+                    Integer.parseInt(label.substring(1))));
+            for (Map.Entry<Object, String> constant : serializer.getConstantToLabel().entrySet()) {
+                parameters.put("?" + constant.getValue(), constant.getKey());
+            }
+            SqlExplainer sqlExplainer = this.qrsqlConfig.getSqlExplainer();
+            List<String> sql = sqlExplainer.toSql(entityManager, jpql);
+            List<String> plan = null;
+            if (databasePlan) {
+                plan = new ArrayList<>();
+                for (String statement : sql) {
+                    plan.addAll(sqlExplainer.explain(entityManager, statement));
+                }
+            }
+            return new QrsqlExplanation(parsedTree, predicate != null ? predicate.toString() : null, jpql,
+                    new LinkedHashMap<>(parameters), sql, plan);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    /**
+     * Fetch multiple result sets asynchronously with a separate entity manager, so the fetched entities are detached.
+     * The asynchronous executions are not coalesced. Every call has a {@link CancellationHandle} of its own, which is
+     * cancelled with the handle of this query: cancelling the returned future aborts the in-flight statement of this
+     * call only.
+     *
+     * @param executor executor of the query
+     * @return future of the fetched records
+     */
+    public CompletableFuture<List<E>> fetchAsync(Executor executor) {
+        CancellationHandle cancellationHandle = new CancellationHandle();
+        AutoCloseable link = this.cancellation != null ? this.cancellation.register(cancellationHandle::cancel) : null;
+        CompletableFuture<List<E>> future = new CompletableFuture<List<E>>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                cancellationHandle.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        if (link != null) {
+            future.whenComplete((result, ex) -> closeQuietly(link));
+        }
+        EntityManagerFactory entityManagerFactory = this.qrsqlConfig.getEntityManager().getEntityManagerFactory();
+        executor.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                future.complete(admit(QueryKind.LIST, guard(this::fetch, this.deadline, cancellationHandle),
+                        this.deadline, cancellationHandle).apply(entityManager));
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            } finally {
+                entityManager.close();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Fetch a page of the records with the total count. The count is skipped if the page is the first one and it is
+     * not full, then the total is its size, or if the query is cancelled or less than the count budget is remaining
+     * from its deadline.
+     *
+     * @param countBudget minimum remaining time to count the records
+     * @param unit        unit of the count budget
+     * @return Page of the fetched records
+     * @throws QrsqlException If some exception occurred during building {@link JPAQuery}.
+     */
+    public QrsqlPage<E> fetchPage(long countBudget, TimeUnit unit) throws QrsqlException {
+        List<E> content = fetch();
+        Long total = null;
+        if ((this.offset == null || this.offset == 0) && (this.size == null || content.size() < this.size)) {
+            total = (long) content.size();
+        } else if ((this.cancellation == null || !this.cancellation.isCancelled()) &&
+                (this.deadline == null || this.deadline.hasRemaining(countBudget, unit))) {
+            total = fetchCount();
+        }
+        return new QrsqlPage<>(content, total);
+    }
+
+    /**
+     * Execute the query, through the {@link QueryCoalescer} if it is configured and the result can be shared.
+     * The shared execution uses a separate entity manager, so the shared entities are detached. The shared lists
+     * are unmodifiable. The coalesced queries pass the {@link AdmissionController} once. The shared execution is
+     * bounded by the configured query timeout and aborted by the shared cancellation of the coalescer, the deadline
+     * and the cancellation of this query bound only its own wait.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(QueryKind kind, BiFunction<EntityManager, QueryDeadline, T> query) {
+        QueryCoalescer queryCoalescer = this.qrsqlConfig.getQueryCoalescer();
+        boolean entityResult = (kind == QueryKind.LIST || kind == QueryKind.ONE) && this.expressionSelect == null &&
+                this.select == null;
+        if (queryCoalescer == null || (entityResult && !queryCoalescer.isCoalesceEntities())) {
+            return admit(kind, guard(query)).apply(this.qrsqlConfig.getEntityManager());
+        }
+        Function<CancellationHandle, T> sharedExecution = sharedCancellation -> {
+            // The shared execution can run on the thread of the coalescer, so it has an entity manager of its own
+            Function<EntityManager, T> execution = admit(kind, guard(query, null, sharedCancellation), null,
+                    sharedCancellation);
+            T result;
+            EntityManager entityManager = this.qrsqlConfig.getEntityManager().getEntityManagerFactory()
+                    .createEntityManager();
+            try {
+                result = execution.apply(entityManager);
+            } finally {
+                entityManager.close();
+            }
+            return result instanceof List ? (T) Collections.unmodifiableList((List) result) : result;
+        };
+        return queryCoalescer.execute(getQueryKey(kind), sharedExecution, this.deadline, this.cancellation);
+    }
+
+    /**
+     * Bound the execution with the earlier of the query deadline and the configured query timeout, and abort it if the
+     * query is cancelled. The failures of the cancelled or timed out executions are reported as
+     * {@link QueryCancelledException} and {@link QueryDeadlineExceededException}. The deadline of the execution is
+     * passed to the query, the executions of the same instance can run concurrently.
+     */
+    private <T> Function<EntityManager, T> guard(BiFunction<EntityManager, QueryDeadline, T> query) {
+        return guard(query, this.deadline, this.cancellation);
+    }
+
+    private <T> Function<EntityManager, T> guard(BiFunction<EntityManager, QueryDeadline, T> query,
+                                                 QueryDeadline deadline, CancellationHandle cancellation) {
+        Long queryTimeout = this.qrsqlConfig.getQueryTimeout();
+        if (deadline == null && cancellation == null && queryTimeout == null) {
+            return entityManager -> query.apply(entityManager, null);
+        }
+        return entityManager -> {
+            QueryDeadline queryDeadline = QueryDeadline.earliest(deadline,
+                    queryTimeout != null ? QueryDeadline.after(queryTimeout, TimeUnit.MILLISECONDS) : null);
+            if (cancellation != null) {
+                cancellation.throwIfCancelled();
+            }
+            if (queryDeadline != null && queryDeadline.isExpired()) {
+                throw new QueryDeadlineExceededException("Query deadline is exceeded.");
+            }
+            EntityManager providerEntityManager = cancellation != null ? getProviderEntityManager(entityManager) : null;
+            EntityManager executionEntityManager = cancellation == null ? entityManager :
+                    (providerEntityManager != null ? providerEntityManager :
+                            entityManager.getEntityManagerFactory().createEntityManager());
+            AutoCloseable registration = cancellation != null ? cancellation.register(
+                    () -> this.qrsqlConfig.getQueryCanceller().cancel(executionEntityManager)) : null;
+            try {
+                return query.apply(executionEntityManager, queryDeadline);
+            } catch (RuntimeException ex) {
+                if (cancellation != null && cancellation.isCancelled()) {
+                    throw new QueryCancelledException("Query is cancelled.", ex);
+                } else if (queryDeadline != null && queryDeadline.isExpired()) {
+                    throw new QueryDeadlineExceededException("Query deadline is exceeded.", ex);
+                }
+                throw ex;
+            } finally {
+                if (registration != null) {
+                    closeQuietly(registration);
+                }
+                if (executionEntityManager != entityManager && executionEntityManager != providerEntityManager) {
+                    executionEntityManager.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Resolve the entity manager of the provider on the executing thread, the cancellation is called from another
+     * thread. A shared entity manager without transaction opens a new provider entity manager for each of its
+     * operations, then null is returned and the execution gets an entity manager of its own.
+     */
+    private static EntityManager getProviderEntityManager(EntityManager entityManager) {
+        Object delegate = entityManager.getDelegate();
+        return delegate instanceof EntityManager && ((EntityManager) delegate).isOpen() ?
+                (EntityManager) delegate : null;
+    }
+
+    private static void closeQuietly(AutoCloseable registration) {
+        try {
+            registration.close();
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    /**
+     * Apply the deadline of the execution as JPA query timeout in milliseconds.
+     */
+    private static JPAQuery applyTimeout(JPAQuery jpaQuery, QueryDeadline queryDeadline) {
+        if (queryDeadline != null) {
+            long timeout = TimeUnit.SECONDS.toMillis(queryDeadline.getTimeoutSeconds());
+            jpaQuery.setHint(QUERY_TIMEOUT_HINT, (int) Math.min(Integer.MAX_VALUE, timeout));
+        }
+        return jpaQuery;
+    }
+
+    /**
+     * Execute the query in the lane of its estimated cost if an {@link AdmissionController} is configured. The wait
+     * for the lane is bounded by the deadline and the cancellation of the execution.
+     */
+    private <T> Function<EntityManager, T> admit(QueryKind kind, Function<EntityManager, T> query) {
+        return admit(kind, query, this.deadline, this.cancellation);
+    }
+
+    private <T> Function<EntityManager, T> admit(QueryKind kind, Function<EntityManager, T> query,
+                                                 QueryDeadline deadline, CancellationHandle cancellation) {
+        AdmissionController admissionController = this.qrsqlConfig.getAdmissionController();
+        if (admissionController == null) {
+            return query;
         }
+        return entityManager -> {
+            long cost;
+            try {
+                Node rootNode = this.where != null ? parseWhere() : null;
+                cost = kind.isPaged() ?
+                        admissionController.estimate(this.qrsqlConfig, this.entityClass, rootNode, this.offset, this.size) :
+                        admissionController.estimate(this.qrsqlConfig, this.entityClass, rootNode, null, null);
+            } catch (QrsqlException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new QrsqlException(ex);
+            }
+            return admissionController.execute(cost, () -> query.apply(entityManager), deadline, cancellation);
+        };
+    }
+
+    /**
+     * Identity of the query: the queries with the same kind, entity, normalized where, select, sort and paging
+     * are coalesced. The operators, the field type handlers and the date format of the configuration are part of it,
+     * the overlays of a configuration can build different predicates from the same where expression.
+     */
+    private Object getQueryKey(QueryKind kind) {
+        Object whereKey;
+        try {
+            whereKey = this.where != null ? parseWhere().toString() : this.predicateWhere;
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+        Object selectKey = this.expressionSelect != null ? this.expressionSelect : normalizeExpression(this.select);
+        Object sortKey = this.sort != null ? normalizeExpression(this.sort) : this.orderSpecifiers;
+        EntityManagerFactory entityManagerFactory = this.qrsqlConfig.getEntityManager().getEntityManagerFactory();
+        Object configKey = Arrays.asList(this.qrsqlConfig.getOperators(), this.qrsqlConfig.getFieldTypeHandlers(),
+                this.qrsqlConfig.getDateFormat(), entityManagerFactory);
+        return !kind.isPaged() ? Arrays.asList(kind, this.entityClass, whereKey, configKey) :
+                Arrays.asList(kind, this.entityClass, whereKey, selectKey, sortKey, this.offset, this.size,
+                        this.groupBy, this.aggregate, this.having, configKey);
+    }
+
+    private enum QueryKind {
+        LIST(true), ONE(true), COUNT(false), EXISTS(false), IDS(true), ID_SET(true), AGGREGATE(true), FACET(false),
+        UPDATE(false), DELETE(false);
+
+        private final boolean paged;
+
+        QueryKind(boolean paged) {
+            this.paged = paged;
+        }
+
+        /**
+         * Whether the select, the sort and the paging are part of the query.
+         */
+        boolean isPaged() {
+            return paged;
+        }
+    }
+
+    /**
+     * Phase times and row count of one execution. Every execution owns its timer, so the concurrent executions of the
+     * same instance don't mix their timings.
+     */
+    private static final class ExecutionTimer {
+
+        private final long startTime = System.nanoTime();
+        private final long[] phaseTimes = new long[QrsqlPhase.values().length];
+        private long rowCount;
     }
 
     /**
@@ -184,30 +1071,145 @@ public class Qrsql<E> {
      * @throws QrsqlException If some exception ccourred during parse and convert rsql expression to {@link Predicate}.
      */
     public Predicate buildPredicate() throws QrsqlException {
+        return buildPredicate(null);
+    }
+
+    private Predicate buildPredicate(ExecutionTimer timer) throws QrsqlException {
         try {
-            Node rootNode = new RSQLParser(QrsqlUtil.getOperators(this.qrsqlConfig.getOperators())).parse(this.where);
-            return rootNode.accept(new PredicateBuilderVisitor(this.entityClass, this.predicateBuilder));
+            boolean timed = this.qrsqlConfig.isTimed();
+            long startTime = timed ? System.nanoTime() : 0L;
+            Node rootNode = parseWhere();
+            if (timed) {
+                if (this.fingerprint == null) {
+                    this.fingerprint = createFingerprint(rootNode);
+                }
+                recordTime(timer, QrsqlPhase.PARSE, startTime);
+                startTime = System.nanoTime();
+                this.predicateBuilder.resetMetadataResolutionTime();
+            }
+            Predicate predicate = rootNode.accept(new PredicateBuilderVisitor(this.entityClass, this.predicateBuilder));
+            if (timed) {
+                recordElapsedTime(timer, QrsqlPhase.METADATA_RESOLUTION,
+                        this.predicateBuilder.resetMetadataResolutionTime());
+                recordTime(timer, QrsqlPhase.PREDICATE_BUILD, startTime);
+            }
+            return predicate;
         } catch (Exception ex) {
             throw new QrsqlException(ex);
         }
     }
 
+    /**
+     * Return the value free fingerprint of this query.
+     *
+     * @return {@link QrsqlFingerprint}
+     * @throws QrsqlException If some exception occurred during parsing the rsql expression.
+     */
+    public QrsqlFingerprint getFingerprint() throws QrsqlException {
+        if (this.fingerprint == null) {
+            if (this.predicateWhere != null || this.where == null) {
+                this.fingerprint = createFingerprint(null);
+            } else {
+                try {
+                    this.fingerprint = createFingerprint(parseWhere());
+                } catch (Exception ex) {
+                    throw new QrsqlException(ex);
+                }
+            }
+        }
+        return this.fingerprint;
+    }
+
+    private QrsqlFingerprint createFingerprint(Node rootNode) {
+        String projection = this.expressionSelect != null ? QrsqlFingerprint.EXPRESSION_SHAPE :
+                normalizeExpression(this.select);
+        String sortShape = this.sort == null && this.orderSpecifiers != null ? QrsqlFingerprint.EXPRESSION_SHAPE :
+                normalizeExpression(this.sort);
+        return rootNode != null ? QrsqlFingerprint.of(this.entityClass, rootNode, projection, sortShape) :
+                QrsqlFingerprint.ofPredicate(this.entityClass, projection, sortShape);
+    }
+
+    private static String normalizeExpression(String expression) {
+        List<String> parts = QrsqlUtil.parseSelectExpression(expression);
+        return parts != null ? String.join(",", parts) : null;
+    }
+
+    Node parseWhere() {
+        Node rootNode = this.qrsqlConfig.parseWhere(this.where);
+        SelectorAllowlist selectorAllowlist = this.qrsqlConfig.getSelectorAllowlist();
+        if (selectorAllowlist != null) {
+            selectorAllowlist.check(this.entityClass, rootNode);
+        }
+        return rootNode;
+    }
+
+    private ExecutionTimer startQuery(boolean timed) {
+        return timed ? new ExecutionTimer() : null;
+    }
+
+    private void recordTime(ExecutionTimer timer, QrsqlPhase phase, long startTime) {
+        recordElapsedTime(timer, phase, System.nanoTime() - startTime);
+    }
+
+    private void recordElapsedTime(ExecutionTimer timer, QrsqlPhase phase, long elapsedTime) {
+        if (timer != null) {
+            timer.phaseTimes[phase.ordinal()] += elapsedTime;
+        }
+        QrsqlMetrics metrics = this.qrsqlConfig.getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.recordTime(phase, this.entityClass, getFingerprint(), elapsedTime);
+        }
+    }
+
+    private void recordCount(ExecutionTimer timer, long rowCount) {
+        timer.rowCount = rowCount;
+        QrsqlMetrics metrics = this.qrsqlConfig.getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.recordCount(QrsqlPhase.ROW_COUNT, this.entityClass, getFingerprint(), rowCount);
+        }
+    }
+
+    /**
+     * Pass the timings of the executed query to the {@link SlowQueryLog}.
+     *
+     * @param timer    Timings of the execution
+     * @param jpaQuery Executed query
+     */
+    private void recordQuery(ExecutionTimer timer, JPAQuery jpaQuery) {
+        SlowQueryLog slowQueryLog = this.qrsqlConfig.getSlowQueryLog();
+        if (slowQueryLog != null) {
+            slowQueryLog.record(getFingerprint(), new QrsqlTimings(timer.phaseTimes, timer.rowCount,
+                    System.nanoTime() - timer.startTime), jpaQuery::toString);
+        }
+    }
+
     /**
      * Create a {@link OrderSpecifier} with the builder parameters.
      *
      * @return Querydsl {@link OrderSpecifier}
      */
     public OrderSpecifier[] buildOrder() {
+        return buildOrder(null);
+    }
+
+    private OrderSpecifier[] buildOrder(ExecutionTimer timer) {
         List<OrderSpecifier> orderSpecifiers = new ArrayList<>();
+        boolean timed = this.qrsqlConfig.isTimed();
+        long startTime = timed ? System.nanoTime() : 0L;
         if (this.sort != null) {
             Map<String, Order> sorts = QrsqlUtil.parseSortExpression(this.sort);
             for (String sortSelect : new ArrayList<>(sorts.keySet())) {
-                Path sortPath = getPath(QrsqlUtil.parseFieldSelector(entityClass, sortSelect));
+                checkSelector(sortSelect);
+                Path sortPath = this.predicateBuilder.getPath(this.entityClass,
+                        this.qrsqlConfig.getFieldMetadata(this.entityClass, sortSelect));
                 orderSpecifiers.add(new OrderSpecifier(sorts.get(sortSelect), sortPath));
             }
         } else if (this.orderSpecifiers != null) {
             orderSpecifiers.addAll(this.orderSpecifiers);
         }
+        if (timed) {
+            recordTime(timer, QrsqlPhase.ORDER_BUILD, startTime);
+        }
         return orderSpecifiers.toArray(new OrderSpecifier[orderSpecifiers.size()]);
     }
 
@@ -219,25 +1221,66 @@ public class Qrsql<E> {
     private List<Path> buildSelectPath() {
         List<Path> selectFieldPath = null;
         if (this.select != null) {
+            if (this.qrsqlConfig.getSelectorAllowlist() != null) {
+                List<String> selectors = QrsqlUtil.parseSelectExpression(this.select);
+                if (selectors != null) {
+                    selectors.forEach(this::checkSelector);
+                }
+            }
             selectFieldPath = QrsqlUtil.parseSelect(this.select, this.entityClass);
         }
         return selectFieldPath;
     }
 
     /**
-     * @param fieldMetadataList
-     * @return querydsl {@link Path}
-     * @throws TypeNotSupportedException If the requested field type is not supported
+     * @return Alias of the root entity
      */
-    private Path getPath(List<FieldMetadata> fieldMetadataList) throws TypeNotSupportedException {
-        Path rootPath = Expressions.path(entityClass, entityClass.getSimpleName().toLowerCase());
-        List<Path> processedPaths = new ArrayList<>();
-        FieldTypeHandler fieldType = null;
-        for (int i = 0; i < fieldMetadataList.size(); i++) {
-            fieldType = this.qrsqlConfig.getFieldTypeHandler(fieldMetadataList.get(i).getType());
-            processedPaths.add(fieldType.getPath(fieldMetadataList.get(i), i == 0 ? rootPath : processedPaths.get(i - 1), this.qrsqlConfig));
+    private String getAlias() {
+        return this.qrsqlConfig.getPathCache().getAlias(this.entityClass);
+    }
+
+    private void checkSelector(String selector) {
+        SelectorAllowlist selectorAllowlist = this.qrsqlConfig.getSelectorAllowlist();
+        if (selectorAllowlist != null) {
+            selectorAllowlist.check(this.entityClass, selector);
+        }
+    }
+
+    QrsqlConfig<E> getQrsqlConfig() {
+        return qrsqlConfig;
+    }
+
+    PredicateBuilder getPredicateBuilder() {
+        return predicateBuilder;
+    }
+
+    Class getEntityClass() {
+        return entityClass;
+    }
+
+    String getWhere() {
+        return where;
+    }
+
+    Predicate getPredicateWhere() {
+        return predicateWhere;
+    }
+
+    Expression getSelectExpression() {
+        if (this.expressionSelect != null) {
+            return this.expressionSelect;
         }
-        return processedPaths.get(processedPaths.size() - 1);
+        List<Path> selectFieldPath = buildSelectPath();
+        return selectFieldPath != null && selectFieldPath.size() > 0 ?
+                Projections.tuple(QrsqlUtil.convertPathToExpression(selectFieldPath)) : null;
+    }
+
+    Long getOffset() {
+        return offset;
+    }
+
+    Long getSize() {
+        return size;
     }
 
     /**
@@ -256,7 +1299,13 @@ public class Qrsql<E> {
         private Long size;
         private String sort;
         private List<OrderSpecifier> orderSpecifiers;
+        private String groupBy;
+        private String aggregate;
+        private String having;
         private QrsqlConfig<E> qrsqlConfig;
+        private QrsqlFingerprint fingerprint;
+        private QueryDeadline deadline;
+        private CancellationHandle cancellation;
 
         /**
          * Create a {@link Builder} with {@link QrsqlConfig}.
@@ -302,6 +1351,12 @@ public class Qrsql<E> {
             this.sort = builder.sort;
             this.qrsqlConfig = builder.qrsqlConfig;
             this.orderSpecifiers = builder.orderSpecifiers;
+            this.groupBy = builder.groupBy;
+            this.aggregate = builder.aggregate;
+            this.having = builder.having;
+            this.fingerprint = builder.fingerprint;
+            this.deadline = builder.deadline;
+            this.cancellation = builder.cancellation;
         }
 
         /**
@@ -431,6 +1486,57 @@ public class Qrsql<E> {
                 }
             }
 
+            /**
+             * Compile the query into a reusable {@link PreparedQrsql}. The where expression can contain named
+             * placeholders instead of values, e.g. <tt>engine.id==:engineId</tt>, which are bound per execution.
+             *
+             * @return new PreparedQrsql
+             * @throws QrsqlException If some of the given parameters is invalid.
+             */
+            public PreparedQrsql<E> prepare() throws QrsqlException {
+                try {
+                    return new PreparedQrsql<E>(new Qrsql<E>(this));
+                } catch (QrsqlException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new QrsqlException(ex);
+                }
+            }
+
+            /**
+             * Use the given fingerprint instead of computing it from the query.
+             *
+             * @param fingerprint fingerprint of the query template
+             * @return {@link BuildBuilder}
+             */
+            BuildBuilder<E> fingerprint(QrsqlFingerprint fingerprint) {
+                super.fingerprint = fingerprint;
+                return this;
+            }
+
+            /**
+             * Bound the executions of the query with a deadline. It is applied as JPA query timeout, together with
+             * the query timeout of the configuration the earlier one is used.
+             *
+             * @param deadline deadline of the query
+             * @return {@link BuildBuilder}
+             */
+            public BuildBuilder<E> deadline(QueryDeadline deadline) {
+                super.deadline = deadline;
+                return this;
+            }
+
+            /**
+             * Set the handle which cancels the executions of the query.
+             *
+             * @param cancellation cancellation handle
+             * @return {@link BuildBuilder}
+             */
+            public BuildBuilder<E> cancellation(CancellationHandle cancellation) {
+                super.cancellation = cancellation;
+                return this;
+            }
+
             /**
              * Defines the limit / max results and the offset for the query results.
              *
@@ -533,6 +1639,39 @@ public class Qrsql<E> {
                 return this;
             }
 
+            /**
+             * Group the aggregated records by the given selectors.
+             *
+             * @param groupBy comma separated selectors, e.g. <tt>engine.name</tt>
+             * @return {@link BuildBuilder}
+             */
+            public BuildBuilder<E> groupBy(String groupBy) {
+                super.groupBy = groupBy;
+                return this;
+            }
+
+            /**
+             * Set the aggregate expression of {@link Qrsql#fetchAggregate()}.
+             *
+             * @param aggregate aggregate expression, e.g. <tt>count(),avg(engine.screws.size)</tt>
+             * @return {@link BuildBuilder}
+             */
+            public BuildBuilder<E> aggregate(String aggregate) {
+                super.aggregate = aggregate;
+                return this;
+            }
+
+            /**
+             * Filter the summary rows with an rsql expression over the aggregate aliases and the group by selectors.
+             *
+             * @param having having expression, e.g. <tt>count=gt=5</tt>
+             * @return {@link BuildBuilder}
+             */
+            public BuildBuilder<E> having(String having) {
+                super.having = having;
+                return this;
+            }
+
             /**
              * Add additional operators to rsql parser.
              *
@@ -540,7 +1679,7 @@ public class Qrsql<E> {
              * @return {@link BuildBuilder}
              */
             public BuildBuilder<E> operators(List<QrsqlOperator> operators) {
-                super.qrsqlConfig.setOperators(operators);
+                super.qrsqlConfig = super.qrsqlConfig.withOperators(operators);
                 return this;
             }
 
@@ -553,7 +1692,7 @@ public class Qrsql<E> {
             public BuildBuilder<E> operator(QrsqlOperator operator) {
                 List<QrsqlOperator> operators = new ArrayList<>();
                 operators.add(operator);
-                super.qrsqlConfig.setOperators(operators);
+                super.qrsqlConfig = super.qrsqlConfig.withOperators(operators);
                 return this;
             }
 
@@ -564,7 +1703,7 @@ public class Qrsql<E> {
              * @return {@link BuildBuilder}
              */
             public BuildBuilder<E> fieldTypeHandlers(List<FieldTypeHandler> fieldTypeHandlers) {
-                super.qrsqlConfig.setFieldTypeHandlers(fieldTypeHandlers);
+                super.qrsqlConfig = super.qrsqlConfig.withFieldTypeHandlers(fieldTypeHandlers);
                 return this;
             }
 
@@ -577,8 +1716,7 @@ public class Qrsql<E> {
             public BuildBuilder<E> fieldTypeHandler(FieldTypeHandler fieldTypeHandler) {
                 List<FieldTypeHandler> fieldTypes = new ArrayList<>();
                 fieldTypes.add(fieldTypeHandler);
-                super.qrsqlConfig.setFieldTypeHandlers(fieldTypes);
-                return this;
+                return fieldTypeHandlers(fieldTypes);
             }
 
             /**
@@ -588,7 +1726,7 @@ public class Qrsql<E> {
              * @return {@link BuildBuilder}
              */
             public BuildBuilder<E> dateFormat(String dateFormat) {
-                super.qrsqlConfig.setDateFormat(dateFormat);
+                super.qrsqlConfig = super.qrsqlConfig.withDateFormat(dateFormat);
                 return this;
             }
 
@@ -25,37 +25,154 @@
 package com.github.balintrudas.qrsql;
 
 
+import com.github.balintrudas.qrsql.allowlist.SelectorAllowlist;
+import com.github.balintrudas.qrsql.dialect.LowerStringPredicateDialect;
+import com.github.balintrudas.qrsql.dialect.StringPredicateDialect;
 import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.execution.AdmissionController;
+import com.github.balintrudas.qrsql.explain.HibernateSqlExplainer;
+import com.github.balintrudas.qrsql.explain.SqlExplainer;
+import com.github.balintrudas.qrsql.execution.DefaultQueryCanceller;
+import com.github.balintrudas.qrsql.execution.QueryCanceller;
+import com.github.balintrudas.qrsql.execution.QueryCoalescer;
 import com.github.balintrudas.qrsql.exception.TypeNotSupportedException;
 import com.github.balintrudas.qrsql.operator.QrsqlOperator;
 import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
+import com.github.balintrudas.qrsql.metrics.NoOpQrsqlMetrics;
+import com.github.balintrudas.qrsql.metrics.QrsqlMetrics;
+import com.github.balintrudas.qrsql.metrics.SlowQueryLog;
+import com.github.balintrudas.qrsql.plan.QrsqlPathCache;
+import com.github.balintrudas.qrsql.plan.QrsqlPlanCache;
 import com.github.balintrudas.qrsql.util.QrsqlUtil;
+import com.github.balintrudas.qrsql.parser.QrsqlParser;
+import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.ast.ComparisonOperator;
+import cz.jirutka.rsql.parser.ast.Node;
 
 import javax.persistence.EntityManager;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class to build an initialization configuration to {@link Qrsql.Builder}
+ * <p>
+ * The configuration is immutable and compiled once: the operators are validated, the rsql parser, the date formatter
+ * and the field type handler resolution table are prepared at build time. So one instance can be shared across
+ * threads and requests. The {@code with*} methods return a new configuration which shares every unchanged part with
+ * this one.
  *
  * @param <E> Target type
  * @author Balint Rudas
  */
-public class QrsqlConfig<E> {
+public final class QrsqlConfig<E> {
 
-    private EntityManager entityManager;
-    private List<QrsqlOperator> operators;
-    private List<FieldTypeHandler> fieldTypeHandlers;
-    private String dateFormat;
+    private final EntityManager entityManager;
+    private final List<QrsqlOperator> operators;
+    private final List<FieldTypeHandler> fieldTypeHandlers;
+    private final String dateFormat;
+    private final SimpleDateFormat dateFormatter;
+    private final QrsqlMetrics metrics;
+    private final SlowQueryLog slowQueryLog;
+    private final StringPredicateDialect stringPredicateDialect;
+    private final QrsqlPlanCache planCache;
+    private final SelectorAllowlist selectorAllowlist;
+    private final QueryCoalescer queryCoalescer;
+    private final AdmissionController admissionController;
+    private final Long queryTimeout;
+    private final QueryCanceller queryCanceller;
+    private final SqlExplainer sqlExplainer;
+    private final Set<ComparisonOperator> comparisonOperators;
+    private final RSQLParser parser;
+    private final QrsqlParser builtInParser;
+    private final ConcurrentMap<Class, FieldTypeHandler> fieldTypeHandlerCache;
+    private final QrsqlPathCache pathCache;
+    private final ConcurrentMap<String, Class> entityClassCache;
 
     private QrsqlConfig(Builder<E> builder) {
         this.entityManager = builder.entityManager;
-        this.operators = builder.operators;
+        this.operators = compileOperators(builder.operators);
+        this.comparisonOperators = Collections.unmodifiableSet(QrsqlUtil.getOperators(this.operators));
+        this.parser = new RSQLParser(this.comparisonOperators);
+        this.builtInParser = builder.builtInParser ? new QrsqlParser(this.comparisonOperators) : null;
+        this.fieldTypeHandlers = compileFieldTypeHandlers(builder.fieldTypeHandlers);
+        this.fieldTypeHandlerCache = new ConcurrentHashMap<>();
+        this.pathCache = new QrsqlPathCache();
         this.dateFormat = builder.dateFormat;
-        this.fieldTypeHandlers = QrsqlUtil.getDefaultFieldTypeHandlers();
-        if (builder.fieldTypeHandlers != null) {
-            this.fieldTypeHandlers.addAll(0, builder.fieldTypeHandlers);
+        this.dateFormatter = compileDateFormat(builder.dateFormat);
+        this.metrics = builder.metrics != null ? builder.metrics : NoOpQrsqlMetrics.INSTANCE;
+        this.slowQueryLog = builder.slowQueryLog;
+        this.stringPredicateDialect = builder.stringPredicateDialect != null ? builder.stringPredicateDialect :
+                new LowerStringPredicateDialect();
+        this.planCache = builder.planCache;
+        this.selectorAllowlist = builder.selectorAllowlist;
+        this.queryCoalescer = builder.queryCoalescer;
+        this.admissionController = builder.admissionController;
+        this.queryTimeout = builder.queryTimeout;
+        this.queryCanceller = builder.queryCanceller != null ? builder.queryCanceller : DefaultQueryCanceller.INSTANCE;
+        this.sqlExplainer = builder.sqlExplainer != null ? builder.sqlExplainer : HibernateSqlExplainer.INSTANCE;
+        this.entityClassCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Create an overlay of the given configuration. The compiled parts are passed by the caller, the rest is shared.
+     */
+    private QrsqlConfig(QrsqlConfig<E> config, EntityManager entityManager, List<QrsqlOperator> operators,
+                        Set<ComparisonOperator> comparisonOperators, RSQLParser parser, QrsqlParser builtInParser,
+                        List<FieldTypeHandler> fieldTypeHandlers, ConcurrentMap<Class, FieldTypeHandler> fieldTypeHandlerCache,
+                        String dateFormat, SimpleDateFormat dateFormatter, QrsqlPlanCache planCache) {
+        this.entityManager = entityManager;
+        this.operators = operators;
+        this.comparisonOperators = comparisonOperators;
+        this.parser = parser;
+        this.builtInParser = builtInParser;
+        this.fieldTypeHandlers = fieldTypeHandlers;
+        this.fieldTypeHandlerCache = fieldTypeHandlerCache;
+        //The paths are built by the field type handlers
+        this.pathCache = fieldTypeHandlerCache == config.fieldTypeHandlerCache ? config.pathCache : new QrsqlPathCache();
+        this.dateFormat = dateFormat;
+        this.dateFormatter = dateFormatter;
+        this.metrics = config.metrics;
+        this.slowQueryLog = config.slowQueryLog;
+        this.stringPredicateDialect = config.stringPredicateDialect;
+        this.planCache = planCache;
+        this.selectorAllowlist = config.selectorAllowlist;
+        this.queryCoalescer = config.queryCoalescer;
+        this.admissionController = config.admissionController;
+        this.queryTimeout = config.queryTimeout;
+        this.queryCanceller = config.queryCanceller;
+        this.sqlExplainer = config.sqlExplainer;
+        this.entityClassCache = entityManager == config.entityManager ? config.entityClassCache : new ConcurrentHashMap<>();
+    }
+
+    private static List<QrsqlOperator> compileOperators(List<QrsqlOperator> operators) {
+        if (operators == null || operators.isEmpty()) {
+            return Collections.emptyList();
         }
+        QrsqlUtil.validateOperators(operators);
+        return Collections.unmodifiableList(new ArrayList<>(operators));
+    }
+
+    private static List<FieldTypeHandler> compileFieldTypeHandlers(List<FieldTypeHandler> customFieldTypeHandlers) {
+        List<FieldTypeHandler> fieldTypeHandlers = QrsqlUtil.getDefaultFieldTypeHandlers();
+        if (customFieldTypeHandlers != null) {
+            fieldTypeHandlers.addAll(0, customFieldTypeHandlers);
+        }
+        return Collections.unmodifiableList(fieldTypeHandlers);
+    }
+
+    private static SimpleDateFormat compileDateFormat(String dateFormat) {
+        if (dateFormat == null) {
+            return null;
+        }
+        SimpleDateFormat dateFormatter = new SimpleDateFormat(dateFormat);
+        dateFormatter.setLenient(false);
+        return dateFormatter;
     }
 
     public EntityManager getEntityManager() {
@@ -66,27 +183,133 @@ public class QrsqlConfig<E> {
         return dateFormat;
     }
 
-    public void setEntityManager(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    /**
+     * Return a new formatter of the configured date format. {@link SimpleDateFormat} is not thread-safe,
+     * so every call clones the compiled prototype.
+     *
+     * @return date formatter or null if no date format is configured
+     */
+    public SimpleDateFormat getDateFormatter() {
+        return dateFormatter != null ? (SimpleDateFormat) dateFormatter.clone() : null;
+    }
+
+    public QrsqlMetrics getMetrics() {
+        return metrics;
     }
 
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    public StringPredicateDialect getStringPredicateDialect() {
+        return stringPredicateDialect;
+    }
+
+    /**
+     * Return the plan cache.
+     *
+     * @return {@link QrsqlPlanCache} or null if the plans are not cached
+     */
+    public QrsqlPlanCache getPlanCache() {
+        return planCache;
+    }
+
+    /**
+     * Return the selector allowlist.
+     *
+     * @return {@link SelectorAllowlist} or null if every selector is allowed
+     */
+    public SelectorAllowlist getSelectorAllowlist() {
+        return selectorAllowlist;
+    }
+
+    /**
+     * Return the query coalescer.
+     *
+     * @return {@link QueryCoalescer} or null if the queries are not coalesced
+     */
+    public QueryCoalescer getQueryCoalescer() {
+        return queryCoalescer;
+    }
+
+    /**
+     * Return the admission controller.
+     *
+     * @return {@link AdmissionController} or null if every query is admitted
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    /**
+     * Return the query timeout of every execution.
+     *
+     * @return timeout in milliseconds or null if the executions are not bounded
+     */
+    public Long getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    public QueryCanceller getQueryCanceller() {
+        return queryCanceller;
+    }
+
+    public SqlExplainer getSqlExplainer() {
+        return sqlExplainer;
+    }
+
+    /**
+     * Whether the phases of the queries should be measured.
+     *
+     * @return true if metrics is enabled or slow query log is configured
+     */
+    public boolean isTimed() {
+        return metrics.isEnabled() || slowQueryLog != null;
+    }
+
+    /**
+     * Return the custom operators.
+     *
+     * @return unmodifiable list of the custom operators
+     */
     public List<QrsqlOperator> getOperators() {
         return this.operators;
     }
 
-    public void setOperators(List<QrsqlOperator> operators) {
-        this.operators = operators;
+    /**
+     * Return the default and the custom operators which are accepted by the rsql parser.
+     *
+     * @return unmodifiable set of the operators
+     */
+    public Set<ComparisonOperator> getComparisonOperators() {
+        return comparisonOperators;
     }
 
-    public void setDateFormat(String dateFormat) {
-        this.dateFormat = dateFormat;
+    /**
+     * Return the rsql parser of the configured operators. The parser is thread-safe.
+     *
+     * @return {@link RSQLParser}
+     */
+    public RSQLParser getParser() {
+        return parser;
     }
 
-    public void setFieldTypeHandlers(List<FieldTypeHandler> fieldTypeHandlers) {
-        this.fieldTypeHandlers = QrsqlUtil.getDefaultFieldTypeHandlers();
-        if (fieldTypeHandlers != null) {
-            this.fieldTypeHandlers.addAll(0,fieldTypeHandlers);
-        }
+    /**
+     * Return the built-in {@link QrsqlParser} of the configured operators.
+     *
+     * @return {@link QrsqlParser} or null if the where expressions are parsed by the {@link RSQLParser}
+     */
+    public QrsqlParser getBuiltInParser() {
+        return builtInParser;
+    }
+
+    /**
+     * Return the custom and the built in field type handlers in resolution order.
+     *
+     * @return unmodifiable list of the field type handlers
+     */
+    public List<FieldTypeHandler> getFieldTypeHandlers() {
+        return fieldTypeHandlers;
     }
 
     /**
@@ -97,14 +320,137 @@ public class QrsqlConfig<E> {
      * @throws TypeNotSupportedException If the requested field type is not supported
      */
     public FieldTypeHandler getFieldTypeHandler(Class type) {
+        FieldTypeHandler cached = this.fieldTypeHandlerCache.get(type);
+        if (cached != null) {
+            return cached;
+        }
         for (FieldTypeHandler fieldType : this.fieldTypeHandlers) {
             if (fieldType.supportsType(type)) {
+                this.fieldTypeHandlerCache.putIfAbsent(type, fieldType);
                 return fieldType;
             }
         }
         throw new TypeNotSupportedException("Type is not supported: " + type.toString());
     }
 
+    /**
+     * Parse the where expression with the configured parser, or return the cached syntax tree.
+     *
+     * @param where where expression
+     * @return parsed {@link Node}
+     */
+    public Node parseWhere(String where) {
+        if (this.planCache == null) {
+            return parse(where);
+        }
+        Node node = this.planCache.getWhere(where);
+        if (node == null) {
+            node = parse(where);
+            this.planCache.putWhere(where, node);
+        }
+        return node;
+    }
+
+    private Node parse(String where) {
+        return this.builtInParser != null ? this.builtInParser.parse(where) : this.parser.parse(where);
+    }
+
+    /**
+     * Return the interning cache of the field selector paths.
+     *
+     * @return {@link QrsqlPathCache}
+     */
+    public QrsqlPathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Resolve the field selector, or return the cached resolution.
+     *
+     * @param rootClass     The base class
+     * @param fieldSelector Field selector
+     * @return {@link FieldMetadata} of every part of the selector
+     */
+    public List<FieldMetadata> getFieldMetadata(Class rootClass, String fieldSelector) {
+        if (this.planCache == null) {
+            return QrsqlUtil.parseFieldSelector(rootClass, fieldSelector);
+        }
+        List<FieldMetadata> fieldMetadataList = this.planCache.getSelector(rootClass, fieldSelector);
+        if (fieldMetadataList == null) {
+            fieldMetadataList = QrsqlUtil.parseFieldSelector(rootClass, fieldSelector);
+            this.planCache.putSelector(rootClass, fieldSelector, fieldMetadataList);
+        }
+        return fieldMetadataList;
+    }
+
+    /**
+     * Find the entity class by the entity name in the metamodel of the entity manager.
+     *
+     * @param entityName entity name
+     * @return entity class or null if there is no entity with the given name
+     */
+    public Class getEntityClass(String entityName) {
+        Class cached = this.entityClassCache.get(entityName);
+        if (cached != null) {
+            return cached;
+        }
+        Class entityClass = QrsqlUtil.getClassForEntityString(entityName, this.entityManager);
+        if (entityClass != null) {
+            this.entityClassCache.putIfAbsent(entityName, entityClass);
+        }
+        return entityClass;
+    }
+
+    /**
+     * Return a configuration which uses the given entity manager and shares everything else with this one.
+     *
+     * @param entityManager entity manager
+     * @return new {@link QrsqlConfig}
+     */
+    public QrsqlConfig<E> withEntityManager(EntityManager entityManager) {
+        return new QrsqlConfig<>(this, entityManager, operators, comparisonOperators, parser, builtInParser, fieldTypeHandlers,
+                fieldTypeHandlerCache, dateFormat, dateFormatter, planCache);
+    }
+
+    /**
+     * Return a configuration which uses the given custom operators instead of the configured ones.
+     *
+     * @param operators Must match <tt>=[a-zA-Z]*=|[&gt;&lt;]=?|!=</tt>
+     * @return new {@link QrsqlConfig}
+     */
+    public QrsqlConfig<E> withOperators(List<QrsqlOperator> operators) {
+        List<QrsqlOperator> compiledOperators = compileOperators(operators);
+        Set<ComparisonOperator> compiledComparisonOperators =
+                Collections.unmodifiableSet(QrsqlUtil.getOperators(compiledOperators));
+        return new QrsqlConfig<>(this, entityManager, compiledOperators, compiledComparisonOperators,
+                new RSQLParser(compiledComparisonOperators),
+                builtInParser != null ? new QrsqlParser(compiledComparisonOperators) : null, fieldTypeHandlers,
+                fieldTypeHandlerCache, dateFormat, dateFormatter, planCache != null ? new QrsqlPlanCache(planCache.getMaxSize()) : null);
+    }
+
+    /**
+     * Return a configuration which uses the given custom field type handlers instead of the configured ones.
+     *
+     * @param fieldTypeHandlers Custom field types
+     * @return new {@link QrsqlConfig}
+     */
+    public QrsqlConfig<E> withFieldTypeHandlers(List<FieldTypeHandler> fieldTypeHandlers) {
+        return new QrsqlConfig<>(this, entityManager, operators, comparisonOperators, parser, builtInParser,
+                compileFieldTypeHandlers(fieldTypeHandlers), new ConcurrentHashMap<>(), dateFormat, dateFormatter,
+                planCache);
+    }
+
+    /**
+     * Return a configuration which uses the given date format.
+     *
+     * @param dateFormat date format string
+     * @return new {@link QrsqlConfig}
+     */
+    public QrsqlConfig<E> withDateFormat(String dateFormat) {
+        return new QrsqlConfig<>(this, entityManager, operators, comparisonOperators, parser, builtInParser, fieldTypeHandlers,
+                fieldTypeHandlerCache, dateFormat, compileDateFormat(dateFormat), planCache);
+    }
+
     /**
      * Help to create and configure {@link QrsqlConfig}
      *
@@ -115,6 +461,17 @@ public class QrsqlConfig<E> {
         private List<QrsqlOperator> operators;
         private List<FieldTypeHandler> fieldTypeHandlers;
         private String dateFormat = null;
+        private QrsqlMetrics metrics;
+        private SlowQueryLog slowQueryLog;
+        private StringPredicateDialect stringPredicateDialect;
+        private QrsqlPlanCache planCache;
+        private SelectorAllowlist selectorAllowlist;
+        private QueryCoalescer queryCoalescer;
+        private AdmissionController admissionController;
+        private Long queryTimeout;
+        private QueryCanceller queryCanceller;
+        private SqlExplainer sqlExplainer;
+        private boolean builtInParser;
 
         public Builder(EntityManager entityManager) {
             this.entityManager = entityManager;
@@ -125,6 +482,17 @@ public class QrsqlConfig<E> {
             this.operators = builder.operators;
             this.fieldTypeHandlers = builder.fieldTypeHandlers;
             this.dateFormat = builder.dateFormat;
+            this.metrics = builder.metrics;
+            this.slowQueryLog = builder.slowQueryLog;
+            this.stringPredicateDialect = builder.stringPredicateDialect;
+            this.planCache = builder.planCache;
+            this.selectorAllowlist = builder.selectorAllowlist;
+            this.queryCoalescer = builder.queryCoalescer;
+            this.admissionController = builder.admissionController;
+            this.queryTimeout = builder.queryTimeout;
+            this.queryCanceller = builder.queryCanceller;
+            this.sqlExplainer = builder.sqlExplainer;
+            this.builtInParser = builder.builtInParser;
         }
 
         public QrsqlConfig.Builder<E> entityManager(EntityManager entityManager) {
@@ -160,6 +528,138 @@ public class QrsqlConfig<E> {
             return this;
         }
 
+        /**
+         * Set the {@link QrsqlMetrics} which receives the timing and count events of the queries.
+         * By default all the events are ignored.
+         *
+         * @param metrics metrics
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> metrics(QrsqlMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Set the {@link SlowQueryLog} which logs the slow queries and collects statistics of the query fingerprints.
+         *
+         * @param slowQueryLog slow query log
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> slowQueryLog(SlowQueryLog slowQueryLog) {
+            this.slowQueryLog = slowQueryLog;
+            return this;
+        }
+
+        /**
+         * Set the {@link StringPredicateDialect} of the case-insensitive string operators.
+         * By default <tt>lower(column)</tt> is compared, see {@link LowerStringPredicateDialect}.
+         *
+         * @param stringPredicateDialect dialect
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> stringPredicateDialect(StringPredicateDialect stringPredicateDialect) {
+            this.stringPredicateDialect = stringPredicateDialect;
+            return this;
+        }
+
+        /**
+         * Set the {@link QrsqlPlanCache} which caches the parsed where expressions and the resolved field selectors.
+         * By default nothing is cached.
+         *
+         * @param planCache plan cache
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> planCache(QrsqlPlanCache planCache) {
+            this.planCache = planCache;
+            return this;
+        }
+
+        /**
+         * Set the {@link SelectorAllowlist} which restricts the selectors of the where, sort and select expressions.
+         * By default every selector is allowed.
+         *
+         * @param selectorAllowlist selector allowlist
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> selectorAllowlist(SelectorAllowlist selectorAllowlist) {
+            this.selectorAllowlist = selectorAllowlist;
+            return this;
+        }
+
+        /**
+         * Set the {@link QueryCoalescer} which shares one execution between the identical concurrent queries.
+         * By default every query is executed.
+         *
+         * @param queryCoalescer query coalescer
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> queryCoalescer(QueryCoalescer queryCoalescer) {
+            this.queryCoalescer = queryCoalescer;
+            return this;
+        }
+
+        /**
+         * Set the {@link AdmissionController} which executes the queries in lanes by their estimated cost.
+         * By default every query is admitted.
+         *
+         * @param admissionController admission controller
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> admissionController(AdmissionController admissionController) {
+            this.admissionController = admissionController;
+            return this;
+        }
+
+        /**
+         * Set the timeout of every query execution. It is applied as JPA query timeout, the earlier of this and the
+         * deadline of the query is used. By default the executions are not bounded.
+         *
+         * @param queryTimeout timeout
+         * @param unit         unit of the timeout
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> queryTimeout(long queryTimeout, TimeUnit unit) {
+            this.queryTimeout = unit.toMillis(queryTimeout);
+            return this;
+        }
+
+        /**
+         * Set the {@link QueryCanceller} which aborts the in-flight executions of the cancelled queries.
+         * By default {@link DefaultQueryCanceller}.
+         *
+         * @param queryCanceller query canceller
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> queryCanceller(QueryCanceller queryCanceller) {
+            this.queryCanceller = queryCanceller;
+            return this;
+        }
+
+        /**
+         * Set the {@link SqlExplainer} which translates the JPQL to SQL and explains it for
+         * {@link Qrsql#explain(boolean)}. By default {@link HibernateSqlExplainer}.
+         *
+         * @param sqlExplainer sql explainer
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> sqlExplainer(SqlExplainer sqlExplainer) {
+            this.sqlExplainer = sqlExplainer;
+            return this;
+        }
+
+        /**
+         * Parse the where expressions with the built-in {@link QrsqlParser} instead of the {@link RSQLParser}. The
+         * grammar and the syntax tree are the same. By default false.
+         *
+         * @param builtInParser true to use the built-in parser
+         * @return {@link Builder}
+         */
+        public QrsqlConfig.Builder<E> builtInParser(boolean builtInParser) {
+            this.builtInParser = builtInParser;
+            return this;
+        }
+
         public QrsqlConfig<E> build() throws QrsqlException {
             try {
                 return new QrsqlConfig<E>(this);
@@ -0,0 +1,378 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.aggregate;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.operator.Operator;
+import com.github.balintrudas.qrsql.util.QrsqlUtil;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.*;
+import com.querydsl.core.types.dsl.CollectionPath;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQuery;
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.OrNode;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compile the group by, aggregate and having expressions of a query to querydsl. The selectors are resolved like the
+ * selectors of the where expression, the to-one associations are joined implicitly and the collections are left
+ * joined, so e.g. <tt>avg(engine.screws.size)</tt> aggregates the screws of the engines. The join repeats the root
+ * record once per collection element, so <tt>count(selector)</tt>, <tt>sum</tt> and <tt>avg</tt> of the selectors
+ * outside of the joined collection are rejected, as are joins of sibling collections; <tt>count()</tt> counts the
+ * distinct root records.
+ * <p>
+ * Aggregate expression: comma separated list of <tt>count()</tt>, <tt>count(selector)</tt>,
+ * <tt>countDistinct(selector)</tt>, <tt>sum(selector)</tt>, <tt>avg(selector)</tt>, <tt>min(selector)</tt> and
+ * <tt>max(selector)</tt>. The alias of <tt>count()</tt> is <tt>count</tt>, the alias of the others is the function and
+ * the selector joined with underscore, e.g. <tt>avg_engine.screws.size</tt>. The having expression is an rsql
+ * expression over the aliases and the group by selectors, the sort expression can refer to them too.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlAggregation {
+
+    public static final String COUNT_ALIAS = "count";
+
+    private static final Pattern AGGREGATE_PATTERN = Pattern.compile("(\\w+)\\(([^()]*)\\)");
+
+    private final QrsqlConfig<?> qrsqlConfig;
+    private final Class entityClass;
+    private final PathBuilder root;
+    private final Map<String, Expression<?>> groups = new LinkedHashMap<>();
+    private final Map<String, Expression<?>> aggregates = new LinkedHashMap<>();
+    private final Map<String, PathBuilder> joins = new LinkedHashMap<>();
+    private final Map<String, CollectionPath> joinSources = new LinkedHashMap<>();
+    private final Map<String, String> selectorJoins = new HashMap<>();
+
+    /**
+     * @param qrsqlConfig configuration of the query
+     * @param entityClass root entity of the query
+     * @param groupBy     comma separated group by selectors or null
+     * @param aggregate   aggregate expression
+     * @param checker     checks the selectors, e.g. with the selector allowlist
+     * @throws QrsqlException If an expression is invalid
+     */
+    public QrsqlAggregation(QrsqlConfig<?> qrsqlConfig, Class entityClass, String groupBy, String aggregate,
+                            Consumer<String> checker) throws QrsqlException {
+        this.qrsqlConfig = qrsqlConfig;
+        this.entityClass = entityClass;
+        this.root = new PathBuilder(entityClass, qrsqlConfig.getPathCache().getAlias(entityClass));
+        List<String> groupSelectors = QrsqlUtil.parseSelectExpression(groupBy);
+        if (groupSelectors != null) {
+            for (String selector : groupSelectors) {
+                checker.accept(selector);
+                groups.put(selector, getPath(selector));
+            }
+        }
+        if (aggregate == null || aggregate.trim().isEmpty()) {
+            throw new QrsqlException("Aggregate expression can't be empty.");
+        }
+        String expression = aggregate.replaceAll("\\s+", "");
+        Matcher matcher = AGGREGATE_PATTERN.matcher(expression);
+        Map<String, String[]> functions = new LinkedHashMap<>();
+        Map<String, Path> paths = new LinkedHashMap<>();
+        int end = 0;
+        while (matcher.find()) {
+            if (matcher.start() != end && !(matcher.start() == end + 1 && expression.charAt(end) == ',')) {
+                throw new QrsqlException("Invalid aggregate expression: " + aggregate);
+            }
+            end = matcher.end();
+            String function = matcher.group(1);
+            String selector = matcher.group(2);
+            if (!selector.isEmpty() && !paths.containsKey(selector)) {
+                checker.accept(selector);
+                paths.put(selector, getPath(selector));
+            }
+            functions.put(selector.isEmpty() ? function : function + "_" + selector, new String[]{function, selector});
+        }
+        if (end != expression.length() || functions.isEmpty()) {
+            throw new QrsqlException("Invalid aggregate expression: " + aggregate);
+        }
+        checkFanOut(functions);
+        //The aggregates are built after every collection is joined
+        for (Map.Entry<String, String[]> function : functions.entrySet()) {
+            String selector = function.getValue()[1];
+            aggregates.put(function.getKey(), aggregate(function.getValue()[0], paths.get(selector)));
+        }
+    }
+
+    /**
+     * The left joins repeat the root record once per element of the deepest joined collection, so only the aggregates
+     * that aren't changed by the duplicates can be used over the selectors outside of that collection.
+     */
+    private void checkFanOut(Map<String, String[]> functions) {
+        if (joins.isEmpty()) {
+            return;
+        }
+        String deepest = Collections.max(joins.keySet(), (a, b) -> Integer.compare(a.length(), b.length()));
+        for (String join : joins.keySet()) {
+            if (!deepest.equals(join) && !deepest.startsWith(join + ".")) {
+                throw new QrsqlException("Collections " + join + " and " + deepest +
+                        " can't be aggregated in the same query.");
+            }
+        }
+        for (String[] function : functions.values()) {
+            String selector = function[1];
+            boolean duplicateSensitive = "count".equals(function[0]) || "sum".equals(function[0]) ||
+                    "avg".equals(function[0]);
+            if (duplicateSensitive && !selector.isEmpty() && !deepest.equals(selectorJoins.get(selector))) {
+                throw new QrsqlException("Aggregate " + function[0] + "(" + selector +
+                        ") can't be mixed with the aggregates over the collection " + deepest + ".");
+            }
+        }
+    }
+
+    private Expression<?> aggregate(String function, Path path) {
+        if (path == null) {
+            if (!COUNT_ALIAS.equals(function)) {
+                throw new QrsqlException("Only count() can be used without selector.");
+            }
+            return joins.isEmpty() ? Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_AGG, root) :
+                    Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, root);
+        }
+        switch (function) {
+            case "count":
+                return Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_AGG, path);
+            case "countDistinct":
+                return Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, path);
+            case "sum":
+                return Expressions.numberOperation(getSumType(path.getType()), Ops.AggOps.SUM_AGG, path);
+            case "avg":
+                return Expressions.numberOperation(Double.class, Ops.AggOps.AVG_AGG, path);
+            case "min":
+                return Expressions.operation(path.getType(), Ops.AggOps.MIN_AGG, path);
+            case "max":
+                return Expressions.operation(path.getType(), Ops.AggOps.MAX_AGG, path);
+            default:
+                throw new QrsqlException("Unknown aggregate function: " + function);
+        }
+    }
+
+    /**
+     * The JPA sum of the integral types is long, of the floating point types is double.
+     */
+    private static Class getSumType(Class type) {
+        if (type == Integer.class || type == Short.class || type == Byte.class || type == Long.class ||
+                type == int.class || type == short.class || type == byte.class || type == long.class) {
+            return Long.class;
+        } else if (type == Float.class || type == Double.class || type == float.class || type == double.class) {
+            return Double.class;
+        }
+        return type;
+    }
+
+    /**
+     * Resolve the path of a selector, the collections are left joined once per selector prefix.
+     */
+    private Path getPath(String selector) {
+        List<FieldMetadata> fieldMetadataList = qrsqlConfig.getFieldMetadata(entityClass, selector);
+        String[] fields = StringUtils.split(selector, '.');
+        PathBuilder current = root;
+        StringBuilder prefix = new StringBuilder();
+        String join = null;
+        for (int i = 0; i < fieldMetadataList.size(); i++) {
+            FieldMetadata fieldMetadata = fieldMetadataList.get(i);
+            prefix.append(fields[i]);
+            if (Boolean.TRUE.equals(fieldMetadata.getCollection())) {
+                PathBuilder joined = joins.get(prefix.toString());
+                if (joined == null) {
+                    joined = new PathBuilder(fieldMetadata.getCollectionType(), "agg_" + (joins.size() + 1));
+                    joinSources.put(prefix.toString(), current.getCollection(fields[i], fieldMetadata.getCollectionType()));
+                    joins.put(prefix.toString(), joined);
+                }
+                join = prefix.toString();
+                current = joined;
+            } else if (i == fieldMetadataList.size() - 1) {
+                selectorJoins.put(selector, join);
+                return current.get(fields[i], fieldMetadata.getType());
+            } else {
+                current = current.get(fields[i], fieldMetadata.getType());
+            }
+            prefix.append('.');
+        }
+        throw new QrsqlException("Selector must end with a field: " + selector);
+    }
+
+    /**
+     * Apply the joins, the group by and the having expression to the query.
+     *
+     * @param query  query of the aggregation, it has to select {@link #getSelect()}
+     * @param having parsed having expression or null
+     * @return the query
+     */
+    @SuppressWarnings("unchecked")
+    public JPAQuery<Tuple> apply(JPAQuery<Tuple> query, Node having) {
+        for (Map.Entry<String, PathBuilder> join : joins.entrySet()) {
+            query.leftJoin(joinSources.get(join.getKey()), join.getValue());
+        }
+        if (!groups.isEmpty()) {
+            query.groupBy(groups.values().toArray(new Expression[groups.size()]));
+        }
+        if (having != null) {
+            query.having(buildHaving(having));
+        }
+        return query;
+    }
+
+    private Predicate buildHaving(Node node) {
+        if (node instanceof AndNode || node instanceof OrNode) {
+            List<Predicate> predicates = new ArrayList<>();
+            for (Node child : ((cz.jirutka.rsql.parser.ast.LogicalNode) node).getChildren()) {
+                predicates.add(buildHaving(child));
+            }
+            return node instanceof AndNode ? ExpressionUtils.allOf(predicates) : ExpressionUtils.anyOf(predicates);
+        }
+        ComparisonNode comparisonNode = (ComparisonNode) node;
+        Expression<?> expression = getExpression(comparisonNode.getSelector());
+        Operator operator = Operator.get(comparisonNode.getOperator().getSymbol());
+        if (operator == null) {
+            throw new QrsqlException("Unsupported having operator: " + comparisonNode.getOperator().getSymbol());
+        }
+        List<String> arguments = comparisonNode.getArguments();
+        switch (operator) {
+            case EQUALS:
+                return Expressions.predicate(Ops.EQ, expression, constant(expression, arguments.get(0)));
+            case NOTEQUALS:
+                return Expressions.predicate(Ops.NE, expression, constant(expression, arguments.get(0)));
+            case GREATER:
+                return Expressions.predicate(Ops.GT, expression, constant(expression, arguments.get(0)));
+            case GREATER_OR_EQUALS:
+                return Expressions.predicate(Ops.GOE, expression, constant(expression, arguments.get(0)));
+            case LESS_THAN:
+                return Expressions.predicate(Ops.LT, expression, constant(expression, arguments.get(0)));
+            case LESS_THAN_OR_EQUALS:
+                return Expressions.predicate(Ops.LOE, expression, constant(expression, arguments.get(0)));
+            case IN:
+            case NOTIN:
+                Object values = convert(expression.getType(), arguments);
+                return Expressions.predicate(operator == Operator.IN ? Ops.IN : Ops.NOT_IN, expression,
+                        Expressions.constant(values instanceof List ? values : Collections.singletonList(values)));
+            case ISNULL:
+                return Expressions.predicate(Ops.IS_NULL, expression);
+            case ISNOTNULL:
+                return Expressions.predicate(Ops.IS_NOT_NULL, expression);
+            default:
+                throw new QrsqlException("Unsupported having operator: " + comparisonNode.getOperator().getSymbol());
+        }
+    }
+
+    private Expression<?> constant(Expression<?> expression, String value) {
+        return Expressions.constant(convert(expression.getType(), Collections.singletonList(value)));
+    }
+
+    /**
+     * Parse the having values with the field type handler of the expression type, like the values of the where
+     * expression, so the date format of the configuration is applied too.
+     */
+    private Object convert(Class type, List<String> values) {
+        Object value = qrsqlConfig.getFieldTypeHandler(type).getValue(values, new FieldMetadata(type, null), qrsqlConfig);
+        if (value == null) {
+            throw new QrsqlException("Having value can't be empty.");
+        }
+        return value;
+    }
+
+    /**
+     * Return the group by path or the aggregate of an alias.
+     *
+     * @param alias group by selector or aggregate alias
+     * @return querydsl {@link Expression}
+     * @throws QrsqlException If the alias is unknown
+     */
+    public Expression<?> getExpression(String alias) throws QrsqlException {
+        Expression<?> expression = aggregates.containsKey(alias) ? aggregates.get(alias) : groups.get(alias);
+        if (expression == null) {
+            throw new QrsqlException("Unknown group by selector or aggregate alias: " + alias);
+        }
+        return expression;
+    }
+
+    /**
+     * @return Group by paths followed by the aggregates
+     */
+    public Expression[] getSelect() {
+        List<Expression<?>> select = new ArrayList<>(groups.values());
+        select.addAll(aggregates.values());
+        return select.toArray(new Expression[select.size()]);
+    }
+
+    /**
+     * Build the order of the summary rows.
+     *
+     * @param sort sort expression over the group by selectors and the aggregate aliases, e.g. <tt>count.desc</tt>
+     * @return {@link OrderSpecifier} array
+     */
+    @SuppressWarnings("unchecked")
+    public OrderSpecifier[] getOrder(String sort) {
+        List<OrderSpecifier> orderSpecifiers = new ArrayList<>();
+        for (String param : QrsqlUtil.parseSelectExpression(sort)) {
+            int dotLastIndex = param.lastIndexOf('.');
+            if (dotLastIndex == -1) {
+                throw new IllegalArgumentException("Invalid expression");
+            }
+            orderSpecifiers.add(new OrderSpecifier(Order.valueOf(param.substring(dotLastIndex + 1).toUpperCase()),
+                    getExpression(param.substring(0, dotLastIndex))));
+        }
+        return orderSpecifiers.toArray(new OrderSpecifier[orderSpecifiers.size()]);
+    }
+
+    /**
+     * Convert the fetched tuples to rows keyed by the group by selectors and the aggregate aliases.
+     *
+     * @param tuples fetched tuples
+     * @return summary rows
+     */
+    public List<Map<String, Object>> toRows(List<Tuple> tuples) {
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            int i = 0;
+            for (String group : groups.keySet()) {
+                row.put(group, tuple.get(i++, Object.class));
+            }
+            for (String alias : aggregates.keySet()) {
+                row.put(alias, tuple.get(i++, Object.class));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.aggregate;
+
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.util.QrsqlUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Facet of {@link com.github.balintrudas.qrsql.Qrsql#fetchFacets(String)}: a selector with an optional top-N limit.
+ * The facet expression is a comma separated list of selectors, the limit follows the selector after a colon, e.g.
+ * <tt>active,engine.name:10</tt>.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlFacet {
+
+    private final String selector;
+    private final Long limit;
+
+    public QrsqlFacet(String selector, Long limit) {
+        this.selector = selector;
+        this.limit = limit;
+    }
+
+    /**
+     * Parse the facet expression.
+     *
+     * @param facets facet expression, e.g. <tt>active,engine.name:10</tt>
+     * @return facets in the order of the expression
+     * @throws QrsqlException If the expression is invalid
+     */
+    public static List<QrsqlFacet> parse(String facets) throws QrsqlException {
+        List<String> params = facets != null ? QrsqlUtil.parseSelectExpression(facets) : null;
+        if (params == null || params.isEmpty()) {
+            throw new QrsqlException("Facet expression can't be empty.");
+        }
+        List<QrsqlFacet> result = new ArrayList<>(params.size());
+        for (String param : params) {
+            int colonIndex = param.indexOf(':');
+            if (colonIndex == -1) {
+                result.add(new QrsqlFacet(param, null));
+                continue;
+            }
+            try {
+                long limit = Long.parseLong(param.substring(colonIndex + 1));
+                if (limit < 1) {
+                    throw new QrsqlException("Facet limit must be positive: " + param);
+                }
+                result.add(new QrsqlFacet(param.substring(0, colonIndex), limit));
+            } catch (NumberFormatException ex) {
+                throw new QrsqlException("Invalid facet limit: " + param, ex);
+            }
+        }
+        return result;
+    }
+
+    public String getSelector() {
+        return selector;
+    }
+
+    /**
+     * @return Maximum number of the values with the highest counts, or null for every value
+     */
+    public Long getLimit() {
+        return limit;
+    }
+}
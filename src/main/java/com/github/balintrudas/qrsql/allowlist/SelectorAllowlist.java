@@ -0,0 +1,405 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.allowlist;
+
+import com.github.balintrudas.qrsql.exception.SelectorNotAllowedException;
+import com.github.balintrudas.qrsql.metadata.SelectorField;
+import com.github.balintrudas.qrsql.metadata.SelectorTable;
+import com.github.balintrudas.qrsql.operator.Operator;
+import com.github.balintrudas.qrsql.operator.QrsqlOperator;
+import cz.jirutka.rsql.parser.ast.*;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * Allowlist of the selectors which can be used in the where, sort and select expressions. The permitted selectors of
+ * an entity are compiled into a trie, a selector can be restricted to some operators, and a selector ending with
+ * <tt>**</tt> permits every path below it, also below the nodes added by more specific rules. The maximum depth and
+ * the maximum number of the collection hops are checked for every selector, also for the entities without permitted
+ * selectors.
+ * <p>
+ * The allowlist is checked in one pass over the parsed where expression before the field selectors are resolved.
+ * The collection hops of the permitted selectors are computed at build time, only the paths below a <tt>**</tt> and
+ * the paths of the unlisted entities are walked at check time, with the generated
+ * {@link SelectorTable selector tables} when they are present. The instance is immutable and thread-safe.
+ *
+ * @author Balint Rudas
+ */
+public class SelectorAllowlist {
+
+    private static final String DESCENDANTS = "**";
+
+    private final Map<Class, TrieNode> entities;
+    private final int maxDepth;
+    private final int maxCollectionHops;
+    private final boolean denyUnlisted;
+
+    private SelectorAllowlist(Builder builder) {
+        this.maxDepth = builder.maxDepth;
+        this.maxCollectionHops = builder.maxCollectionHops;
+        this.denyUnlisted = builder.denyUnlisted;
+        Map<Class, TrieNode> compiledEntities = new HashMap<>();
+        for (Rule rule : builder.rules) {
+            TrieNode root = compiledEntities.computeIfAbsent(rule.entityClass, entityClass -> new TrieNode(entityClass, 0));
+            compile(root, rule);
+        }
+        this.entities = compiledEntities;
+    }
+
+    private void compile(TrieNode root, Rule rule) {
+        String[] segments = splitSelector(rule.selector);
+        boolean descendants = segments.length > 0 && segments[segments.length - 1].equals(DESCENDANTS);
+        int length = descendants ? segments.length - 1 : segments.length;
+        if ((length == 0 && !descendants) || length > maxDepth) {
+            throw new IllegalArgumentException("Invalid allowlist selector: '" + rule.selector + "' max depth: " + maxDepth);
+        }
+        TrieNode node = root;
+        for (int i = 0; i < length; i++) {
+            TrieNode child = node.children.get(segments[i]);
+            if (child == null) {
+                Step step = step(node.type, segments[i]);
+                if (step == null) {
+                    throw new IllegalArgumentException("Invalid allowlist selector: '" + rule.selector +
+                            "' Could not locate field '" + segments[i] + "' on class " + node.type);
+                }
+                child = new TrieNode(step.type, node.collectionHops + (step.collection ? 1 : 0));
+                if (child.collectionHops > maxCollectionHops) {
+                    throw new IllegalArgumentException("Invalid allowlist selector: '" + rule.selector +
+                            "' max collection hops: " + maxCollectionHops);
+                }
+                node.children.put(segments[i], child);
+            }
+            node = child;
+        }
+        if (descendants) {
+            node.descendants = true;
+            node.descendantOperators = merge(node.descendantOperators, rule.operators);
+        } else {
+            node.terminal = true;
+            node.operators = merge(node.operators, rule.operators);
+        }
+    }
+
+    private static Set<String> merge(Set<String> operators, Set<String> ruleOperators) {
+        if (operators == null && ruleOperators == null) {
+            return null;
+        }
+        Set<String> merged = new HashSet<>();
+        if (operators != null) {
+            merged.addAll(operators);
+        }
+        if (ruleOperators != null) {
+            merged.addAll(ruleOperators);
+        }
+        return merged;
+    }
+
+    /**
+     * Check every comparison of the parsed where expression.
+     *
+     * @param entityClass Root type
+     * @param rootNode    Parsed where expression
+     * @throws SelectorNotAllowedException If a selector or an operator is not allowed
+     */
+    public void check(Class entityClass, Node rootNode) throws SelectorNotAllowedException {
+        Deque<Node> nodes = new ArrayDeque<>();
+        nodes.push(rootNode);
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            if (node instanceof LogicalNode) {
+                for (Node child : ((LogicalNode) node).getChildren()) {
+                    nodes.push(child);
+                }
+            } else {
+                ComparisonNode comparisonNode = (ComparisonNode) node;
+                check(entityClass, comparisonNode.getSelector(), comparisonNode.getOperator().getSymbol());
+            }
+        }
+    }
+
+    /**
+     * Check a selector of a sort or select expression.
+     *
+     * @param entityClass Root type
+     * @param selector    Field selector
+     * @throws SelectorNotAllowedException If the selector is not allowed
+     */
+    public void check(Class entityClass, String selector) throws SelectorNotAllowedException {
+        check(entityClass, selector, null);
+    }
+
+    /**
+     * Check a selector with an operator.
+     *
+     * @param entityClass Root type
+     * @param selector    Field selector
+     * @param operator    Operator symbol, null for sort and select
+     * @throws SelectorNotAllowedException If the selector or the operator is not allowed
+     */
+    public void check(Class entityClass, String selector, String operator) throws SelectorNotAllowedException {
+        String[] segments = splitSelector(selector);
+        if (segments.length > maxDepth) {
+            throw new SelectorNotAllowedException("Selector is too deep: '" + selector + "' max depth: " + maxDepth);
+        }
+        TrieNode node = entities.get(entityClass);
+        if (node == null) {
+            if (denyUnlisted) {
+                throw new SelectorNotAllowedException("Selector is not allowed: '" + selector + "' on " +
+                        entityClass.getSimpleName());
+            }
+            checkCollectionHops(selector, entityClass, segments, 0, 0);
+            return;
+        }
+        // The nearest ancestor with a ** rule, its permission is kept when a more specific rule adds nodes below it
+        TrieNode ancestor = null;
+        int ancestorDepth = 0;
+        for (int i = 0; i < segments.length; i++) {
+            if (node.descendants) {
+                ancestor = node;
+                ancestorDepth = i;
+            }
+            TrieNode child = node.children.get(segments[i]);
+            if (child == null) {
+                checkDescendants(entityClass, selector, operator, segments, ancestor, ancestorDepth);
+                return;
+            }
+            node = child;
+        }
+        if (node.terminal && (isAllowed(operator, node.operators) || ancestor == null)) {
+            checkOperator(selector, operator, node.operators);
+        } else {
+            checkDescendants(entityClass, selector, operator, segments, ancestor, ancestorDepth);
+        }
+    }
+
+    private void checkDescendants(Class entityClass, String selector, String operator, String[] segments,
+                                  TrieNode ancestor, int ancestorDepth) {
+        if (ancestor == null) {
+            throw new SelectorNotAllowedException("Selector is not allowed: '" + selector + "' on " +
+                    entityClass.getSimpleName());
+        }
+        checkCollectionHops(selector, ancestor.type, segments, ancestorDepth, ancestor.collectionHops);
+        checkOperator(selector, operator, ancestor.descendantOperators);
+    }
+
+    private static boolean isAllowed(String operator, Set<String> operators) {
+        return operator == null || operators == null || operators.contains(operator);
+    }
+
+    private static void checkOperator(String selector, String operator, Set<String> operators) {
+        if (!isAllowed(operator, operators)) {
+            throw new SelectorNotAllowedException("Operator " + operator + " is not allowed on selector: '" +
+                    selector + "'");
+        }
+    }
+
+    private void checkCollectionHops(String selector, Class type, String[] segments, int from, int collectionHops) {
+        int hops = collectionHops;
+        for (int i = from; i < segments.length && type != null; i++) {
+            Step step = step(type, segments[i]);
+            if (step == null) {
+                // Unknown fields are reported by the field selector resolution
+                return;
+            }
+            if (step.collection && ++hops > maxCollectionHops) {
+                throw new SelectorNotAllowedException("Selector has too many collection hops: '" + selector +
+                        "' max collection hops: " + maxCollectionHops);
+            }
+            type = step.type;
+        }
+    }
+
+    private static String[] splitSelector(String selector) {
+        String[] segments = StringUtils.split(selector, ".");
+        for (int i = 0; i < segments.length; i++) {
+            int indexStart = segments[i].indexOf('[');
+            if (indexStart != -1) {
+                segments[i] = segments[i].substring(0, indexStart);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Resolve the type of a field, from the generated selector table or with reflection.
+     */
+    private static Step step(Class type, String fieldName) {
+        if (type == null) {
+            return null;
+        }
+        SelectorTable selectorTable = SelectorTable.of(type);
+        SelectorField selectorField = selectorTable != null ? selectorTable.getField(fieldName) : null;
+        if (selectorField != null) {
+            return selectorField.isCollection() ? new Step(selectorField.getElementType(), true) :
+                    new Step(selectorField.getType(), false);
+        }
+        for (Class current = type; current != null; current = current.getSuperclass()) {
+            try {
+                Field field = current.getDeclaredField(fieldName);
+                if (List.class.isAssignableFrom(field.getType()) || Set.class.isAssignableFrom(field.getType())) {
+                    Type genericType = field.getGenericType();
+                    Type elementType = genericType instanceof ParameterizedType ?
+                            ((ParameterizedType) genericType).getActualTypeArguments()[0] : null;
+                    return new Step(elementType instanceof Class ? (Class) elementType : null, true);
+                }
+                return new Step(field.getType(), false);
+            } catch (NoSuchFieldException ex) {
+                // Continue with the superclass
+            }
+        }
+        return null;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxCollectionHops() {
+        return maxCollectionHops;
+    }
+
+    private static final class Step {
+        private final Class type;
+        private final boolean collection;
+
+        private Step(Class type, boolean collection) {
+            this.type = type;
+            this.collection = collection;
+        }
+    }
+
+    private static final class TrieNode {
+        private final Class type;
+        private final int collectionHops;
+        private final Map<String, TrieNode> children = new HashMap<>();
+        private boolean terminal;
+        private Set<String> operators;
+        private boolean descendants;
+        private Set<String> descendantOperators;
+
+        private TrieNode(Class type, int collectionHops) {
+            this.type = type;
+            this.collectionHops = collectionHops;
+        }
+    }
+
+    private static final class Rule {
+        private final Class entityClass;
+        private final String selector;
+        private final Set<String> operators;
+
+        private Rule(Class entityClass, String selector, Set<String> operators) {
+            this.entityClass = entityClass;
+            this.selector = selector;
+            this.operators = operators;
+        }
+    }
+
+    /**
+     * Help to create a {@link SelectorAllowlist}
+     */
+    public static class Builder {
+        private final List<Rule> rules = new ArrayList<>();
+        private int maxDepth = Integer.MAX_VALUE;
+        private int maxCollectionHops = Integer.MAX_VALUE;
+        private boolean denyUnlisted = false;
+
+        /**
+         * Permit a selector with the given operators, or with every operator if none is given.
+         * A selector ending with <tt>.**</tt> permits every path below it, <tt>**</tt> permits every selector
+         * of the entity.
+         *
+         * @param entityClass Root type
+         * @param selector    Field selector, e.g. <tt>engine.screws.size</tt> or <tt>engine.**</tt>
+         * @param operators   Permitted operators
+         * @return {@link Builder}
+         */
+        public Builder allow(Class entityClass, String selector, Operator... operators) {
+            Set<String> symbols = null;
+            if (operators.length > 0) {
+                symbols = new HashSet<>();
+                for (Operator operator : operators) {
+                    symbols.addAll(Arrays.asList(operator.getRsqlOperator()));
+                }
+            }
+            this.rules.add(new Rule(entityClass, selector, symbols));
+            return this;
+        }
+
+        /**
+         * Permit a selector with the given custom operators.
+         *
+         * @param entityClass Root type
+         * @param selector    Field selector
+         * @param operators   Permitted operators
+         * @return {@link Builder}
+         */
+        public Builder allow(Class entityClass, String selector, List<QrsqlOperator> operators) {
+            Set<String> symbols = new HashSet<>();
+            for (QrsqlOperator operator : operators) {
+                symbols.addAll(Arrays.asList(operator.getSymbols()));
+            }
+            this.rules.add(new Rule(entityClass, selector, symbols));
+            return this;
+        }
+
+        /**
+         * @param maxDepth Maximum number of the parts of a selector
+         * @return {@link Builder}
+         */
+        public Builder maxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * @param maxCollectionHops Maximum number of the list and set fields on the path of a selector
+         * @return {@link Builder}
+         */
+        public Builder maxCollectionHops(int maxCollectionHops) {
+            this.maxCollectionHops = maxCollectionHops;
+            return this;
+        }
+
+        /**
+         * Refuse every selector of the entities which have no permitted selectors. By default only the depth and
+         * the collection hop limits are checked for them.
+         *
+         * @return {@link Builder}
+         */
+        public Builder denyUnlisted() {
+            this.denyUnlisted = true;
+            return this;
+        }
+
+        public SelectorAllowlist build() {
+            return new SelectorAllowlist(this);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.apt;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generate the {@link com.github.balintrudas.qrsql.metadata.SelectorTable} of the entities and embeddables at compile
+ * time, so the field selectors are resolved without reflection. The table of <tt>com.example.Car</tt> is generated
+ * as <tt>com.example.Car_Qrsql</tt>. The processor is registered as a service, so it runs when qrsql is on the
+ * annotation processor path. Fields which can't be described at compile time, e.g. raw or wildcard collections,
+ * are left out of the table and resolved with reflection.
+ *
+ * @author Balint Rudas
+ */
+@SupportedAnnotationTypes({"javax.persistence.Entity", "javax.persistence.Embeddable"})
+public class QrsqlAnnotationProcessor extends AbstractProcessor {
+
+    private static final String SELECTOR_TABLE = "com.github.balintrudas.qrsql.metadata.SelectorTable";
+    private static final String SELECTOR_FIELD = "com.github.balintrudas.qrsql.metadata.SelectorField";
+    private static final String PATH_PACKAGE = "com.querydsl.core.types.dsl.";
+    private static final Set<String> DATE_TYPES = new HashSet<>(Arrays.asList("java.sql.Date",
+            "java.time.LocalDate", "org.joda.time.LocalDate"));
+    private static final Set<String> TIME_TYPES = new HashSet<>(Arrays.asList("java.sql.Time",
+            "java.time.LocalTime", "java.time.OffsetTime", "org.joda.time.LocalTime"));
+    private static final Set<String> DATETIME_TYPES = new HashSet<>(Arrays.asList("java.util.Date",
+            "java.util.Calendar", "java.sql.Timestamp", "java.time.LocalDateTime", "java.time.Instant",
+            "java.time.OffsetDateTime", "java.time.ZonedDateTime", "org.joda.time.DateTime",
+            "org.joda.time.LocalDateTime", "org.joda.time.DateMidnight", "org.joda.time.Instant"));
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS && isAccessible((TypeElement) element,
+                        processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString())) {
+                    generate((TypeElement) element);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement entity) {
+        Elements elements = processingEnv.getElementUtils();
+        String packageName = elements.getPackageOf(entity).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(entity).toString();
+        String tableName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) +
+                "_Qrsql";
+        String qualifiedTableName = packageName.isEmpty() ? tableName : packageName + "." + tableName;
+        if (!generated.add(qualifiedTableName)) {
+            return;
+        }
+        String entityName = entity.getQualifiedName().toString();
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated by Qrsql, do not edit.\n");
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        source.append("public final class ").append(tableName).append(" extends ").append(SELECTOR_TABLE).append(" {\n\n");
+        source.append("    public static final ").append(tableName).append(" INSTANCE = new ").append(tableName).append("();\n\n");
+        source.append("    private ").append(tableName).append("() {\n");
+        source.append("        super(").append(entityName).append(".class");
+        for (VariableElement field : getFields(entity)) {
+            String selectorField = createSelectorField(entity, packageName, field);
+            if (selectorField != null) {
+                source.append(",\n                ").append(selectorField);
+            }
+        }
+        source.append(");\n    }\n}\n");
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedTableName, entity).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Can't generate Qrsql selector table: " + ex.getMessage(), entity);
+        }
+    }
+
+    /**
+     * Collect the instance fields of the class and its superclasses, a field hides the fields of the superclasses
+     * with the same name.
+     */
+    private Collection<VariableElement> getFields(TypeElement entity) {
+        Map<String, VariableElement> fields = new LinkedHashMap<>();
+        for (TypeElement current = entity; current != null; current = getSuperclass(current)) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                String name = field.getSimpleName().toString();
+                if (!field.getModifiers().contains(Modifier.STATIC) && !fields.containsKey(name)) {
+                    fields.put(name, field);
+                }
+            }
+        }
+        return fields.values();
+    }
+
+    private String createSelectorField(TypeElement entity, String packageName, VariableElement field) {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror type = types.erasure(field.asType());
+        String typeLiteral = getTypeLiteral(type, packageName);
+        if (typeLiteral == null) {
+            return null;
+        }
+        String elementTypeLiteral = "null";
+        TypeMirror pathSourceType = type;
+        if (isAssignable(type, "java.util.List") || isAssignable(type, "java.util.Set")) {
+            if (field.asType().getKind() != TypeKind.DECLARED ||
+                    ((DeclaredType) field.asType()).getTypeArguments().size() != 1 ||
+                    ((DeclaredType) field.asType()).getTypeArguments().get(0).getKind() != TypeKind.DECLARED) {
+                return null;
+            }
+            pathSourceType = types.erasure(((DeclaredType) field.asType()).getTypeArguments().get(0));
+            elementTypeLiteral = getTypeLiteral(pathSourceType, packageName);
+            if (elementTypeLiteral == null) {
+                return null;
+            }
+        }
+        String name = field.getSimpleName().toString();
+        String getter = findGetter(entity, packageName, name);
+        return "new " + SELECTOR_FIELD + "(\"" + name + "\", " + typeLiteral + ".class, " +
+                (elementTypeLiteral.equals("null") ? "null" : elementTypeLiteral + ".class") + ", " +
+                PATH_PACKAGE + getPathType(pathSourceType) + ".class, " +
+                (getter != null ? "entity -> ((" + entity.getQualifiedName() + ") entity)." + getter + "()" : "null") +
+                ")";
+    }
+
+    /**
+     * Determine the querydsl path type of a type in the same way as the querydsl-codegen type categories.
+     */
+    private String getPathType(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "BooleanPath";
+            case CHAR:
+                return "ComparablePath";
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return "NumberPath";
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                String name = element.getQualifiedName().toString();
+                if (element.getKind() == ElementKind.ENUM) {
+                    return "EnumPath";
+                } else if (name.equals("java.lang.String")) {
+                    return "StringPath";
+                } else if (name.equals("java.lang.Boolean")) {
+                    return "BooleanPath";
+                } else if (DATE_TYPES.contains(name)) {
+                    return "DatePath";
+                } else if (TIME_TYPES.contains(name)) {
+                    return "TimePath";
+                } else if (DATETIME_TYPES.contains(name)) {
+                    return "DateTimePath";
+                } else if (isAssignable(type, "java.lang.Number") && isAssignable(type, "java.lang.Comparable")) {
+                    return "NumberPath";
+                } else if (isAssignable(type, "java.lang.Comparable")) {
+                    return "ComparablePath";
+                }
+                return "EntityPathBase";
+            default:
+                return "EntityPathBase";
+        }
+    }
+
+    private String getTypeLiteral(TypeMirror type, String packageName) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+            case FLOAT:
+            case DOUBLE:
+                return type.toString();
+            case ARRAY:
+                String componentLiteral = getTypeLiteral(((ArrayType) type).getComponentType(), packageName);
+                return componentLiteral != null ? componentLiteral + "[]" : null;
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                return isAccessible(element, packageName) ? element.getQualifiedName().toString() : null;
+            default:
+                return null;
+        }
+    }
+
+    private String findGetter(TypeElement entity, String packageName, String fieldName) {
+        String suffix = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        for (TypeElement current = entity; current != null; current = getSuperclass(current)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                String name = method.getSimpleName().toString();
+                boolean getter = name.equals("get" + suffix) ||
+                        (name.equals("is" + suffix) && method.getReturnType().getKind() == TypeKind.BOOLEAN);
+                if (getter && method.getParameters().isEmpty() && !method.getModifiers().contains(Modifier.STATIC) &&
+                        method.getReturnType().getKind() != TypeKind.VOID &&
+                        isAccessible(method, current, packageName)) {
+                    return name;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isAccessible(Element member, TypeElement owner, String packageName) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return !modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.PROTECTED) &&
+                processingEnv.getElementUtils().getPackageOf(owner).getQualifiedName().contentEquals(packageName);
+    }
+
+    /**
+     * Whether the type can be referenced from the given package.
+     */
+    private boolean isAccessible(TypeElement type, String packageName) {
+        for (Element current = type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+            Set<Modifier> modifiers = current.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (!modifiers.contains(Modifier.PUBLIC) && !processingEnv.getElementUtils()
+                    .getPackageOf(current).getQualifiedName().contentEquals(packageName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAssignable(TypeMirror type, String className) {
+        TypeElement target = processingEnv.getElementUtils().getTypeElement(className);
+        Types types = processingEnv.getTypeUtils();
+        return target != null && types.isAssignable(type, types.erasure(target.asType()));
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.dialect;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.StringExpression;
+
+/**
+ * PostgreSQL and H2 dialect: <tt>column ilike ?</tt>. The fragment is native SQL, so it can be used with the
+ * Querydsl SQL backend or with a JPA provider which passes it to the database.
+ *
+ * @author Balint Rudas
+ */
+public class IlikeStringPredicateDialect implements StringPredicateDialect {
+
+    @Override
+    public BooleanExpression equalsIgnoreCase(StringExpression path, String value) {
+        return likeIgnoreCase(path, StringPredicateDialect.escape(value));
+    }
+
+    @Override
+    public BooleanExpression likeIgnoreCase(StringExpression path, String pattern) {
+        return Expressions.booleanTemplate("{0} ilike {1} escape '" + ESCAPE + "'", path, pattern);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.dialect;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.StringExpression;
+
+import java.util.Locale;
+
+/**
+ * Portable dialect: <tt>lower(column) = ?</tt> and <tt>lower(column) like ?</tt>. The value is lower cased
+ * before binding, so an expression index on <tt>lower(column)</tt> can be used. Works with every JPA provider.
+ *
+ * @author Balint Rudas
+ */
+public class LowerStringPredicateDialect implements StringPredicateDialect {
+
+    @Override
+    public BooleanExpression equalsIgnoreCase(StringExpression path, String value) {
+        return path.lower().eq(value.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public BooleanExpression likeIgnoreCase(StringExpression path, String pattern) {
+        return path.lower().like(pattern.toLowerCase(Locale.ROOT), ESCAPE);
+    }
+}
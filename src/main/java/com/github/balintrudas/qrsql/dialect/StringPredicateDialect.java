@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.dialect;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.StringExpression;
+
+/**
+ * Database specific form of the case-insensitive string predicates. The string field type handler plans every
+ * ignore case operator to one of these two forms.
+ *
+ * @author Balint Rudas
+ */
+public interface StringPredicateDialect {
+
+    /**
+     * Escape character of the like patterns, the same as the one used by querydsl.
+     */
+    char ESCAPE = '!';
+
+    /**
+     * Case-insensitive equality.
+     *
+     * @param path  string path
+     * @param value value without wildcards
+     * @return {@link BooleanExpression}
+     */
+    BooleanExpression equalsIgnoreCase(StringExpression path, String value);
+
+    /**
+     * Case-insensitive like.
+     *
+     * @param path    string path
+     * @param pattern like pattern, the literal wildcards are escaped with {@link #ESCAPE}
+     * @return {@link BooleanExpression}
+     */
+    BooleanExpression likeIgnoreCase(StringExpression path, String pattern);
+
+    /**
+     * Escape the like wildcards and the escape character of the value.
+     *
+     * @param value literal value
+     * @return like pattern which matches only the value
+     */
+    static String escape(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 4);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                builder.append(ESCAPE);
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Convert a like pattern without escape character, like the patterns of the like operators, to a pattern with
+     * {@link #ESCAPE}: the wildcards keep their meaning and the escape characters become literals.
+     *
+     * @param pattern like pattern without escape character
+     * @return like pattern with {@link #ESCAPE} escape character
+     */
+    static String escapeLiterals(String pattern) {
+        if (pattern.indexOf(ESCAPE) == -1) {
+            return pattern;
+        }
+        StringBuilder builder = new StringBuilder(pattern.length() + 4);
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == ESCAPE) {
+                builder.append(ESCAPE);
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
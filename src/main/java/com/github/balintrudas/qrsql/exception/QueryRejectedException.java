@@ -0,0 +1,54 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.exception;
+
+/**
+ * Thrown when the {@link com.github.balintrudas.qrsql.execution.AdmissionController} refuses a query, because there is
+ * no lane for its cost or its lane stayed full during the queue timeout.
+ *
+ * @author Balint Rudas
+ */
+public class QueryRejectedException extends QrsqlException {
+
+    private final String lane;
+    private final long cost;
+
+    public QueryRejectedException(String message, String lane, long cost) {
+        super(message);
+        this.lane = lane;
+        this.cost = cost;
+    }
+
+    /**
+     * @return Name of the lane or null if there is no lane for the cost
+     */
+    public String getLane() {
+        return lane;
+    }
+
+    public long getCost() {
+        return cost;
+    }
+}
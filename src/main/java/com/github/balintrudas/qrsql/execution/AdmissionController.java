@@ -0,0 +1,286 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.execution;
+
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.exception.QueryCancelledException;
+import com.github.balintrudas.qrsql.exception.QueryDeadlineExceededException;
+import com.github.balintrudas.qrsql.exception.QueryRejectedException;
+import cz.jirutka.rsql.parser.ast.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cost-aware admission control of the query executions. The cost of every query is estimated by the
+ * {@link QueryCostEstimator} and the query is executed in the cheapest lane whose maximum cost is not lower than the
+ * estimated cost. Every lane has its own bounded concurrency and queue timeout, so the expensive query shapes can't
+ * take the connections of the cheap ones. A query which has no lane for its cost, or which can't enter its lane within
+ * the queue timeout, is rejected with {@link QueryRejectedException}. A query waits for its lane no longer than its
+ * {@link QueryDeadline}, and a cancelled query is not admitted.
+ * The instance is thread-safe and should be shared through {@link QrsqlConfig}.
+ *
+ * @author Balint Rudas
+ */
+public class AdmissionController {
+
+    private final List<Lane> lanes;
+    private final QueryCostEstimator costEstimator;
+
+    private AdmissionController(Builder builder) {
+        List<Lane> sortedLanes = new ArrayList<>(builder.lanes);
+        sortedLanes.sort(Comparator.comparingLong(Lane::getMaxCost));
+        this.lanes = Collections.unmodifiableList(sortedLanes);
+        this.costEstimator = builder.costEstimator != null ? builder.costEstimator : new DefaultQueryCostEstimator();
+    }
+
+    /**
+     * Estimate the cost of the query with the {@link QueryCostEstimator}.
+     *
+     * @param config      configuration of the query
+     * @param entityClass root entity of the query
+     * @param where       parsed where expression or null
+     * @param offset      offset of the page or null
+     * @param size        size of the page or null
+     * @return estimated cost
+     */
+    public long estimate(QrsqlConfig<?> config, Class entityClass, Node where, Long offset, Long size) {
+        return Math.max(0, costEstimator.estimate(config, entityClass, where, offset, size));
+    }
+
+    /**
+     * Return the lane of the cost.
+     *
+     * @param cost estimated cost of the query
+     * @return {@link Lane} or null if there is no lane for the cost
+     */
+    public Lane getLane(long cost) {
+        for (Lane lane : lanes) {
+            if (cost <= lane.maxCost) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Execute the query in the lane of its cost.
+     *
+     * @param cost  estimated cost of the query
+     * @param query executes the query
+     * @param <T>   result type
+     * @return result of the query
+     * @throws QueryRejectedException If there is no lane for the cost or the lane is full during the queue timeout
+     * @throws QrsqlException         If the waiting thread was interrupted
+     */
+    public <T> T execute(long cost, Supplier<T> query) throws QrsqlException {
+        return execute(cost, query, null, null);
+    }
+
+    /**
+     * Execute the query in the lane of its cost. The query waits for its lane no longer than its deadline, and a
+     * cancelled query is not admitted.
+     *
+     * @param cost         estimated cost of the query
+     * @param query        executes the query
+     * @param deadline     deadline of the query or null
+     * @param cancellation cancellation of the query or null
+     * @param <T>          result type
+     * @return result of the query
+     * @throws QueryRejectedException         If there is no lane for the cost or the lane is full during the queue
+     *                                        timeout
+     * @throws QueryDeadlineExceededException If the deadline is exceeded before the query enters its lane
+     * @throws QueryCancelledException        If the query is cancelled before it enters its lane
+     * @throws QrsqlException                 If the waiting thread was interrupted
+     */
+    public <T> T execute(long cost, Supplier<T> query, QueryDeadline deadline, CancellationHandle cancellation)
+            throws QrsqlException {
+        Lane lane = getLane(cost);
+        if (lane == null) {
+            throw new QueryRejectedException("Query cost " + cost + " exceeds the maximum cost of the lanes.",
+                    null, cost);
+        }
+        if (cancellation != null) {
+            cancellation.throwIfCancelled();
+        }
+        if (!lane.tryAcquire(deadline)) {
+            if (deadline != null && deadline.isExpired()) {
+                throw new QueryDeadlineExceededException("Query deadline is exceeded before lane '" + lane.name +
+                        "' is free.");
+            }
+            lane.rejected.increment();
+            throw new QueryRejectedException("Query with cost " + cost + " is rejected, lane '" + lane.name +
+                    "' is full.", lane.name, cost);
+        }
+        if (cancellation != null && cancellation.isCancelled()) {
+            lane.permits.release();
+            throw new QueryCancelledException("Query is cancelled.");
+        }
+        try {
+            lane.admitted.increment();
+            return query.get();
+        } finally {
+            lane.permits.release();
+        }
+    }
+
+    public List<Lane> getLanes() {
+        return lanes;
+    }
+
+    public QueryCostEstimator getCostEstimator() {
+        return costEstimator;
+    }
+
+    /**
+     * Bulkhead of the queries up to a maximum cost.
+     */
+    public static final class Lane {
+        private final String name;
+        private final long maxCost;
+        private final int maxConcurrent;
+        private final long queueTimeout;
+        private final Semaphore permits;
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private Lane(String name, long maxCost, int maxConcurrent, long queueTimeout, TimeUnit unit) {
+            this.name = name;
+            this.maxCost = maxCost;
+            this.maxConcurrent = maxConcurrent;
+            this.queueTimeout = unit.toNanos(queueTimeout);
+            this.permits = new Semaphore(maxConcurrent, true);
+        }
+
+        /**
+         * Wait for a free slot no longer than the queue timeout and the remaining time of the deadline.
+         */
+        private boolean tryAcquire(QueryDeadline deadline) {
+            if (deadline != null && deadline.isExpired()) {
+                return false;
+            }
+            long timeout = deadline != null ? Math.min(queueTimeout, deadline.remaining(TimeUnit.NANOSECONDS)) :
+                    queueTimeout;
+            if (timeout <= 0) {
+                return permits.tryAcquire();
+            }
+            try {
+                return permits.tryAcquire(timeout, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new QrsqlException(ex);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getMaxCost() {
+            return maxCost;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        /**
+         * @return Number of the queries executing in the lane
+         */
+        public int getActiveCount() {
+            return maxConcurrent - permits.availablePermits();
+        }
+
+        /**
+         * @return Number of the admitted queries
+         */
+        public long getAdmittedCount() {
+            return admitted.sum();
+        }
+
+        /**
+         * @return Number of the queries rejected because the lane was full
+         */
+        public long getRejectedCount() {
+            return rejected.sum();
+        }
+    }
+
+    /**
+     * Help to create an {@link AdmissionController}
+     */
+    public static class Builder {
+        private final List<Lane> lanes = new ArrayList<>();
+        private QueryCostEstimator costEstimator;
+
+        /**
+         * Add a lane.
+         *
+         * @param name          name of the lane
+         * @param maxCost       maximum estimated cost of the queries in the lane
+         * @param maxConcurrent maximum number of the concurrent queries in the lane
+         * @param queueTimeout  maximum time to wait for a free slot, 0 rejects immediately if the lane is full
+         * @param unit          unit of the queue timeout
+         * @return {@link Builder}
+         */
+        public Builder lane(String name, long maxCost, int maxConcurrent, long queueTimeout, TimeUnit unit) {
+            if (name == null || maxConcurrent <= 0 || queueTimeout < 0 || unit == null) {
+                throw new IllegalArgumentException("Invalid lane: " + name);
+            }
+            for (Lane lane : lanes) {
+                if (lane.name.equals(name) || lane.maxCost == maxCost) {
+                    throw new IllegalArgumentException("Duplicated lane: " + name);
+                }
+            }
+            this.lanes.add(new Lane(name, maxCost, maxConcurrent, queueTimeout, unit));
+            return this;
+        }
+
+        /**
+         * Set the {@link QueryCostEstimator}, by default {@link DefaultQueryCostEstimator}.
+         *
+         * @param costEstimator cost estimator
+         * @return {@link Builder}
+         */
+        public Builder costEstimator(QueryCostEstimator costEstimator) {
+            this.costEstimator = costEstimator;
+            return this;
+        }
+
+        public AdmissionController build() {
+            if (lanes.isEmpty()) {
+                throw new IllegalArgumentException("At least one lane is required.");
+            }
+            return new AdmissionController(this);
+        }
+    }
+}
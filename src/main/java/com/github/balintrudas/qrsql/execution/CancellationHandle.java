@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.execution;
+
+import com.github.balintrudas.qrsql.exception.QueryCancelledException;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Handle to cancel the executions of a query. The executions register how they can be aborted, e.g. by cancelling the
+ * JDBC statement, and {@link #cancel()} aborts every in-flight execution. An execution which starts after the
+ * cancellation fails with {@link QueryCancelledException}. The instance is thread-safe.
+ *
+ * @author Balint Rudas
+ */
+public class CancellationHandle {
+
+    private static final Logger LOGGER = Logger.getLogger(CancellationHandle.class.getName());
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Cancel the query and abort its in-flight executions.
+     *
+     * @return true if the query was not cancelled before
+     */
+    public boolean cancel() {
+        if (!cancelled.compareAndSet(false, true)) {
+            return false;
+        }
+        for (Registration registration : registrations) {
+            registration.abort();
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * @throws QueryCancelledException If the query is cancelled
+     */
+    public void throwIfCancelled() throws QueryCancelledException {
+        if (cancelled.get()) {
+            throw new QueryCancelledException("Query is cancelled.");
+        }
+    }
+
+    /**
+     * Register an in-flight execution. If the query is already cancelled, the execution is aborted immediately.
+     *
+     * @param canceller aborts the execution
+     * @return closes the registration when the execution is finished
+     */
+    public AutoCloseable register(Runnable canceller) {
+        Registration registration = new Registration(canceller);
+        registrations.add(registration);
+        if (cancelled.get()) {
+            registration.abort();
+        }
+        return registration;
+    }
+
+    private final class Registration implements AutoCloseable {
+        private final Runnable canceller;
+
+        private Registration(Runnable canceller) {
+            this.canceller = canceller;
+        }
+
+        private void abort() {
+            if (registrations.remove(this)) {
+                try {
+                    canceller.run();
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Can't abort the Qrsql query execution.", ex);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            registrations.remove(this);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.execution;
+
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Default {@link QueryCanceller}. It invokes the <tt>cancelQuery()</tt> method of the provider entity manager or of
+ * its delegate, which is the Hibernate <tt>Session</tt>. With other providers the execution is not aborted, it is
+ * bounded by the query timeout only.
+ *
+ * @author Balint Rudas
+ */
+public class DefaultQueryCanceller implements QueryCanceller {
+
+    public static final DefaultQueryCanceller INSTANCE = new DefaultQueryCanceller();
+
+    private static final ClassValue<Method> CANCEL_METHODS = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            try {
+                return type.getMethod("cancelQuery");
+            } catch (NoSuchMethodException ex) {
+                return null;
+            }
+        }
+    };
+
+    @Override
+    public void cancel(EntityManager entityManager) {
+        Object delegate = entityManager;
+        Method cancelMethod = CANCEL_METHODS.get(entityManager.getClass());
+        if (cancelMethod == null) {
+            delegate = entityManager.getDelegate();
+            cancelMethod = delegate != null ? CANCEL_METHODS.get(delegate.getClass()) : null;
+        }
+        if (cancelMethod == null) {
+            return;
+        }
+        try {
+            cancelMethod.invoke(delegate);
+        } catch (IllegalAccessException ex) {
+            throw new QrsqlException(ex);
+        } catch (InvocationTargetException ex) {
+            throw new QrsqlException(ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.execution;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.operator.Operator;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.Node;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Default {@link QueryCostEstimator}. Every comparison costs 1, every collection traversal of a selector adds
+ * the collection hop cost, a comparison which scans with a leading wildcard (contains, ends with, like with leading
+ * <tt>%</tt> or <tt>_</tt>) adds the wildcard cost, and every started page depth unit of the offset adds the page
+ * depth cost.
+ *
+ * @author Balint Rudas
+ */
+public class DefaultQueryCostEstimator implements QueryCostEstimator {
+
+    private final long collectionHopCost;
+    private final long wildcardCost;
+    private final long pageDepthUnit;
+    private final long pageDepthCost;
+
+    public DefaultQueryCostEstimator() {
+        this(new Builder());
+    }
+
+    private DefaultQueryCostEstimator(Builder builder) {
+        this.collectionHopCost = builder.collectionHopCost;
+        this.wildcardCost = builder.wildcardCost;
+        this.pageDepthUnit = builder.pageDepthUnit;
+        this.pageDepthCost = builder.pageDepthCost;
+    }
+
+    @Override
+    public long estimate(QrsqlConfig<?> config, Class entityClass, Node where, Long offset, Long size) {
+        long cost = 0;
+        if (where != null) {
+            Deque<Node> nodes = new ArrayDeque<>();
+            nodes.push(where);
+            while (!nodes.isEmpty()) {
+                Node node = nodes.pop();
+                if (node instanceof LogicalNode) {
+                    for (Node child : ((LogicalNode) node).getChildren()) {
+                        nodes.push(child);
+                    }
+                } else if (node instanceof ComparisonNode) {
+                    cost += estimate(config, entityClass, (ComparisonNode) node);
+                }
+            }
+        }
+        if (offset != null && offset > 0) {
+            //The offset is supplied by the client, an overflow saturates instead of wrapping to a cheap cost
+            long pages = offset / pageDepthUnit + (offset % pageDepthUnit == 0 ? 0 : 1);
+            try {
+                cost = Math.addExact(cost, Math.multiplyExact(pages, pageDepthCost));
+            } catch (ArithmeticException ex) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return cost;
+    }
+
+    private long estimate(QrsqlConfig<?> config, Class entityClass, ComparisonNode node) {
+        long cost = 1;
+        List<FieldMetadata> fieldMetadataList = config.getFieldMetadata(entityClass, node.getSelector());
+        for (FieldMetadata fieldMetadata : fieldMetadataList) {
+            if (Boolean.TRUE.equals(fieldMetadata.getCollection())) {
+                cost += collectionHopCost;
+            }
+        }
+        if (isWildcardScan(Operator.get(node.getOperator().getSymbol()), node.getArguments())) {
+            cost += wildcardCost;
+        }
+        return cost;
+    }
+
+    private static boolean isWildcardScan(Operator operator, List<String> arguments) {
+        if (operator == null) {
+            return false;
+        }
+        switch (operator) {
+            case CONTAINS:
+            case CONTAINS_IGNORECASE:
+            case ENDWITH:
+            case ENDWITH_IGNORECASE:
+                return true;
+            case LIKE:
+            case NOTLIKE:
+            case LIKE_IGNORECASE:
+                for (String argument : arguments) {
+                    if (argument.startsWith("%") || argument.startsWith("_")) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    public long getCollectionHopCost() {
+        return collectionHopCost;
+    }
+
+    public long getWildcardCost() {
+        return wildcardCost;
+    }
+
+    public long getPageDepthUnit() {
+        return pageDepthUnit;
+    }
+
+    public long getPageDepthCost() {
+        return pageDepthCost;
+    }
+
+    /**
+     * Help to create a {@link DefaultQueryCostEstimator}
+     */
+    public static class Builder {
+        private long collectionHopCost = 10;
+        private long wildcardCost = 20;
+        private long pageDepthUnit = 1000;
+        private long pageDepthCost = 5;
+
+        /**
+         * @param collectionHopCost cost of a collection traversal, default 10
+         * @return {@link Builder}
+         */
+        public Builder collectionHopCost(long collectionHopCost) {
+            this.collectionHopCost = collectionHopCost;
+            return this;
+        }
+
+        /**
+         * @param wildcardCost cost of a leading wildcard scan, default 20
+         * @return {@link Builder}
+         */
+        public Builder wildcardCost(long wildcardCost) {
+            this.wildcardCost = wildcardCost;
+            return this;
+        }
+
+        /**
+         * @param pageDepthUnit number of the skipped rows per page depth unit, default 1000
+         * @param pageDepthCost cost of a page depth unit, default 5
+         * @return {@link Builder}
+         */
+        public Builder pageDepth(long pageDepthUnit, long pageDepthCost) {
+            this.pageDepthUnit = pageDepthUnit;
+            this.pageDepthCost = pageDepthCost;
+            return this;
+        }
+
+        public DefaultQueryCostEstimator build() {
+            if (collectionHopCost < 0 || wildcardCost < 0 || pageDepthCost < 0) {
+                throw new IllegalArgumentException("Query costs can't be negative.");
+            }
+            if (pageDepthUnit <= 0) {
+                throw new IllegalArgumentException("Page depth unit must be positive.");
+            }
+            return new DefaultQueryCostEstimator(this);
+        }
+    }
+}
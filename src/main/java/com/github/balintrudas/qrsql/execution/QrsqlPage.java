@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.execution;
+
+import java.util.List;
+
+/**
+ * Page of the query results with the total count. The count is optional, it is skipped if the time budget of the
+ * query is nearly spent.
+ *
+ * @param <E> Target type
+ * @author Balint Rudas
+ */
+public class QrsqlPage<E> {
+
+    private final List<E> content;
+    private final Long total;
+
+    public QrsqlPage(List<E> content, Long total) {
+        this.content = content;
+        this.total = total;
+    }
+
+    public List<E> getContent() {
+        return content;
+    }
+
+    /**
+     * @return Total number of the matching records or null if the count is skipped
+     */
+    public Long getTotal() {
+        return total;
+    }
+
+    public boolean hasTotal() {
+        return total != null;
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.execution;
+
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.exception.QueryCancelledException;
+import com.github.balintrudas.qrsql.exception.QueryDeadlineExceededException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of identical concurrent queries. The first caller of a query executes it, the callers
+ * which arrive with the same query identity while it is in flight wait for it and receive the same result. The
+ * result is not kept after the execution, so it is not a cache.
+ * <p>
+ * The counts and the projections (tuples, single values) are coalesced. The entity results are coalesced only if
+ * {@link Builder#coalesceEntities()} is set: the shared execution runs in its own entity manager which is closed
+ * after the fetch, so every caller receives the same detached entities in an unmodifiable list. The lazy associations
+ * of the detached entities can't be loaded and the entities should be treated as read-only.
+ * <p>
+ * Every caller waits within its own {@link QueryDeadline} and until its own {@link CancellationHandle}. The shared
+ * execution runs on the executor when its first caller has a deadline or a cancellation, so the first caller can
+ * leave it like the others. It is guarded by a cancellation of its own, which is cancelled only when all of its
+ * callers are gone, so a caller which gives up doesn't abort the execution the others are waiting for.
+ * The instance is thread-safe and should be shared through {@link com.github.balintrudas.qrsql.QrsqlConfig}.
+ *
+ * @author Balint Rudas
+ */
+public class QueryCoalescer {
+
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final boolean coalesceEntities;
+    private final Executor executor;
+    private final ConcurrentMap<Object, Execution> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    private QueryCoalescer(Builder builder) {
+        this.coalesceEntities = builder.coalesceEntities;
+        this.executor = builder.executor != null ? builder.executor : SharedExecutor.INSTANCE;
+    }
+
+    /**
+     * Execute the query, or wait for the in-flight execution of the same query.
+     *
+     * @param key   identity of the query
+     * @param query executes the query
+     * @param <T>   result type
+     * @return result of the query
+     * @throws QrsqlException If the execution failed or the waiting thread was interrupted
+     */
+    public <T> T execute(Object key, Supplier<T> query) throws QrsqlException {
+        return execute(key, cancellation -> query.get(), null, null);
+    }
+
+    /**
+     * Execute the query, or wait for the in-flight execution of the same query. The caller leaves the execution when
+     * its deadline is exceeded or it is cancelled, the execution is aborted through its shared cancellation when the
+     * last caller leaves. The query runs on another thread if the caller has a deadline or a cancellation.
+     *
+     * @param key          identity of the query
+     * @param query        executes the query, guarded by the given shared cancellation
+     * @param deadline     deadline of the caller or null
+     * @param cancellation cancellation of the caller or null
+     * @param <T>          result type
+     * @return result of the query
+     * @throws QrsqlException If the execution failed or the waiting thread was interrupted
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Function<CancellationHandle, T> query, QueryDeadline deadline,
+                         CancellationHandle cancellation) throws QrsqlException {
+        Execution execution = new Execution();
+        Execution existing;
+        while ((existing = inFlight.putIfAbsent(key, execution)) != null) {
+            if (existing.join()) {
+                coalesced.increment();
+                return (T) existing.await(deadline, cancellation);
+            } else if (inFlight.replace(key, existing, execution)) {
+                break;
+            }
+        }
+        executions.increment();
+        return (T) execution.run(key, query, deadline, cancellation);
+    }
+
+    public boolean isCoalesceEntities() {
+        return coalesceEntities;
+    }
+
+    /**
+     * @return Number of the executed queries
+     */
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * @return Number of the calls which received the result of another in-flight execution
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * One in-flight execution with the number of its callers.
+     */
+    private final class Execution {
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private final CancellationHandle cancellation = new CancellationHandle();
+        private int callers = 1;
+
+        /**
+         * @return false if all the callers left and the execution is aborted
+         */
+        synchronized boolean join() {
+            if (callers == 0) {
+                return false;
+            }
+            callers++;
+            return true;
+        }
+
+        void leave() {
+            boolean last;
+            synchronized (this) {
+                last = --callers == 0;
+            }
+            if (last) {
+                cancellation.cancel();
+            }
+        }
+
+        /**
+         * Execute the query for every caller. If the caller executing it has a deadline or a cancellation, the query
+         * runs on the executor and the caller waits for it like the others, so it returns within its own deadline.
+         */
+        Object run(Object key, Function<CancellationHandle, ?> query, QueryDeadline deadline,
+                   CancellationHandle caller) {
+            if (deadline == null && caller == null) {
+                complete(key, query);
+            } else {
+                try {
+                    executor.execute(() -> complete(key, query));
+                } catch (RejectedExecutionException ex) {
+                    complete(key, query);
+                }
+            }
+            return await(deadline, caller);
+        }
+
+        private void complete(Object key, Function<CancellationHandle, ?> query) {
+            try {
+                Object result = query.apply(cancellation);
+                inFlight.remove(key, this);
+                future.complete(result);
+            } catch (RuntimeException | Error ex) {
+                inFlight.remove(key, this);
+                future.completeExceptionally(ex);
+            }
+        }
+
+        Object await(QueryDeadline deadline, CancellationHandle caller) {
+            try {
+                if (deadline == null && caller == null) {
+                    return future.get();
+                }
+                while (true) {
+                    if (caller != null && caller.isCancelled()) {
+                        leave();
+                        throw new QueryCancelledException("Query is cancelled.");
+                    }
+                    long wait = POLL_NANOS;
+                    if (deadline != null) {
+                        long remaining = deadline.remaining(TimeUnit.NANOSECONDS);
+                        if (remaining <= 0) {
+                            leave();
+                            throw new QueryDeadlineExceededException("Query deadline is exceeded.");
+                        }
+                        wait = Math.min(wait, remaining);
+                    }
+                    try {
+                        return future.get(wait, TimeUnit.NANOSECONDS);
+                    } catch (TimeoutException ex) {
+                        //Poll the deadline and the cancellation of the caller again
+                    }
+                }
+            } catch (InterruptedException ex) {
+                leave();
+                Thread.currentThread().interrupt();
+                throw new QrsqlException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                } else if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                throw new QrsqlException(ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Daemon threads of the shared executions whose first caller has a deadline or a cancellation.
+     */
+    private static final class SharedExecutor {
+        private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "qrsql-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Help to create a {@link QueryCoalescer}
+     */
+    public static class Builder {
+        private boolean coalesceEntities = false;
+        private Executor executor;
+
+        /**
+         * Coalesce the queries which return entities too. The entities are fetched with a separate entity manager
+         * and returned detached.
+         *
+         * @return {@link Builder}
+         */
+        public Builder coalesceEntities() {
+            this.coalesceEntities = true;
+            return this;
+        }
+
+        /**
+         * Executor of the shared executions whose first caller has a deadline or a cancellation. Default: a cached
+         * pool of daemon threads.
+         *
+         * @param executor executor of the shared executions
+         * @return {@link Builder}
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public QueryCoalescer build() {
+            return new QueryCoalescer(this);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.execution;
+
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * Estimate the relative cost of a query. The {@link AdmissionController} classifies the queries into lanes by this
+ * cost.
+ *
+ * @author Balint Rudas
+ */
+public interface QueryCostEstimator {
+
+    /**
+     * Estimate the cost of a query.
+     *
+     * @param config      configuration of the query
+     * @param entityClass root entity of the query
+     * @param where       parsed where expression, null if the query has no where expression or it was given as a
+     *                    querydsl predicate
+     * @param offset      offset of the page or null
+     * @param size        size of the page or null
+     * @return cost of the query, at least 0
+     */
+    long estimate(QrsqlConfig<?> config, Class entityClass, Node where, Long offset, Long size);
+}
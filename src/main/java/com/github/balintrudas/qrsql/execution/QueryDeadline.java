@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.execution;
+
+import com.github.balintrudas.qrsql.exception.QueryDeadlineExceededException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Absolute point in time until a query can run. The deadline is applied to the executed statements as query timeout,
+ * rounded up to whole seconds because the JDBC timeouts have seconds granularity.
+ *
+ * @author Balint Rudas
+ */
+public final class QueryDeadline {
+
+    private final long deadlineNanos;
+
+    private QueryDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Create a deadline relative to now.
+     *
+     * @param timeout time budget of the query
+     * @param unit    unit of the timeout
+     * @return {@link QueryDeadline}
+     */
+    public static QueryDeadline after(long timeout, TimeUnit unit) {
+        return new QueryDeadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Return the earlier deadline.
+     *
+     * @param first  deadline or null
+     * @param second deadline or null
+     * @return the earlier deadline or null if both are null
+     */
+    public static QueryDeadline earliest(QueryDeadline first, QueryDeadline second) {
+        if (first == null) {
+            return second;
+        } else if (second == null) {
+            return first;
+        }
+        return first.deadlineNanos - second.deadlineNanos <= 0 ? first : second;
+    }
+
+    /**
+     * @param unit unit of the result
+     * @return Remaining time, negative if the deadline is exceeded
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @param budget required time budget
+     * @param unit   unit of the budget
+     * @return true if at least the given budget is remaining
+     */
+    public boolean hasRemaining(long budget, TimeUnit unit) {
+        return deadlineNanos - System.nanoTime() >= unit.toNanos(budget);
+    }
+
+    /**
+     * Return the remaining time as statement timeout.
+     *
+     * @return Remaining whole seconds, at least 1
+     * @throws QueryDeadlineExceededException If the deadline is exceeded
+     */
+    public int getTimeoutSeconds() throws QueryDeadlineExceededException {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            throw new QueryDeadlineExceededException("Query deadline is exceeded.");
+        }
+        long seconds = (remaining + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        return (int) Math.min(Integer.MAX_VALUE, seconds);
+    }
+}
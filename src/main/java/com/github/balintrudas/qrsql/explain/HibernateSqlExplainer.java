@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.explain;
+
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link SqlExplainer} of Hibernate. The JPQL is translated with the query plan cache of the session factory and the
+ * SQL is explained on the JDBC connection of a separate entity manager with the <tt>EXPLAIN</tt> prefix, without
+ * bound parameters. The database must support explaining a parameterized statement, like H2. Hibernate is accessed
+ * reflectively, with other providers no SQL is returned.
+ *
+ * @author Balint Rudas
+ */
+public class HibernateSqlExplainer implements SqlExplainer {
+
+    public static final HibernateSqlExplainer INSTANCE = new HibernateSqlExplainer("EXPLAIN ");
+
+    private static final String SESSION_FACTORY = "org.hibernate.engine.spi.SessionFactoryImplementor";
+    private static final String SESSION = "org.hibernate.Session";
+    private static final String WORK = "org.hibernate.jdbc.Work";
+
+    private final String explainPrefix;
+
+    /**
+     * @param explainPrefix prefix of the SQL statement which returns its plan, e.g. <tt>EXPLAIN </tt>
+     */
+    public HibernateSqlExplainer(String explainPrefix) {
+        this.explainPrefix = explainPrefix;
+    }
+
+    @Override
+    public List<String> toSql(EntityManager entityManager, String jpql) {
+        ClassLoader classLoader = entityManager.getClass().getClassLoader();
+        try {
+            Class<?> sessionFactoryClass = Class.forName(SESSION_FACTORY, false, classLoader);
+            Object sessionFactory = entityManager.getEntityManagerFactory().unwrap(sessionFactoryClass);
+            Object queryPlanCache = sessionFactoryClass.getMethod("getQueryPlanCache").invoke(sessionFactory);
+            Method getHQLQueryPlan = queryPlanCache.getClass()
+                    .getMethod("getHQLQueryPlan", String.class, boolean.class, java.util.Map.class);
+            Object queryPlan = getHQLQueryPlan.invoke(queryPlanCache, jpql, false, Collections.emptyMap());
+            String[] sqlStrings = (String[]) queryPlan.getClass().getMethod("getSqlStrings").invoke(queryPlan);
+            return Arrays.asList(sqlStrings);
+        } catch (ClassNotFoundException | javax.persistence.PersistenceException ex) {
+            return Collections.emptyList();
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new QrsqlException(ex);
+        } catch (InvocationTargetException ex) {
+            throw new QrsqlException(ex.getCause());
+        }
+    }
+
+    @Override
+    public List<String> explain(EntityManager entityManager, String sql) {
+        List<String> plan = new ArrayList<>();
+        EntityManager explainEntityManager = entityManager.getEntityManagerFactory().createEntityManager();
+        try {
+            ClassLoader classLoader = entityManager.getClass().getClassLoader();
+            Class<?> sessionClass = Class.forName(SESSION, false, classLoader);
+            Class<?> workClass = Class.forName(WORK, false, classLoader);
+            Object work = Proxy.newProxyInstance(classLoader, new Class[]{workClass}, (proxy, method, args) -> {
+                if ("execute".equals(method.getName())) {
+                    explain((Connection) args[0], sql, plan);
+                    return null;
+                }
+                return method.invoke(this, args);
+            });
+            Object session = explainEntityManager.unwrap(sessionClass);
+            sessionClass.getMethod("doWork", workClass).invoke(session, work);
+            return plan;
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException ex) {
+            throw new QrsqlException(ex);
+        } catch (InvocationTargetException ex) {
+            throw new QrsqlException(ex.getCause());
+        } finally {
+            explainEntityManager.close();
+        }
+    }
+
+    private void explain(Connection connection, String sql, List<String> plan) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(explainPrefix + sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            int columnCount = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= columnCount; i++) {
+                    if (i > 1) {
+                        row.append(" | ");
+                    }
+                    row.append(resultSet.getString(i));
+                }
+                plan.add(row.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.explain;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Explanation of a query without fetching its rows: the canonical parsed where expression, the predicate, the JPQL with
+ * its bind parameters, the SQL statements and optionally the plan of the database.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlExplanation {
+
+    private final String parsedTree;
+    private final String predicate;
+    private final String jpql;
+    private final Map<String, Object> parameters;
+    private final List<String> sql;
+    private final List<String> databasePlan;
+
+    public QrsqlExplanation(String parsedTree, String predicate, String jpql, Map<String, Object> parameters,
+                            List<String> sql, List<String> databasePlan) {
+        this.parsedTree = parsedTree;
+        this.predicate = predicate;
+        this.jpql = jpql;
+        this.parameters = Collections.unmodifiableMap(parameters);
+        this.sql = Collections.unmodifiableList(sql);
+        this.databasePlan = databasePlan != null ? Collections.unmodifiableList(databasePlan) : null;
+    }
+
+    /**
+     * @return Canonical form of the parsed where expression or null if the where expression is a querydsl predicate
+     */
+    public String getParsedTree() {
+        return parsedTree;
+    }
+
+    /**
+     * @return Querydsl predicate of the where expression or null if there is no where expression
+     */
+    public String getPredicate() {
+        return predicate;
+    }
+
+    public String getJpql() {
+        return jpql;
+    }
+
+    /**
+     * @return Bind parameters of the JPQL by their positional labels, e.g. <tt>?1</tt>
+     */
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return SQL statements of the JPQL, empty if the {@link SqlExplainer} can't translate it
+     */
+    public List<String> getSql() {
+        return sql;
+    }
+
+    /**
+     * @return Rows of the database plan or null if it is not requested
+     */
+    public List<String> getDatabasePlan() {
+        return databasePlan;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("where: ").append(parsedTree).append('\n')
+                .append("predicate: ").append(predicate).append('\n')
+                .append("jpql: ").append(jpql).append('\n')
+                .append("parameters: ").append(parameters).append('\n');
+        for (String statement : sql) {
+            builder.append("sql: ").append(statement).append('\n');
+        }
+        if (databasePlan != null) {
+            for (String row : databasePlan) {
+                builder.append("plan: ").append(row).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.explain;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Translate the JPQL of a query to SQL and explain the SQL with the database. JPA has no standard way to do it, so it
+ * depends on the provider and the database.
+ *
+ * @author Balint Rudas
+ */
+public interface SqlExplainer {
+
+    /**
+     * Translate the JPQL to SQL.
+     *
+     * @param entityManager entity manager of the query
+     * @param jpql          JPQL of the query
+     * @return SQL statements, empty if the JPQL can't be translated
+     */
+    List<String> toSql(EntityManager entityManager, String jpql);
+
+    /**
+     * Explain the SQL statement with the database, the parameters are not bound.
+     *
+     * @param entityManager entity manager of the query
+     * @param sql           SQL statement
+     * @return Rows of the database plan
+     */
+    List<String> explain(EntityManager entityManager, String sql);
+}
@@ -33,6 +33,8 @@ import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.SimpleExpression;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -72,4 +74,14 @@ public class BaseFieldTypeHandler implements FieldTypeHandler {
         }
         return null;
     }
+
+    /**
+     * Return the converted value of a multi value operator as collection, a single value is wrapped.
+     *
+     * @param value converted value
+     * @return {@link Collection}
+     */
+    protected static Collection asCollection(Object value) {
+        return value instanceof Collection ? (Collection) value : Collections.singletonList(value);
+    }
 }
@@ -36,6 +36,7 @@ import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.SimpleExpression;
 
 import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -59,12 +60,12 @@ public class DateFieldTypeHandler extends BaseFieldTypeHandler implements FieldT
     @Override
     public Object getValue(List<String> values, FieldMetadata fieldMetadata, QrsqlConfig qrsqlConfig) {
         List<Date> converted = new ArrayList<>();
-        String dateFormat = qrsqlConfig.getDateFormat();
+        SimpleDateFormat dateFormatter = qrsqlConfig.getDateFormatter();
         for (String item : values) {
             try {
                 Date parsedDate = null;
                 if(!item.isEmpty()) {
-                    parsedDate = dateFormat != null ? DateUtil.parse(item, dateFormat) : DateUtil.parse(item);
+                    parsedDate = dateFormatter != null ? dateFormatter.parse(item) : DateUtil.parse(item);
                     if (parsedDate == null) {
                         parsedDate = new Date(Long.valueOf(item));
                     }
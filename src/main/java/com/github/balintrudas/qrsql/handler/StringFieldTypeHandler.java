@@ -41,6 +41,8 @@ import java.util.List;
  */
 public class StringFieldTypeHandler extends BaseFieldTypeHandler implements FieldTypeHandler {
 
+    private final StringPredicatePlanner planner = new StringPredicatePlanner();
+
     @Override
     public Boolean supportsType(Class type) {
         return String.class.equals(type);
@@ -58,36 +60,21 @@ public class StringFieldTypeHandler extends BaseFieldTypeHandler implements Fiel
 
     @Override
     public BooleanExpression getExpression(Path path, FieldMetadata fieldMetadata, Object value, QrsqlOperator operator, QrsqlConfig qrsqlConfig) {
-        if (operator.equals(Operator.EQUALS_IGNORECASE)) {
-            return ((StringPath) path).equalsIgnoreCase((String) value);
-        } else if (operator.equals(Operator.NOTEQUALS_IGNORECASE)) {
-            return ((StringPath) path).notEqualsIgnoreCase((String) value);
-        } else if (operator.equals(Operator.LIKE)) {
-            return ((StringPath) path).like((String) value);
-        } else if (operator.equals(Operator.LIKE_IGNORECASE)) {
-            return ((StringPath) path).likeIgnoreCase((String) value);
-        } else if (operator.equals(Operator.STARTWITH)) {
-            return ((StringPath) path).startsWith((String) value);
-        } else if (operator.equals(Operator.STARTWITH_IGNORECASE)) {
-            return ((StringPath) path).startsWithIgnoreCase((String) value);
-        } else if (operator.equals(Operator.ENDWITH)) {
-            return ((StringPath) path).endsWith((String) value);
-        } else if (operator.equals(Operator.ENDWITH_IGNORECASE)) {
-            return ((StringPath) path).endsWithIgnoreCase((String) value);
-        } else if (operator.equals(Operator.ISEMPTY)) {
+        if (operator.equals(Operator.ISEMPTY)) {
             return ((StringPath) path).isEmpty();
         } else if (operator.equals(Operator.ISNOTEMPTY)) {
             return ((StringPath) path).isNotEmpty();
-        } else if (operator.equals(Operator.CONTAINS)) {
-            return ((StringPath) path).contains((String) value);
-        } else if (operator.equals(Operator.CONTAINS_IGNORECASE)) {
-            return ((StringPath) path).containsIgnoreCase((String) value);
         } else if (operator.equals(Operator.IN)) {
             return ((SimpleExpression) path).in((List<String>) value);
         } else if (operator.equals(Operator.NOTIN)) {
             return ((SimpleExpression) path).notIn((List<String>) value);
-        } else {
-            return super.getExpression(path, fieldMetadata, value, operator, qrsqlConfig);
+        } else if (value instanceof String) {
+            BooleanExpression expression = this.planner.plan((StringPath) path, (String) value, operator,
+                    qrsqlConfig.getStringPredicateDialect());
+            if (expression != null) {
+                return expression;
+            }
         }
+        return super.getExpression(path, fieldMetadata, value, operator, qrsqlConfig);
     }
 }
@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.handler;
+
+import com.github.balintrudas.qrsql.dialect.StringPredicateDialect;
+import com.github.balintrudas.qrsql.operator.Operator;
+import com.github.balintrudas.qrsql.operator.QrsqlOperator;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.StringPath;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plan the string predicates to index friendly forms. A like pattern without wildcard becomes an equality, a pattern
+ * with only a trailing <tt>%</tt> becomes a <tt>startsWith</tt>, and the ignore case operators are emitted by the
+ * {@link StringPredicateDialect}. The patterns of the like operators have no escape character, <tt>!</tt> is a literal
+ * in every form: the general like is emitted with an explicit {@link StringPredicateDialect#ESCAPE} escape and the
+ * pattern escaped by {@link StringPredicateDialect#escapeLiterals(String)}, like the ignore case dialects. Predicates
+ * with a leading wildcard can't use an index, they are logged with warning level, at most once per selector and
+ * operator in the warning interval.
+ *
+ * @author Balint Rudas
+ */
+public class StringPredicatePlanner {
+
+    private static final Logger LOGGER = Logger.getLogger(StringPredicatePlanner.class.getName());
+    private static final int MAX_WARNED_PREDICATES = 1024;
+
+    private final long warningInterval;
+    private final ConcurrentMap<String, Long> lastWarnings = new ConcurrentHashMap<>();
+
+    public StringPredicatePlanner() {
+        this(1, TimeUnit.MINUTES);
+    }
+
+    public StringPredicatePlanner(long warningInterval, TimeUnit unit) {
+        this.warningInterval = unit.toNanos(warningInterval);
+    }
+
+    /**
+     * Plan the predicate of a string operator.
+     *
+     * @param path     string path
+     * @param value    value of the operator
+     * @param operator operator
+     * @param dialect  dialect of the ignore case operators
+     * @return {@link BooleanExpression} or null if the operator is not a string operator
+     */
+    public BooleanExpression plan(StringPath path, String value, QrsqlOperator operator, StringPredicateDialect dialect) {
+        if (operator.equals(Operator.LIKE)) {
+            return like(path, value, operator);
+        } else if (operator.equals(Operator.NOTLIKE)) {
+            return like(path, value, operator).not();
+        } else if (operator.equals(Operator.LIKE_IGNORECASE)) {
+            return likeIgnoreCase(path, value, operator, dialect);
+        } else if (operator.equals(Operator.EQUALS_IGNORECASE)) {
+            return dialect.equalsIgnoreCase(path, value);
+        } else if (operator.equals(Operator.NOTEQUALS_IGNORECASE)) {
+            return dialect.equalsIgnoreCase(path, value).not();
+        } else if (operator.equals(Operator.STARTWITH)) {
+            return path.startsWith(value);
+        } else if (operator.equals(Operator.STARTWITH_IGNORECASE)) {
+            return dialect.likeIgnoreCase(path, StringPredicateDialect.escape(value) + "%");
+        } else if (operator.equals(Operator.ENDWITH)) {
+            warnLeadingWildcard(path, operator, value);
+            return path.endsWith(value);
+        } else if (operator.equals(Operator.ENDWITH_IGNORECASE)) {
+            warnLeadingWildcard(path, operator, value);
+            return dialect.likeIgnoreCase(path, "%" + StringPredicateDialect.escape(value));
+        } else if (operator.equals(Operator.CONTAINS)) {
+            warnLeadingWildcard(path, operator, value);
+            return path.contains(value);
+        } else if (operator.equals(Operator.CONTAINS_IGNORECASE)) {
+            warnLeadingWildcard(path, operator, value);
+            return dialect.likeIgnoreCase(path, "%" + StringPredicateDialect.escape(value) + "%");
+        }
+        return null;
+    }
+
+    private BooleanExpression like(StringPath path, String pattern, QrsqlOperator operator) {
+        LikePattern likePattern = new LikePattern(pattern);
+        if (likePattern.isExact()) {
+            return path.eq(likePattern.getLiteral());
+        } else if (likePattern.isPrefix()) {
+            return path.startsWith(likePattern.getLiteral());
+        }
+        if (likePattern.hasLeadingWildcard()) {
+            warnLeadingWildcard(path, operator, pattern);
+        }
+        return path.like(StringPredicateDialect.escapeLiterals(pattern), StringPredicateDialect.ESCAPE);
+    }
+
+    private BooleanExpression likeIgnoreCase(StringPath path, String pattern, QrsqlOperator operator,
+                                             StringPredicateDialect dialect) {
+        LikePattern likePattern = new LikePattern(pattern);
+        if (likePattern.isExact()) {
+            return dialect.equalsIgnoreCase(path, likePattern.getLiteral());
+        } else if (likePattern.isPrefix()) {
+            return dialect.likeIgnoreCase(path, StringPredicateDialect.escape(likePattern.getLiteral()) + "%");
+        }
+        if (likePattern.hasLeadingWildcard()) {
+            warnLeadingWildcard(path, operator, pattern);
+        }
+        return dialect.likeIgnoreCase(path, StringPredicateDialect.escapeLiterals(pattern));
+    }
+
+    private void warnLeadingWildcard(StringPath path, QrsqlOperator operator, String value) {
+        if (!LOGGER.isLoggable(Level.WARNING)) {
+            return;
+        }
+        String key = path.toString() + ' ' + operator.getSymbols()[0];
+        long now = System.nanoTime();
+        Long lastWarning = lastWarnings.get(key);
+        if (lastWarning != null && now - lastWarning < warningInterval) {
+            return;
+        }
+        if (lastWarnings.size() >= MAX_WARNED_PREDICATES) {
+            lastWarnings.clear();
+        }
+        boolean first = lastWarning == null ? lastWarnings.putIfAbsent(key, now) == null :
+                lastWarnings.replace(key, lastWarning, now);
+        if (first) {
+            LOGGER.log(Level.WARNING, "Non-sargable Qrsql predicate, the leading wildcard prevents index usage: " +
+                    key + " '" + value + "'");
+        }
+    }
+
+    /**
+     * Structure of a like pattern without escape character.
+     */
+    static final class LikePattern {
+
+        private final String literal;
+        private final boolean wildcard;
+        private final boolean prefix;
+        private final boolean leadingWildcard;
+
+        LikePattern(String pattern) {
+            StringBuilder literalBuilder = new StringBuilder(pattern.length());
+            boolean wildcardSeen = false;
+            boolean onlyTrailingPercent = true;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '%') {
+                    wildcardSeen = true;
+                } else if (c == '_') {
+                    wildcardSeen = true;
+                    onlyTrailingPercent = false;
+                } else {
+                    onlyTrailingPercent &= !wildcardSeen;
+                    literalBuilder.append(c);
+                }
+            }
+            this.literal = literalBuilder.toString();
+            this.wildcard = wildcardSeen;
+            this.prefix = wildcardSeen && onlyTrailingPercent && literal.length() > 0;
+            this.leadingWildcard = !pattern.isEmpty() && (pattern.charAt(0) == '%' || pattern.charAt(0) == '_');
+        }
+
+        boolean isExact() {
+            return !wildcard;
+        }
+
+        boolean isPrefix() {
+            return prefix;
+        }
+
+        boolean hasLeadingWildcard() {
+            return leadingWildcard;
+        }
+
+        String getLiteral() {
+            return literal;
+        }
+    }
+}
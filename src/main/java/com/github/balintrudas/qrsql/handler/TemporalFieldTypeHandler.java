@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.handler;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.operator.Operator;
+import com.github.balintrudas.qrsql.operator.QrsqlOperator;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.TemporalExpression;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Handler of the <tt>java.time</tt> fields: {@link LocalDate}, {@link LocalDateTime}, {@link Instant} and
+ * {@link OffsetDateTime}. The values are parsed with immutable ISO formatters into the type of the field, so the
+ * parameters are bound with the column type and the database doesn't cast the column. The date format of the
+ * configuration applies only to the {@link java.util.Date} fields.
+ * <ul>
+ * <li>{@link LocalDate}: <tt>2018-01-31</tt></li>
+ * <li>{@link LocalDateTime}: <tt>2018-01-31</tt>, <tt>2018-01-31T10:15</tt> or <tt>2018-01-31 10:15:30</tt></li>
+ * <li>{@link Instant}: <tt>2018-01-31T10:15:30Z</tt> or epoch milliseconds</li>
+ * <li>{@link OffsetDateTime}: <tt>2018-01-31T10:15:30+01:00</tt></li>
+ * </ul>
+ *
+ * @author Balint Rudas
+ */
+public class TemporalFieldTypeHandler extends BaseFieldTypeHandler implements FieldTypeHandler {
+
+    private static final DateTimeFormatter LOCAL_DATE_TIME = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .optionalStart().appendLiteral('T').append(DateTimeFormatter.ISO_LOCAL_TIME).optionalEnd()
+            .optionalStart().appendLiteral(' ').append(DateTimeFormatter.ISO_LOCAL_TIME).optionalEnd()
+            .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+            .toFormatter();
+    private static final Map<Class, Function<String, Object>> PARSERS;
+
+    static {
+        Map<Class, Function<String, Object>> parsers = new HashMap<>();
+        parsers.put(LocalDate.class, value -> LocalDate.parse(value, DateTimeFormatter.ISO_LOCAL_DATE));
+        parsers.put(LocalDateTime.class, value -> LocalDateTime.parse(value, LOCAL_DATE_TIME));
+        parsers.put(Instant.class, TemporalFieldTypeHandler::parseInstant);
+        parsers.put(OffsetDateTime.class, value -> OffsetDateTime.parse(value, DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        PARSERS = Collections.unmodifiableMap(parsers);
+    }
+
+    @Override
+    public Boolean supportsType(Class type) {
+        return PARSERS.containsKey(type);
+    }
+
+    @Override
+    public Path getPath(FieldMetadata fieldMetadata, Path parentPath, QrsqlConfig qrsqlConfig) {
+        if (LocalDate.class.equals(fieldMetadata.getType())) {
+            return Expressions.datePath(fieldMetadata.getType(), parentPath, fieldMetadata.getFieldSelector());
+        }
+        return Expressions.dateTimePath(fieldMetadata.getType(), parentPath, fieldMetadata.getFieldSelector());
+    }
+
+    @Override
+    public Object getValue(List<String> values, FieldMetadata fieldMetadata, QrsqlConfig qrsqlConfig) {
+        Function<String, Object> parser = PARSERS.get(fieldMetadata.getType());
+        List<Object> converted = new ArrayList<>(values.size());
+        for (String item : values) {
+            converted.add(item.isEmpty() ? null : parser.apply(item));
+        }
+        return values.size() > 1 ? converted : converted.get(0);
+    }
+
+    @Override
+    public BooleanExpression getExpression(Path path, FieldMetadata fieldMetadata, Object value, QrsqlOperator operator, QrsqlConfig qrsqlConfig) {
+        if (operator.equals(Operator.BEFORE)) {
+            return ((TemporalExpression) path).before((Comparable) value);
+        } else if (operator.equals(Operator.AFTER)) {
+            return ((TemporalExpression) path).after((Comparable) value);
+        } else if (operator.equals(Operator.GREATER)) {
+            return ((TemporalExpression) path).gt((Comparable) value);
+        } else if (operator.equals(Operator.GREATER_OR_EQUALS)) {
+            return ((TemporalExpression) path).goe((Comparable) value);
+        } else if (operator.equals(Operator.LESS_THAN)) {
+            return ((TemporalExpression) path).lt((Comparable) value);
+        } else if (operator.equals(Operator.LESS_THAN_OR_EQUALS)) {
+            return ((TemporalExpression) path).loe((Comparable) value);
+        } else if (operator.equals(Operator.IN)) {
+            return ((TemporalExpression) path).in(asCollection(value));
+        } else if (operator.equals(Operator.NOTIN)) {
+            return ((TemporalExpression) path).notIn(asCollection(value));
+        } else {
+            return super.getExpression(path, fieldMetadata, value, operator, qrsqlConfig);
+        }
+    }
+
+    private static Object parseInstant(String value) {
+        for (int i = value.startsWith("-") ? 1 : 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return Instant.parse(value);
+            }
+        }
+        return Instant.ofEpochMilli(Long.parseLong(value));
+    }
+}
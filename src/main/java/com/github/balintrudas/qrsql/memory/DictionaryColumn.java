@@ -0,0 +1,203 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import com.github.balintrudas.qrsql.operator.Operator;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Dictionary encoded column of the string, enum and boolean fields. The rows store the code of their value in one
+ * byte while the dictionary has at most 256 values, in four bytes otherwise. A comparison is evaluated once per
+ * dictionary value into a lookup table, then the rows are selected by a table lookup of their code.
+ *
+ * @author Balint Rudas
+ */
+final class DictionaryColumn extends SnapshotColumn {
+
+    private final Class type;
+    private final List<Object> dictionary = new ArrayList<>();
+    private final Map<Object, Integer> codes = new HashMap<>();
+    private ByteBuffer byteCodes;
+    private IntBuffer intCodes;
+
+    DictionaryColumn(String name, Class type, int capacity) {
+        super(name);
+        this.type = type;
+        this.byteCodes = allocate(capacity);
+        if (type == boolean.class || type == Boolean.class) {
+            encode(Boolean.FALSE);
+            encode(Boolean.TRUE);
+        } else if (type.isEnum()) {
+            for (Object constant : type.getEnumConstants()) {
+                encode(constant);
+            }
+        }
+    }
+
+    static boolean supportsType(Class type) {
+        return type == String.class || type == boolean.class || type == Boolean.class || type.isEnum();
+    }
+
+    /**
+     * @return Number of the distinct values
+     */
+    int getDictionarySize() {
+        return this.dictionary.size();
+    }
+
+    @Override
+    protected void appendValue(int row, Object value) {
+        int code = value != null ? encode(value) : 0;
+        if (this.intCodes == null && code > 0xFF) {
+            IntBuffer widened = allocate(Math.max(capacity(), row + 1) * 4L).asIntBuffer();
+            for (int i = 0; i < row; i++) {
+                widened.put(i, this.byteCodes.get(i) & 0xFF);
+            }
+            this.intCodes = widened;
+            this.byteCodes = null;
+        }
+        if (row == capacity()) {
+            grow(row);
+        }
+        if (this.intCodes != null) {
+            this.intCodes.put(row, code);
+        } else {
+            this.byteCodes.put(row, (byte) code);
+        }
+    }
+
+    @Override
+    long[] filter(Operator operator, Object value) {
+        boolean[] table = new boolean[this.dictionary.size()];
+        switch (operator) {
+            case EQUALS:
+            case NOTEQUALS:
+            case IN:
+            case NOTIN:
+                boolean hasValue = false;
+                Collection<?> items = value instanceof Collection ? (Collection<?>) value :
+                        Collections.singletonList(value);
+                for (Object item : items) {
+                    Integer code = item != null ? this.codes.get(item) : null;
+                    if (code != null) {
+                        table[code] = true;
+                    }
+                    hasValue |= item != null;
+                }
+                if (!hasValue) {
+                    return new long[words(this.rows)];
+                }
+                long[] selection = lookup(table);
+                return operator == Operator.EQUALS || operator == Operator.IN ? selection : complement(selection);
+            case ISTRUE:
+            case ISFALSE:
+                if (this.type != boolean.class && this.type != Boolean.class) {
+                    return null;
+                }
+                Integer code = this.codes.get(operator == Operator.ISTRUE);
+                if (code != null) {
+                    table[code] = true;
+                }
+                return lookup(table);
+            default:
+                break;
+        }
+        Predicate<String> predicate = this.type == String.class && value instanceof String ?
+                StringMatcher.get(operator, (String) value) : null;
+        if (predicate == null) {
+            return null;
+        }
+        for (int code = 0; code < table.length; code++) {
+            table[code] = predicate.test((String) this.dictionary.get(code));
+        }
+        long[] selection = lookup(table);
+        return StringMatcher.isNegated(operator) ? complement(selection) : selection;
+    }
+
+    private long[] lookup(boolean[] table) {
+        long[] selection = new long[words(this.rows)];
+        int rows = this.rows;
+        ByteBuffer byteCodes = this.byteCodes;
+        IntBuffer intCodes = this.intCodes;
+        for (int word = 0; word < selection.length; word++) {
+            int base = word << 6;
+            int end = Math.min(64, rows - base);
+            long bits = 0L;
+            if (intCodes != null) {
+                for (int bit = 0; bit < end; bit++) {
+                    bits |= (table[intCodes.get(base + bit)] ? 1L : 0L) << bit;
+                }
+            } else {
+                for (int bit = 0; bit < end; bit++) {
+                    bits |= (table[byteCodes.get(base + bit) & 0xFF] ? 1L : 0L) << bit;
+                }
+            }
+            selection[word] = bits & ~this.nulls[word];
+        }
+        return selection;
+    }
+
+    private int encode(Object value) {
+        Integer code = this.codes.get(value);
+        if (code == null) {
+            code = this.dictionary.size();
+            this.dictionary.add(value);
+            this.codes.put(value, code);
+        }
+        return code;
+    }
+
+    private int capacity() {
+        return this.intCodes != null ? this.intCodes.capacity() : this.byteCodes.capacity();
+    }
+
+    private void grow(int rows) {
+        long capacity = Math.max(rows * 2L, 8L);
+        if (this.intCodes != null) {
+            IntBuffer grown = allocate(capacity * 4L).asIntBuffer();
+            IntBuffer source = this.intCodes.duplicate();
+            source.position(0);
+            source.limit(rows);
+            grown.put(source);
+            this.intCodes = grown;
+        } else {
+            ByteBuffer grown = allocate(capacity);
+            ByteBuffer source = this.byteCodes.duplicate();
+            source.position(0);
+            source.limit(rows);
+            grown.put(source);
+            this.byteCodes = grown;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import com.github.balintrudas.qrsql.operator.Operator;
+
+import java.nio.DoubleBuffer;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Off-heap <tt>double</tt> column of the float and double fields. The strict comparisons are converted to closed
+ * ranges with the adjacent double values.
+ *
+ * @author Balint Rudas
+ */
+final class DoubleColumn extends SnapshotColumn {
+
+    private DoubleBuffer values;
+
+    DoubleColumn(String name, int capacity) {
+        super(name);
+        this.values = allocate(capacity * 8L).asDoubleBuffer();
+    }
+
+    static boolean supportsType(Class type) {
+        return type == double.class || type == float.class || type == Double.class || type == Float.class;
+    }
+
+    @Override
+    protected void appendValue(int row, Object value) {
+        if (row == this.values.capacity()) {
+            DoubleBuffer grown = allocate(Math.max(row * 2L, 8L) * 8L).asDoubleBuffer();
+            DoubleBuffer source = this.values.duplicate();
+            source.position(0);
+            source.limit(row);
+            grown.put(source);
+            this.values = grown;
+        }
+        this.values.put(row, value != null ? ((Number) value).doubleValue() : 0D);
+    }
+
+    @Override
+    long[] filter(Operator operator, Object value) {
+        if (operator == Operator.IN || operator == Operator.NOTIN) {
+            long[] selection = new long[words(this.rows)];
+            Collection<?> items = value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+            for (Object item : items) {
+                if (item != null) {
+                    double key = ((Number) item).doubleValue();
+                    long[] matches = range(key, key);
+                    for (int word = 0; word < selection.length; word++) {
+                        selection[word] |= matches[word];
+                    }
+                }
+            }
+            return operator == Operator.IN ? selection : complement(selection);
+        }
+        if (value == null) {
+            return new long[words(this.rows)];
+        }
+        double key = ((Number) value).doubleValue();
+        switch (operator) {
+            case EQUALS:
+                return range(key, key);
+            case NOTEQUALS:
+                return complement(range(key, key));
+            case GREATER:
+                return range(Math.nextUp(key), Double.POSITIVE_INFINITY);
+            case GREATER_OR_EQUALS:
+                return range(key, Double.POSITIVE_INFINITY);
+            case LESS_THAN:
+                return range(Double.NEGATIVE_INFINITY, Math.nextDown(key));
+            case LESS_THAN_OR_EQUALS:
+                return range(Double.NEGATIVE_INFINITY, key);
+            default:
+                return null;
+        }
+    }
+
+    private long[] range(double low, double high) {
+        long[] selection = new long[words(this.rows)];
+        DoubleBuffer values = this.values;
+        int rows = this.rows;
+        for (int word = 0; word < selection.length; word++) {
+            int base = word << 6;
+            int end = Math.min(64, rows - base);
+            long bits = 0L;
+            for (int bit = 0; bit < end; bit++) {
+                double value = values.get(base + bit);
+                bits |= (value >= low & value <= high ? 1L : 0L) << bit;
+            }
+            selection[word] = bits & ~this.nulls[word];
+        }
+        return selection;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Dynamic interval tree for stabbing queries: a treap ordered by the low bound of the intervals, each node is
+ * augmented with the maximum high bound of its subtree. Insertion and removal take O(log n) expected time, a stabbing
+ * query O(log n + k). A null bound is unbounded.
+ *
+ * @author Balint Rudas
+ */
+final class IntervalTree {
+
+    private final Random random = new Random();
+    private Node root;
+    private long sequence;
+    private int size;
+
+    /**
+     * Add an interval.
+     *
+     * @return Handle of the interval for {@link #remove(Object)}
+     */
+    Object add(Comparable low, boolean lowInclusive, Comparable high, boolean highInclusive, int value) {
+        Node node = new Node(low, lowInclusive, high, highInclusive, value, this.sequence++, this.random.nextInt());
+        this.root = insert(this.root, node);
+        this.size++;
+        return node;
+    }
+
+    void remove(Object handle) {
+        Node node = (Node) handle;
+        int before = this.size;
+        this.root = delete(this.root, node);
+        if (before == this.size) {
+            throw new IllegalStateException("Interval is not in the tree");
+        }
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Call the consumer with the value of every interval which contains the point.
+     */
+    void stab(Comparable point, IntConsumer consumer) {
+        stab(this.root, point, consumer);
+    }
+
+    private void stab(Node node, Comparable point, IntConsumer consumer) {
+        while (node != null) {
+            if (!reaches(node.maxHigh, node.maxHighInclusive, point)) {
+                return;
+            }
+            stab(node.left, point, consumer);
+            if (!startsBefore(node, point)) {
+                return;
+            }
+            if (reaches(node.high, node.highInclusive, point)) {
+                consumer.accept(node.value);
+            }
+            node = node.right;
+        }
+    }
+
+    private Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (compareLow(inserted, node) < 0) {
+            node.left = insert(node.left, inserted);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, inserted);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node delete(Node node, Node deleted) {
+        if (node == null) {
+            return null;
+        }
+        if (node == deleted) {
+            this.size--;
+            return merge(node.left, node.right);
+        }
+        if (compareLow(deleted, node) < 0) {
+            node.left = delete(node.left, deleted);
+        } else {
+            node.right = delete(node.right, deleted);
+        }
+        update(node);
+        return node;
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        } else if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.maxHigh = node.high;
+        node.maxHighInclusive = node.highInclusive;
+        updateMax(node, node.left);
+        updateMax(node, node.right);
+    }
+
+    private static void updateMax(Node node, Node child) {
+        if (child != null && compareHigh(child.maxHigh, child.maxHighInclusive, node.maxHigh,
+                node.maxHighInclusive) > 0) {
+            node.maxHigh = child.maxHigh;
+            node.maxHighInclusive = child.maxHighInclusive;
+        }
+    }
+
+    /**
+     * Order of the low bounds: unbounded first, then by value, the inclusive bound before the exclusive one, then by
+     * insertion order.
+     */
+    private static int compareLow(Node left, Node right) {
+        if (left.low == null || right.low == null) {
+            if (left.low != right.low) {
+                return left.low == null ? -1 : 1;
+            }
+        } else {
+            int compare = left.low.compareTo(right.low);
+            if (compare != 0) {
+                return compare;
+            }
+            if (left.lowInclusive != right.lowInclusive) {
+                return left.lowInclusive ? -1 : 1;
+            }
+        }
+        return Long.compare(left.sequence, right.sequence);
+    }
+
+    private static int compareHigh(Comparable left, boolean leftInclusive, Comparable right, boolean rightInclusive) {
+        if (left == null || right == null) {
+            return left == right ? 0 : (left == null ? 1 : -1);
+        }
+        int compare = left.compareTo(right);
+        if (compare != 0) {
+            return compare;
+        }
+        return leftInclusive == rightInclusive ? 0 : (leftInclusive ? 1 : -1);
+    }
+
+    private static boolean reaches(Comparable high, boolean highInclusive, Comparable point) {
+        if (high == null) {
+            return true;
+        }
+        int compare = high.compareTo(point);
+        return compare > 0 || (compare == 0 && highInclusive);
+    }
+
+    private static boolean startsBefore(Node node, Comparable point) {
+        if (node.low == null) {
+            return true;
+        }
+        int compare = node.low.compareTo(point);
+        return compare < 0 || (compare == 0 && node.lowInclusive);
+    }
+
+    private static final class Node {
+
+        private final Comparable low;
+        private final boolean lowInclusive;
+        private final Comparable high;
+        private final boolean highInclusive;
+        private final int value;
+        private final long sequence;
+        private final int priority;
+        private Comparable maxHigh;
+        private boolean maxHighInclusive;
+        private Node left;
+        private Node right;
+
+        Node(Comparable low, boolean lowInclusive, Comparable high, boolean highInclusive, int value, long sequence,
+             int priority) {
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+            this.value = value;
+            this.sequence = sequence;
+            this.priority = priority;
+            this.maxHigh = high;
+            this.maxHighInclusive = highInclusive;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import com.github.balintrudas.qrsql.operator.Operator;
+
+import java.nio.LongBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * Off-heap <tt>long</tt> column of the integer, character, date and java.time fields. The dates are encoded as epoch
+ * milliseconds, the local dates as epoch days, the other temporals as UTC epoch microseconds, so the encoding keeps
+ * the order and the comparisons run on the encoded values.
+ *
+ * @author Balint Rudas
+ */
+final class LongColumn extends SnapshotColumn {
+
+    private static final int MAX_SCANNED_IN_VALUES = 16;
+
+    private final Function<Object, Long> encoder;
+    private LongBuffer values;
+
+    LongColumn(String name, Function<Object, Long> encoder, int capacity) {
+        super(name);
+        this.encoder = encoder;
+        this.values = allocate(capacity * 8L).asLongBuffer();
+    }
+
+    /**
+     * @param type field type
+     * @return Encoder of the values of the type, or null if the type can't be stored in a long column
+     */
+    static Function<Object, Long> getEncoder(Class type) {
+        if (type == long.class || type == int.class || type == short.class || type == byte.class ||
+                type == Long.class || type == Integer.class || type == Short.class || type == Byte.class) {
+            return value -> ((Number) value).longValue();
+        } else if (type == char.class || type == Character.class) {
+            return value -> (long) (Character) value;
+        } else if (Date.class.isAssignableFrom(type)) {
+            return value -> ((Date) value).getTime();
+        } else if (type == LocalDate.class) {
+            return value -> ((LocalDate) value).toEpochDay();
+        } else if (type == LocalDateTime.class) {
+            return value -> toMicros(((LocalDateTime) value).toInstant(ZoneOffset.UTC));
+        } else if (type == Instant.class) {
+            return value -> toMicros((Instant) value);
+        } else if (type == OffsetDateTime.class) {
+            return value -> toMicros(((OffsetDateTime) value).toInstant());
+        }
+        return null;
+    }
+
+    @Override
+    protected void appendValue(int row, Object value) {
+        if (row == this.values.capacity()) {
+            LongBuffer grown = allocate(Math.max(row * 2L, 8L) * 8L).asLongBuffer();
+            LongBuffer source = this.values.duplicate();
+            source.position(0);
+            source.limit(row);
+            grown.put(source);
+            this.values = grown;
+        }
+        this.values.put(row, value != null ? this.encoder.apply(value) : 0L);
+    }
+
+    @Override
+    long[] filter(Operator operator, Object value) {
+        switch (operator) {
+            case EQUALS:
+                return value != null ? range(encode(value), encode(value)) : new long[words(this.rows)];
+            case NOTEQUALS:
+                return value != null ? complement(range(encode(value), encode(value))) : new long[words(this.rows)];
+            case IN:
+                return in(asCollection(value));
+            case NOTIN:
+                return complement(in(asCollection(value)));
+            default:
+                break;
+        }
+        if (value == null) {
+            return new long[words(this.rows)];
+        }
+        long encoded = encode(value);
+        switch (operator) {
+            case GREATER:
+            case AFTER:
+                return encoded == Long.MAX_VALUE ? new long[words(this.rows)] : range(encoded + 1, Long.MAX_VALUE);
+            case GREATER_OR_EQUALS:
+                return range(encoded, Long.MAX_VALUE);
+            case LESS_THAN:
+            case BEFORE:
+                return encoded == Long.MIN_VALUE ? new long[words(this.rows)] : range(Long.MIN_VALUE, encoded - 1);
+            case LESS_THAN_OR_EQUALS:
+                return range(Long.MIN_VALUE, encoded);
+            default:
+                return null;
+        }
+    }
+
+    private long encode(Object value) {
+        return this.encoder.apply(value);
+    }
+
+    /**
+     * Select the rows in the closed range. The loop is branch free, one word of the bitmap is built per 64 rows.
+     */
+    private long[] range(long low, long high) {
+        long[] selection = new long[words(this.rows)];
+        LongBuffer values = this.values;
+        int rows = this.rows;
+        for (int word = 0; word < selection.length; word++) {
+            int base = word << 6;
+            int end = Math.min(64, rows - base);
+            long bits = 0L;
+            for (int bit = 0; bit < end; bit++) {
+                long value = values.get(base + bit);
+                bits |= (value >= low & value <= high ? 1L : 0L) << bit;
+            }
+            selection[word] = bits & ~this.nulls[word];
+        }
+        return selection;
+    }
+
+    /**
+     * Select the rows with one of the values. A short list is evaluated by one range scan per value, a long list by
+     * a binary search per row.
+     */
+    private long[] in(Collection<?> items) {
+        long[] keys = items.stream().filter(item -> item != null).mapToLong(this::encode).sorted().distinct()
+                .toArray();
+        long[] selection = new long[words(this.rows)];
+        if (keys.length <= MAX_SCANNED_IN_VALUES) {
+            for (long key : keys) {
+                long[] matches = range(key, key);
+                for (int word = 0; word < selection.length; word++) {
+                    selection[word] |= matches[word];
+                }
+            }
+            return selection;
+        }
+        for (int row = 0; row < this.rows; row++) {
+            if (Arrays.binarySearch(keys, this.values.get(row)) >= 0) {
+                selection[row >>> 6] |= 1L << row;
+            }
+        }
+        for (int word = 0; word < selection.length; word++) {
+            selection[word] &= ~this.nulls[word];
+        }
+        return selection;
+    }
+
+    private static Collection<?> asCollection(Object value) {
+        return value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+    }
+
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sorted slot list of one indexed value. High cardinality values keep their slots in a compact array instead of a
+ * bitmap sized to the whole store.
+ *
+ * @author Balint Rudas
+ */
+final class Postings {
+
+    private int[] slots = new int[2];
+    private int size;
+
+    void add(int slot) {
+        int index = Arrays.binarySearch(this.slots, 0, this.size, slot);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        if (this.size == this.slots.length) {
+            this.slots = Arrays.copyOf(this.slots, this.size * 2);
+        }
+        System.arraycopy(this.slots, index, this.slots, index + 1, this.size - index);
+        this.slots[index] = slot;
+        this.size++;
+    }
+
+    void remove(int slot) {
+        int index = Arrays.binarySearch(this.slots, 0, this.size, slot);
+        if (index >= 0) {
+            System.arraycopy(this.slots, index + 1, this.slots, index, this.size - index - 1);
+            this.size--;
+        }
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    int get(int index) {
+        return this.slots[index];
+    }
+
+    void or(BitSet target) {
+        for (int i = 0; i < this.size; i++) {
+            target.set(this.slots[i]);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
+import com.github.balintrudas.qrsql.operator.Operator;
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.Node;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Read-only columnar snapshot of selected basic fields of an entity type, for scan and count queries over many rows.
+ * The numeric, date and java.time columns are stored in off-heap primitive buffers, the string, enum and boolean
+ * columns are dictionary encoded. A where expression is evaluated column at a time: each comparison is a branch free
+ * loop over one buffer which produces a selection bitmap, the logical nodes combine the bitmaps word by word. Java 8
+ * has no vector API, the loops are written so the JIT can unroll them and keep the buffers streaming.
+ * <p>
+ * The snapshot is loaded by {@link #refresh()}, only the selected columns are fetched. The buffers are released when
+ * the snapshot is garbage collected.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlColumnSnapshot<E> {
+
+    private final QrsqlConfig<E> qrsqlConfig;
+    private final Class<E> entityClass;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Map<String, Class> columnTypes = new LinkedHashMap<>();
+    private volatile Columns columns;
+
+    private QrsqlColumnSnapshot(Builder<E> builder) {
+        if (builder.columns == null || builder.columns.isEmpty()) {
+            throw new IllegalArgumentException("Columns of the snapshot can't be empty.");
+        }
+        this.qrsqlConfig = builder.qrsqlConfig;
+        this.entityClass = builder.entityClass;
+        this.entityManagerFactory = builder.qrsqlConfig.getEntityManager().getEntityManagerFactory();
+        EntityType<E> entityType = this.entityManagerFactory.getMetamodel().entity(this.entityClass);
+        for (String column : builder.columns) {
+            Attribute<? super E, ?> attribute;
+            try {
+                attribute = entityType.getAttribute(column);
+            } catch (IllegalArgumentException ex) {
+                throw new QrsqlException("Unknown field of " + this.entityClass.getSimpleName() + ": " + column, ex);
+            }
+            Class type = attribute.getJavaType();
+            if (attribute.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC ||
+                    attribute.isCollection() || (LongColumn.getEncoder(type) == null &&
+                    !DoubleColumn.supportsType(type) && !DictionaryColumn.supportsType(type))) {
+                throw new QrsqlException("The field can't be stored in a column snapshot: " + column);
+            }
+            this.columnTypes.put(column, type);
+        }
+    }
+
+    public Class<E> getEntityClass() {
+        return this.entityClass;
+    }
+
+    /**
+     * @return Number of the rows
+     */
+    public int size() {
+        return this.columns.rows;
+    }
+
+    /**
+     * Reload the columns with a new {@link EntityManager}. The rows are streamed into the column buffers, the queries
+     * run on the previous snapshot until the new one is complete.
+     *
+     * @throws QrsqlException If the rows can't be loaded
+     */
+    public void refresh() throws QrsqlException {
+        EntityManager entityManager = this.entityManagerFactory.createEntityManager();
+        try {
+            PathBuilder<E> root = new PathBuilder<>(this.entityClass,
+                    this.qrsqlConfig.getPathCache().getAlias(this.entityClass));
+            JPAQueryFactory queryFactory = new JPAQueryFactory(entityManager);
+            int capacity = (int) Math.min(queryFactory.from(root).fetchCount(), Integer.MAX_VALUE - 8);
+            Map<String, SnapshotColumn> loaded = new LinkedHashMap<>();
+            Expression<?>[] paths = new Expression<?>[this.columnTypes.size()];
+            for (Map.Entry<String, Class> entry : this.columnTypes.entrySet()) {
+                paths[loaded.size()] = root.get(entry.getKey(), entry.getValue());
+                loaded.put(entry.getKey(), createColumn(entry.getKey(), entry.getValue(), capacity));
+            }
+            SnapshotColumn[] columnArray = loaded.values().toArray(new SnapshotColumn[loaded.size()]);
+            int rows = 0;
+            try (CloseableIterator<Tuple> iterator = queryFactory.select(paths).from(root).iterate()) {
+                while (iterator.hasNext()) {
+                    Tuple tuple = iterator.next();
+                    for (int i = 0; i < columnArray.length; i++) {
+                        columnArray[i].append(tuple.get(i, Object.class));
+                    }
+                    rows++;
+                }
+            }
+            for (SnapshotColumn column : columnArray) {
+                column.seal();
+            }
+            this.columns = new Columns(rows, loaded);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Count the matching rows.
+     *
+     * @param where parsed where expression, null matches all rows
+     * @return Number of the matching rows
+     * @throws QrsqlException If the expression uses a selector or operator which is not supported by the snapshot
+     */
+    public long count(Node where) throws QrsqlException {
+        Columns current = this.columns;
+        if (where == null) {
+            return current.rows;
+        }
+        long count = 0L;
+        for (long word : evaluate(current, where)) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private long[] evaluate(Columns current, Node node) {
+        if (node instanceof LogicalNode) {
+            boolean and = node instanceof AndNode;
+            long[] result = null;
+            for (Node child : ((LogicalNode) node).getChildren()) {
+                long[] selection = evaluate(current, child);
+                if (result == null) {
+                    result = selection;
+                    continue;
+                }
+                long any = 0L;
+                for (int word = 0; word < result.length; word++) {
+                    result[word] = and ? result[word] & selection[word] : result[word] | selection[word];
+                    any |= result[word];
+                }
+                if (and && any == 0L) {
+                    break;
+                }
+            }
+            return result;
+        }
+        ComparisonNode comparisonNode = (ComparisonNode) node;
+        SnapshotColumn column = current.columns.get(comparisonNode.getSelector());
+        if (column == null) {
+            throw unsupported("selector", comparisonNode.getSelector());
+        }
+        Operator operator = Operator.get(comparisonNode.getOperator().getSymbol());
+        if (operator == Operator.ISNULL) {
+            return column.isNull();
+        } else if (operator == Operator.ISNOTNULL) {
+            return column.isNotNull();
+        }
+        long[] selection = operator != null ?
+                column.filter(operator, getValue(column.getName(), comparisonNode.getArguments())) : null;
+        if (selection == null) {
+            throw unsupported("operator", comparisonNode.getOperator().getSymbol() + " on " + column.getName());
+        }
+        return selection;
+    }
+
+    private Object getValue(String selector, List<String> arguments) {
+        try {
+            FieldMetadata fieldMetadata = this.qrsqlConfig.getFieldMetadata(this.entityClass, selector).get(0);
+            FieldTypeHandler fieldTypeHandler = this.qrsqlConfig.getFieldTypeHandler(fieldMetadata.getType());
+            return fieldTypeHandler.getValue(arguments, fieldMetadata, this.qrsqlConfig);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    private static SnapshotColumn createColumn(String name, Class type, int capacity) {
+        Function<Object, Long> encoder = LongColumn.getEncoder(type);
+        if (encoder != null) {
+            return new LongColumn(name, encoder, capacity);
+        } else if (DoubleColumn.supportsType(type)) {
+            return new DoubleColumn(name, capacity);
+        }
+        return new DictionaryColumn(name, type, capacity);
+    }
+
+    private static QrsqlException unsupported(String kind, String value) {
+        return new QrsqlException("The " + kind + " is not supported by the column snapshot: " + value);
+    }
+
+    /**
+     * Loaded columns of one snapshot.
+     */
+    private static final class Columns {
+
+        private final int rows;
+        private final Map<String, SnapshotColumn> columns;
+
+        Columns(int rows, Map<String, SnapshotColumn> columns) {
+            this.rows = rows;
+            this.columns = columns;
+        }
+    }
+
+    public static class Builder<E> {
+        private final QrsqlConfig<E> qrsqlConfig;
+        private final Class<E> entityClass;
+        private List<String> columns;
+
+        /**
+         * @param qrsqlConfig configuration, the rows are loaded with its entity manager factory
+         * @param entityClass entity class of the snapshot
+         */
+        public Builder(QrsqlConfig<E> qrsqlConfig, Class<E> entityClass) {
+            this.qrsqlConfig = qrsqlConfig;
+            this.entityClass = entityClass;
+        }
+
+        /**
+         * Basic fields of the root entity which are copied into the snapshot: numbers, dates, java.time values,
+         * strings, enums and booleans.
+         *
+         * @param columns field names
+         * @return {@link Builder}
+         */
+        public Builder<E> columns(String... columns) {
+            this.columns = Arrays.asList(columns);
+            return this;
+        }
+
+        /**
+         * Create the snapshot and load the columns.
+         *
+         * @return {@link QrsqlColumnSnapshot}
+         * @throws QrsqlException If the rows can't be loaded
+         */
+        public QrsqlColumnSnapshot<E> build() throws QrsqlException {
+            QrsqlColumnSnapshot<E> snapshot = new QrsqlColumnSnapshot<>(this);
+            snapshot.refresh();
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,714 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
+import com.github.balintrudas.qrsql.metadata.SelectorField;
+import com.github.balintrudas.qrsql.metadata.SelectorTable;
+import com.github.balintrudas.qrsql.operator.Operator;
+import com.github.balintrudas.qrsql.util.QrsqlUtil;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.Node;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory copy of one entity type, loaded once through JPA and queried with the Qrsql where, sort and paging
+ * expressions without a database round trip. The basic fields of the root entity are indexed by {@link StoreIndex}:
+ * the equality and the <tt>=in=</tt> operators are answered by hash lookups, the ranges and the prefix matches by a
+ * sorted index, the boolean and enum fields by bitmaps. Each comparison results in a bitmap of the matching slots,
+ * the logical nodes intersect or union them. Comparisons follow the SQL null semantics, a negated comparison doesn't
+ * match the null values.
+ * <p>
+ * The store can be reloaded with {@link #refresh()} or kept up to date incrementally with {@link #put(Object)} and
+ * {@link #remove(Object)}, which are called by {@link QrsqlEntityStoreListener} for the stores built with
+ * {@link Builder#listen(boolean)}. The stored entities are detached, only their basic fields can be used; the
+ * listener stores copies of the id and the basic fields.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlEntityStore<E> implements AutoCloseable {
+
+    private final QrsqlConfig<E> qrsqlConfig;
+    private final Class<E> entityClass;
+    private final EntityManagerFactory entityManagerFactory;
+    private final SingularAttribute<? super E, ?> idAttribute;
+    private final Map<String, Class> fieldTypes;
+    private final Map<String, Function<Object, Object>> accessors;
+    private final boolean listen;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile State<E> state;
+
+    private QrsqlEntityStore(Builder<E> builder) {
+        this.qrsqlConfig = builder.qrsqlConfig;
+        this.entityClass = builder.entityClass;
+        this.entityManagerFactory = builder.qrsqlConfig.getEntityManager().getEntityManagerFactory();
+        this.listen = builder.listen;
+        EntityType<E> entityType = this.entityManagerFactory.getMetamodel().entity(this.entityClass);
+        this.idAttribute = entityType.getId(entityType.getIdType().getJavaType());
+        SelectorTable selectorTable = SelectorTable.of(this.entityClass);
+        this.fieldTypes = new LinkedHashMap<>();
+        this.accessors = new HashMap<>();
+        for (SingularAttribute<? super E, ?> attribute : entityType.getSingularAttributes()) {
+            if (attribute.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC ||
+                    (builder.fields != null && !builder.fields.contains(attribute.getName()))) {
+                continue;
+            }
+            SelectorField selectorField = selectorTable != null ? selectorTable.getField(attribute.getName()) : null;
+            this.fieldTypes.put(attribute.getName(), attribute.getJavaType());
+            this.accessors.put(attribute.getName(), selectorField != null && selectorField.hasAccessor() ?
+                    selectorField::getValue : getAccessor(attribute.getJavaMember()));
+        }
+        if (builder.fields != null && !this.fieldTypes.keySet().containsAll(builder.fields)) {
+            List<String> unknown = new ArrayList<>(builder.fields);
+            unknown.removeAll(this.fieldTypes.keySet());
+            throw new QrsqlException("Only the basic fields of the root entity can be indexed: " + unknown);
+        }
+    }
+
+    public Class<E> getEntityClass() {
+        return this.entityClass;
+    }
+
+    /**
+     * @return Number of the stored entities
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.state.slots.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reload all entities with a new {@link EntityManager} and rebuild the indexes. The queries run on the previous
+     * snapshot until the new one is complete. Events which arrive during the reload may be overwritten by the
+     * loaded snapshot.
+     *
+     * @throws QrsqlException If the entities can't be loaded
+     */
+    public void refresh() throws QrsqlException {
+        List<E> entities;
+        EntityManager entityManager = this.entityManagerFactory.createEntityManager();
+        try {
+            PathBuilder<E> root = new PathBuilder<>(this.entityClass,
+                    this.qrsqlConfig.getPathCache().getAlias(this.entityClass));
+            entities = new JPAQueryFactory(entityManager).selectFrom(root)
+                    .orderBy(root.getComparable(this.idAttribute.getName(),
+                            (Class) this.idAttribute.getJavaType()).asc())
+                    .fetch();
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        } finally {
+            entityManager.close();
+        }
+        State<E> loaded = new State<>(this.fieldTypes, this.accessors);
+        for (E entity : entities) {
+            loaded.put(getId(entity), entity);
+        }
+        this.lock.writeLock().lock();
+        try {
+            this.state = loaded;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Insert or replace the entity by its id.
+     *
+     * @param entity entity
+     */
+    public void put(E entity) {
+        Object id = getId(entity);
+        this.lock.writeLock().lock();
+        try {
+            this.state.put(id, entity);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the entity by its id.
+     *
+     * @param entity entity
+     */
+    public void remove(E entity) {
+        Object id = getId(entity);
+        this.lock.writeLock().lock();
+        try {
+            this.state.remove(id);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Fetch the matching entities. Without sort the entities are returned in storage order, with sort the nulls
+     * are first in ascending order.
+     *
+     * @param where  parsed where expression, null matches all entities
+     * @param sort   sort expression or null
+     * @param offset offset or null
+     * @param size   maximum number of the entities or null
+     * @return List of the matching entities
+     * @throws QrsqlException If the expression uses a selector or operator which is not supported by the store
+     */
+    public List<E> fetch(Node where, String sort, Long offset, Long size) throws QrsqlException {
+        long skip = offset != null ? offset : 0L;
+        long limit = size != null ? size : Long.MAX_VALUE;
+        this.lock.readLock().lock();
+        try {
+            State<E> current = this.state;
+            BitSet matches = where != null ? evaluate(current, where) : current.live;
+            if (sort == null) {
+                return collect(current, matches, skip, limit);
+            }
+            return sort(current, matches, sort, skip, limit);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count the matching entities.
+     *
+     * @param where parsed where expression, null matches all entities
+     * @return Number of the matching entities
+     * @throws QrsqlException If the expression uses a selector or operator which is not supported by the store
+     */
+    public long count(Node where) throws QrsqlException {
+        this.lock.readLock().lock();
+        try {
+            State<E> current = this.state;
+            return where != null ? evaluate(current, where).cardinality() : current.slots.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stop the incremental updates of the listener.
+     */
+    @Override
+    public void close() {
+        if (this.listen) {
+            QrsqlEntityStoreListener.unregister(this);
+        }
+    }
+
+    private BitSet evaluate(State<E> current, Node node) {
+        if (node instanceof LogicalNode) {
+            boolean and = node instanceof AndNode;
+            BitSet result = null;
+            for (Node child : ((LogicalNode) node).getChildren()) {
+                BitSet childResult = evaluate(current, child);
+                if (result == null) {
+                    result = childResult;
+                } else if (and) {
+                    result.and(childResult);
+                } else {
+                    result.or(childResult);
+                }
+                if (and && result.isEmpty()) {
+                    break;
+                }
+            }
+            return result;
+        }
+        ComparisonNode comparisonNode = (ComparisonNode) node;
+        StoreIndex index = getIndex(current, comparisonNode.getSelector());
+        Operator operator = Operator.get(comparisonNode.getOperator().getSymbol());
+        if (operator == null) {
+            throw unsupported("operator", comparisonNode.getOperator().getSymbol());
+        }
+        BitSet result = new BitSet();
+        switch (operator) {
+            case ISNULL:
+                index.nulls(result);
+                return result;
+            case ISNOTNULL:
+                index.notNulls(current.live, result);
+                return result;
+            case ISTRUE:
+                index.eq(Boolean.TRUE, result);
+                return result;
+            case ISFALSE:
+                index.eq(Boolean.FALSE, result);
+                return result;
+            default:
+                break;
+        }
+        Object value = getValue(index, comparisonNode.getArguments());
+        switch (operator) {
+            case EQUALS:
+                index.eq(value, result);
+                break;
+            case IN:
+                for (Object item : asCollection(value)) {
+                    index.eq(item, result);
+                }
+                break;
+            case NOTEQUALS:
+            case NOTIN:
+                BitSet excluded = new BitSet();
+                for (Object item : asCollection(value)) {
+                    index.eq(item, excluded);
+                }
+                index.notNulls(current.live, result);
+                result.andNot(excluded);
+                break;
+            case GREATER:
+            case AFTER:
+                range(index, operator, value, false, null, false, result);
+                break;
+            case GREATER_OR_EQUALS:
+                range(index, operator, value, true, null, false, result);
+                break;
+            case LESS_THAN:
+            case BEFORE:
+                range(index, operator, null, false, value, false, result);
+                break;
+            case LESS_THAN_OR_EQUALS:
+                range(index, operator, null, false, value, true, result);
+                break;
+            default:
+                if (!String.class.equals(this.fieldTypes.get(index.getName())) || !(value instanceof String)) {
+                    throw unsupported("operator", operator.getRsqlOperator()[0] + " on " + index.getName());
+                }
+                matchString(current, index, operator, (String) value, result);
+        }
+        return result;
+    }
+
+    private void range(StoreIndex index, Operator operator, Object from, boolean fromInclusive, Object to,
+                       boolean toInclusive, BitSet result) {
+        if (index.getKind() != StoreIndex.Kind.SORTED) {
+            throw unsupported("operator", operator.getRsqlOperator()[0] + " on " + index.getName());
+        }
+        if (from != null || to != null) {
+            index.range(from, fromInclusive, to, toInclusive, result);
+        }
+    }
+
+    private void matchString(State<E> current, StoreIndex index, Operator operator, String value, BitSet result) {
+        Predicate<String> predicate = StringMatcher.get(operator, value);
+        if (predicate == null) {
+            throw unsupported("operator", operator.getRsqlOperator()[0] + " on " + index.getName());
+        }
+        boolean negated = StringMatcher.isNegated(operator);
+        BitSet matches = negated ? new BitSet() : result;
+        index.scan(StringMatcher.getPrefix(operator, value), key -> predicate.test((String) key), matches);
+        if (negated) {
+            index.notNulls(current.live, result);
+            result.andNot(matches);
+        }
+    }
+
+    private List<E> collect(State<E> current, BitSet matches, long skip, long limit) {
+        List<E> result = new ArrayList<>((int) Math.min(matches.cardinality(), limit));
+        for (int slot = matches.nextSetBit(0); slot >= 0 && result.size() < limit;
+             slot = matches.nextSetBit(slot + 1)) {
+            if (skip > 0) {
+                skip--;
+            } else {
+                result.add(current.entities.get(slot));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sort the matching entities. A single field sort on a sorted index walks the index in order and stops at the
+     * end of the page, other sorts keep only the first offset + size entities in a bounded heap.
+     */
+    private List<E> sort(State<E> current, BitSet matches, String sort, long skip, long limit) {
+        Map<String, Order> sorts;
+        try {
+            sorts = QrsqlUtil.parseSortExpression(sort);
+        } catch (IllegalArgumentException ex) {
+            throw new QrsqlException(ex);
+        }
+        if (sorts.size() == 1) {
+            Map.Entry<String, Order> entry = sorts.entrySet().iterator().next();
+            StoreIndex index = getIndex(current, entry.getKey());
+            if (index.getKind() == StoreIndex.Kind.SORTED) {
+                return walk(current, index, entry.getValue() == Order.ASC, matches, skip, limit);
+            }
+        }
+        Comparator<Integer> comparator = null;
+        for (Map.Entry<String, Order> entry : sorts.entrySet()) {
+            StoreIndex index = getIndex(current, entry.getKey());
+            Comparator<Object> keyComparator = index.getComparator();
+            if (keyComparator == null) {
+                throw unsupported("sort", entry.getKey());
+            }
+            int position = current.positions.get(entry.getKey());
+            Comparator<Integer> fieldComparator = Comparator.comparing(slot -> current.keys.get(slot)[position],
+                    entry.getValue() == Order.ASC ? keyComparator : keyComparator.reversed());
+            comparator = comparator == null ? fieldComparator : comparator.thenComparing(fieldComparator);
+        }
+        comparator = comparator.thenComparing(Comparator.naturalOrder());
+        long end = limit == Long.MAX_VALUE ? Long.MAX_VALUE : skip + limit;
+        List<Integer> slots;
+        if (end < matches.cardinality()) {
+            PriorityQueue<Integer> heap = new PriorityQueue<>((int) end + 1, comparator.reversed());
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                heap.add(slot);
+                if (heap.size() > end) {
+                    heap.poll();
+                }
+            }
+            slots = new ArrayList<>(heap);
+        } else {
+            slots = new ArrayList<>(matches.cardinality());
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                slots.add(slot);
+            }
+        }
+        slots.sort(comparator);
+        List<E> result = new ArrayList<>();
+        for (int i = (int) Math.min(skip, slots.size()); i < slots.size() && result.size() < limit; i++) {
+            result.add(current.entities.get(slots.get(i)));
+        }
+        return result;
+    }
+
+    private List<E> walk(State<E> current, StoreIndex index, boolean ascending, BitSet matches, long skip,
+                         long limit) {
+        List<E> result = new ArrayList<>();
+        long[] remaining = {skip};
+        Predicate<Integer> add = slot -> {
+            if (!matches.get(slot)) {
+                return true;
+            }
+            if (remaining[0] > 0) {
+                remaining[0]--;
+            } else {
+                result.add(current.entities.get(slot));
+            }
+            return result.size() < limit;
+        };
+        BitSet nulls = (BitSet) index.getNulls().clone();
+        nulls.and(matches);
+        if (ascending && !walkNulls(nulls, add)) {
+            return result;
+        }
+        for (Postings postings : (ascending ? index.getSorted() : index.getSorted().descendingMap()).values()) {
+            for (int i = 0; i < postings.size(); i++) {
+                if (!add.test(postings.get(i))) {
+                    return result;
+                }
+            }
+        }
+        if (!ascending) {
+            walkNulls(nulls, add);
+        }
+        return result;
+    }
+
+    private static boolean walkNulls(BitSet nulls, Predicate<Integer> add) {
+        for (int slot = nulls.nextSetBit(0); slot >= 0; slot = nulls.nextSetBit(slot + 1)) {
+            if (!add.test(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private StoreIndex getIndex(State<E> current, String selector) {
+        Integer position = current.positions.get(selector);
+        if (position == null) {
+            throw unsupported("selector", selector);
+        }
+        return current.indexes[position];
+    }
+
+    private Object getValue(StoreIndex index, List<String> arguments) {
+        try {
+            FieldMetadata fieldMetadata = this.qrsqlConfig.getFieldMetadata(this.entityClass, index.getName()).get(0);
+            FieldTypeHandler fieldTypeHandler = this.qrsqlConfig.getFieldTypeHandler(fieldMetadata.getType());
+            Object value = fieldTypeHandler.getValue(arguments, fieldMetadata, this.qrsqlConfig);
+            if (value instanceof Collection) {
+                List<Object> normalized = new ArrayList<>(((Collection) value).size());
+                for (Object item : (Collection) value) {
+                    normalized.add(StoreIndex.normalize(item));
+                }
+                return normalized;
+            }
+            return StoreIndex.normalize(value);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    /**
+     * Copy the id and the basic fields of the entity to a new instance, so the stored entity isn't attached to the
+     * persistence context of the writer and isn't changed by its later modifications.
+     *
+     * @param entity managed entity
+     * @return detached copy
+     */
+    @SuppressWarnings("unchecked")
+    E detach(E entity) {
+        Class<? extends E> type = (Class<? extends E>) entity.getClass();
+        try {
+            Constructor<? extends E> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            E copy = constructor.newInstance();
+            for (SingularAttribute<?, ?> attribute :
+                    this.entityManagerFactory.getMetamodel().entity(type).getSingularAttributes()) {
+                if (attribute.isId() ||
+                        attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC) {
+                    copyField(attribute.getJavaMember(), entity, copy);
+                }
+            }
+            return copy;
+        } catch (ReflectiveOperationException | IllegalArgumentException ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    private static void copyField(Member member, Object source, Object target) throws ReflectiveOperationException {
+        if (member instanceof Field) {
+            Field field = (Field) member;
+            field.setAccessible(true);
+            field.set(target, field.get(source));
+        } else if (member instanceof Method) {
+            Method getter = (Method) member;
+            String property = getter.getName().substring(getter.getName().startsWith("is") ? 2 : 3);
+            Method setter = getter.getDeclaringClass().getDeclaredMethod("set" + property, getter.getReturnType());
+            getter.setAccessible(true);
+            setter.setAccessible(true);
+            setter.invoke(target, getter.invoke(source));
+        }
+    }
+
+    Object getId(E entity) {
+        Object id = this.entityManagerFactory.getPersistenceUnitUtil().getIdentifier(entity);
+        if (id == null) {
+            throw new QrsqlException("The entity has no id: " + entity);
+        }
+        return id;
+    }
+
+    private static Collection<?> asCollection(Object value) {
+        return value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+    }
+
+    private static QrsqlException unsupported(String kind, String value) {
+        return new QrsqlException("The " + kind + " is not supported by the in-memory store: " + value);
+    }
+
+    private static Function<Object, Object> getAccessor(Member member) {
+        if (member instanceof Field) {
+            Field field = (Field) member;
+            field.setAccessible(true);
+            return entity -> {
+                try {
+                    return field.get(entity);
+                } catch (IllegalAccessException ex) {
+                    throw new QrsqlException(ex);
+                }
+            };
+        } else if (member instanceof Method) {
+            Method method = (Method) member;
+            method.setAccessible(true);
+            return entity -> {
+                try {
+                    return method.invoke(entity);
+                } catch (IllegalAccessException | InvocationTargetException ex) {
+                    throw new QrsqlException(ex);
+                }
+            };
+        }
+        throw new QrsqlException("The field has no accessor: " + member);
+    }
+
+    /**
+     * Entities, index keys and indexes of one snapshot. The slots of the removed entities are reused.
+     */
+    private static final class State<E> {
+
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final StoreIndex[] indexes;
+        private final List<E> entities = new ArrayList<>();
+        private final List<Object[]> keys = new ArrayList<>();
+        private final Map<Object, Integer> slots = new HashMap<>();
+        private final Deque<Integer> free = new ArrayDeque<>();
+        private final BitSet live = new BitSet();
+
+        State(Map<String, Class> fieldTypes, Map<String, Function<Object, Object>> accessors) {
+            this.indexes = new StoreIndex[fieldTypes.size()];
+            for (Map.Entry<String, Class> entry : fieldTypes.entrySet()) {
+                int position = this.positions.size();
+                this.positions.put(entry.getKey(), position);
+                this.indexes[position] = new StoreIndex(entry.getKey(), entry.getValue(),
+                        accessors.get(entry.getKey()));
+            }
+        }
+
+        void put(Object id, E entity) {
+            Object[] entityKeys = new Object[this.indexes.length];
+            for (int i = 0; i < this.indexes.length; i++) {
+                entityKeys[i] = this.indexes[i].read(entity);
+            }
+            Integer slot = this.slots.get(id);
+            if (slot != null) {
+                Object[] previousKeys = this.keys.get(slot);
+                for (int i = 0; i < this.indexes.length; i++) {
+                    if (!Objects.equals(previousKeys[i], entityKeys[i])) {
+                        this.indexes[i].remove(slot, previousKeys[i]);
+                        this.indexes[i].add(slot, entityKeys[i]);
+                    }
+                }
+            } else {
+                if (this.free.isEmpty()) {
+                    slot = this.entities.size();
+                    this.entities.add(null);
+                    this.keys.add(null);
+                } else {
+                    slot = this.free.pop();
+                }
+                for (int i = 0; i < this.indexes.length; i++) {
+                    this.indexes[i].add(slot, entityKeys[i]);
+                }
+                this.slots.put(id, slot);
+                this.live.set(slot);
+            }
+            this.entities.set(slot, entity);
+            this.keys.set(slot, entityKeys);
+        }
+
+        void remove(Object id) {
+            Integer slot = this.slots.remove(id);
+            if (slot == null) {
+                return;
+            }
+            Object[] previousKeys = this.keys.get(slot);
+            for (int i = 0; i < this.indexes.length; i++) {
+                this.indexes[i].remove(slot, previousKeys[i]);
+            }
+            this.entities.set(slot, null);
+            this.keys.set(slot, null);
+            this.live.clear(slot);
+            this.free.push(slot);
+        }
+    }
+
+    public static class Builder<E> {
+        private final QrsqlConfig<E> qrsqlConfig;
+        private final Class<E> entityClass;
+        private List<String> fields;
+        private boolean listen;
+
+        /**
+         * @param qrsqlConfig configuration, the entities are loaded with its entity manager factory
+         * @param entityClass stored entity class
+         */
+        public Builder(QrsqlConfig<E> qrsqlConfig, Class<E> entityClass) {
+            this.qrsqlConfig = qrsqlConfig;
+            this.entityClass = entityClass;
+        }
+
+        /**
+         * Index only the given basic fields. Default: all basic fields of the root entity.
+         *
+         * @param fields field names
+         * @return {@link Builder}
+         */
+        public Builder<E> fields(String... fields) {
+            this.fields = Arrays.asList(fields);
+            return this;
+        }
+
+        /**
+         * Register the store in {@link QrsqlEntityStoreListener}, the entity has to declare the listener with
+         * {@link javax.persistence.EntityListeners}. Default: false.
+         *
+         * @param listen whether the store is updated by the entity listener
+         * @return {@link Builder}
+         */
+        public Builder<E> listen(boolean listen) {
+            this.listen = listen;
+            return this;
+        }
+
+        /**
+         * Create the store and load the entities.
+         *
+         * @return {@link QrsqlEntityStore}
+         * @throws QrsqlException If the entities can't be loaded
+         */
+        public QrsqlEntityStore<E> build() throws QrsqlException {
+            QrsqlEntityStore<E> store = new QrsqlEntityStore<>(this);
+            store.refresh();
+            if (this.listen) {
+                QrsqlEntityStoreListener.register(store);
+            }
+            return store;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * JPA entity listener which applies the persisted, updated and removed entities to the registered
+ * {@link QrsqlEntityStore}s. The entity declares it with
+ * <tt>@EntityListeners(QrsqlEntityStoreListener.class)</tt>. The callbacks run at flush time and take a detached copy
+ * of the entity. When a Spring transaction synchronization is active, the events are collected per transaction and
+ * applied after the commit, the last event of an entity wins and a rolled back transaction discards them. Otherwise
+ * they are applied immediately, a rolled back transaction is not reverted in the stores,
+ * {@link QrsqlEntityStore#refresh()} reloads them. Spring is accessed reflectively.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlEntityStoreListener {
+
+    private static final String SYNCHRONIZATION_MANAGER =
+            "org.springframework.transaction.support.TransactionSynchronizationManager";
+    private static final String SYNCHRONIZATION = "org.springframework.transaction.support.TransactionSynchronization";
+    private static final int STATUS_COMMITTED = 0;
+
+    private static final Map<Class, List<QrsqlEntityStore>> STORES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<List<Object>, Runnable>> PENDING = new ThreadLocal<>();
+
+    static void register(QrsqlEntityStore store) {
+        STORES.computeIfAbsent(store.getEntityClass(), key -> new CopyOnWriteArrayList<>()).add(store);
+    }
+
+    static void unregister(QrsqlEntityStore store) {
+        List<QrsqlEntityStore> stores = STORES.get(store.getEntityClass());
+        if (stores != null) {
+            stores.remove(store);
+        }
+    }
+
+    @PostPersist
+    @PostUpdate
+    @SuppressWarnings("unchecked")
+    public void put(Object entity) {
+        for (QrsqlEntityStore store : getStores(entity)) {
+            Object copy = store.detach(entity);
+            apply(Arrays.asList(store, store.getId(entity)), () -> store.put(copy));
+        }
+    }
+
+    @PostRemove
+    @SuppressWarnings("unchecked")
+    public void remove(Object entity) {
+        for (QrsqlEntityStore store : getStores(entity)) {
+            Object copy = store.detach(entity);
+            apply(Arrays.asList(store, store.getId(entity)), () -> store.remove(copy));
+        }
+    }
+
+    private static List<QrsqlEntityStore> getStores(Object entity) {
+        List<QrsqlEntityStore> result = new ArrayList<>();
+        for (Class type = entity.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            List<QrsqlEntityStore> stores = STORES.get(type);
+            if (stores != null) {
+                result.addAll(stores);
+            }
+        }
+        return result;
+    }
+
+    private static void apply(List<Object> key, Runnable event) {
+        Map<List<Object>, Runnable> pending = PENDING.get();
+        if (pending == null && !registerSynchronization(QrsqlEntityStoreListener.class.getClassLoader())) {
+            event.run();
+            return;
+        }
+        PENDING.get().put(key, event);
+    }
+
+    /**
+     * Register a Spring transaction synchronization which applies the pending events after the commit. The pending
+     * events are bound to the thread while the transaction is active, and unbound while it's suspended.
+     *
+     * @return Whether the synchronization is registered
+     */
+    private static boolean registerSynchronization(ClassLoader classLoader) {
+        Class<?> manager;
+        Class<?> synchronization;
+        try {
+            manager = Class.forName(SYNCHRONIZATION_MANAGER, false, classLoader);
+            synchronization = Class.forName(SYNCHRONIZATION, false, classLoader);
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+        try {
+            if (!(Boolean) manager.getMethod("isSynchronizationActive").invoke(null)) {
+                return false;
+            }
+            Map<List<Object>, Runnable> pending = new LinkedHashMap<>();
+            Object proxy = Proxy.newProxyInstance(classLoader, new Class[]{synchronization}, (self, method, args) -> {
+                switch (method.getName()) {
+                    case "suspend":
+                        PENDING.remove();
+                        return null;
+                    case "resume":
+                        PENDING.set(pending);
+                        return null;
+                    case "afterCompletion":
+                        PENDING.remove();
+                        if ((Integer) args[0] == STATUS_COMMITTED) {
+                            pending.values().forEach(Runnable::run);
+                        }
+                        return null;
+                    case "getOrder":
+                        return Integer.MAX_VALUE;
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "equals":
+                        return self == args[0];
+                    case "toString":
+                        return QrsqlEntityStoreListener.class.getSimpleName() + "@" + System.identityHashCode(self);
+                    default:
+                        return null;
+                }
+            });
+            manager.getMethod("registerSynchronization", synchronization).invoke(null, proxy);
+            PENDING.set(pending);
+            return true;
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,705 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.allowlist.SelectorAllowlist;
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
+import com.github.balintrudas.qrsql.operator.Operator;
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.Node;
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Reverse matcher of stored Qrsql where expressions: for an entity it returns the keys of the subscriptions whose
+ * filter matches the entity. Each filter is registered under anchor comparisons, at least one of them is true for
+ * every matching entity: the equality of an <tt>==</tt> or <tt>=in=</tt> comparison, the interval of the range
+ * comparisons, the prefix interval of the string matches or the null check. The cheapest anchors of an and node are
+ * chosen, an or node is indexed only if all of its children are indexable. An entity probes the equality hash
+ * tables and the {@link IntervalTree}s of the indexed selectors with its values, only the candidate filters and the
+ * filters without anchors are evaluated.
+ * <p>
+ * The values are read from the fields of the entity, a comparison on a collection matches if any element matches.
+ * The built-in operators are supported.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlSubscriptionMatcher<E, K> {
+
+    private static final int EQUALS_COST = 1;
+    private static final int BOUNDED_RANGE_COST = 2;
+    private static final int NULL_COST = 4;
+    private static final int RANGE_COST = 8;
+
+    private final QrsqlConfig<E> qrsqlConfig;
+    private final Class<E> entityClass;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<K, Subscription<K>> subscriptions = new HashMap<>();
+    private final List<Subscription<K>> slots = new ArrayList<>();
+    private final Deque<Integer> free = new ArrayDeque<>();
+    private final Map<String, Selector> selectors = new HashMap<>();
+    private final Map<String, SelectorIndex> indexes = new LinkedHashMap<>();
+    private final Postings unindexed = new Postings();
+
+    /**
+     * @param qrsqlConfig configuration of the parser, the operators and the field type handlers
+     * @param entityClass matched entity class
+     */
+    public QrsqlSubscriptionMatcher(QrsqlConfig<E> qrsqlConfig, Class<E> entityClass) {
+        this.qrsqlConfig = qrsqlConfig;
+        this.entityClass = entityClass;
+    }
+
+    /**
+     * Add or replace a subscription.
+     *
+     * @param key   key of the subscription
+     * @param where where expression of the subscription
+     * @throws QrsqlException If the expression uses a selector or operator which is not supported
+     */
+    public void add(K key, String where) throws QrsqlException {
+        Node node = this.qrsqlConfig.parseWhere(where);
+        SelectorAllowlist selectorAllowlist = this.qrsqlConfig.getSelectorAllowlist();
+        if (selectorAllowlist != null) {
+            selectorAllowlist.check(this.entityClass, node);
+        }
+        this.lock.writeLock().lock();
+        try {
+            Condition condition = compile(node);
+            remove(key);
+            int slot = this.free.isEmpty() ? this.slots.size() : this.free.pop();
+            Subscription<K> subscription = new Subscription<>(key, slot, condition, getAnchors(condition));
+            if (slot == this.slots.size()) {
+                this.slots.add(subscription);
+            } else {
+                this.slots.set(slot, subscription);
+            }
+            this.subscriptions.put(key, subscription);
+            register(subscription);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a subscription.
+     *
+     * @param key key of the subscription
+     * @return true if the subscription was registered
+     */
+    public boolean remove(K key) {
+        this.lock.writeLock().lock();
+        try {
+            Subscription<K> subscription = this.subscriptions.remove(key);
+            if (subscription == null) {
+                return false;
+            }
+            unregister(subscription);
+            this.slots.set(subscription.slot, null);
+            this.free.push(subscription.slot);
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of the subscriptions
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.subscriptions.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param entity changed entity
+     * @return Keys of the matching subscriptions
+     */
+    public Set<K> match(E entity) {
+        this.lock.readLock().lock();
+        try {
+            return match(entity, new BitSet());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Match a batch of entities with one lock acquisition.
+     *
+     * @param entities changed entities
+     * @return Keys of the matching subscriptions in the order of the entities
+     */
+    public List<Set<K>> match(List<E> entities) {
+        List<Set<K>> result = new ArrayList<>(entities.size());
+        BitSet candidates = new BitSet();
+        this.lock.readLock().lock();
+        try {
+            for (E entity : entities) {
+                result.add(match(entity, candidates));
+                candidates.clear();
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private Set<K> match(E entity, BitSet candidates) {
+        Values values = new Values(entity);
+        this.unindexed.or(candidates);
+        for (SelectorIndex index : this.indexes.values()) {
+            for (Object value : values.get(index.selector)) {
+                if (value == null) {
+                    index.nulls.or(candidates);
+                    continue;
+                }
+                Postings postings = index.equalities.get(value);
+                if (postings != null) {
+                    postings.or(candidates);
+                }
+                if (index.ranges.size() > 0 && value instanceof Comparable) {
+                    index.ranges.stab((Comparable) value, candidates::set);
+                }
+            }
+        }
+        Set<K> result = new LinkedHashSet<>();
+        for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+            Subscription<K> subscription = this.slots.get(slot);
+            if (subscription.condition.test(values)) {
+                result.add(subscription.key);
+            }
+        }
+        return result;
+    }
+
+    private void register(Subscription<K> subscription) {
+        if (subscription.anchors == null) {
+            this.unindexed.add(subscription.slot);
+            return;
+        }
+        for (Anchor anchor : subscription.anchors) {
+            SelectorIndex index = this.indexes.computeIfAbsent(anchor.selector.name,
+                    name -> new SelectorIndex(anchor.selector));
+            index.anchors++;
+            if (anchor.values != null) {
+                for (Object value : anchor.values) {
+                    index.equalities.computeIfAbsent(value, key -> new Postings()).add(subscription.slot);
+                }
+            } else if (anchor.range) {
+                anchor.handle = index.ranges.add(anchor.low, anchor.lowInclusive, anchor.high, anchor.highInclusive,
+                        subscription.slot);
+            } else {
+                index.nulls.add(subscription.slot);
+            }
+        }
+    }
+
+    private void unregister(Subscription<K> subscription) {
+        if (subscription.anchors == null) {
+            this.unindexed.remove(subscription.slot);
+            return;
+        }
+        for (Anchor anchor : subscription.anchors) {
+            SelectorIndex index = this.indexes.get(anchor.selector.name);
+            if (anchor.values != null) {
+                for (Object value : anchor.values) {
+                    Postings postings = index.equalities.get(value);
+                    postings.remove(subscription.slot);
+                    if (postings.isEmpty()) {
+                        index.equalities.remove(value);
+                    }
+                }
+            } else if (anchor.range) {
+                index.ranges.remove(anchor.handle);
+            } else {
+                index.nulls.remove(subscription.slot);
+            }
+            if (--index.anchors == 0) {
+                this.indexes.remove(anchor.selector.name);
+            }
+        }
+    }
+
+    /**
+     * Choose the anchors of the condition.
+     *
+     * @return Anchors, an empty list if the condition never matches, or null if the condition can't be indexed
+     */
+    private static List<Anchor> getAnchors(Condition condition) {
+        if (condition instanceof Comparison) {
+            return ((Comparison) condition).getAnchors();
+        }
+        Logical logical = (Logical) condition;
+        if (!logical.and) {
+            List<Anchor> anchors = new ArrayList<>();
+            for (Condition child : logical.children) {
+                List<Anchor> childAnchors = getAnchors(child);
+                if (childAnchors == null) {
+                    return null;
+                }
+                anchors.addAll(childAnchors);
+            }
+            return anchors;
+        }
+        List<Anchor> best = null;
+        Map<Selector, Anchor> intervals = new LinkedHashMap<>();
+        for (Condition child : logical.children) {
+            List<Anchor> childAnchors = getAnchors(child);
+            if (childAnchors == null) {
+                continue;
+            }
+            if (best == null || getCost(childAnchors) < getCost(best)) {
+                best = childAnchors;
+            }
+            if (childAnchors.size() == 1 && childAnchors.get(0).range && !childAnchors.get(0).selector.multiValued) {
+                Anchor anchor = childAnchors.get(0);
+                Anchor interval = intervals.get(anchor.selector);
+                intervals.put(anchor.selector, interval == null ? anchor : interval.intersect(anchor));
+            }
+        }
+        for (Anchor interval : intervals.values()) {
+            List<Anchor> anchors = interval.isEmpty() ? Collections.emptyList() :
+                    Collections.singletonList(interval);
+            if (best == null || getCost(anchors) < getCost(best)) {
+                best = anchors;
+            }
+        }
+        return best;
+    }
+
+    private static int getCost(List<Anchor> anchors) {
+        int cost = 0;
+        for (Anchor anchor : anchors) {
+            cost += anchor.values != null ? anchor.values.size() * EQUALS_COST : (anchor.range ?
+                    (anchor.low != null && anchor.high != null ? BOUNDED_RANGE_COST : RANGE_COST) : NULL_COST);
+        }
+        return cost;
+    }
+
+    private Condition compile(Node node) {
+        if (node instanceof LogicalNode) {
+            List<Condition> children = new ArrayList<>();
+            for (Node child : ((LogicalNode) node).getChildren()) {
+                children.add(compile(child));
+            }
+            return new Logical(node instanceof AndNode, children);
+        }
+        ComparisonNode comparisonNode = (ComparisonNode) node;
+        Operator operator = Operator.get(comparisonNode.getOperator().getSymbol());
+        if (operator == null) {
+            throw unsupported("operator", comparisonNode.getOperator().getSymbol());
+        }
+        Selector selector = this.selectors.get(comparisonNode.getSelector());
+        if (selector == null) {
+            selector = new Selector(comparisonNode.getSelector(),
+                    this.qrsqlConfig.getFieldMetadata(this.entityClass, comparisonNode.getSelector()));
+            this.selectors.put(selector.name, selector);
+        }
+        return new Comparison(selector, operator, getValue(selector, comparisonNode.getArguments()));
+    }
+
+    private Object getValue(Selector selector, List<String> arguments) {
+        try {
+            FieldMetadata fieldMetadata = selector.fieldMetadata;
+            FieldTypeHandler fieldTypeHandler = this.qrsqlConfig.getFieldTypeHandler(fieldMetadata.getType());
+            Object value = fieldTypeHandler.getValue(arguments, fieldMetadata, this.qrsqlConfig);
+            if (value instanceof Collection) {
+                List<Object> normalized = new ArrayList<>(((Collection) value).size());
+                for (Object item : (Collection) value) {
+                    normalized.add(StoreIndex.normalize(item));
+                }
+                return normalized;
+            }
+            return StoreIndex.normalize(value);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    private static QrsqlException unsupported(String kind, String value) {
+        return new QrsqlException("The " + kind + " is not supported by the subscription matcher: " + value);
+    }
+
+    /**
+     * Field chain of a selector.
+     */
+    private static final class Selector {
+
+        private final String name;
+        private final FieldMetadata fieldMetadata;
+        private final Field[] fields;
+        private final Integer[] listIndexes;
+        private final boolean[] collections;
+        private final boolean multiValued;
+
+        Selector(String name, List<FieldMetadata> fieldMetadataList) {
+            this.name = name;
+            this.fieldMetadata = fieldMetadataList.get(fieldMetadataList.size() - 1);
+            this.fields = new Field[fieldMetadataList.size()];
+            this.listIndexes = new Integer[fieldMetadataList.size()];
+            this.collections = new boolean[fieldMetadataList.size()];
+            boolean collection = false;
+            for (int i = 0; i < this.fields.length; i++) {
+                FieldMetadata fieldMetadata = fieldMetadataList.get(i);
+                Field field = fieldMetadata.getField();
+                if (field == null) {
+                    throw unsupported("selector", name);
+                }
+                field.setAccessible(true);
+                this.fields[i] = field;
+                this.listIndexes[i] = fieldMetadata.getFieldSelectorIndex();
+                this.collections[i] = Boolean.TRUE.equals(fieldMetadata.getCollection()) &&
+                        this.listIndexes[i] == null;
+                collection |= this.collections[i];
+            }
+            this.multiValued = collection;
+        }
+
+        /**
+         * @return Values of the selector, a null element for a missing value or an empty collection
+         */
+        List<Object> read(Object entity) {
+            List<Object> current = Collections.singletonList(entity);
+            for (int i = 0; i < this.fields.length; i++) {
+                List<Object> next = new ArrayList<>(current.size());
+                for (Object item : current) {
+                    Object value = item != null ? get(this.fields[i], item) : null;
+                    if (this.listIndexes[i] != null) {
+                        value = value instanceof List && this.listIndexes[i] < ((List) value).size() ?
+                                ((List) value).get(this.listIndexes[i]) : null;
+                    }
+                    if (this.collections[i] && value instanceof Collection && !((Collection) value).isEmpty()) {
+                        next.addAll((Collection) value);
+                    } else {
+                        next.add(this.collections[i] ? null : value);
+                    }
+                }
+                current = next;
+            }
+            List<Object> normalized = new ArrayList<>(current.size());
+            for (Object value : current) {
+                normalized.add(StoreIndex.normalize(value));
+            }
+            return normalized;
+        }
+
+        private static Object get(Field field, Object item) {
+            try {
+                return field.get(item);
+            } catch (IllegalAccessException ex) {
+                throw new QrsqlException(ex);
+            }
+        }
+    }
+
+    /**
+     * Values of one matched entity, each selector is read once.
+     */
+    private static final class Values {
+
+        private final Object entity;
+        private final Map<Selector, List<Object>> values = new HashMap<>();
+
+        Values(Object entity) {
+            this.entity = entity;
+        }
+
+        List<Object> get(Selector selector) {
+            return this.values.computeIfAbsent(selector, key -> key.read(this.entity));
+        }
+    }
+
+    private abstract static class Condition {
+        abstract boolean test(Values values);
+    }
+
+    private static final class Logical extends Condition {
+
+        private final boolean and;
+        private final List<Condition> children;
+
+        Logical(boolean and, List<Condition> children) {
+            this.and = and;
+            this.children = children;
+        }
+
+        @Override
+        boolean test(Values values) {
+            for (Condition child : this.children) {
+                if (child.test(values) != this.and) {
+                    return !this.and;
+                }
+            }
+            return this.and;
+        }
+    }
+
+    private static final class Comparison extends Condition {
+
+        private final Selector selector;
+        private final Operator operator;
+        private final Object value;
+        private final Predicate<Object> predicate;
+
+        Comparison(Selector selector, Operator operator, Object value) {
+            this.selector = selector;
+            this.operator = operator;
+            this.value = value;
+            this.predicate = getPredicate();
+        }
+
+        @Override
+        boolean test(Values values) {
+            for (Object item : values.get(this.selector)) {
+                if (this.predicate.test(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Predicate<Object> getPredicate() {
+            switch (this.operator) {
+                case ISNULL:
+                    return item -> item == null;
+                case ISNOTNULL:
+                    return item -> item != null;
+                case ISTRUE:
+                    return Boolean.TRUE::equals;
+                case ISFALSE:
+                    return Boolean.FALSE::equals;
+                case EQUALS:
+                    return item -> item != null && item.equals(this.value);
+                case NOTEQUALS:
+                    return item -> item != null && this.value != null && !item.equals(this.value);
+                case IN:
+                    Set<Object> in = new HashSet<>(asCollection(this.value));
+                    return item -> item != null && in.contains(item);
+                case NOTIN:
+                    Set<Object> notIn = new HashSet<>(asCollection(this.value));
+                    return notIn.contains(null) ? item -> false : item -> item != null && !notIn.contains(item);
+                case GREATER:
+                case AFTER:
+                    return item -> compare(item, result -> result > 0);
+                case GREATER_OR_EQUALS:
+                    return item -> compare(item, result -> result >= 0);
+                case LESS_THAN:
+                case BEFORE:
+                    return item -> compare(item, result -> result < 0);
+                case LESS_THAN_OR_EQUALS:
+                    return item -> compare(item, result -> result <= 0);
+                default:
+                    break;
+            }
+            Predicate<String> predicate = this.value instanceof String ?
+                    StringMatcher.get(this.operator, (String) this.value) : null;
+            if (predicate == null) {
+                throw unsupported("operator", this.operator.getRsqlOperator()[0] + " on " + this.selector.name);
+            }
+            boolean negated = StringMatcher.isNegated(this.operator);
+            return item -> item instanceof String && predicate.test((String) item) != negated;
+        }
+
+        private boolean compare(Object item, IntPredicate test) {
+            return item != null && this.value != null && test.test(((Comparable) item).compareTo(this.value));
+        }
+
+        List<Anchor> getAnchors() {
+            switch (this.operator) {
+                case ISNULL:
+                    return Collections.singletonList(new Anchor(this.selector));
+                case ISTRUE:
+                    return Collections.singletonList(new Anchor(this.selector,
+                            Collections.singletonList(Boolean.TRUE)));
+                case ISFALSE:
+                    return Collections.singletonList(new Anchor(this.selector,
+                            Collections.singletonList(Boolean.FALSE)));
+                case EQUALS:
+                case IN:
+                    Set<Object> values = new LinkedHashSet<>(asCollection(this.value));
+                    values.remove(null);
+                    return values.isEmpty() ? Collections.emptyList() :
+                            Collections.singletonList(new Anchor(this.selector, new ArrayList<>(values)));
+                default:
+                    break;
+            }
+            boolean range = this.operator == Operator.GREATER || this.operator == Operator.AFTER ||
+                    this.operator == Operator.GREATER_OR_EQUALS || this.operator == Operator.LESS_THAN ||
+                    this.operator == Operator.BEFORE || this.operator == Operator.LESS_THAN_OR_EQUALS;
+            if (range) {
+                if (!(this.value instanceof Comparable)) {
+                    return this.value == null ? Collections.emptyList() : null;
+                }
+                Comparable bound = (Comparable) this.value;
+                boolean lower = this.operator == Operator.GREATER || this.operator == Operator.AFTER ||
+                        this.operator == Operator.GREATER_OR_EQUALS;
+                boolean inclusive = this.operator == Operator.GREATER_OR_EQUALS ||
+                        this.operator == Operator.LESS_THAN_OR_EQUALS;
+                return Collections.singletonList(lower ? new Anchor(this.selector, bound, inclusive, null, false) :
+                        new Anchor(this.selector, null, false, bound, inclusive));
+            }
+            if (this.value instanceof String && !StringMatcher.isNegated(this.operator)) {
+                String prefix = StringMatcher.getPrefix(this.operator, (String) this.value);
+                if (!prefix.isEmpty()) {
+                    return Collections.singletonList(new Anchor(this.selector, prefix, true, getSuccessor(prefix),
+                            false));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return The least string which is greater than all strings with the prefix, or null if there is none
+         */
+        private static String getSuccessor(String prefix) {
+            for (int i = prefix.length() - 1; i >= 0; i--) {
+                if (prefix.charAt(i) != Character.MAX_VALUE) {
+                    return prefix.substring(0, i) + (char) (prefix.charAt(i) + 1);
+                }
+            }
+            return null;
+        }
+
+        private static Collection<?> asCollection(Object value) {
+            return value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+        }
+    }
+
+    /**
+     * Necessary comparison of a filter: equality values, an interval or a null check of a selector.
+     */
+    private static final class Anchor {
+
+        private final Selector selector;
+        private final List<Object> values;
+        private final boolean range;
+        private final Comparable low;
+        private final boolean lowInclusive;
+        private final Comparable high;
+        private final boolean highInclusive;
+        private Object handle;
+
+        Anchor(Selector selector) {
+            this(selector, null, false, null, false, null, false);
+        }
+
+        Anchor(Selector selector, List<Object> values) {
+            this(selector, values, false, null, false, null, false);
+        }
+
+        Anchor(Selector selector, Comparable low, boolean lowInclusive, Comparable high, boolean highInclusive) {
+            this(selector, null, true, low, lowInclusive, high, highInclusive);
+        }
+
+        private Anchor(Selector selector, List<Object> values, boolean range, Comparable low, boolean lowInclusive,
+                       Comparable high, boolean highInclusive) {
+            this.selector = selector;
+            this.values = values;
+            this.range = range;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+        }
+
+        Anchor intersect(Anchor other) {
+            boolean otherLow = this.low == null || (other.low != null && (other.low.compareTo(this.low) > 0 ||
+                    (other.low.compareTo(this.low) == 0 && !other.lowInclusive)));
+            boolean otherHigh = this.high == null || (other.high != null && (other.high.compareTo(this.high) < 0 ||
+                    (other.high.compareTo(this.high) == 0 && !other.highInclusive)));
+            return new Anchor(this.selector, otherLow ? other.low : this.low,
+                    otherLow ? other.lowInclusive : this.lowInclusive, otherHigh ? other.high : this.high,
+                    otherHigh ? other.highInclusive : this.highInclusive);
+        }
+
+        boolean isEmpty() {
+            if (this.low == null || this.high == null) {
+                return false;
+            }
+            int compare = this.low.compareTo(this.high);
+            return compare > 0 || (compare == 0 && !(this.lowInclusive && this.highInclusive));
+        }
+    }
+
+    /**
+     * Anchors of one selector.
+     */
+    private static final class SelectorIndex {
+
+        private final Selector selector;
+        private final Map<Object, Postings> equalities = new HashMap<>();
+        private final IntervalTree ranges = new IntervalTree();
+        private final Postings nulls = new Postings();
+        private int anchors;
+
+        SelectorIndex(Selector selector) {
+            this.selector = selector;
+        }
+    }
+
+    private static final class Subscription<K> {
+
+        private final K key;
+        private final int slot;
+        private final Condition condition;
+        private final List<Anchor> anchors;
+
+        Subscription(K key, int slot, Condition condition, List<Anchor> anchors) {
+            this.key = key;
+            this.slot = slot;
+            this.condition = condition;
+            this.anchors = anchors;
+        }
+    }
+}
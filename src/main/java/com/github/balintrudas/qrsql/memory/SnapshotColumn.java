@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import com.github.balintrudas.qrsql.operator.Operator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * One column of a {@link QrsqlColumnSnapshot}. The values are appended row by row during the load into direct
+ * buffers, the filters return selection bitmaps as 64 bit words. The rows with null value are never selected by
+ * the comparison filters.
+ *
+ * @author Balint Rudas
+ */
+abstract class SnapshotColumn {
+
+    private final String name;
+    protected long[] nulls = new long[1];
+    protected int rows;
+
+    SnapshotColumn(String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * Append the value of the next row.
+     *
+     * @param value column value, null is recorded in the null bitmap
+     */
+    final void append(Object value) {
+        if (this.rows == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Column snapshot is full: " + this.name);
+        }
+        if (value == null) {
+            int word = this.rows >>> 6;
+            if (word >= this.nulls.length) {
+                this.nulls = Arrays.copyOf(this.nulls, Math.max(word + 1, this.nulls.length * 2));
+            }
+            this.nulls[word] |= 1L << this.rows;
+        }
+        appendValue(this.rows, value);
+        this.rows++;
+    }
+
+    /**
+     * Finish the load, the null bitmap is sized to the rows.
+     */
+    void seal() {
+        this.nulls = Arrays.copyOf(this.nulls, words(this.rows));
+    }
+
+    /**
+     * Evaluate the comparison.
+     *
+     * @param operator operator
+     * @param value    converted value of the operator, a list for the multi value operators
+     * @return Selection bitmap, or null if the operator is not supported by the column
+     */
+    abstract long[] filter(Operator operator, Object value);
+
+    protected abstract void appendValue(int row, Object value);
+
+    long[] isNull() {
+        return this.nulls.clone();
+    }
+
+    long[] isNotNull() {
+        return complement(new long[words(this.rows)]);
+    }
+
+    /**
+     * @return The rows which are not selected and not null
+     */
+    protected long[] complement(long[] selection) {
+        for (int word = 0; word < selection.length; word++) {
+            selection[word] = ~selection[word] & ~this.nulls[word];
+        }
+        int tail = this.rows & 63;
+        if (tail != 0) {
+            selection[selection.length - 1] &= (1L << tail) - 1;
+        }
+        return selection;
+    }
+
+    static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Column buffer is too large: " + bytes + " bytes");
+        }
+        return ByteBuffer.allocateDirect((int) Math.max(bytes, 8L)).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Index of one basic field of a {@link QrsqlEntityStore}. Boolean and enum fields get a bitmap per value, comparable
+ * fields a hash index for the equality and a sorted index for the ranges over the same postings, other fields only
+ * the hash index. The null values are kept in a separate bitmap.
+ *
+ * @author Balint Rudas
+ */
+final class StoreIndex {
+
+    enum Kind {
+        BITMAP, SORTED, HASH
+    }
+
+    private final String name;
+    private final Kind kind;
+    private final Function<Object, Object> accessor;
+    private final BitSet nulls = new BitSet();
+    private final BitSet[] bitmaps;
+    private final Map<Object, Postings> hash;
+    private final NavigableMap<Object, Postings> sorted;
+
+    StoreIndex(String name, Class type, Function<Object, Object> accessor) {
+        this.name = name;
+        this.accessor = accessor;
+        if (type == boolean.class || type == Boolean.class) {
+            this.kind = Kind.BITMAP;
+            this.bitmaps = new BitSet[]{new BitSet(), new BitSet()};
+        } else if (type.isEnum()) {
+            this.kind = Kind.BITMAP;
+            this.bitmaps = new BitSet[type.getEnumConstants().length];
+            for (int i = 0; i < this.bitmaps.length; i++) {
+                this.bitmaps[i] = new BitSet();
+            }
+        } else {
+            this.kind = type.isPrimitive() || Comparable.class.isAssignableFrom(type) ? Kind.SORTED : Kind.HASH;
+            this.bitmaps = null;
+        }
+        this.hash = this.kind == Kind.BITMAP ? null : new HashMap<>();
+        this.sorted = this.kind == Kind.SORTED ? new TreeMap<>() : null;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Read the index key of the entity: the field value, dates are normalized to {@link Date} so the JDBC subclasses
+     * compare equal to the parsed values.
+     */
+    Object read(Object entity) {
+        return normalize(this.accessor.apply(entity));
+    }
+
+    void add(int slot, Object key) {
+        if (key == null) {
+            this.nulls.set(slot);
+        } else if (this.kind == Kind.BITMAP) {
+            this.bitmaps[ordinal(key)].set(slot);
+        } else {
+            Postings postings = this.hash.get(key);
+            if (postings == null) {
+                postings = new Postings();
+                this.hash.put(key, postings);
+                if (this.sorted != null) {
+                    this.sorted.put(key, postings);
+                }
+            }
+            postings.add(slot);
+        }
+    }
+
+    void remove(int slot, Object key) {
+        if (key == null) {
+            this.nulls.clear(slot);
+        } else if (this.kind == Kind.BITMAP) {
+            this.bitmaps[ordinal(key)].clear(slot);
+        } else {
+            Postings postings = this.hash.get(key);
+            if (postings != null) {
+                postings.remove(slot);
+                if (postings.isEmpty()) {
+                    this.hash.remove(key);
+                    if (this.sorted != null) {
+                        this.sorted.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    void nulls(BitSet result) {
+        result.or(this.nulls);
+    }
+
+    void notNulls(BitSet live, BitSet result) {
+        BitSet notNulls = (BitSet) live.clone();
+        notNulls.andNot(this.nulls);
+        result.or(notNulls);
+    }
+
+    void eq(Object key, BitSet result) {
+        if (key == null) {
+            return;
+        }
+        if (this.kind == Kind.BITMAP) {
+            result.or(this.bitmaps[ordinal(key)]);
+        } else {
+            Postings postings = this.hash.get(key);
+            if (postings != null) {
+                postings.or(result);
+            }
+        }
+    }
+
+    /**
+     * Collect the slots of the keys in the range, a null bound is unbounded.
+     */
+    void range(Object from, boolean fromInclusive, Object to, boolean toInclusive, BitSet result) {
+        NavigableMap<Object, Postings> range = this.sorted;
+        if (from != null) {
+            range = range.tailMap(from, fromInclusive);
+        }
+        if (to != null) {
+            range = range.headMap(to, toInclusive);
+        }
+        for (Postings postings : range.values()) {
+            postings.or(result);
+        }
+    }
+
+    /**
+     * Collect the slots of the keys which start with the prefix and match the predicate. Only the distinct keys are
+     * tested, a sorted index scans only the keys with the prefix.
+     */
+    void scan(String prefix, Predicate<Object> predicate, BitSet result) {
+        if (this.sorted != null && !prefix.isEmpty()) {
+            for (Map.Entry<Object, Postings> entry : this.sorted.tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().toString().startsWith(prefix)) {
+                    break;
+                }
+                if (predicate.test(entry.getKey())) {
+                    entry.getValue().or(result);
+                }
+            }
+        } else {
+            for (Map.Entry<Object, Postings> entry : this.hash.entrySet()) {
+                if (predicate.test(entry.getKey())) {
+                    entry.getValue().or(result);
+                }
+            }
+        }
+    }
+
+    NavigableMap<Object, Postings> getSorted() {
+        return this.sorted;
+    }
+
+    BitSet getNulls() {
+        return this.nulls;
+    }
+
+    /**
+     * @return Comparator of the keys with the nulls first, or null if the keys are not ordered
+     */
+    Comparator<Object> getComparator() {
+        if (this.kind == Kind.HASH) {
+            return null;
+        }
+        Comparator<Object> comparator = this.kind == Kind.BITMAP ? Comparator.comparingInt(StoreIndex::ordinal) :
+                (left, right) -> ((Comparable) left).compareTo(right);
+        return Comparator.nullsFirst(comparator);
+    }
+
+    static Object normalize(Object value) {
+        return value instanceof Date && value.getClass() != Date.class ? new Date(((Date) value).getTime()) : value;
+    }
+
+    private static int ordinal(Object key) {
+        return key instanceof Boolean ? ((Boolean) key ? 1 : 0) : ((Enum) key).ordinal();
+    }
+}
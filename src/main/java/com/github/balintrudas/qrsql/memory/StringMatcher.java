@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.memory;
+
+import com.github.balintrudas.qrsql.dialect.StringPredicateDialect;
+import com.github.balintrudas.qrsql.operator.Operator;
+
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory evaluation of the string operators. The negated operators are evaluated by their positive predicate,
+ * the caller excludes the matches and the null values.
+ *
+ * @author Balint Rudas
+ */
+final class StringMatcher {
+
+    private StringMatcher() {
+    }
+
+    /**
+     * @return Whether the operator is the negation of the predicate returned by {@link #get(Operator, String)}
+     */
+    static boolean isNegated(Operator operator) {
+        return operator == Operator.NOTLIKE || operator == Operator.NOTEQUALS_IGNORECASE ||
+                operator == Operator.ISNOTEMPTY;
+    }
+
+    /**
+     * @param operator string operator
+     * @param value    value of the operator
+     * @return Positive predicate of the operator, or null if the operator is not a string operator
+     */
+    static Predicate<String> get(Operator operator, String value) {
+        switch (operator) {
+            case ISEMPTY:
+            case ISNOTEMPTY:
+                return String::isEmpty;
+            case STARTWITH:
+                return key -> key.startsWith(value);
+            case ENDWITH:
+                return key -> key.endsWith(value);
+            case CONTAINS:
+                return key -> key.contains(value);
+            case EQUALS_IGNORECASE:
+            case NOTEQUALS_IGNORECASE:
+                return key -> key.equalsIgnoreCase(value);
+            case STARTWITH_IGNORECASE:
+                return key -> key.regionMatches(true, 0, value, 0, value.length());
+            case ENDWITH_IGNORECASE:
+                return key -> key.regionMatches(true, key.length() - value.length(), value, 0, value.length());
+            case CONTAINS_IGNORECASE:
+                return like("%" + StringPredicateDialect.escape(value) + "%", true);
+            case LIKE:
+            case NOTLIKE:
+                return like(StringPredicateDialect.escapeLiterals(value), false);
+            case LIKE_IGNORECASE:
+                return like(StringPredicateDialect.escapeLiterals(value), true);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return Literal prefix of every match, the sorted indexes scan only the keys with the prefix
+     */
+    static String getPrefix(Operator operator, String value) {
+        if (operator == Operator.STARTWITH) {
+            return value;
+        } else if (operator != Operator.LIKE && operator != Operator.NOTLIKE) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_') {
+                break;
+            } else {
+                prefix.append(c);
+            }
+        }
+        return prefix.toString();
+    }
+
+    private static Predicate<String> like(String pattern, boolean ignoreCase) {
+        StringBuilder regex = new StringBuilder(pattern.length() + 8);
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == StringPredicateDialect.ESCAPE && i + 1 < pattern.length()) {
+                literal.append(pattern.charAt(++i));
+            } else if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        Pattern compiled = Pattern.compile(regex.toString(),
+                Pattern.DOTALL | (ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0));
+        return key -> compiled.matcher(key).matches();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.metadata;
+
+import com.querydsl.core.types.Path;
+
+import java.util.function.Function;
+
+/**
+ * Compile time metadata of one field of an entity, generated by
+ * {@link com.github.balintrudas.qrsql.apt.QrsqlAnnotationProcessor}.
+ *
+ * @author Balint Rudas
+ */
+public final class SelectorField {
+
+    private final String name;
+    private final Class type;
+    private final Class elementType;
+    private final Class<? extends Path> pathType;
+    private final Function<Object, Object> accessor;
+
+    /**
+     * @param name        field name
+     * @param type        field type
+     * @param elementType element type of a list or set field, otherwise null
+     * @param pathType    querydsl path type of the field, or of the element type for a list or set field
+     * @param accessor    getter of the field, null if the entity has no accessible getter
+     */
+    public SelectorField(String name, Class type, Class elementType, Class<? extends Path> pathType,
+                         Function<Object, Object> accessor) {
+        this.name = name;
+        this.type = type;
+        this.elementType = elementType;
+        this.pathType = pathType;
+        this.accessor = accessor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    public Class getElementType() {
+        return elementType;
+    }
+
+    public boolean isCollection() {
+        return elementType != null;
+    }
+
+    public Class<? extends Path> getPathType() {
+        return pathType;
+    }
+
+    public boolean hasAccessor() {
+        return accessor != null;
+    }
+
+    /**
+     * Read the value of the field with its getter.
+     *
+     * @param entity entity instance
+     * @return value of the field
+     * @throws UnsupportedOperationException If the entity has no accessible getter of the field
+     */
+    public Object getValue(Object entity) {
+        if (accessor == null) {
+            throw new UnsupportedOperationException("Field has no accessible getter: " + name);
+        }
+        return accessor.apply(entity);
+    }
+}
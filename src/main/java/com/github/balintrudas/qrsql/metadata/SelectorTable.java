@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.metadata;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compile time selector table of an entity: the fields of the entity and its superclasses with their types,
+ * element types, path types and getters. The tables are generated by
+ * {@link com.github.balintrudas.qrsql.apt.QrsqlAnnotationProcessor} as <tt>&lt;Entity&gt;_Qrsql</tt> classes next
+ * to the entities. {@link com.github.balintrudas.qrsql.FieldMetadata} uses the table when it is present and falls
+ * back to reflection otherwise.
+ *
+ * @author Balint Rudas
+ */
+public abstract class SelectorTable {
+
+    /**
+     * Suffix of the generated selector table classes.
+     */
+    public static final String SUFFIX = "_Qrsql";
+
+    private static final ClassValue<SelectorTable> TABLES = new ClassValue<SelectorTable>() {
+        @Override
+        protected SelectorTable computeValue(Class<?> type) {
+            return load(type);
+        }
+    };
+
+    private final Class entityClass;
+    private final Map<String, SelectorField> fields;
+
+    protected SelectorTable(Class entityClass, SelectorField... fields) {
+        this.entityClass = entityClass;
+        Map<String, SelectorField> fieldMap = new LinkedHashMap<>();
+        for (SelectorField field : fields) {
+            fieldMap.put(field.getName(), field);
+        }
+        this.fields = Collections.unmodifiableMap(fieldMap);
+    }
+
+    /**
+     * Return the generated selector table of the class.
+     *
+     * @param type entity class
+     * @return {@link SelectorTable} or null if no table was generated for the class
+     */
+    public static SelectorTable of(Class type) {
+        return TABLES.get(type);
+    }
+
+    private static SelectorTable load(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.getClassLoader() == null) {
+            return null;
+        }
+        try {
+            Class<?> tableClass = Class.forName(type.getName() + SUFFIX, true, type.getClassLoader());
+            Object table = tableClass.getField("INSTANCE").get(null);
+            if (table instanceof SelectorTable && ((SelectorTable) table).getEntityClass() == type) {
+                return (SelectorTable) table;
+            }
+        } catch (ClassNotFoundException | NoSuchFieldException | IllegalAccessException | LinkageError ex) {
+            return null;
+        }
+        return null;
+    }
+
+    public Class getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @param name field name
+     * @return {@link SelectorField} or null if the entity has no such field
+     */
+    public SelectorField getField(String name) {
+        return fields.get(name);
+    }
+
+    public Collection<SelectorField> getFields() {
+        return fields.values();
+    }
+}
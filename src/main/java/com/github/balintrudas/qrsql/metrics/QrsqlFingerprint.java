@@ -0,0 +1,218 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.metrics;
+
+import com.github.balintrudas.qrsql.operator.Operator;
+import cz.jirutka.rsql.parser.ast.*;
+
+import java.util.Objects;
+
+/**
+ * Value free fingerprint of a query. Queries which differ only in their values have the same fingerprint,
+ * so it can be used as a low cardinality tag. The fingerprint consists of the entity, the selector and operator
+ * structure of the where expression, the projection and the sort.
+ *
+ * @author Balint Rudas
+ */
+public final class QrsqlFingerprint {
+
+    /**
+     * Shape of the parts which were given with querydsl objects instead of string expressions.
+     */
+    public static final String EXPRESSION_SHAPE = "<expression>";
+
+    private final String entity;
+    private final String shape;
+    private final String projection;
+    private final String sort;
+    private final String id;
+
+    private QrsqlFingerprint(String entity, String shape, String projection, String sort) {
+        this.entity = entity;
+        this.shape = shape;
+        this.projection = projection;
+        this.sort = sort;
+        this.id = hash(entity + ':' + shape + ':' + projection + ':' + sort);
+    }
+
+    /**
+     * Create fingerprint from a parsed rsql expression.
+     *
+     * @param entityClass Target type
+     * @param rootNode    Parsed where expression
+     * @return {@link QrsqlFingerprint}
+     */
+    public static QrsqlFingerprint of(Class entityClass, Node rootNode) {
+        return of(entityClass, rootNode, null, null);
+    }
+
+    /**
+     * Create fingerprint from a parsed rsql expression with projection and sort.
+     *
+     * @param entityClass Target type
+     * @param rootNode    Parsed where expression
+     * @param projection  Normalized projection, null if the entity is selected
+     * @param sort        Normalized sort, null if the query is not ordered
+     * @return {@link QrsqlFingerprint}
+     */
+    public static QrsqlFingerprint of(Class entityClass, Node rootNode, String projection, String sort) {
+        StringBuilder shape = new StringBuilder();
+        rootNode.accept(new ShapeVisitor(), shape);
+        return new QrsqlFingerprint(entityClass.getSimpleName(), shape.toString(), projection, sort);
+    }
+
+    /**
+     * Create fingerprint for a query which was given with a querydsl predicate.
+     *
+     * @param entityClass Target type
+     * @return {@link QrsqlFingerprint}
+     */
+    public static QrsqlFingerprint ofPredicate(Class entityClass) {
+        return ofPredicate(entityClass, null, null);
+    }
+
+    /**
+     * Create fingerprint for a query which was given with a querydsl predicate with projection and sort.
+     *
+     * @param entityClass Target type
+     * @param projection  Normalized projection, null if the entity is selected
+     * @param sort        Normalized sort, null if the query is not ordered
+     * @return {@link QrsqlFingerprint}
+     */
+    public static QrsqlFingerprint ofPredicate(Class entityClass, String projection, String sort) {
+        return new QrsqlFingerprint(entityClass.getSimpleName(), EXPRESSION_SHAPE, projection, sort);
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    /**
+     * @return Normalized where expression, values are replaced with '?'
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * @return Normalized projection, null if the entity is selected
+     */
+    public String getProjection() {
+        return projection;
+    }
+
+    /**
+     * @return Normalized sort, null if the query is not ordered
+     */
+    public String getSort() {
+        return sort;
+    }
+
+    /**
+     * @return Short hexadecimal hash of the entity and the shape
+     */
+    public String getId() {
+        return id;
+    }
+
+    private static String hash(String value) {
+        //64 bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof QrsqlFingerprint)) return false;
+        QrsqlFingerprint that = (QrsqlFingerprint) o;
+        return entity.equals(that.entity) && shape.equals(that.shape) &&
+                Objects.equals(projection, that.projection) && Objects.equals(sort, that.sort);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(entity).append('[').append(shape);
+        if (projection != null) {
+            result.append(" select ").append(projection);
+        }
+        if (sort != null) {
+            result.append(" sort ").append(sort);
+        }
+        return result.append(']').toString();
+    }
+
+    /**
+     * Write the value free form of the rsql nodes.
+     */
+    private static class ShapeVisitor implements RSQLVisitor<Void, StringBuilder> {
+
+        @Override
+        public Void visit(AndNode node, StringBuilder shape) {
+            return visitLogical(node, shape, ';');
+        }
+
+        @Override
+        public Void visit(OrNode node, StringBuilder shape) {
+            return visitLogical(node, shape, ',');
+        }
+
+        @Override
+        public Void visit(ComparisonNode node, StringBuilder shape) {
+            Operator operator = Operator.get(node.getOperator().getSymbol());
+            shape.append(node.getSelector())
+                    .append(operator != null ? operator.getRsqlOperator()[0] : node.getOperator().getSymbol())
+                    .append(node.getArguments().size() > 1 ? "(?)" : "?");
+            return null;
+        }
+
+        private Void visitLogical(LogicalNode node, StringBuilder shape, char separator) {
+            boolean first = true;
+            for (Node child : node) {
+                if (!first) {
+                    shape.append(separator);
+                }
+                if (child instanceof LogicalNode) {
+                    shape.append('(');
+                    child.accept(this, shape);
+                    shape.append(')');
+                } else {
+                    child.accept(this, shape);
+                }
+                first = false;
+            }
+            return null;
+        }
+    }
+}
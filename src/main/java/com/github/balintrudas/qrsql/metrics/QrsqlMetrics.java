@@ -0,0 +1,65 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.metrics;
+
+/**
+ * Receives timing and count events of the Qrsql request phases.
+ * Implement this interface to forward the events to a metrics registry.
+ *
+ * @author Balint Rudas
+ */
+public interface QrsqlMetrics {
+
+    /**
+     * Whether the events should be measured at all. If it returns false Qrsql skips the time measurement
+     * and doesn't call the record methods.
+     *
+     * @return true if this metrics is enabled; false otherwise
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Record the elapsed time of a phase.
+     *
+     * @param phase       Measured phase
+     * @param entityClass Target type of the query
+     * @param fingerprint Value free fingerprint of the query
+     * @param nanos       Elapsed time in nanoseconds
+     */
+    void recordTime(QrsqlPhase phase, Class entityClass, QrsqlFingerprint fingerprint, long nanos);
+
+    /**
+     * Record a count of a phase, e.g. the number of fetched rows.
+     *
+     * @param phase       Measured phase
+     * @param entityClass Target type of the query
+     * @param fingerprint Value free fingerprint of the query
+     * @param count       Count
+     */
+    void recordCount(QrsqlPhase phase, Class entityClass, QrsqlFingerprint fingerprint, long count);
+
+}
@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.metrics;
+
+/**
+ * Phases of a Qrsql request which are reported to {@link QrsqlMetrics}.
+ *
+ * @author Balint Rudas
+ */
+public enum QrsqlPhase {
+    /**
+     * Parsing the rsql where expression.
+     */
+    PARSE,
+    /**
+     * Resolving {@link com.github.balintrudas.qrsql.FieldMetadata} for the field selectors.
+     */
+    METADATA_RESOLUTION,
+    /**
+     * Converting the parsed expression to a querydsl predicate.
+     */
+    PREDICATE_BUILD,
+    /**
+     * Converting the sort expression to querydsl order specifiers.
+     */
+    ORDER_BUILD,
+    /**
+     * Executing the query against the database.
+     */
+    EXECUTION,
+    /**
+     * Number of the fetched rows.
+     */
+    ROW_COUNT
+}
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.metrics;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Elapsed time of the phases and the row count of one query execution.
+ *
+ * @author Balint Rudas
+ */
+public final class QrsqlTimings {
+
+    private final long[] phaseTimes;
+    private final long rowCount;
+    private final long totalTime;
+
+    /**
+     * @param phaseTimes Elapsed time in nanoseconds indexed by {@link QrsqlPhase#ordinal()}
+     * @param rowCount   Number of the fetched rows
+     * @param totalTime  Elapsed time of the whole query in nanoseconds
+     */
+    public QrsqlTimings(long[] phaseTimes, long rowCount, long totalTime) {
+        this.phaseTimes = Arrays.copyOf(phaseTimes, QrsqlPhase.values().length);
+        this.rowCount = rowCount;
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * @param phase Measured phase
+     * @return Elapsed time of the phase in nanoseconds
+     */
+    public long getTime(QrsqlPhase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * @return Number of the fetched rows
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return Elapsed time of the whole query in nanoseconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (QrsqlPhase phase : QrsqlPhase.values()) {
+            if (phase != QrsqlPhase.ROW_COUNT) {
+                result.append(phase.name().toLowerCase(Locale.ENGLISH)).append('=')
+                        .append(toMillis(phaseTimes[phase.ordinal()])).append("ms, ");
+            }
+        }
+        return result.append("rows=").append(rowCount).append(", total=").append(toMillis(totalTime)).append("ms").toString();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ENGLISH, "%.3f", nanos / 1_000_000d);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Log the queries which exceed a threshold and keep a table of the executed query fingerprints,
+ * so the slowest and the most frequent query shapes can be queried at runtime.
+ * The instance is thread-safe and should be shared through {@link com.github.balintrudas.qrsql.QrsqlConfig}.
+ *
+ * @author Balint Rudas
+ */
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+
+    private final long threshold;
+    private final int maxFingerprints;
+    private final Level level;
+    private final Map<QrsqlFingerprint, Entry> entries = new ConcurrentHashMap<>();
+
+    private SlowQueryLog(Builder builder) {
+        this.threshold = builder.threshold;
+        this.maxFingerprints = builder.maxFingerprints;
+        this.level = builder.level;
+    }
+
+    /**
+     * Register an execution. It is logged if the total time exceeds the threshold.
+     *
+     * @param fingerprint Fingerprint of the executed query
+     * @param timings     Timing breakdown of the execution
+     * @param query       Supplier of the generated query string, called only for slow queries
+     */
+    public void record(QrsqlFingerprint fingerprint, QrsqlTimings timings, Supplier<String> query) {
+        boolean slow = timings.getTotalTime() >= this.threshold;
+        Entry entry = getEntry(fingerprint);
+        if (entry != null) {
+            entry.add(timings.getTotalTime(), slow);
+        }
+        if (slow && LOGGER.isLoggable(this.level)) {
+            LOGGER.log(this.level, "Slow Qrsql query " + fingerprint.getId() + " " + fingerprint + " timings: " +
+                    timings + " query: " + query.get());
+        }
+    }
+
+    /**
+     * @param limit Maximum number of the returned fingerprints
+     * @return Fingerprints ordered by the longest execution time
+     */
+    public List<SlowQueryStats> getSlowest(int limit) {
+        return getTop(limit, Comparator.comparingLong(SlowQueryStats::getMaxTime).reversed());
+    }
+
+    /**
+     * @param limit Maximum number of the returned fingerprints
+     * @return Fingerprints ordered by the number of executions
+     */
+    public List<SlowQueryStats> getMostFrequent(int limit) {
+        return getTop(limit, Comparator.comparingLong(SlowQueryStats::getCount).reversed());
+    }
+
+    /**
+     * Remove all the collected statistics.
+     */
+    public void reset() {
+        this.entries.clear();
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    private List<SlowQueryStats> getTop(int limit, Comparator<SlowQueryStats> comparator) {
+        List<SlowQueryStats> stats = new ArrayList<>();
+        for (Map.Entry<QrsqlFingerprint, Entry> entry : this.entries.entrySet()) {
+            stats.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        stats.sort(comparator);
+        return stats.size() > limit ? new ArrayList<>(stats.subList(0, limit)) : stats;
+    }
+
+    private Entry getEntry(QrsqlFingerprint fingerprint) {
+        Entry entry = this.entries.get(fingerprint);
+        if (entry == null) {
+            if (this.entries.size() >= this.maxFingerprints) {
+                evictLeastFrequent();
+            }
+            entry = this.entries.computeIfAbsent(fingerprint, key -> new Entry());
+        }
+        return entry;
+    }
+
+    private void evictLeastFrequent() {
+        QrsqlFingerprint leastFrequent = null;
+        long leastCount = Long.MAX_VALUE;
+        for (Map.Entry<QrsqlFingerprint, Entry> entry : this.entries.entrySet()) {
+            long count = entry.getValue().count.sum();
+            if (count < leastCount) {
+                leastCount = count;
+                leastFrequent = entry.getKey();
+            }
+        }
+        if (leastFrequent != null) {
+            this.entries.remove(leastFrequent);
+        }
+    }
+
+    private static class Entry {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder slowCount = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final AtomicLong maxTime = new AtomicLong();
+
+        private void add(long time, boolean slow) {
+            count.increment();
+            totalTime.add(time);
+            if (slow) {
+                slowCount.increment();
+            }
+            maxTime.accumulateAndGet(time, Math::max);
+        }
+
+        private SlowQueryStats snapshot(QrsqlFingerprint fingerprint) {
+            return new SlowQueryStats(fingerprint, count.sum(), slowCount.sum(), totalTime.sum(), maxTime.get());
+        }
+    }
+
+    /**
+     * Help to create and configure {@link SlowQueryLog}
+     */
+    public static class Builder {
+        private long threshold = TimeUnit.SECONDS.toNanos(1);
+        private int maxFingerprints = 1000;
+        private Level level = Level.WARNING;
+
+        /**
+         * Queries which run longer than the threshold are logged. Default: 1 second.
+         *
+         * @param threshold threshold
+         * @param unit      time unit of the threshold
+         * @return {@link Builder}
+         */
+        public Builder threshold(long threshold, TimeUnit unit) {
+            this.threshold = unit.toNanos(threshold);
+            return this;
+        }
+
+        /**
+         * Maximum number of the tracked fingerprints. If the table is full the least frequent
+         * fingerprint is removed. Default: 1000.
+         *
+         * @param maxFingerprints table size
+         * @return {@link Builder}
+         */
+        public Builder maxFingerprints(int maxFingerprints) {
+            if (maxFingerprints < 1) {
+                throw new IllegalArgumentException("Max fingerprints must be positive.");
+            }
+            this.maxFingerprints = maxFingerprints;
+            return this;
+        }
+
+        /**
+         * Log level of the slow queries. Default: {@link Level#WARNING}.
+         *
+         * @param level log level
+         * @return {@link Builder}
+         */
+        public Builder level(Level level) {
+            this.level = level;
+            return this;
+        }
+
+        public SlowQueryLog build() {
+            return new SlowQueryLog(this);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.metrics;
+
+/**
+ * Snapshot of the aggregated executions of one {@link QrsqlFingerprint}.
+ *
+ * @author Balint Rudas
+ */
+public final class SlowQueryStats {
+
+    private final QrsqlFingerprint fingerprint;
+    private final long count;
+    private final long slowCount;
+    private final long totalTime;
+    private final long maxTime;
+
+    public SlowQueryStats(QrsqlFingerprint fingerprint, long count, long slowCount, long totalTime, long maxTime) {
+        this.fingerprint = fingerprint;
+        this.count = count;
+        this.slowCount = slowCount;
+        this.totalTime = totalTime;
+        this.maxTime = maxTime;
+    }
+
+    public QrsqlFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return Number of the executions
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Number of the executions which exceeded the threshold
+     */
+    public long getSlowCount() {
+        return slowCount;
+    }
+
+    /**
+     * @return Sum of the execution times in nanoseconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return Longest execution time in nanoseconds
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * @return Average execution time in nanoseconds
+     */
+    public long getMeanTime() {
+        return count == 0 ? 0 : totalTime / count;
+    }
+
+    @Override
+    public String toString() {
+        return fingerprint.getId() + " " + fingerprint + " count=" + count + " slowCount=" + slowCount +
+                " meanTime=" + getMeanTime() + "ns maxTime=" + maxTime + "ns";
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.parser;
+
+import cz.jirutka.rsql.parser.ParseException;
+import cz.jirutka.rsql.parser.RSQLParserException;
+import cz.jirutka.rsql.parser.UnknownOperatorException;
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.ComparisonOperator;
+import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.OrNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hand-written RSQL parser with the grammar of the {@link cz.jirutka.rsql.parser.RSQLParser}. The input is tokenized in
+ * one pass over the string without a character stream, the operators are resolved from a lookup table and the
+ * selectors are interned, so repeated selectors share one instance. The result is the same syntax tree and the errors
+ * are the same {@link RSQLParserException}, with an {@link UnknownOperatorException} cause for an unknown operator.
+ * <p>
+ * The parser is immutable and thread-safe.
+ *
+ * @author Balint Rudas
+ */
+public final class QrsqlParser {
+
+    private static final int MAX_INTERNED_SELECTORS = 4096;
+
+    private final Map<String, ComparisonOperator> operators;
+    private final ConcurrentMap<String, String> selectors = new ConcurrentHashMap<>();
+
+    /**
+     * @param operators supported comparison operators
+     */
+    public QrsqlParser(Set<ComparisonOperator> operators) {
+        if (operators == null || operators.isEmpty()) {
+            throw new IllegalArgumentException("operators must not be null or empty");
+        }
+        Map<String, ComparisonOperator> lookup = new HashMap<>();
+        for (ComparisonOperator operator : operators) {
+            for (String symbol : operator.getSymbols()) {
+                lookup.put(symbol, operator);
+            }
+        }
+        this.operators = Collections.unmodifiableMap(lookup);
+    }
+
+    /**
+     * Parse the RSQL expression.
+     *
+     * @param query RSQL expression
+     * @return root {@link Node} of the syntax tree
+     * @throws RSQLParserException If the expression is invalid
+     */
+    public Node parse(String query) throws RSQLParserException {
+        if (query == null) {
+            throw new IllegalArgumentException("query must not be null");
+        }
+        try {
+            Cursor cursor = new Cursor(query);
+            cursor.next();
+            Node node = parseOr(cursor);
+            if (cursor.token != Token.EOF) {
+                throw cursor.unexpected();
+            }
+            return node;
+        } catch (ParseException | IllegalArgumentException ex) {
+            throw new RSQLParserException(ex);
+        }
+    }
+
+    private Node parseOr(Cursor cursor) throws ParseException {
+        Node first = parseAnd(cursor);
+        if (cursor.token != Token.OR) {
+            return first;
+        }
+        List<Node> children = new ArrayList<>();
+        children.add(first);
+        while (cursor.token == Token.OR) {
+            cursor.next();
+            children.add(parseAnd(cursor));
+        }
+        return new OrNode(children);
+    }
+
+    private Node parseAnd(Cursor cursor) throws ParseException {
+        Node first = parseConstraint(cursor);
+        if (cursor.token != Token.AND) {
+            return first;
+        }
+        List<Node> children = new ArrayList<>();
+        children.add(first);
+        while (cursor.token == Token.AND) {
+            cursor.next();
+            children.add(parseConstraint(cursor));
+        }
+        return new AndNode(children);
+    }
+
+    private Node parseConstraint(Cursor cursor) throws ParseException {
+        if (cursor.token == Token.LPAREN) {
+            cursor.next();
+            Node node = parseOr(cursor);
+            cursor.expect(Token.RPAREN);
+            cursor.next();
+            return node;
+        }
+        return parseComparison(cursor);
+    }
+
+    private Node parseComparison(Cursor cursor) throws ParseException {
+        cursor.expect(Token.UNRESERVED);
+        String selector = intern(cursor.text());
+        cursor.next();
+        if (cursor.token != Token.COMPARATOR) {
+            throw cursor.unexpected();
+        }
+        String symbol = cursor.text();
+        cursor.next();
+        List<String> arguments = cursor.arguments;
+        arguments.clear();
+        if (cursor.token == Token.LPAREN) {
+            cursor.next();
+            arguments.add(parseValue(cursor));
+            cursor.next();
+            while (cursor.token == Token.OR) {
+                cursor.next();
+                arguments.add(parseValue(cursor));
+                cursor.next();
+            }
+            cursor.expect(Token.RPAREN);
+        } else {
+            arguments.add(parseValue(cursor));
+        }
+        ComparisonOperator operator = operators.get(symbol);
+        if (operator == null) {
+            throw new UnknownOperatorException(symbol);
+        }
+        //The node copies the arguments, so the list is reused. The next token is read after the node is created, like
+        //the generated parser does, so an unknown operator is reported before a later syntax error.
+        ComparisonNode node = new ComparisonNode(operator, selector, arguments);
+        cursor.next();
+        return node;
+    }
+
+    private String parseValue(Cursor cursor) throws ParseException {
+        String value;
+        if (cursor.token == Token.UNRESERVED) {
+            value = cursor.text();
+        } else if (cursor.token == Token.QUOTED) {
+            value = cursor.unquote();
+        } else {
+            throw cursor.unexpected();
+        }
+        return value;
+    }
+
+    private String intern(String selector) {
+        String interned = selectors.get(selector);
+        if (interned != null) {
+            return interned;
+        }
+        if (selectors.size() >= MAX_INTERNED_SELECTORS) {
+            return selector;
+        }
+        interned = selectors.putIfAbsent(selector, selector);
+        return interned != null ? interned : selector;
+    }
+
+    private enum Token {
+        EOF, UNRESERVED, QUOTED, AND, OR, LPAREN, RPAREN, COMPARATOR
+    }
+
+    /**
+     * Position and current token of one parse.
+     */
+    private static final class Cursor {
+
+        private final String input;
+        private final int length;
+        private final List<String> arguments = new ArrayList<>();
+        private int position;
+        private Token token;
+        private int start;
+        private int end;
+
+        Cursor(String input) {
+            this.input = input;
+            this.length = input.length();
+        }
+
+        void next() throws ParseException {
+            while (position < length) {
+                char c = input.charAt(position);
+                if (c == ' ') {
+                    if (input.startsWith(" and ", position)) {
+                        token(Token.AND, position + 5);
+                        return;
+                    } else if (input.startsWith(" or ", position)) {
+                        token(Token.OR, position + 4);
+                        return;
+                    }
+                } else if (c != '\t' || (position + 1 < length && !isReserved(input.charAt(position + 1)))) {
+                    //A tab is skipped only if it doesn't start an unreserved string
+                    break;
+                }
+                position++;
+            }
+            if (position >= length) {
+                start = end = position;
+                token = Token.EOF;
+                return;
+            }
+            char c = input.charAt(position);
+            switch (c) {
+                case ';':
+                    token(Token.AND, position + 1);
+                    return;
+                case ',':
+                    token(Token.OR, position + 1);
+                    return;
+                case '(':
+                    token(Token.LPAREN, position + 1);
+                    return;
+                case ')':
+                    token(Token.RPAREN, position + 1);
+                    return;
+                case '\'':
+                case '"':
+                    token(Token.QUOTED, scanQuoted(c));
+                    return;
+                case '=':
+                    int i = position + 1;
+                    while (i < length && isAlpha(input.charAt(i))) {
+                        i++;
+                    }
+                    if (i < length && input.charAt(i) == '=') {
+                        token(Token.COMPARATOR, i + 1);
+                        return;
+                    }
+                    throw lexicalError(i);
+                case '!':
+                    if (position + 1 < length && input.charAt(position + 1) == '=') {
+                        token(Token.COMPARATOR, position + 2);
+                        return;
+                    }
+                    throw lexicalError(position + 1);
+                case '<':
+                case '>':
+                    token(Token.COMPARATOR, position + 1 < length && input.charAt(position + 1) == '=' ?
+                            position + 2 : position + 1);
+                    return;
+                case '~':
+                    throw lexicalError(position);
+                default:
+                    int j = position + 1;
+                    while (j < length && !isReserved(input.charAt(j))) {
+                        j++;
+                    }
+                    token(Token.UNRESERVED, j);
+            }
+        }
+
+        private void token(Token token, int end) {
+            this.token = token;
+            this.start = position;
+            this.end = end;
+            this.position = end;
+        }
+
+        private int scanQuoted(char quote) throws ParseException {
+            int i = position + 1;
+            while (i < length) {
+                char c = input.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                } else if (c == quote) {
+                    return i + 1;
+                } else {
+                    i++;
+                }
+            }
+            throw lexicalError(length);
+        }
+
+        String text() {
+            return input.substring(start, end);
+        }
+
+        /**
+         * Strip the quotes and the escaping backslashes of a quoted token.
+         */
+        String unquote() {
+            int escape = input.indexOf('\\', start + 1);
+            if (escape == -1 || escape >= end - 1) {
+                return input.substring(start + 1, end - 1);
+            }
+            StringBuilder builder = new StringBuilder(end - start - 2);
+            builder.append(input, start + 1, escape);
+            for (int i = escape; i < end - 1; i++) {
+                char c = input.charAt(i);
+                if (c == '\\') {
+                    c = input.charAt(++i);
+                }
+                builder.append(c);
+            }
+            return builder.toString();
+        }
+
+        void expect(Token expected) throws ParseException {
+            if (token != expected) {
+                throw unexpected();
+            }
+        }
+
+        ParseException unexpected() {
+            return new ParseException(token == Token.EOF ? "Unexpected end of input at column " + (start + 1) :
+                    "Unexpected \"" + text() + "\" at column " + (start + 1));
+        }
+
+        private ParseException lexicalError(int column) {
+            return new ParseException("Lexical error at column " + (column + 1) + " of \"" + input + "\"");
+        }
+
+        private static boolean isAlpha(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static boolean isReserved(char c) {
+            switch (c) {
+                case '"':
+                case '\'':
+                case '(':
+                case ')':
+                case ';':
+                case ',':
+                case '=':
+                case '<':
+                case '>':
+                case '!':
+                case '~':
+                case ' ':
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+}
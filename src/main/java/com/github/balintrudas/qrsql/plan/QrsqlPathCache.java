@@ -0,0 +1,194 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.plan;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.Expressions;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interning cache of the Querydsl paths of the field selectors. The paths are immutable, so one instance per root
+ * class and selector prefix is shared by the where, the sort and the prepared queries, and the identical sub-paths
+ * are the same objects. The paths are stored in a tree by root class and selector part, so a lookup allocates
+ * nothing. The cache is bounded, the paths are built without caching after the limit is reached.
+ * The instance is thread-safe.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlPathCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final int maxSize;
+    private final AtomicInteger size = new AtomicInteger();
+    private final ConcurrentMap<Class, PathNode> roots = new ConcurrentHashMap<>();
+
+    public QrsqlPathCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize Maximum number of the cached paths
+     */
+    public QrsqlPathCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Return the alias of the root class, the lower case simple name.
+     *
+     * @param rootClass root class
+     * @return alias
+     */
+    public String getAlias(Class rootClass) {
+        return getRoot(rootClass).alias;
+    }
+
+    /**
+     * Return the path of the resolved field selector. Every missing part is built with the field type handler of
+     * the configuration.
+     *
+     * @param rootClass         root class
+     * @param fieldMetadataList resolved field selector
+     * @param qrsqlConfig       configuration of the field type handlers
+     * @return interned {@link Path}
+     */
+    public Path getPath(Class rootClass, List<FieldMetadata> fieldMetadataList, QrsqlConfig qrsqlConfig) {
+        PathNode node = getRoot(rootClass);
+        Path path = node.path;
+        for (FieldMetadata fieldMetadata : fieldMetadataList) {
+            PathNode child = node != null ? node.getChild(fieldMetadata) : null;
+            if (child != null) {
+                node = child;
+                path = child.path;
+                continue;
+            }
+            path = qrsqlConfig.getFieldTypeHandler(fieldMetadata.getType()).getPath(fieldMetadata, path, qrsqlConfig);
+            node = node != null ? node.putChild(fieldMetadata, path) : null;
+            if (node != null) {
+                path = node.path;
+            }
+        }
+        return path;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Number of the cached paths
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private PathNode getRoot(Class rootClass) {
+        PathNode root = roots.get(rootClass);
+        if (root == null) {
+            String alias = rootClass.getSimpleName().toLowerCase();
+            PathNode created = new PathNode(Expressions.path(rootClass, alias), alias);
+            root = roots.putIfAbsent(rootClass, created);
+            if (root == null) {
+                root = created;
+            }
+        }
+        return root;
+    }
+
+    private final class PathNode {
+
+        private final Path path;
+        private final String alias;
+        //Keyed by the field name, the indexed list elements by name and index
+        private final ConcurrentMap<Object, PathNode> children = new ConcurrentHashMap<>();
+
+        PathNode(Path path, String alias) {
+            this.path = path;
+            this.alias = alias;
+        }
+
+        PathNode getChild(FieldMetadata fieldMetadata) {
+            return children.get(key(fieldMetadata));
+        }
+
+        /**
+         * Cache the path of the child.
+         *
+         * @return node of the cached path, or null if the cache is full
+         */
+        PathNode putChild(FieldMetadata fieldMetadata, Path childPath) {
+            if (size.get() >= maxSize) {
+                return null;
+            }
+            PathNode created = new PathNode(childPath, null);
+            PathNode existing = children.putIfAbsent(key(fieldMetadata), created);
+            if (existing != null) {
+                return existing;
+            }
+            size.incrementAndGet();
+            return created;
+        }
+
+        private Object key(FieldMetadata fieldMetadata) {
+            Integer index = fieldMetadata.getFieldSelectorIndex();
+            return index == null ? fieldMetadata.getFieldSelector() : new IndexKey(fieldMetadata.getFieldSelector(), index);
+        }
+    }
+
+    private static final class IndexKey {
+
+        private final String field;
+        private final int index;
+
+        IndexKey(String field, int index) {
+            this.field = field;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof IndexKey)) {
+                return false;
+            }
+            IndexKey that = (IndexKey) o;
+            return index == that.index && field.equals(that.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * field.hashCode() + index;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.plan;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import cz.jirutka.rsql.parser.ast.Node;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the compiled query plans: the parsed where expressions and the resolved field selectors. The cached
+ * objects are immutable, so they are shared by every query of the {@link com.github.balintrudas.qrsql.QrsqlConfig}.
+ * The where expressions are keyed by their literal text, values included, so they are kept in a least recently used
+ * order and the least recently used one is evicted at the limit. The selectors are bounded by the entity model, new
+ * selectors are not cached after the limit is reached. The content can be saved and loaded with
+ * {@link QrsqlPlanStore}, so a restarted node starts with warm plans.
+ * The instance is thread-safe.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlPlanCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final int maxSize;
+    private final Map<String, Node> wherePlans;
+    private final Map<SelectorKey, List<FieldMetadata>> selectorPlans = new ConcurrentHashMap<>();
+
+    public QrsqlPlanCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize Maximum number of the cached where expressions and the maximum number of the cached selectors
+     */
+    public QrsqlPlanCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.wherePlans = Collections.synchronizedMap(new LinkedHashMap<String, Node>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+                return size() > QrsqlPlanCache.this.maxSize;
+            }
+        });
+    }
+
+    /**
+     * Return the parsed where expression.
+     *
+     * @param where where expression
+     * @return parsed expression or null if it is not cached
+     */
+    public Node getWhere(String where) {
+        return wherePlans.get(where);
+    }
+
+    public void putWhere(String where, Node node) {
+        wherePlans.putIfAbsent(where, node);
+    }
+
+    /**
+     * Return the resolved field selector.
+     *
+     * @param rootClass     The base class
+     * @param fieldSelector Field selector
+     * @return unmodifiable list of the resolved fields or null if it is not cached
+     */
+    public List<FieldMetadata> getSelector(Class rootClass, String fieldSelector) {
+        return selectorPlans.get(new SelectorKey(rootClass, fieldSelector));
+    }
+
+    public void putSelector(Class rootClass, String fieldSelector, List<FieldMetadata> fieldMetadataList) {
+        if (selectorPlans.size() < maxSize) {
+            selectorPlans.putIfAbsent(new SelectorKey(rootClass, fieldSelector),
+                    Collections.unmodifiableList(fieldMetadataList));
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of the cached where expressions and selectors
+     */
+    public int size() {
+        return wherePlans.size() + selectorPlans.size();
+    }
+
+    public void clear() {
+        wherePlans.clear();
+        selectorPlans.clear();
+    }
+
+    /**
+     * @return copy of the cached where expressions, from the least recently used
+     */
+    Map<String, Node> getWherePlans() {
+        synchronized (wherePlans) {
+            return new LinkedHashMap<>(wherePlans);
+        }
+    }
+
+    Map<SelectorKey, List<FieldMetadata>> getSelectorPlans() {
+        return selectorPlans;
+    }
+
+    static final class SelectorKey {
+
+        private final Class rootClass;
+        private final String fieldSelector;
+
+        SelectorKey(Class rootClass, String fieldSelector) {
+            this.rootClass = rootClass;
+            this.fieldSelector = fieldSelector;
+        }
+
+        Class getRootClass() {
+            return rootClass;
+        }
+
+        String getFieldSelector() {
+            return fieldSelector;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SelectorKey)) {
+                return false;
+            }
+            SelectorKey that = (SelectorKey) o;
+            return rootClass.equals(that.rootClass) && fieldSelector.equals(that.fieldSelector);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rootClass, fieldSelector);
+        }
+    }
+}
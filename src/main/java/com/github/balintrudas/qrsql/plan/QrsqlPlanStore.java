@@ -0,0 +1,435 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.plan;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
+import com.github.balintrudas.qrsql.util.QrsqlUtil;
+import cz.jirutka.rsql.parser.ast.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Save and load the content of a {@link QrsqlPlanCache} in a compact, versioned binary format, so a restarted node
+ * or a peer node starts with the plans which were already compiled.
+ * <p>
+ * The file holds a string table, the resolved selectors with the chosen field type handler and the structure hash of
+ * the entity classes on the selector path, and optionally the where expressions with their canonical syntax tree. The
+ * where expressions contain the values of the users, so they are saved only if it's enabled. The file is
+ * memory-mapped when it's loaded. The whole file is ignored if it was written by another format version or with other
+ * operators or field type handlers, a selector is ignored if the structure of its entity classes changed or another
+ * field type handler is chosen for it.
+ *
+ * @author Balint Rudas
+ */
+public class QrsqlPlanStore {
+
+    public static final int MAGIC = 0x51525350;
+    public static final short VERSION = 1;
+
+    private static final Logger LOGGER = Logger.getLogger(QrsqlPlanStore.class.getName());
+    private static final byte AND = 0;
+    private static final byte OR = 1;
+    private static final byte COMPARISON = 2;
+
+    private final QrsqlConfig<?> qrsqlConfig;
+    private final QrsqlPlanCache planCache;
+    private final boolean saveWherePlans;
+
+    /**
+     * Store which saves only the selector plans.
+     *
+     * @param qrsqlConfig Configuration with a {@link QrsqlPlanCache}
+     */
+    public QrsqlPlanStore(QrsqlConfig<?> qrsqlConfig) {
+        this(qrsqlConfig, false);
+    }
+
+    /**
+     * @param qrsqlConfig    Configuration with a {@link QrsqlPlanCache}
+     * @param saveWherePlans whether the where expressions, with the values of the users, are saved too
+     */
+    public QrsqlPlanStore(QrsqlConfig<?> qrsqlConfig, boolean saveWherePlans) {
+        if (qrsqlConfig.getPlanCache() == null) {
+            throw new IllegalArgumentException("Plan cache is not configured.");
+        }
+        this.qrsqlConfig = qrsqlConfig;
+        this.planCache = qrsqlConfig.getPlanCache();
+        this.saveWherePlans = saveWherePlans;
+    }
+
+    /**
+     * Write the cached plans to the file. The file is replaced atomically, so a concurrent reader sees either
+     * the old or the new content.
+     *
+     * @param file target file
+     * @throws QrsqlException If the file can't be written
+     */
+    public void save(Path file) throws QrsqlException {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tempFile, toByteArray());
+                try {
+                    Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    /**
+     * Serialize the cached plans, e.g. to send them to a peer node.
+     *
+     * @return serialized plans
+     */
+    public byte[] toByteArray() {
+        Map<String, Node> wherePlans = saveWherePlans ? planCache.getWherePlans() : Collections.emptyMap();
+        List<SelectorPlan> selectorPlans = new ArrayList<>();
+        for (Map.Entry<QrsqlPlanCache.SelectorKey, List<FieldMetadata>> entry : planCache.getSelectorPlans().entrySet()) {
+            SelectorPlan selectorPlan = createSelectorPlan(entry.getKey().getRootClass(), entry.getKey().getFieldSelector(),
+                    entry.getValue());
+            if (selectorPlan != null) {
+                selectorPlans.add(selectorPlan);
+            }
+        }
+        StringTable strings = new StringTable();
+        for (Map.Entry<String, Node> entry : wherePlans.entrySet()) {
+            strings.add(entry.getKey());
+            entry.getValue().accept(strings);
+        }
+        for (SelectorPlan selectorPlan : selectorPlans) {
+            strings.add(selectorPlan.rootClass);
+            strings.add(selectorPlan.fieldSelector);
+            strings.add(selectorPlan.fieldTypeHandler);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(configHash(qrsqlConfig));
+            out.writeInt(strings.values.size());
+            for (String value : strings.values) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+            out.writeInt(wherePlans.size());
+            for (Map.Entry<String, Node> entry : wherePlans.entrySet()) {
+                out.writeInt(strings.indexOf(entry.getKey()));
+                writeNode(out, entry.getValue(), strings);
+            }
+            out.writeInt(selectorPlans.size());
+            for (SelectorPlan selectorPlan : selectorPlans) {
+                out.writeInt(strings.indexOf(selectorPlan.rootClass));
+                out.writeInt(strings.indexOf(selectorPlan.fieldSelector));
+                out.writeInt(strings.indexOf(selectorPlan.fieldTypeHandler));
+                out.writeLong(selectorPlan.structureHash);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    /**
+     * Load the plans of the file into the plan cache. A missing file is not an error.
+     *
+     * @param file plan file
+     * @return number of the loaded plans
+     * @throws QrsqlException If the file can't be read or it is not a plan file
+     */
+    public int load(Path file) throws QrsqlException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (NoSuchFileException ex) {
+            return 0;
+        } catch (IOException ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    /**
+     * Load serialized plans into the plan cache.
+     *
+     * @param buffer serialized plans, read from its position
+     * @return number of the loaded plans, 0 if the plans were written by another format version or configuration
+     * @throws QrsqlException If the buffer doesn't contain serialized plans
+     */
+    public int load(ByteBuffer buffer) throws QrsqlException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new QrsqlException("Not a Qrsql plan file.");
+            }
+            short version = buffer.getShort();
+            long configHash = buffer.getLong();
+            if (version != VERSION || configHash != configHash(qrsqlConfig)) {
+                LOGGER.log(Level.INFO, "Qrsql plan file is ignored, it was written by another version or configuration.");
+                return 0;
+            }
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] encoded = new byte[buffer.getInt()];
+                buffer.get(encoded);
+                strings[i] = new String(encoded, StandardCharsets.UTF_8);
+            }
+            Map<String, ComparisonOperator> operators = new HashMap<>();
+            for (ComparisonOperator operator : qrsqlConfig.getComparisonOperators()) {
+                operators.put(operator.getSymbol(), operator);
+            }
+            int loaded = 0;
+            int whereCount = buffer.getInt();
+            for (int i = 0; i < whereCount; i++) {
+                String where = strings[buffer.getInt()];
+                planCache.putWhere(where, readNode(buffer, strings, operators));
+                loaded++;
+            }
+            int selectorCount = buffer.getInt();
+            for (int i = 0; i < selectorCount; i++) {
+                String rootClass = strings[buffer.getInt()];
+                String fieldSelector = strings[buffer.getInt()];
+                String fieldTypeHandler = strings[buffer.getInt()];
+                long structureHash = buffer.getLong();
+                if (loadSelector(rootClass, fieldSelector, fieldTypeHandler, structureHash)) {
+                    loaded++;
+                }
+            }
+            return loaded;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+            throw new QrsqlException("Corrupted Qrsql plan file.", ex);
+        }
+    }
+
+    private boolean loadSelector(String rootClassName, String fieldSelector, String fieldTypeHandler, long structureHash) {
+        try {
+            Class rootClass = Class.forName(rootClassName, false, getClassLoader());
+            List<FieldMetadata> fieldMetadataList = QrsqlUtil.parseFieldSelector(rootClass, fieldSelector);
+            SelectorPlan selectorPlan = createSelectorPlan(rootClass, fieldSelector, fieldMetadataList);
+            if (selectorPlan == null || selectorPlan.structureHash != structureHash ||
+                    !selectorPlan.fieldTypeHandler.equals(fieldTypeHandler)) {
+                return false;
+            }
+            planCache.putSelector(rootClass, fieldSelector, fieldMetadataList);
+            return true;
+        } catch (ClassNotFoundException | LinkageError | RuntimeException ex) {
+            LOGGER.log(Level.FINE, "Qrsql plan of selector is ignored: " + rootClassName + " " + fieldSelector, ex);
+            return false;
+        }
+    }
+
+    private SelectorPlan createSelectorPlan(Class rootClass, String fieldSelector, List<FieldMetadata> fieldMetadataList) {
+        FieldMetadata fieldMetadata = fieldMetadataList.get(fieldMetadataList.size() - 1);
+        FieldTypeHandler fieldTypeHandler;
+        try {
+            fieldTypeHandler = qrsqlConfig.getFieldTypeHandler(fieldMetadata.getType());
+        } catch (RuntimeException ex) {
+            return null;
+        }
+        long structureHash = structureHash(rootClass);
+        for (int i = 0; i < fieldMetadataList.size() - 1; i++) {
+            structureHash = structureHash * 31 + structureHash(fieldMetadataList.get(i).getCollectionType());
+        }
+        return new SelectorPlan(rootClass.getName(), fieldSelector, fieldTypeHandler.getClass().getName(), structureHash);
+    }
+
+    private ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : QrsqlPlanStore.class.getClassLoader();
+    }
+
+    private static void writeNode(DataOutputStream out, Node node, StringTable strings) throws IOException {
+        if (node instanceof LogicalNode) {
+            out.writeByte(node instanceof AndNode ? AND : OR);
+            List<Node> children = ((LogicalNode) node).getChildren();
+            out.writeInt(children.size());
+            for (Node child : children) {
+                writeNode(out, child, strings);
+            }
+        } else {
+            ComparisonNode comparisonNode = (ComparisonNode) node;
+            out.writeByte(COMPARISON);
+            out.writeInt(strings.indexOf(comparisonNode.getSelector()));
+            out.writeInt(strings.indexOf(comparisonNode.getOperator().getSymbol()));
+            out.writeInt(comparisonNode.getArguments().size());
+            for (String argument : comparisonNode.getArguments()) {
+                out.writeInt(strings.indexOf(argument));
+            }
+        }
+    }
+
+    private static Node readNode(ByteBuffer buffer, String[] strings, Map<String, ComparisonOperator> operators) {
+        byte type = buffer.get();
+        if (type == AND || type == OR) {
+            List<Node> children = new ArrayList<>();
+            int childCount = buffer.getInt();
+            for (int i = 0; i < childCount; i++) {
+                children.add(readNode(buffer, strings, operators));
+            }
+            return type == AND ? new AndNode(children) : new OrNode(children);
+        } else if (type == COMPARISON) {
+            String selector = strings[buffer.getInt()];
+            ComparisonOperator operator = operators.get(strings[buffer.getInt()]);
+            List<String> arguments = new ArrayList<>();
+            int argumentCount = buffer.getInt();
+            for (int i = 0; i < argumentCount; i++) {
+                arguments.add(strings[buffer.getInt()]);
+            }
+            if (operator == null) {
+                throw new IllegalArgumentException("Unknown operator in plan file.");
+            }
+            return new ComparisonNode(operator, selector, arguments);
+        }
+        throw new IllegalArgumentException("Unknown node type in plan file: " + type);
+    }
+
+    /**
+     * Hash of the configuration parts which the plans depend on: the operators and the field type handlers.
+     */
+    private static long configHash(QrsqlConfig<?> qrsqlConfig) {
+        List<String> parts = new ArrayList<>();
+        for (ComparisonOperator operator : qrsqlConfig.getComparisonOperators()) {
+            parts.add(operator.getSymbol());
+        }
+        Collections.sort(parts);
+        for (FieldTypeHandler fieldTypeHandler : qrsqlConfig.getFieldTypeHandlers()) {
+            parts.add(fieldTypeHandler.getClass().getName());
+        }
+        return hash(String.join(",", parts));
+    }
+
+    /**
+     * Hash of the persistent field structure of a class and its superclasses.
+     */
+    private static long structureHash(Class type) {
+        StringBuilder structure = new StringBuilder();
+        for (Class current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            structure.append(current.getName()).append('{');
+            Field[] fields = current.getDeclaredFields();
+            Arrays.sort(fields, Comparator.comparing(Field::getName));
+            for (Field field : fields) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    structure.append(field.getName()).append(':').append(field.getGenericType().getTypeName()).append(';');
+                }
+            }
+            structure.append('}');
+        }
+        return hash(structure.toString());
+    }
+
+    /**
+     * 64 bit FNV-1a hash.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static final class SelectorPlan {
+
+        private final String rootClass;
+        private final String fieldSelector;
+        private final String fieldTypeHandler;
+        private final long structureHash;
+
+        private SelectorPlan(String rootClass, String fieldSelector, String fieldTypeHandler, long structureHash) {
+            this.rootClass = rootClass;
+            this.fieldSelector = fieldSelector;
+            this.fieldTypeHandler = fieldTypeHandler;
+            this.structureHash = structureHash;
+        }
+    }
+
+    /**
+     * Collects the distinct strings of the plans. It visits the syntax trees to add their selectors, operators
+     * and arguments.
+     */
+    private static final class StringTable extends NoArgRSQLVisitorAdapter<Void> {
+
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        private void add(String value) {
+            if (!indexes.containsKey(value)) {
+                indexes.put(value, values.size());
+                values.add(value);
+            }
+        }
+
+        private int indexOf(String value) {
+            return indexes.get(value);
+        }
+
+        @Override
+        public Void visit(AndNode node) {
+            node.getChildren().forEach(child -> child.accept(this));
+            return null;
+        }
+
+        @Override
+        public Void visit(OrNode node) {
+            node.getChildren().forEach(child -> child.accept(this));
+            return null;
+        }
+
+        @Override
+        public Void visit(ComparisonNode node) {
+            add(node.getSelector());
+            add(node.getOperator().getSymbol());
+            node.getArguments().forEach(this::add);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.sql;
+
+import javax.persistence.*;
+import java.lang.reflect.Field;
+import java.util.Locale;
+
+/**
+ * Naming strategy of the Spring Boot default JPA configuration: the JPA compliant implicit names are converted to
+ * lower case snake case, e.g. <tt>screwType</tt> to <tt>screw_type</tt>. The names given in the {@link Table},
+ * {@link Column}, {@link JoinColumn} and {@link JoinTable} annotations are converted the same way.
+ *
+ * @author Balint Rudas
+ */
+public class DefaultSqlNamingStrategy implements SqlNamingStrategy {
+
+    @Override
+    public String getTableName(Class entityClass) {
+        Table table = (Table) entityClass.getAnnotation(Table.class);
+        if (table != null && !table.name().isEmpty()) {
+            return toPhysicalName(table.name());
+        }
+        return toPhysicalName(getEntityName(entityClass));
+    }
+
+    @Override
+    public String getColumnName(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        return toPhysicalName(column != null && !column.name().isEmpty() ? column.name() : field.getName());
+    }
+
+    @Override
+    public String getJoinColumnName(Field field, String referencedColumnName) {
+        JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+        if (joinColumn != null && !joinColumn.name().isEmpty()) {
+            return toPhysicalName(joinColumn.name());
+        }
+        return toPhysicalName(field.getName() + "_" + referencedColumnName);
+    }
+
+    @Override
+    public String getJoinTableName(Class ownerClass, Field field) {
+        JoinTable joinTable = field.getAnnotation(JoinTable.class);
+        if (joinTable != null && !joinTable.name().isEmpty()) {
+            return toPhysicalName(joinTable.name());
+        }
+        return toPhysicalName(getTableName(ownerClass) + "_" + field.getName());
+    }
+
+    @Override
+    public String getJoinTableOwnerColumnName(Class ownerClass, Field field, String referencedColumnName) {
+        JoinTable joinTable = field.getAnnotation(JoinTable.class);
+        if (joinTable != null && joinTable.joinColumns().length > 0 && !joinTable.joinColumns()[0].name().isEmpty()) {
+            return toPhysicalName(joinTable.joinColumns()[0].name());
+        }
+        return toPhysicalName(getEntityName(ownerClass) + "_" + referencedColumnName);
+    }
+
+    @Override
+    public String getJoinTableInverseColumnName(Field field, String referencedColumnName) {
+        JoinTable joinTable = field.getAnnotation(JoinTable.class);
+        if (joinTable != null && joinTable.inverseJoinColumns().length > 0 &&
+                !joinTable.inverseJoinColumns()[0].name().isEmpty()) {
+            return toPhysicalName(joinTable.inverseJoinColumns()[0].name());
+        }
+        return toPhysicalName(field.getName() + "_" + referencedColumnName);
+    }
+
+    protected String getEntityName(Class entityClass) {
+        Entity entity = (Entity) entityClass.getAnnotation(Entity.class);
+        return entity != null && !entity.name().isEmpty() ? entity.name() : entityClass.getSimpleName();
+    }
+
+    /**
+     * Convert the logical name to physical name like the <tt>SpringPhysicalNamingStrategy</tt>.
+     *
+     * @param name logical name
+     * @return physical name
+     */
+    protected String toPhysicalName(String name) {
+        StringBuilder builder = new StringBuilder(name.replace('.', '_'));
+        for (int i = 1; i < builder.length() - 1; i++) {
+            if (Character.isLowerCase(builder.charAt(i - 1)) && Character.isUpperCase(builder.charAt(i)) &&
+                    Character.isLowerCase(builder.charAt(i + 1))) {
+                builder.insert(i++, '_');
+            }
+        }
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.sql;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Table and column metadata of a JPA entity derived from its mapping annotations.
+ *
+ * @author Balint Rudas
+ */
+public class SqlEntityMapping {
+
+    /**
+     * How the tables of an association are joined.
+     */
+    public enum JoinType {
+        /**
+         * Foreign key column in the owner table references the target id.
+         */
+        OWNER_COLUMN,
+        /**
+         * Foreign key column in the target table references the owner id.
+         */
+        TARGET_COLUMN,
+        /**
+         * Join table references both the owner and the target id.
+         */
+        JOIN_TABLE
+    }
+
+    private final Class entityClass;
+    private final String tableName;
+    private final Field idField;
+    private final String idColumnName;
+    private final Map<String, Field> fields;
+    private final Map<String, String> columnNames;
+    private final Map<String, Association> associations;
+
+    SqlEntityMapping(Class entityClass, String tableName, Field idField, String idColumnName, Map<String, Field> fields,
+                     Map<String, String> columnNames, Map<String, Association> associations) {
+        this.entityClass = entityClass;
+        this.tableName = tableName;
+        this.idField = idField;
+        this.idColumnName = idColumnName;
+        this.fields = Collections.unmodifiableMap(fields);
+        this.columnNames = Collections.unmodifiableMap(columnNames);
+        this.associations = Collections.unmodifiableMap(associations);
+    }
+
+    public Class getEntityClass() {
+        return entityClass;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public Field getIdField() {
+        return idField;
+    }
+
+    public String getIdColumnName() {
+        return idColumnName;
+    }
+
+    /**
+     * Return the basic fields by field name, in declaration order.
+     *
+     * @return unmodifiable map of the basic fields
+     */
+    public Map<String, Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Return the column names of the basic fields by field name.
+     *
+     * @return unmodifiable map of the column names
+     */
+    public Map<String, String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Return the associations by field name.
+     *
+     * @return unmodifiable map of the associations
+     */
+    public Map<String, Association> getAssociations() {
+        return associations;
+    }
+
+    /**
+     * Join information of an association field.
+     */
+    public static class Association {
+
+        private final Field field;
+        private final Class targetClass;
+        private final boolean collection;
+        private final JoinType joinType;
+        private final String joinColumnName;
+        private final String joinTableName;
+        private final String inverseColumnName;
+
+        Association(Field field, Class targetClass, boolean collection, JoinType joinType, String joinColumnName,
+                    String joinTableName, String inverseColumnName) {
+            this.field = field;
+            this.targetClass = targetClass;
+            this.collection = collection;
+            this.joinType = joinType;
+            this.joinColumnName = joinColumnName;
+            this.joinTableName = joinTableName;
+            this.inverseColumnName = inverseColumnName;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public Class getTargetClass() {
+            return targetClass;
+        }
+
+        public boolean isCollection() {
+            return collection;
+        }
+
+        public JoinType getJoinType() {
+            return joinType;
+        }
+
+        /**
+         * Foreign key column of the owner table, of the target table or the owner column of the join table,
+         * depending on the {@link JoinType}.
+         *
+         * @return column name
+         */
+        public String getJoinColumnName() {
+            return joinColumnName;
+        }
+
+        public String getJoinTableName() {
+            return joinTableName;
+        }
+
+        /**
+         * Target column of the join table.
+         *
+         * @return column name or null if there is no join table
+         */
+        public String getInverseColumnName() {
+            return inverseColumnName;
+        }
+    }
+}
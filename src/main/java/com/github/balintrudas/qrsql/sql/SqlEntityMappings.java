@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.sql;
+
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.types.EnumByNameType;
+import com.querydsl.sql.types.EnumByOrdinalType;
+
+import javax.persistence.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe cache of the {@link SqlEntityMapping} of the entities. The enum columns are registered
+ * in the querydsl {@link Configuration}, so create one instance per configuration and share it.
+ *
+ * @author Balint Rudas
+ */
+public class SqlEntityMappings {
+
+    private final Configuration configuration;
+    private final SqlNamingStrategy namingStrategy;
+    private final ConcurrentMap<Class, SqlEntityMapping> mappings = new ConcurrentHashMap<>();
+
+    public SqlEntityMappings(Configuration configuration) {
+        this(configuration, new DefaultSqlNamingStrategy());
+    }
+
+    public SqlEntityMappings(Configuration configuration, SqlNamingStrategy namingStrategy) {
+        this.configuration = configuration;
+        this.namingStrategy = namingStrategy;
+    }
+
+    public SqlNamingStrategy getNamingStrategy() {
+        return namingStrategy;
+    }
+
+    /**
+     * Return the mapping of the given entity.
+     *
+     * @param entityClass entity
+     * @return {@link SqlEntityMapping}
+     * @throws QrsqlException If the class is not an entity or its id can't be determined
+     */
+    public SqlEntityMapping getMapping(Class entityClass) throws QrsqlException {
+        SqlEntityMapping mapping = mappings.get(entityClass);
+        if (mapping == null) {
+            mapping = createMapping(entityClass);
+            SqlEntityMapping existing = mappings.putIfAbsent(entityClass, mapping);
+            mapping = existing != null ? existing : mapping;
+        }
+        return mapping;
+    }
+
+    private SqlEntityMapping createMapping(Class entityClass) {
+        if (entityClass.getAnnotation(Entity.class) == null) {
+            throw new QrsqlException("Not an entity: " + entityClass.getName());
+        }
+        String tableName = namingStrategy.getTableName(entityClass);
+        Field idField = null;
+        Map<String, Field> fields = new LinkedHashMap<>();
+        Map<String, String> columnNames = new HashMap<>();
+        List<Field> associationFields = new ArrayList<>();
+        for (Field field : getPersistentFields(entityClass)) {
+            if (isAssociation(field)) {
+                associationFields.add(field);
+                continue;
+            }
+            if (field.getAnnotation(Embedded.class) != null || field.getAnnotation(ElementCollection.class) != null) {
+                continue;
+            }
+            if (field.getAnnotation(Id.class) != null) {
+                idField = field;
+            }
+            String columnName = namingStrategy.getColumnName(field);
+            fields.put(field.getName(), field);
+            columnNames.put(field.getName(), columnName);
+            registerType(tableName, columnName, field);
+        }
+        if (idField == null) {
+            throw new QrsqlException("Can't find the @Id field of entity: " + entityClass.getName());
+        }
+        String idColumnName = columnNames.get(idField.getName());
+        Map<String, SqlEntityMapping.Association> associations = new HashMap<>();
+        for (Field field : associationFields) {
+            associations.put(field.getName(), createAssociation(entityClass, idColumnName, field));
+        }
+        return new SqlEntityMapping(entityClass, tableName, idField, idColumnName, fields, columnNames, associations);
+    }
+
+    private SqlEntityMapping.Association createAssociation(Class ownerClass, String ownerIdColumnName, Field field) {
+        boolean collection = Collection.class.isAssignableFrom(field.getType());
+        Class targetClass = collection ?
+                (Class) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0] : field.getType();
+        String mappedBy = getMappedBy(field);
+        if (!mappedBy.isEmpty()) {
+            SqlEntityMapping.Association inverse = getInverseAssociation(targetClass, mappedBy);
+            if (inverse == null || inverse.getJoinType() == SqlEntityMapping.JoinType.TARGET_COLUMN) {
+                throw new QrsqlException("Can't find the owner side of association: " + ownerClass.getSimpleName() +
+                        "." + field.getName());
+            }
+            if (inverse.getJoinType() == SqlEntityMapping.JoinType.JOIN_TABLE) {
+                return new SqlEntityMapping.Association(field, targetClass, collection,
+                        SqlEntityMapping.JoinType.JOIN_TABLE, inverse.getInverseColumnName(),
+                        inverse.getJoinTableName(), inverse.getJoinColumnName());
+            }
+            return new SqlEntityMapping.Association(field, targetClass, collection,
+                    SqlEntityMapping.JoinType.TARGET_COLUMN, inverse.getJoinColumnName(), null, null);
+        }
+        if (!collection) {
+            String targetIdColumnName = namingStrategy.getColumnName(getIdField(targetClass));
+            return new SqlEntityMapping.Association(field, targetClass, false, SqlEntityMapping.JoinType.OWNER_COLUMN,
+                    namingStrategy.getJoinColumnName(field, targetIdColumnName), null, null);
+        }
+        JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+        if (joinColumn != null && field.getAnnotation(JoinTable.class) == null) {
+            return new SqlEntityMapping.Association(field, targetClass, true, SqlEntityMapping.JoinType.TARGET_COLUMN,
+                    namingStrategy.getJoinColumnName(field, ownerIdColumnName), null, null);
+        }
+        String targetIdColumnName = namingStrategy.getColumnName(getIdField(targetClass));
+        return new SqlEntityMapping.Association(field, targetClass, true, SqlEntityMapping.JoinType.JOIN_TABLE,
+                namingStrategy.getJoinTableOwnerColumnName(ownerClass, field, ownerIdColumnName),
+                namingStrategy.getJoinTableName(ownerClass, field),
+                namingStrategy.getJoinTableInverseColumnName(field, targetIdColumnName));
+    }
+
+    /**
+     * Resolve the owner side of a mapped by association without building the whole mapping of the target entity,
+     * so bidirectional associations don't recurse.
+     */
+    private SqlEntityMapping.Association getInverseAssociation(Class targetClass, String mappedBy) {
+        for (Field field : getPersistentFields(targetClass)) {
+            if (field.getName().equals(mappedBy) && isAssociation(field) && getMappedBy(field).isEmpty()) {
+                return createAssociation(targetClass, namingStrategy.getColumnName(getIdField(targetClass)), field);
+            }
+        }
+        return null;
+    }
+
+    private void registerType(String tableName, String columnName, Field field) {
+        if (field.getType().isEnum()) {
+            Enumerated enumerated = field.getAnnotation(Enumerated.class);
+            if (enumerated == null || enumerated.value() == EnumType.ORDINAL) {
+                configuration.register(tableName, columnName, new EnumByOrdinalType(field.getType()));
+            } else {
+                configuration.register(tableName, columnName, new EnumByNameType(field.getType()));
+            }
+        }
+    }
+
+    private static String getMappedBy(Field field) {
+        OneToMany oneToMany = field.getAnnotation(OneToMany.class);
+        if (oneToMany != null) {
+            return oneToMany.mappedBy();
+        }
+        OneToOne oneToOne = field.getAnnotation(OneToOne.class);
+        if (oneToOne != null) {
+            return oneToOne.mappedBy();
+        }
+        ManyToMany manyToMany = field.getAnnotation(ManyToMany.class);
+        return manyToMany != null ? manyToMany.mappedBy() : "";
+    }
+
+    private static boolean isAssociation(Field field) {
+        return field.getAnnotation(OneToOne.class) != null || field.getAnnotation(ManyToOne.class) != null ||
+                field.getAnnotation(OneToMany.class) != null || field.getAnnotation(ManyToMany.class) != null;
+    }
+
+    private static Field getIdField(Class entityClass) {
+        for (Field field : getPersistentFields(entityClass)) {
+            if (field.getAnnotation(Id.class) != null) {
+                return field;
+            }
+        }
+        throw new QrsqlException("Can't find the @Id field of entity: " + entityClass.getName());
+    }
+
+    private static List<Field> getPersistentFields(Class entityClass) {
+        LinkedList<Class> hierarchy = new LinkedList<>();
+        for (Class type = entityClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            hierarchy.addFirst(type);
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Class type : hierarchy) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) &&
+                        field.getAnnotation(Transient.class) == null && !field.isSynthetic()) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.sql;
+
+import java.lang.reflect.Field;
+
+/**
+ * Determine the table and column names of the JPA entities for the {@link SqlQrsql} backend.
+ * It has to produce the same names as the naming strategy of the JPA provider which created the schema.
+ *
+ * @author Balint Rudas
+ */
+public interface SqlNamingStrategy {
+
+    /**
+     * @param entityClass entity
+     * @return table name of the entity
+     */
+    String getTableName(Class entityClass);
+
+    /**
+     * @param field basic field
+     * @return column name of the field
+     */
+    String getColumnName(Field field);
+
+    /**
+     * @param field                to-one association field of the owner side
+     * @param referencedColumnName id column of the target entity
+     * @return foreign key column name of the association
+     */
+    String getJoinColumnName(Field field, String referencedColumnName);
+
+    /**
+     * @param ownerClass owner entity
+     * @param field      collection association field without mapped by
+     * @return join table name of the association
+     */
+    String getJoinTableName(Class ownerClass, Field field);
+
+    /**
+     * @param ownerClass           owner entity
+     * @param field                collection association field without mapped by
+     * @param referencedColumnName id column of the owner entity
+     * @return join table column which references the owner entity
+     */
+    String getJoinTableOwnerColumnName(Class ownerClass, Field field, String referencedColumnName);
+
+    /**
+     * @param field                collection association field without mapped by
+     * @param referencedColumnName id column of the target entity
+     * @return join table column which references the target entity
+     */
+    String getJoinTableInverseColumnName(Field field, String referencedColumnName);
+}
@@ -0,0 +1,162 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.sql;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.handler.FieldTypeHandler;
+import com.github.balintrudas.qrsql.operator.QrsqlOperator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLQuery;
+import cz.jirutka.rsql.parser.ast.*;
+
+import java.util.List;
+
+/**
+ * Rsql visitor class to build a {@link BooleanExpression} over {@link SqlTablePath} tables.
+ * The comparisons of the root table columns are built directly, every association hop becomes a correlated
+ * <tt>exists</tt> subquery, like the <tt>any()</tt> paths of the JPA backend.
+ *
+ * @author Balint Rudas
+ */
+public class SqlPredicateBuilderVisitor implements RSQLVisitor<Predicate, Predicate> {
+
+    private final SqlTablePath rootTable;
+    private final SqlEntityMappings mappings;
+    private final QrsqlConfig qrsqlConfig;
+    private int aliasCounter;
+
+    public SqlPredicateBuilderVisitor(SqlTablePath rootTable, SqlEntityMappings mappings, QrsqlConfig qrsqlConfig) {
+        this.rootTable = rootTable;
+        this.mappings = mappings;
+        this.qrsqlConfig = qrsqlConfig;
+    }
+
+    @Override
+    public Predicate visit(AndNode node, Predicate param) {
+        return getLogicalExpression(node, param, Ops.AND);
+    }
+
+    @Override
+    public Predicate visit(OrNode node, Predicate param) {
+        return getLogicalExpression(node, param, Ops.OR);
+    }
+
+    @Override
+    public Predicate visit(ComparisonNode node, Predicate param) {
+        List<FieldMetadata> fieldMetadataList = qrsqlConfig.getFieldMetadata(rootTable.getMapping().getEntityClass(),
+                node.getSelector());
+        BooleanExpression expression = buildExpression(rootTable, fieldMetadataList, 0, node.getArguments(),
+                new QrsqlOperator(node.getOperator().getSymbol()));
+        if (expression == null) {
+            throw new QrsqlException("Can't build predicate with selector: " + node.getSelector() + " operator: " +
+                    node.getOperator().getSymbol() + " value: " + node.getArguments().toString());
+        }
+        return expression;
+    }
+
+    private BooleanExpression getLogicalExpression(LogicalNode node, Predicate param, Ops logicalOperator) {
+        BooleanExpression predicate = null;
+        for (Node subNode : node.getChildren()) {
+            BooleanExpression subPredicate = (BooleanExpression) subNode.accept(this, param);
+            predicate = predicate == null ? subPredicate :
+                    Ops.AND.equals(logicalOperator) ? predicate.and(subPredicate) : predicate.or(subPredicate);
+        }
+        return predicate;
+    }
+
+    private BooleanExpression buildExpression(SqlTablePath table, List<FieldMetadata> fieldMetadataList, int index,
+                                              List<String> values, QrsqlOperator operator) {
+        FieldMetadata fieldMetadata = fieldMetadataList.get(index);
+        String fieldName = fieldMetadata.getFieldSelector();
+        if (fieldMetadata.getFieldSelectorIndex() != null) {
+            throw new QrsqlException("List index is not supported by the sql backend: " + fieldName);
+        }
+        SqlEntityMapping mapping = table.getMapping();
+        if (index == fieldMetadataList.size() - 1) {
+            Path column = table.getFieldColumn(fieldName);
+            if (column == null) {
+                throw new QrsqlException("Selector must end with a column: '" + fieldName + "' of " +
+                        mapping.getEntityClass().getSimpleName());
+            }
+            return buildComparison(column, fieldMetadata, values, operator);
+        }
+        SqlEntityMapping.Association association = mapping.getAssociations().get(fieldName);
+        if (association == null) {
+            throw new QrsqlException("Not an association: '" + fieldName + "' of " +
+                    mapping.getEntityClass().getSimpleName());
+        }
+        SqlEntityMapping target = mappings.getMapping(association.getTargetClass());
+        FieldMetadata nextFieldMetadata = fieldMetadataList.get(index + 1);
+        if (association.getJoinType() == SqlEntityMapping.JoinType.OWNER_COLUMN &&
+                index + 1 == fieldMetadataList.size() - 1 &&
+                target.getIdField().getName().equals(nextFieldMetadata.getFieldSelector())) {
+            //The id of a to-one association is the foreign key column, no subquery needed
+            Path foreignKey = table.getColumn(association.getJoinColumnName(), target.getIdField().getType());
+            return buildComparison(foreignKey, nextFieldMetadata, values, operator);
+        }
+        SqlTablePath targetTable = new SqlTablePath(target, nextAlias(), qrsqlConfig);
+        SQLQuery<Integer> subQuery = SQLExpressions.selectOne().from(targetTable);
+        switch (association.getJoinType()) {
+            case OWNER_COLUMN:
+                subQuery.where(eq(targetTable.getIdColumn(),
+                        table.getColumn(association.getJoinColumnName(), target.getIdField().getType())));
+                break;
+            case TARGET_COLUMN:
+                subQuery.where(eq(targetTable.getColumn(association.getJoinColumnName(),
+                        mapping.getIdField().getType()), table.getIdColumn()));
+                break;
+            default:
+                SqlTablePath joinTable = new SqlTablePath(association.getJoinTableName(), nextAlias());
+                subQuery.from(joinTable).where(
+                        eq(joinTable.getColumn(association.getJoinColumnName(), mapping.getIdField().getType()),
+                                table.getIdColumn()),
+                        eq(joinTable.getColumn(association.getInverseColumnName(), target.getIdField().getType()),
+                                targetTable.getIdColumn()));
+        }
+        return subQuery.where(buildExpression(targetTable, fieldMetadataList, index + 1, values, operator)).exists();
+    }
+
+    private BooleanExpression buildComparison(Path column, FieldMetadata fieldMetadata, List<String> values,
+                                              QrsqlOperator operator) {
+        FieldTypeHandler fieldType = qrsqlConfig.getFieldTypeHandler(fieldMetadata.getType());
+        Object value = fieldType.getValue(values, fieldMetadata, qrsqlConfig);
+        return fieldType.getExpression(column, fieldMetadata, value, operator, qrsqlConfig);
+    }
+
+    private static BooleanExpression eq(Path left, Path right) {
+        return Expressions.booleanOperation(Ops.EQ, left, right);
+    }
+
+    private String nextAlias() {
+        return "t" + (++aliasCounter);
+    }
+}
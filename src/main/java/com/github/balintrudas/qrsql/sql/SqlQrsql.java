@@ -0,0 +1,500 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.sql;
+
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.exception.EntityNotFoundException;
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.exception.QueryCancelledException;
+import com.github.balintrudas.qrsql.exception.QueryDeadlineExceededException;
+import com.github.balintrudas.qrsql.execution.CancellationHandle;
+import com.github.balintrudas.qrsql.execution.QueryDeadline;
+import com.github.balintrudas.qrsql.util.QrsqlUtil;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.*;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import cz.jirutka.rsql.parser.ast.Node;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Querydsl SQL backend of Qrsql. The rsql expression is compiled to a querydsl {@link SQLQuery} against the tables
+ * and columns of the JPA mapping, and the rows are returned as {@link Tuple} or DTO directly from JDBC, without
+ * JPQL translation, entity instantiation and persistence context.
+ * <p>
+ * The where expression supports the same selectors as the JPA backend except list indexes. The select and sort
+ * expressions support the fields of the root entity and of its to-one associations, which are left joined.
+ *
+ * @param <E> Target type
+ * @author Balint Rudas
+ */
+public class SqlQrsql<E> {
+
+    private final SQLQueryFactory queryFactory;
+    private final SqlEntityMappings mappings;
+    private final QrsqlConfig<E> qrsqlConfig;
+    private final Class entityClass;
+    private final String select;
+    private final String where;
+    private final String sort;
+    private final Long offset;
+    private final Long size;
+    private final QueryDeadline deadline;
+    private final CancellationHandle cancellation;
+
+    private SqlQrsql(Builder<E> builder) throws EntityNotFoundException {
+        this.queryFactory = builder.queryFactory;
+        this.mappings = builder.mappings != null ? builder.mappings :
+                new SqlEntityMappings(builder.queryFactory.getConfiguration());
+        this.qrsqlConfig = builder.qrsqlConfig != null ? builder.qrsqlConfig :
+                new QrsqlConfig.Builder<E>(null).build();
+        this.entityClass = builder.entityClass != null ? builder.entityClass :
+                this.qrsqlConfig.getEntityClass(builder.entityName);
+        if (this.entityClass == null) {
+            throw new EntityNotFoundException("Can't find entity with name: ".concat(builder.entityName));
+        }
+        this.select = builder.select;
+        this.where = builder.where;
+        this.sort = builder.sort;
+        this.offset = builder.offset;
+        this.size = builder.size;
+        this.deadline = builder.deadline;
+        this.cancellation = builder.cancellation;
+    }
+
+    /**
+     * Build the {@link SQLQuery} which selects the selected columns as {@link Tuple}.
+     *
+     * @return querydsl {@link SQLQuery}
+     * @throws QrsqlException If some exception occurred during building the query.
+     */
+    public SQLQuery<Tuple> buildQuery() throws QrsqlException {
+        try {
+            QueryTables tables = new QueryTables();
+            List<Expression> selectExpressions = new ArrayList<>(tables.getSelect().values());
+            SQLQuery<Tuple> query = queryFactory.select(selectExpressions.toArray(new Expression[selectExpressions.size()]));
+            return tables.apply(query);
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    /**
+     * Create a {@link Predicate} of the where expression over the sql tables.
+     *
+     * @return Querydsl {@link Predicate} or null if there is no where expression
+     * @throws QrsqlException If some exception ccourred during parse and convert rsql expression to {@link Predicate}.
+     */
+    public Predicate buildPredicate() throws QrsqlException {
+        return new QueryTables().getPredicate();
+    }
+
+    /**
+     * Fetch the selected columns.
+     *
+     * @return List of tuples
+     * @throws QrsqlException If some exception occurred during building the query.
+     */
+    public List<Tuple> fetch() throws QrsqlException {
+        return execute(() -> buildQuery().fetch());
+    }
+
+    /**
+     * Fetch the selected columns into DTOs. The columns are bound to the properties by name, the name of a
+     * nested selector is its camel case form, e.g. <tt>engine.name</tt> to <tt>engineName</tt>.
+     *
+     * @param type DTO type with default constructor and setters
+     * @param <T>  DTO type
+     * @return List of DTOs
+     * @throws QrsqlException If some exception occurred during building the query.
+     */
+    public <T> List<T> fetch(Class<T> type) throws QrsqlException {
+        try {
+            QueryTables tables = new QueryTables();
+            Map<String, Expression> aliased = new LinkedHashMap<>();
+            for (Map.Entry<String, Expression> column : tables.getSelect().entrySet()) {
+                aliased.put(column.getKey(), Expressions.as(column.getValue(), toPropertyName(column.getKey())));
+            }
+            SQLQuery<T> query = queryFactory.select(Projections.bean(type, aliased.values().toArray(new Expression[aliased.size()])));
+            return execute(() -> tables.apply(query).fetch());
+        } catch (QrsqlException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new QrsqlException(ex);
+        }
+    }
+
+    /**
+     * Count the rows which match the where expression.
+     *
+     * @return row count
+     * @throws QrsqlException If some exception occurred during building the query.
+     */
+    public long fetchCount() throws QrsqlException {
+        QueryTables tables = new QueryTables();
+        SQLQuery<Integer> query = queryFactory.select(Expressions.ONE).from(tables.root);
+        Predicate predicate = tables.getPredicate();
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        guard(query);
+        return execute(query::fetchCount);
+    }
+
+    /**
+     * Execute the query unless it is cancelled or its deadline is exceeded. The failures of the cancelled or timed
+     * out executions are reported as {@link QueryCancelledException} and {@link QueryDeadlineExceededException}.
+     */
+    private <T> T execute(Supplier<T> query) {
+        if (cancellation != null) {
+            cancellation.throwIfCancelled();
+        }
+        if (deadline != null && deadline.isExpired()) {
+            throw new QueryDeadlineExceededException("Query deadline is exceeded.");
+        }
+        try {
+            return query.get();
+        } catch (RuntimeException ex) {
+            if (cancellation != null && cancellation.isCancelled()) {
+                throw new QueryCancelledException("Query is cancelled.", ex);
+            } else if (deadline != null && deadline.isExpired()) {
+                throw new QueryDeadlineExceededException("Query deadline is exceeded.", ex);
+            }
+            throw ex;
+        }
+    }
+
+    private void guard(SQLQuery<?> query) {
+        if (deadline != null || cancellation != null || qrsqlConfig.getQueryTimeout() != null) {
+            query.addListener(new SqlStatementGuard(deadline, qrsqlConfig.getQueryTimeout(), cancellation));
+        }
+    }
+
+    private static String toPropertyName(String selector) {
+        String[] parts = StringUtils.split(selector, '.');
+        StringBuilder builder = new StringBuilder(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            builder.append(StringUtils.capitalize(parts[i]));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The tables of one query: the root table and the left joined to-one associations of the select and sort.
+     */
+    private class QueryTables {
+
+        private final SqlTablePath root;
+        private final Map<String, SqlTablePath> joins = new LinkedHashMap<>();
+        private final Map<String, Predicate> joinConditions = new HashMap<>();
+        private final Map<String, Expression> selectColumns = new LinkedHashMap<>();
+
+        QueryTables() {
+            this.root = new SqlTablePath(mappings.getMapping(entityClass), entityClass.getSimpleName().toLowerCase(),
+                    qrsqlConfig);
+        }
+
+        Map<String, Expression> getSelect() {
+            if (selectColumns.isEmpty()) {
+                List<String> selectors = QrsqlUtil.parseSelectExpression(select);
+                if (selectors == null) {
+                    for (Map.Entry<String, Path> column : root.getFieldColumns().entrySet()) {
+                        selectColumns.put(column.getKey(), column.getValue());
+                    }
+                } else {
+                    for (String selector : selectors) {
+                        selectColumns.put(selector, getColumn(selector));
+                    }
+                }
+            }
+            return selectColumns;
+        }
+
+        Predicate getPredicate() {
+            if (where == null) {
+                return null;
+            }
+            Node rootNode = qrsqlConfig.parseWhere(where);
+            if (qrsqlConfig.getSelectorAllowlist() != null) {
+                qrsqlConfig.getSelectorAllowlist().check(entityClass, rootNode);
+            }
+            return rootNode.accept(new SqlPredicateBuilderVisitor(root, mappings, qrsqlConfig));
+        }
+
+        <T> SQLQuery<T> apply(SQLQuery<T> query) {
+            getSelect();
+            List<OrderSpecifier> orderSpecifiers = new ArrayList<>();
+            if (sort != null) {
+                for (Map.Entry<String, Order> sortColumn : parseSort(sort).entrySet()) {
+                    orderSpecifiers.add(new OrderSpecifier(sortColumn.getValue(), getColumn(sortColumn.getKey())));
+                }
+            }
+            query.from(root);
+            for (Map.Entry<String, SqlTablePath> join : joins.entrySet()) {
+                query.leftJoin(join.getValue()).on(joinConditions.get(join.getKey()));
+            }
+            Predicate predicate = getPredicate();
+            if (predicate != null) {
+                query.where(predicate);
+            }
+            if (!orderSpecifiers.isEmpty()) {
+                query.orderBy(orderSpecifiers.toArray(new OrderSpecifier[orderSpecifiers.size()]));
+            }
+            if (offset != null) {
+                query.offset(offset);
+            }
+            if (size != null) {
+                query.limit(size);
+            }
+            guard(query);
+            return query;
+        }
+
+        /**
+         * Resolve the column of a select or sort selector and join the to-one associations on the way.
+         */
+        Path getColumn(String selector) {
+            if (qrsqlConfig.getSelectorAllowlist() != null) {
+                qrsqlConfig.getSelectorAllowlist().check(entityClass, selector);
+            }
+            String[] fields = StringUtils.split(selector, '.');
+            SqlTablePath table = root;
+            StringBuilder joinPath = new StringBuilder();
+            for (int i = 0; i < fields.length - 1; i++) {
+                SqlEntityMapping.Association association = table.getMapping().getAssociations().get(fields[i]);
+                if (association == null || association.isCollection()) {
+                    throw new QrsqlException("Only the to-one associations can be selected or sorted by the sql " +
+                            "backend: " + selector);
+                }
+                joinPath.append(fields[i]).append('.');
+                SqlTablePath joined = joins.get(joinPath.toString());
+                if (joined == null) {
+                    SqlEntityMapping target = mappings.getMapping(association.getTargetClass());
+                    joined = new SqlTablePath(target, "j" + (joins.size() + 1), qrsqlConfig);
+                    Path ownerColumn;
+                    Path targetColumn;
+                    if (association.getJoinType() == SqlEntityMapping.JoinType.OWNER_COLUMN) {
+                        ownerColumn = table.getColumn(association.getJoinColumnName(), target.getIdField().getType());
+                        targetColumn = joined.getIdColumn();
+                    } else if (association.getJoinType() == SqlEntityMapping.JoinType.TARGET_COLUMN) {
+                        ownerColumn = table.getIdColumn();
+                        targetColumn = joined.getColumn(association.getJoinColumnName(),
+                                table.getMapping().getIdField().getType());
+                    } else {
+                        throw new QrsqlException("Associations with join table can't be selected or sorted by the " +
+                                "sql backend: " + selector);
+                    }
+                    joins.put(joinPath.toString(), joined);
+                    joinConditions.put(joinPath.toString(), Expressions.booleanOperation(Ops.EQ, ownerColumn, targetColumn));
+                }
+                table = joined;
+            }
+            Path column = table.getFieldColumn(fields[fields.length - 1]);
+            if (column == null) {
+                throw new QrsqlException("Selector must end with a column: " + selector);
+            }
+            return column;
+        }
+
+        private Map<String, Order> parseSort(String sort) {
+            Map<String, Order> result = new LinkedHashMap<>();
+            for (String param : QrsqlUtil.parseSelectExpression(sort)) {
+                int dotLastIndex = param.lastIndexOf('.');
+                if (dotLastIndex == -1) {
+                    throw new IllegalArgumentException("Invalid expression");
+                }
+                result.put(param.substring(0, dotLastIndex), Order.valueOf(param.substring(dotLastIndex + 1).toUpperCase()));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Help to create a {@link SqlQrsql}.
+     *
+     * @param <E> Target type
+     */
+    public static class Builder<E> {
+        private final SQLQueryFactory queryFactory;
+        private SqlEntityMappings mappings;
+        private QrsqlConfig<E> qrsqlConfig;
+        private Class entityClass;
+        private String entityName;
+        private String select;
+        private String where;
+        private String sort;
+        private Long offset;
+        private Long size;
+        private QueryDeadline deadline;
+        private CancellationHandle cancellation;
+
+        /**
+         * Create a {@link Builder} with {@link SQLQueryFactory}.
+         *
+         * @param queryFactory querydsl sql query factory
+         */
+        public Builder(SQLQueryFactory queryFactory) {
+            this.queryFactory = queryFactory;
+        }
+
+        /**
+         * Create a {@link Builder} with shared mappings and configuration.
+         *
+         * @param queryFactory querydsl sql query factory
+         * @param mappings     entity mappings of the query factory configuration
+         * @param qrsqlConfig  configuration of the operators and the field type handlers
+         */
+        public Builder(SQLQueryFactory queryFactory, SqlEntityMappings mappings, QrsqlConfig<E> qrsqlConfig) {
+            this.queryFactory = queryFactory;
+            this.mappings = mappings;
+            this.qrsqlConfig = qrsqlConfig;
+        }
+
+        /**
+         * Select specific fields with string expression. By default all the basic fields of the root entity
+         * are selected.
+         *
+         * @param select select string expression
+         * @return {@link Builder}
+         */
+        public Builder<E> select(String select) {
+            this.select = select;
+            return this;
+        }
+
+        /**
+         * Set the Qrsql target type with the given class.
+         *
+         * @param entityClass target type
+         * @return {@link Builder}
+         */
+        public Builder<E> from(Class entityClass) {
+            this.entityClass = entityClass;
+            return this;
+        }
+
+        /**
+         * Set the Qrsql target type with the given entity name. It requires the entity manager of the configuration.
+         *
+         * @param entityName target type name
+         * @return {@link Builder}
+         */
+        public Builder<E> from(String entityName) {
+            this.entityName = entityName;
+            return this;
+        }
+
+        /**
+         * Add the given filter condition with {@link String} expression.
+         *
+         * @param where where string expression
+         * @return {@link Builder}
+         */
+        public Builder<E> where(String where) {
+            this.where = where;
+            return this;
+        }
+
+        /**
+         * Set the order expressions with {@link String}.
+         *
+         * @param sort order
+         * @return {@link Builder}
+         */
+        public Builder<E> sort(String sort) {
+            this.sort = sort;
+            return this;
+        }
+
+        /**
+         * Bound the statements of the query with a deadline. It is applied as JDBC statement timeout, together with
+         * the query timeout of the configuration the earlier one is used.
+         *
+         * @param deadline deadline of the query
+         * @return {@link Builder}
+         */
+        public Builder<E> deadline(QueryDeadline deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * Set the handle which cancels the executing statements of the query.
+         *
+         * @param cancellation cancellation handle
+         * @return {@link Builder}
+         */
+        public Builder<E> cancellation(CancellationHandle cancellation) {
+            this.cancellation = cancellation;
+            return this;
+        }
+
+        /**
+         * Defines the limit / max results and the offset for the query results.
+         *
+         * @param offset row offset
+         * @param size   max rows
+         * @return {@link Builder}
+         */
+        public Builder<E> limit(Long offset, Long size) {
+            this.offset = offset;
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Defines the limit / max results and the offset for the query results with pagination logic.
+         *
+         * @param pageNumber Zero based
+         * @param pageSize   max rows
+         * @return {@link Builder}
+         */
+        public Builder<E> page(Long pageNumber, Long pageSize) {
+            this.size = pageSize;
+            this.offset = pageNumber * pageSize;
+            return this;
+        }
+
+        /**
+         * Create a new instance of {@link SqlQrsql}.
+         *
+         * @return new SqlQrsql
+         * @throws QrsqlException If some of the given parameters is invalid.
+         */
+        public SqlQrsql<E> build() throws QrsqlException {
+            try {
+                return new SqlQrsql<E>(this);
+            } catch (Exception ex) {
+                throw new QrsqlException(ex);
+            }
+        }
+    }
+}
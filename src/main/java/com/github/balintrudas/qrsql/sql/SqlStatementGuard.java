@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.sql;
+
+import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.execution.CancellationHandle;
+import com.github.balintrudas.qrsql.execution.QueryDeadline;
+import com.querydsl.sql.SQLBaseListener;
+import com.querydsl.sql.SQLListenerContext;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Apply the deadline of the query as JDBC statement timeout and register the executing statement to the
+ * {@link CancellationHandle}, so a cancellation aborts it with {@link PreparedStatement#cancel()}.
+ *
+ * @author Balint Rudas
+ */
+class SqlStatementGuard extends SQLBaseListener {
+
+    private static final String REGISTRATION = SqlStatementGuard.class.getName();
+
+    private final QueryDeadline deadline;
+    private final Long queryTimeout;
+    private final CancellationHandle cancellation;
+
+    SqlStatementGuard(QueryDeadline deadline, Long queryTimeout, CancellationHandle cancellation) {
+        this.deadline = deadline;
+        this.queryTimeout = queryTimeout;
+        this.cancellation = cancellation;
+    }
+
+    @Override
+    public void preExecute(SQLListenerContext context) {
+        PreparedStatement statement = context.getPreparedStatement();
+        if (statement == null) {
+            return;
+        }
+        QueryDeadline statementDeadline = QueryDeadline.earliest(deadline,
+                queryTimeout != null ? QueryDeadline.after(queryTimeout, TimeUnit.MILLISECONDS) : null);
+        try {
+            if (statementDeadline != null) {
+                statement.setQueryTimeout(statementDeadline.getTimeoutSeconds());
+            }
+        } catch (SQLException ex) {
+            throw new QrsqlException(ex);
+        }
+        if (cancellation != null) {
+            context.setData(REGISTRATION, cancellation.register(() -> {
+                try {
+                    statement.cancel();
+                } catch (SQLException ex) {
+                    throw new QrsqlException(ex);
+                }
+            }));
+        }
+    }
+
+    @Override
+    public void end(SQLListenerContext context) {
+        AutoCloseable registration = (AutoCloseable) context.getData(REGISTRATION);
+        if (registration != null) {
+            try {
+                registration.close();
+            } catch (Exception ex) {
+                throw new QrsqlException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Balint Rudas
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.balintrudas.qrsql.sql;
+
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadataFactory;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.RelationalPathBase;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Querydsl SQL table of an entity or a join table. The column paths of the basic fields are created by the
+ * field type handlers, so the handlers can build the expressions the same way as for JPA paths.
+ * An instance belongs to one query, it's not thread-safe.
+ *
+ * @author Balint Rudas
+ */
+public class SqlTablePath extends RelationalPathBase<Object> {
+
+    private final SqlEntityMapping mapping;
+    private final Map<String, Path> fieldColumns = new LinkedHashMap<>();
+    private final Map<String, Path> columns = new HashMap<>();
+
+    /**
+     * Create the table of a join table.
+     *
+     * @param tableName table name
+     * @param alias     table alias
+     */
+    public SqlTablePath(String tableName, String alias) {
+        super(Object.class, PathMetadataFactory.forVariable(alias), "", tableName);
+        this.mapping = null;
+    }
+
+    /**
+     * Create the table of an entity with the columns of its basic fields.
+     *
+     * @param mapping     entity mapping
+     * @param alias       table alias
+     * @param qrsqlConfig configuration to resolve the field type handlers
+     */
+    public SqlTablePath(SqlEntityMapping mapping, String alias, QrsqlConfig qrsqlConfig) {
+        super(Object.class, PathMetadataFactory.forVariable(alias), "", mapping.getTableName());
+        this.mapping = mapping;
+        for (Map.Entry<String, Field> field : mapping.getFields().entrySet()) {
+            FieldMetadata fieldMetadata = new FieldMetadata(field.getKey(), mapping.getEntityClass());
+            Path path = qrsqlConfig.getFieldTypeHandler(fieldMetadata.getType()).getPath(fieldMetadata, this, qrsqlConfig);
+            String columnName = mapping.getColumnNames().get(field.getKey());
+            addMetadata(path, ColumnMetadata.named(columnName).withIndex(fieldColumns.size()));
+            fieldColumns.put(field.getKey(), path);
+            columns.put(columnName, path);
+        }
+    }
+
+    public SqlEntityMapping getMapping() {
+        return mapping;
+    }
+
+    /**
+     * Return the column path of a basic field.
+     *
+     * @param fieldName field name
+     * @return column path or null if there is no basic field with the name
+     */
+    public Path getFieldColumn(String fieldName) {
+        return fieldColumns.get(fieldName);
+    }
+
+    /**
+     * Return the column paths of the basic fields by field name.
+     *
+     * @return unmodifiable map of the column paths
+     */
+    public Map<String, Path> getFieldColumns() {
+        return Collections.unmodifiableMap(fieldColumns);
+    }
+
+    /**
+     * Return the path of the id column.
+     *
+     * @return id column path
+     */
+    public Path getIdColumn() {
+        return fieldColumns.get(mapping.getIdField().getName());
+    }
+
+    /**
+     * Return the path of a column which is not a basic field, e.g. a foreign key. The column is registered
+     * at the first call.
+     *
+     * @param columnName column name
+     * @param type       java type of the column
+     * @return column path
+     */
+    public Path getColumn(String columnName, Class type) {
+        Path path = columns.get(columnName);
+        if (path == null) {
+            if (Number.class.isAssignableFrom(type)) {
+                path = Expressions.numberPath(type, this, columnName);
+            } else if (String.class.equals(type)) {
+                path = Expressions.stringPath(this, columnName);
+            } else {
+                path = Expressions.path(type, this, columnName);
+            }
+            addMetadata(path, ColumnMetadata.named(columnName).withIndex(getColumns().size()));
+            columns.put(columnName, path);
+        }
+        return path;
+    }
+}
@@ -29,6 +29,8 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Balint Rudas
@@ -69,6 +71,11 @@ public final class DateUtil {
         put("^\\d{1,2}\\s[a-z]{4,}\\s\\d{4}\\s\\d{1,2}:\\d{2}:\\d{2}$", "dd MMMM yyyy HH:mm:ss");
     }};
 
+    /**
+     * Compiled formatters by pattern. The prototypes are never used directly, only their clones.
+     */
+    private static final ConcurrentMap<String, SimpleDateFormat> DATE_FORMATTERS = new ConcurrentHashMap<>();
+
     public static Date parse(String dateString) throws ParseException {
         String dateFormat = determineDateFormat(dateString);
         if (dateFormat == null) {
@@ -78,9 +85,12 @@ public final class DateUtil {
     }
 
     public static Date parse(String dateString, String dateFormat) throws ParseException {
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(dateFormat);
-        simpleDateFormat.setLenient(false);
-        return simpleDateFormat.parse(dateString);
+        SimpleDateFormat prototype = DATE_FORMATTERS.computeIfAbsent(dateFormat, format -> {
+            SimpleDateFormat simpleDateFormat = new SimpleDateFormat(format);
+            simpleDateFormat.setLenient(false);
+            return simpleDateFormat;
+        });
+        return ((SimpleDateFormat) prototype.clone()).parse(dateString);
     }
 
     public static String determineDateFormat(String dateString) {
@@ -202,6 +202,8 @@ public class QrsqlUtil {
         defaultFieldTypes.add(new CharacterFieldTypeHandler());
         defaultFieldTypes.add(new NumberFieldTypeHandler());
         defaultFieldTypes.add(new DateFieldTypeHandler());
+        defaultFieldTypes.add(new TemporalFieldTypeHandler());
+        defaultFieldTypes.add(new UuidFieldTypeHandler());
         defaultFieldTypes.add(new BooleanFieldTypeHandler());
         defaultFieldTypes.add(new ListFieldTypeHandler());
         defaultFieldTypes.add(new SetFieldTypeHandler());
@@ -1,9 +1,44 @@
 package com.github.balintrudas.qrsql.test;
 
+import com.github.balintrudas.qrsql.FieldMetadata;
+import com.github.balintrudas.qrsql.PreparedQrsql;
 import com.github.balintrudas.qrsql.Qrsql;
 import com.github.balintrudas.qrsql.QrsqlConfig;
+import com.github.balintrudas.qrsql.allowlist.SelectorAllowlist;
+import com.github.balintrudas.qrsql.dialect.IlikeStringPredicateDialect;
 import com.github.balintrudas.qrsql.exception.QrsqlException;
+import com.github.balintrudas.qrsql.exception.QueryCancelledException;
+import com.github.balintrudas.qrsql.exception.QueryDeadlineExceededException;
+import com.github.balintrudas.qrsql.exception.QueryRejectedException;
+import com.github.balintrudas.qrsql.exception.SelectorNotAllowedException;
+import com.github.balintrudas.qrsql.execution.AdmissionController;
+import com.github.balintrudas.qrsql.execution.CancellationHandle;
+import com.github.balintrudas.qrsql.execution.DefaultQueryCostEstimator;
+import com.github.balintrudas.qrsql.execution.QrsqlPage;
+import com.github.balintrudas.qrsql.execution.QueryCoalescer;
+import com.github.balintrudas.qrsql.execution.QueryDeadline;
+import com.github.balintrudas.qrsql.execution.SortedIdSet;
+import com.github.balintrudas.qrsql.explain.QrsqlExplanation;
+import com.github.balintrudas.qrsql.handler.StringFieldTypeHandler;
+import com.github.balintrudas.qrsql.handler.TemporalFieldTypeHandler;
+import com.github.balintrudas.qrsql.handler.StringPredicatePlanner;
+import com.github.balintrudas.qrsql.memory.QrsqlColumnSnapshot;
+import com.github.balintrudas.qrsql.memory.QrsqlEntityStore;
+import com.github.balintrudas.qrsql.memory.QrsqlSubscriptionMatcher;
+import com.github.balintrudas.qrsql.metadata.SelectorField;
+import com.github.balintrudas.qrsql.metadata.SelectorTable;
+import com.github.balintrudas.qrsql.metrics.QrsqlFingerprint;
+import com.github.balintrudas.qrsql.metrics.QrsqlMetrics;
+import com.github.balintrudas.qrsql.metrics.QrsqlPhase;
+import com.github.balintrudas.qrsql.metrics.SlowQueryLog;
+import com.github.balintrudas.qrsql.metrics.SlowQueryStats;
+import com.github.balintrudas.qrsql.operator.Operator;
 import com.github.balintrudas.qrsql.operator.QrsqlOperator;
+import com.github.balintrudas.qrsql.plan.QrsqlPathCache;
+import com.github.balintrudas.qrsql.plan.QrsqlPlanCache;
+import com.github.balintrudas.qrsql.plan.QrsqlPlanStore;
+import com.github.balintrudas.qrsql.sql.SqlEntityMappings;
+import com.github.balintrudas.qrsql.sql.SqlQrsql;
 import com.github.balintrudas.qrsql.test.handler.CustomFieldTypeHandler;
 import com.github.balintrudas.qrsql.test.model.Car;
 import com.github.balintrudas.qrsql.test.model.Engine;
@@ -12,7 +47,26 @@ import com.github.balintrudas.qrsql.test.model.ScrewType;
 import com.github.balintrudas.qrsql.test.repository.CarRepository;
 import com.github.balintrudas.qrsql.test.repository.EngingeRepository;
 import com.github.balintrudas.qrsql.test.repository.ScrewRepository;
+import com.github.balintrudas.qrsql.util.QrsqlUtil;
+import com.mysema.codegen.model.TypeCategory;
 import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.BooleanPath;
+import com.querydsl.core.types.dsl.ComparablePath;
+import com.querydsl.core.types.dsl.DatePath;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.EntityPathBase;
+import com.querydsl.core.types.dsl.EnumPath;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLQueryFactory;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -22,13 +76,39 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
 import static org.hamcrest.Matchers.isA;
 
@@ -39,6 +119,12 @@ public class QrsqlTest {
     @Autowired
     private EntityManager entityManager;
 
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Autowired
     private CarRepository carRepository;
 
@@ -91,6 +177,10 @@ public class QrsqlTest {
                 car.setName("Béla" + i);
                 car.setActive(Math.random() < 0.5);
                 car.setMfgdt(new Date());
+                car.setRegistered(LocalDate.of(2018, 1, 1).plusDays(i));
+                car.setServiced(LocalDateTime.of(2018, 1, 1, 10, 0).plusHours(i));
+                car.setCreated(Instant.parse("2018-01-01T00:00:00Z").plusSeconds(3600L * i));
+                car.setSerial(new UUID(0L, i + 1));
                 car.setScrews(screws);
                 car.setEngine(savedEngine);
                 carRepository.save(car);
@@ -310,4 +400,1203 @@ public class QrsqlTest {
         Assert.assertTrue("Not in order", cars.get(0).toArray()[0].equals("Béla34") && cars.get(1).toArray()[0].equals("Béla33"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldRecordMetrics() {
+        Map<QrsqlPhase, Long> events = new EnumMap<>(QrsqlPhase.class);
+        List<QrsqlFingerprint> fingerprints = new ArrayList<>();
+        QrsqlMetrics metrics = new QrsqlMetrics() {
+            @Override
+            public void recordTime(QrsqlPhase phase, Class entityClass, QrsqlFingerprint fingerprint, long nanos) {
+                events.put(phase, nanos);
+                fingerprints.add(fingerprint);
+            }
+
+            @Override
+            public void recordCount(QrsqlPhase phase, Class entityClass, QrsqlFingerprint fingerprint, long count) {
+                events.put(phase, count);
+            }
+        };
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).metrics(metrics).build();
+        List<Car> cars = new Qrsql.Builder<>(config)
+                .selectFrom("Car")
+                .where("id=in=(3,6,9);engine.name=notempty=''")
+                .sort("id.desc")
+                .build()
+                .fetch();
+        Assert.assertEquals("Not all phases recorded", QrsqlPhase.values().length, events.size());
+        Assert.assertEquals("Row count not recorded", Long.valueOf(cars.size()), events.get(QrsqlPhase.ROW_COUNT));
+        Assert.assertEquals("Fingerprint contains values", "id=in=(?);engine.name=notempty=?", fingerprints.get(0).getShape());
+
+        QrsqlFingerprint otherValues = new Qrsql.Builder<Car>(entityManager)
+                .selectFrom("Car")
+                .where("id=in=(1,2);engine.name=isNotEmpty='x'")
+                .sort("id.desc")
+                .build()
+                .getFingerprint();
+        Assert.assertEquals("Fingerprint depends on values", fingerprints.get(0).getId(), otherValues.getId());
+    }
+
+    @Test
+    public void shouldCollectSlowQueryFingerprints() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog.Builder().threshold(0, TimeUnit.MILLISECONDS).build();
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).slowQueryLog(slowQueryLog).build();
+        for (String id : new String[]{"3", "6", "9"}) {
+            new Qrsql.Builder<>(config).select("name,description").from(Car.class).where("id==" + id).sort("id.desc")
+                    .build().fetch();
+        }
+        new Qrsql.Builder<>(config).selectFrom(Car.class).where("name=like='Béla%'").build().fetch();
+
+        List<SlowQueryStats> mostFrequent = slowQueryLog.getMostFrequent(1);
+        Assert.assertEquals("Top list is not limited", 1, mostFrequent.size());
+        Assert.assertEquals("Executions are not aggregated by fingerprint", 3, mostFrequent.get(0).getCount());
+        Assert.assertEquals("Every query should be slow", 3, mostFrequent.get(0).getSlowCount());
+        Assert.assertEquals("Projection missing from fingerprint", "name,description", mostFrequent.get(0).getFingerprint().getProjection());
+        Assert.assertEquals("Sort missing from fingerprint", "id.desc", mostFrequent.get(0).getFingerprint().getSort());
+        Assert.assertEquals("Not all fingerprints tracked", 2, slowQueryLog.getSlowest(10).size());
+    }
+
+    @Test
+    public void shouldKeepTimingsPerExecution() throws Exception {
+        List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+        logger.addHandler(handler);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SlowQueryLog slowQueryLog = new SlowQueryLog.Builder().threshold(0, TimeUnit.MILLISECONDS).build();
+            QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).slowQueryLog(slowQueryLog).build();
+            Qrsql<Car> qrsql = new Qrsql.Builder<>(config).selectFrom(Car.class).where("id=in=(3,6,9)").build();
+            List<Future<List<Car>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> qrsql.fetch()));
+            }
+            for (Future<List<Car>> future : futures) {
+                Assert.assertEquals(3, future.get().size());
+            }
+        } finally {
+            executor.shutdown();
+            logger.removeHandler(handler);
+        }
+        Assert.assertEquals("Not every execution is logged", 8, messages.size());
+        for (String message : messages) {
+            Assert.assertTrue("Row count is not kept apart from the times: " + message,
+                    message.contains("rows=3, total="));
+        }
+    }
+
+    @Test
+    public void shouldNotModifySharedQrsqlConfig() {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).build();
+        List<Car> cars = new Qrsql.Builder<>(config)
+                .selectFrom("Car")
+                .where("description=customnotempty=''")
+                .operator(new QrsqlOperator("=customnotempty="))
+                .fieldTypeHandler(new CustomFieldTypeHandler())
+                .build()
+                .fetch();
+        Assert.assertEquals("Can't use query level operator", 50, cars.size());
+        Assert.assertTrue("Query level operator leaked into the shared config", config.getOperators().isEmpty());
+        Assert.assertEquals("Query level handler leaked into the shared config", CustomFieldTypeHandler.class,
+                config.withFieldTypeHandlers(Collections.singletonList(new CustomFieldTypeHandler()))
+                        .getFieldTypeHandler(String.class).getClass());
+        Assert.assertNotEquals("Query level handler leaked into the shared config", CustomFieldTypeHandler.class,
+                config.getFieldTypeHandler(String.class).getClass());
+
+        thrown.expectCause(isA(QrsqlException.class));
+        thrown.expectMessage("Unknown operator: =customnotempty=");
+        new Qrsql.Builder<>(config).selectFrom("Car").where("description=customnotempty=''").build().fetch();
+    }
+
+    @Test
+    public void shouldExecutePreparedQrsql() {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).build();
+        PreparedQrsql<Car> prepared = new Qrsql.Builder<>(config)
+                .select("id,name")
+                .from(Car.class)
+                .where("name=like=:name;id=in=:ids;description=notempty=''")
+                .sort("id.desc")
+                .prepare();
+        Assert.assertEquals("Placeholders are not collected", 2, prepared.getPlaceholders().size());
+
+        List<Long> ids = new ArrayList<>();
+        for (Car car : new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class).where("id=notnull=''").sort("id.asc")
+                .build().fetch()) {
+            ids.add(car.getId());
+        }
+        List tuples = prepared.bind().set("name", "Béla%").set(":ids", ids.subList(0, 10)).page(0L, 3L).fetch();
+        Assert.assertEquals("Page is not applied", 3, tuples.size());
+        Assert.assertEquals("Sort is not applied", ids.get(9), ((Tuple) tuples.get(0)).get(0, Long.class));
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("name", "Béla1%");
+        values.put("ids", new String[]{String.valueOf(ids.get(1)), String.valueOf(ids.get(10)), String.valueOf(ids.get(20))});
+        Assert.assertEquals("String values are not converted", 2, prepared.bind(values).fetch().size());
+        Assert.assertEquals("Fingerprint should not depend on the values", prepared.getFingerprint(),
+                prepared.bind(values).build().getFingerprint());
+        values.put("name", "Béla1");
+        Assert.assertEquals("Like placeholder without wildcard is not planned per binding", 1,
+                prepared.bind(values).fetch().size());
+        values.put("name", "%éla1%");
+        Assert.assertEquals("Like placeholder with leading wildcard is not planned per binding", 2,
+                prepared.bind(values).fetch().size());
+
+        thrown.expect(QrsqlException.class);
+        thrown.expectMessage("Placeholder is not bound: ':ids'");
+        prepared.bind().set("name", "Béla%").fetch();
+    }
+
+    @Test
+    public void shouldFetchWithSqlBackend() {
+        SQLQueryFactory queryFactory = new SQLQueryFactory(new Configuration(H2Templates.builder().build()), dataSource);
+        SqlEntityMappings mappings = new SqlEntityMappings(queryFactory.getConfiguration());
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).build();
+        String where = "engine.screws.size=gt=30;active==true,screws.screwType==BIG;engine.id=notnull=''";
+
+        List<Car> cars = new Qrsql.Builder<>(config).selectFrom(Car.class).where(where).sort("id.asc").build().fetch();
+        List<Tuple> tuples = new SqlQrsql.Builder<>(queryFactory, mappings, config)
+                .select("id,name,engine.name")
+                .from("Car")
+                .where(where)
+                .sort("id.asc")
+                .build()
+                .fetch();
+        Assert.assertEquals("Sql backend returns different rows", cars.size(), tuples.size());
+        for (int i = 0; i < cars.size(); i++) {
+            Assert.assertEquals("Sql backend returns different rows", cars.get(i).getId(), tuples.get(i).get(0, Long.class));
+            Assert.assertEquals("Can't select to-one association", cars.get(i).getEngine().getName(), tuples.get(i).get(2, String.class));
+        }
+
+        List<CarDto> dtos = new SqlQrsql.Builder<Car>(queryFactory, mappings, config)
+                .select("name,engine.name").from(Car.class).where("name=in=(Béla1,Béla2)").sort("name.desc").build()
+                .fetch(CarDto.class);
+        Assert.assertEquals("Can't fetch dto", 2, dtos.size());
+        Assert.assertEquals("Can't fetch dto", "Béla2", dtos.get(0).getName());
+        Assert.assertNotNull("Can't fetch nested dto property", dtos.get(0).getEngineName());
+        Assert.assertEquals("Can't count", 50, new SqlQrsql.Builder<Car>(queryFactory).from(Car.class)
+                .where("mfgdt=notnull=''").build().fetchCount());
+    }
+
+    @Test
+    public void shouldPlanIndexFriendlyStringPredicates() {
+        Qrsql<Car> exact = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class).where("name=like=Béla1").build();
+        Assert.assertEquals("Like without wildcard is not an equality", "car.name = Béla1", exact.buildPredicate().toString());
+        Assert.assertEquals("Can't handle like without wildcard", 1, exact.fetch().size());
+
+        Qrsql<Car> prefix = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class).where("name=likeic='béla1%'").build();
+        Assert.assertEquals("Can't handle prefix likeic", 11, prefix.fetch().size());
+        Assert.assertEquals("Can't handle startswic", 11, new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=startswic='BÉLA1'").build().fetch().size());
+        Assert.assertEquals("Can't handle noteqic", 49, new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=noteqic='BÉLA1'").build().fetch().size());
+
+        Assert.assertEquals("Like pattern is escaped", 0, new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=like='Béla1!0',name=like='%éla1!0',name=likeic='%ÉLA1!0'").build().fetch().size());
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            Car car = new Car();
+            car.setName("Bang!1");
+            carRepository.save(car);
+            entityManager.flush();
+            for (String where : new String[]{"name=like='%ng!_'", "name=like='%ng!%'", "name=notlike='%ng!_';name=='Bang!1'",
+                    "name=likeic='%NG!_'", "name=like='Bang!%'", "name=like='Bang!1'"}) {
+                int expected = where.contains("notlike") ? 0 : 1;
+                Assert.assertEquals("Escape character in " + where, expected, new Qrsql.Builder<Car>(entityManager)
+                        .selectFrom(Car.class).where(where).build().fetch().size());
+            }
+            status.setRollbackOnly();
+            return null;
+        });
+    }
+
+    @Test
+    public void shouldUseStringPredicateDialectWithSqlBackend() {
+        SQLQueryFactory queryFactory = new SQLQueryFactory(new Configuration(H2Templates.builder().build()), dataSource);
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager)
+                .stringPredicateDialect(new IlikeStringPredicateDialect()).build();
+        Assert.assertEquals("Can't handle eqic with ilike dialect", 1, new SqlQrsql.Builder<Car>(queryFactory,
+                new SqlEntityMappings(queryFactory.getConfiguration()), config).from(Car.class)
+                .where("name=eqic=BÉLA1").build().fetchCount());
+        Assert.assertEquals("Can't handle conic with ilike dialect", 11, new SqlQrsql.Builder<Car>(queryFactory,
+                new SqlEntityMappings(queryFactory.getConfiguration()), config).from(Car.class)
+                .where("name=conic='éLA1'").build().fetchCount());
+    }
+
+    @Test
+    public void shouldWarnNonSargablePredicateOnce() {
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(StringPredicatePlanner.class.getName());
+        logger.addHandler(handler);
+        try {
+            QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager)
+                    .fieldTypeHandler(new StringFieldTypeHandler()).build();
+            for (int i = 0; i < 2; i++) {
+                new Qrsql.Builder<>(config).selectFrom(Car.class).where("description=con='car 1'").build().fetch();
+            }
+        } finally {
+            logger.removeHandler(handler);
+        }
+        Assert.assertEquals("Non-sargable predicate is not logged once", 1, records.size());
+        Assert.assertEquals(Level.WARNING, records.get(0).getLevel());
+    }
+
+    @Test
+    public void shouldSaveAndLoadPlans() throws Exception {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).planCache(new QrsqlPlanCache()).build();
+        String where = "engine.screws.size=gt=30;name=in=(Béla1,Béla2),active==true";
+        int count = new Qrsql.Builder<>(config).selectFrom(Car.class).where(where).sort("name.asc").build().fetch().size();
+        Path file = Files.createTempFile("qrsql", ".plans");
+        try {
+            new QrsqlPlanStore(config).save(file);
+            QrsqlConfig<Car> selectorConfig = new QrsqlConfig.Builder<Car>(entityManager).planCache(new QrsqlPlanCache()).build();
+            new QrsqlPlanStore(selectorConfig).load(file);
+            Assert.assertNull("Where plan is saved by default", selectorConfig.getPlanCache().getWhere(where));
+            Assert.assertNotNull("Selector plan is not loaded", selectorConfig.getPlanCache().getSelector(Car.class, "engine.screws.size"));
+
+            new QrsqlPlanStore(config, true).save(file);
+            QrsqlConfig<Car> warmConfig = new QrsqlConfig.Builder<Car>(entityManager).planCache(new QrsqlPlanCache()).build();
+            Assert.assertEquals("Can't load plans", config.getPlanCache().size(), new QrsqlPlanStore(warmConfig).load(file));
+            Assert.assertEquals("Loaded where plan differs", config.getPlanCache().getWhere(where).toString(),
+                    warmConfig.getPlanCache().getWhere(where).toString());
+            Assert.assertNotNull("Selector plan is not loaded", warmConfig.getPlanCache().getSelector(Car.class, "engine.screws.size"));
+            Assert.assertEquals("Loaded plan returns different rows", count,
+                    new Qrsql.Builder<>(warmConfig).selectFrom(Car.class).where(where).sort("name.asc").build().fetch().size());
+
+            QrsqlConfig<Car> changedConfig = new QrsqlConfig.Builder<Car>(entityManager).planCache(new QrsqlPlanCache())
+                    .fieldTypeHandler(new CustomFieldTypeHandler()).build();
+            Assert.assertEquals("Plans of another configuration are loaded", 0, new QrsqlPlanStore(changedConfig).load(file));
+            Assert.assertEquals("Plans of another configuration are loaded", 0, changedConfig.getPlanCache().size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedWherePlan() {
+        QrsqlPlanCache planCache = new QrsqlPlanCache(2);
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).planCache(planCache).build();
+        config.parseWhere("name==Béla1");
+        config.parseWhere("name==Béla2");
+        config.parseWhere("name==Béla1");
+        config.parseWhere("name==Béla3");
+        Assert.assertNotNull("Recently used plan is evicted", planCache.getWhere("name==Béla1"));
+        Assert.assertNull("Least recently used plan is kept", planCache.getWhere("name==Béla2"));
+        Assert.assertNotNull("New plan is not cached at the limit", planCache.getWhere("name==Béla3"));
+    }
+
+    @Test
+    public void shouldResolveSelectorsFromGeneratedTable() {
+        Map<TypeCategory, Class> pathTypes = new EnumMap<>(TypeCategory.class);
+        pathTypes.put(TypeCategory.STRING, StringPath.class);
+        pathTypes.put(TypeCategory.NUMERIC, NumberPath.class);
+        pathTypes.put(TypeCategory.BOOLEAN, BooleanPath.class);
+        pathTypes.put(TypeCategory.DATETIME, DateTimePath.class);
+        pathTypes.put(TypeCategory.ENUM, EnumPath.class);
+        pathTypes.put(TypeCategory.DATE, DatePath.class);
+        pathTypes.put(TypeCategory.COMPARABLE, ComparablePath.class);
+        for (Class entityClass : new Class[]{Car.class, Engine.class, Screw.class}) {
+            SelectorTable selectorTable = SelectorTable.of(entityClass);
+            Assert.assertNotNull("Selector table is not generated", selectorTable);
+            for (SelectorField selectorField : selectorTable.getFields()) {
+                FieldMetadata fieldMetadata = new FieldMetadata(selectorField.getName(), entityClass);
+                Assert.assertEquals("Selector table differs from reflection", fieldMetadata.getField().getType(),
+                        fieldMetadata.getType());
+                Class expectedPathType = pathTypes.getOrDefault(fieldMetadata.getEntityType().getOriginalCategory(),
+                        EntityPathBase.class);
+                Assert.assertEquals("Selector table differs from reflection", expectedPathType, fieldMetadata.getPathType());
+            }
+        }
+        List<FieldMetadata> screwSize = QrsqlUtil.parseFieldSelector(Car.class, "engine.screws.size");
+        Assert.assertEquals("Can't resolve element type", Screw.class, screwSize.get(1).getParameterizedType());
+        Assert.assertEquals("Can't resolve nested selector", NumberPath.class, screwSize.get(2).getPathType());
+
+        Car car = new Car();
+        car.setName("Béla");
+        Assert.assertEquals("Can't read field with accessor", "Béla", SelectorTable.of(Car.class).getField("name").getValue(car));
+    }
+
+    @Test
+    public void shouldRefuseSelectorsNotInAllowlist() {
+        SelectorAllowlist allowlist = new SelectorAllowlist.Builder()
+                .maxDepth(3)
+                .maxCollectionHops(1)
+                .allow(Car.class, "name", Operator.EQUALS, Operator.IN)
+                .allow(Car.class, "engine.**")
+                .build();
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).selectorAllowlist(allowlist).build();
+        Assert.assertEquals("Allowed selector is refused", 1, new Qrsql.Builder<>(config).selectFrom(Car.class)
+                .where("name==Béla1").sort("name.asc").build().fetch().size());
+        Assert.assertEquals("Allowed selector is refused", 50, new Qrsql.Builder<>(config).selectFrom(Car.class)
+                .where("engine.screws.name=con='name'").build().fetch().size());
+
+        assertNotAllowed(() -> new Qrsql.Builder<>(config).selectFrom(Car.class).where("name=con=Béla").build().fetch());
+        assertNotAllowed(() -> new Qrsql.Builder<>(config).selectFrom(Car.class).where("description==x").build().fetch());
+        assertNotAllowed(() -> new Qrsql.Builder<>(config).selectFrom(Car.class).where("name==x").sort("description.asc")
+                .build().fetch());
+        assertNotAllowed(() -> new Qrsql.Builder<>(config).select("name,description").from(Car.class).where("name==x")
+                .build().fetch());
+
+        SelectorAllowlist limits = new SelectorAllowlist.Builder().maxDepth(2).maxCollectionHops(0).build();
+        QrsqlConfig<Car> limitedConfig = new QrsqlConfig.Builder<Car>(entityManager).selectorAllowlist(limits).build();
+        assertNotAllowed(() -> new Qrsql.Builder<>(limitedConfig).selectFrom(Car.class).where("engine.screws.size=gt=30")
+                .build().fetch());
+        assertNotAllowed(() -> new Qrsql.Builder<>(limitedConfig).selectFrom(Car.class).where("screws.size=gt=30")
+                .build().fetch());
+        Assert.assertEquals("Selector within the limits is refused", 1, new Qrsql.Builder<>(limitedConfig)
+                .selectFrom(Car.class).where("engine.name!=x;name==Béla1").build().fetch().size());
+
+        SelectorAllowlist overlapping = new SelectorAllowlist.Builder()
+                .allow(Car.class, "engine.**")
+                .allow(Car.class, "engine.screws.size", Operator.EQUALS)
+                .build();
+        QrsqlConfig<Car> overlappingConfig = new QrsqlConfig.Builder<Car>(entityManager)
+                .selectorAllowlist(overlapping).build();
+        Assert.assertEquals("Specific rule hides the ** rule", 50, new Qrsql.Builder<>(overlappingConfig)
+                .selectFrom(Car.class).where("engine.screws.name=con='name'").build().fetch().size());
+        overlapping.check(Car.class, "engine.screws.size", "=gt=");
+        overlapping.check(Car.class, "engine.screws", null);
+        SelectorAllowlist restricted = new SelectorAllowlist.Builder()
+                .allow(Car.class, "engine.**", Operator.EQUALS)
+                .allow(Car.class, "engine.screws.size")
+                .build();
+        restricted.check(Car.class, "engine.screws.name", "==");
+        restricted.check(Car.class, "engine.screws.size", "=gt=");
+        assertNotAllowed(() -> restricted.check(Car.class, "engine.screws.name", "=con="));
+        assertNotAllowed(() -> restricted.check(Car.class, "engine", null));
+
+        thrown.expect(IllegalArgumentException.class);
+        new SelectorAllowlist.Builder().maxCollectionHops(0).allow(Car.class, "engine.screws.size").build();
+    }
+
+    private static void assertNotAllowed(Runnable query) {
+        try {
+            query.run();
+            Assert.fail("Selector is not refused");
+        } catch (QrsqlException ex) {
+            Throwable cause = ex;
+            while (cause != null && !(cause instanceof SelectorNotAllowedException)) {
+                cause = cause.getCause();
+            }
+            Assert.assertNotNull("Selector is not refused", cause);
+        }
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentQueries() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer.Builder().coalesceEntities().build();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            Object shared = new Object();
+            results.add(executor.submit(() -> coalescer.execute("key", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return shared;
+            })));
+            while (coalescer.getExecutionCount() == 0) {
+                Thread.sleep(1);
+            }
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> coalescer.execute("key", Object::new)));
+            }
+            while (coalescer.getCoalescedCount() < 4) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<Object> result : results) {
+                Assert.assertSame("Coalesced call received another result", shared, result.get(10, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals("Identical queries are executed more than once", 1, coalescer.getExecutionCount());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).queryCoalescer(coalescer).build();
+        Assert.assertEquals("Can't count with coalescer", 50, new Qrsql.Builder<>(config).selectFrom(Car.class)
+                .where("id=notnull=''").build().fetchCount());
+        List<Car> cars = new Qrsql.Builder<>(config).selectFrom(Car.class).where("name=like='Béla1%'").build().fetch();
+        Assert.assertEquals("Can't fetch entities with coalescer", 11, cars.size());
+        Assert.assertEquals("Can't fetch detached entity", "Béla1", new Qrsql.Builder<>(config).selectFrom(Car.class)
+                .where("name==Béla1").build().fetch().get(0).getName());
+        Assert.assertEquals("Query is not executed", 4, coalescer.getExecutionCount());
+        thrown.expect(UnsupportedOperationException.class);
+        cars.clear();
+    }
+
+    @Test
+    public void shouldBoundCoalescedWaitsPerCaller() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer.Builder().build();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CancellationHandle leaderCancellation = new CancellationHandle();
+            Future<Object> leader = executor.submit(() -> coalescer.execute("key", sharedCancellation -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return sharedCancellation.isCancelled() ? "aborted" : "shared";
+            }, null, leaderCancellation));
+            while (coalescer.getExecutionCount() == 0) {
+                Thread.sleep(1);
+            }
+            try {
+                coalescer.execute("key", sharedCancellation -> "other", QueryDeadline.after(20, TimeUnit.MILLISECONDS),
+                        null);
+                Assert.fail("Waiting call exceeded its deadline");
+            } catch (QueryDeadlineExceededException ex) {
+                Assert.assertNotNull(ex.getMessage());
+            }
+            CancellationHandle followerCancellation = new CancellationHandle();
+            Future<Object> follower = executor.submit(() -> coalescer.execute("key", sharedCancellation -> "other",
+                    null, followerCancellation));
+            while (coalescer.getCoalescedCount() < 2) {
+                Thread.sleep(1);
+            }
+            leaderCancellation.cancel();
+            try {
+                leader.get(10, TimeUnit.SECONDS);
+                Assert.fail("Cancelled leader received a result");
+            } catch (java.util.concurrent.ExecutionException ex) {
+                Assert.assertTrue("Wrong failure of the cancelled leader", ex.getCause() instanceof QueryCancelledException);
+            }
+            Assert.assertFalse("Cancelled leader didn't leave before the shared execution finished", follower.isDone());
+            try {
+                coalescer.execute("key", sharedCancellation -> "other", QueryDeadline.after(20, TimeUnit.MILLISECONDS),
+                        null);
+                Assert.fail("Waiting call exceeded its deadline");
+            } catch (QueryDeadlineExceededException ex) {
+                Assert.assertNotNull(ex.getMessage());
+            }
+            release.countDown();
+            Assert.assertEquals("Cancelled caller aborted the shared execution", "shared",
+                    follower.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals("Identical queries are executed more than once", 1, coalescer.getExecutionCount());
+
+            CountDownLatch slowRelease = new CountDownLatch(1);
+            try {
+                coalescer.execute("slow", sharedCancellation -> {
+                    try {
+                        slowRelease.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "slow";
+                }, QueryDeadline.after(20, TimeUnit.MILLISECONDS), null);
+                Assert.fail("Leader exceeded its deadline");
+            } catch (QueryDeadlineExceededException ex) {
+                Assert.assertNotNull(ex.getMessage());
+            } finally {
+                slowRelease.countDown();
+            }
+
+            CountDownLatch aborted = new CountDownLatch(1);
+            CancellationHandle lastCancellation = new CancellationHandle();
+            Future<Object> last = executor.submit(() -> coalescer.execute("key", sharedCancellation -> {
+                sharedCancellation.register(aborted::countDown);
+                try {
+                    aborted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                sharedCancellation.throwIfCancelled();
+                return "shared";
+            }, null, lastCancellation));
+            while (coalescer.getExecutionCount() < 2) {
+                Thread.sleep(1);
+            }
+            lastCancellation.cancel();
+            Assert.assertTrue("Execution is not aborted when its last caller left", aborted.await(10, TimeUnit.SECONDS));
+            try {
+                last.get(10, TimeUnit.SECONDS);
+                Assert.fail("Abandoned execution returned a result");
+            } catch (java.util.concurrent.ExecutionException ex) {
+                Assert.assertTrue("Wrong failure of the abandoned execution",
+                        ex.getCause() instanceof QueryCancelledException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldAdmitQueriesByCost() throws Exception {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).build();
+        DefaultQueryCostEstimator estimator = new DefaultQueryCostEstimator();
+        Assert.assertEquals("Wrong comparison cost", 1,
+                estimator.estimate(config, Car.class, config.parseWhere("name==Béla1"), null, null));
+        Assert.assertEquals("Wrong collection hop cost", 11,
+                estimator.estimate(config, Car.class, config.parseWhere("screws.name==Screw"), null, null));
+        Assert.assertEquals("Wrong wildcard cost", 42,
+                estimator.estimate(config, Car.class, config.parseWhere("name=con=Bé,name=like='%la'"), null, null));
+        Assert.assertEquals("Wrong page depth cost", 16,
+                estimator.estimate(config, Car.class, config.parseWhere("name==Béla1"), 2500L, 10L));
+        Assert.assertEquals("Page depth cost overflows", Long.MAX_VALUE, new DefaultQueryCostEstimator.Builder()
+                .pageDepth(1, 2).build().estimate(config, Car.class, null, Long.MAX_VALUE, 10L));
+
+        AdmissionController admissionController = new AdmissionController.Builder()
+                .lane("cheap", 5, 1, 0, TimeUnit.MILLISECONDS)
+                .lane("scan", 30, 1, 10, TimeUnit.MILLISECONDS)
+                .build();
+        QrsqlConfig<Car> admittedConfig = new QrsqlConfig.Builder<Car>(entityManager)
+                .admissionController(admissionController).build();
+        Assert.assertEquals("Can't fetch cheap query", 1, new Qrsql.Builder<>(admittedConfig).selectFrom(Car.class)
+                .where("name==Béla1").build().fetch().size());
+        Assert.assertEquals("Can't fetch scan query", 50, new Qrsql.Builder<>(admittedConfig).selectFrom(Car.class)
+                .where("name=con=la").build().fetchCount());
+        Assert.assertEquals("Queries are not admitted", 1, admissionController.getLanes().get(0).getAdmittedCount());
+        Assert.assertEquals("Queries are not admitted", 1, admissionController.getLanes().get(1).getAdmittedCount());
+        try {
+            new Qrsql.Builder<>(admittedConfig).selectFrom(Car.class).where("screws.name=con=Screw").build().fetch();
+            Assert.fail("Too expensive query is admitted");
+        } catch (QueryRejectedException ex) {
+            Assert.assertNull("Too expensive query has lane", ex.getLane());
+            Assert.assertEquals("Wrong rejected cost", 31, ex.getCost());
+        }
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> blocking = executor.submit(() -> admissionController.execute(0, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            started.await();
+            try {
+                new Qrsql.Builder<>(admittedConfig).selectFrom(Car.class).where("name==Béla1").build().fetch();
+                Assert.fail("Query is admitted to a full lane");
+            } catch (QueryRejectedException ex) {
+                Assert.assertEquals("Wrong rejected lane", "cheap", ex.getLane());
+            }
+            Assert.assertEquals("Rejection is not counted", 1, admissionController.getLanes().get(0).getRejectedCount());
+            release.countDown();
+            blocking.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("Lane is not released", 0, admissionController.getLanes().get(0).getActiveCount());
+
+        AdmissionController queueingController = new AdmissionController.Builder()
+                .lane("queue", 5, 1, 1, TimeUnit.MINUTES)
+                .build();
+        QrsqlConfig<Car> queueingConfig = new QrsqlConfig.Builder<Car>(entityManager)
+                .admissionController(queueingController).build();
+        CountDownLatch queueStarted = new CountDownLatch(1);
+        CountDownLatch queueRelease = new CountDownLatch(1);
+        ExecutorService queueExecutor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> blocking = queueExecutor.submit(() -> queueingController.execute(0, () -> {
+                queueStarted.countDown();
+                try {
+                    queueRelease.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            queueStarted.await();
+            long startTime = System.nanoTime();
+            try {
+                new Qrsql.Builder<>(queueingConfig).selectFrom(Car.class).where("name==Béla1")
+                        .deadline(QueryDeadline.after(50, TimeUnit.MILLISECONDS)).build().fetch();
+                Assert.fail("Query is admitted to a full lane");
+            } catch (QueryDeadlineExceededException ex) {
+                Assert.assertTrue("Lane wait exceeded the deadline",
+                        System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(10));
+            }
+            CancellationHandle cancelledHandle = new CancellationHandle();
+            cancelledHandle.cancel();
+            try {
+                new Qrsql.Builder<>(queueingConfig).selectFrom(Car.class).where("name==Béla1")
+                        .cancellation(cancelledHandle).build().fetch();
+                Assert.fail("Cancelled query is admitted");
+            } catch (QueryCancelledException ex) {
+                Assert.assertTrue("Cancelled query waited for the lane",
+                        System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(10));
+            }
+            Assert.assertEquals("Deadline or cancellation counted as rejection", 0,
+                    queueingController.getLanes().get(0).getRejectedCount());
+            queueRelease.countDown();
+            blocking.get(10, TimeUnit.SECONDS);
+        } finally {
+            queueExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldBoundAndCancelQueries() throws Exception {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).queryTimeout(5, TimeUnit.SECONDS).build();
+        Assert.assertEquals("Can't fetch with deadline", 1, new Qrsql.Builder<>(config).selectFrom(Car.class)
+                .where("name==Béla1").deadline(QueryDeadline.after(10, TimeUnit.SECONDS)).build().fetch().size());
+        try {
+            new Qrsql.Builder<>(config).selectFrom(Car.class).where("name==Béla1")
+                    .deadline(QueryDeadline.after(0, TimeUnit.MILLISECONDS)).build().fetch();
+            Assert.fail("Query is executed after its deadline");
+        } catch (QueryDeadlineExceededException ex) {
+            Assert.assertNotNull(ex.getMessage());
+        }
+        CancellationHandle cancelled = new CancellationHandle();
+        cancelled.cancel();
+        try {
+            new Qrsql.Builder<>(config).selectFrom(Car.class).where("name==Béla1").cancellation(cancelled).build()
+                    .fetchCount();
+            Assert.fail("Cancelled query is executed");
+        } catch (QueryCancelledException ex) {
+            Assert.assertNotNull(ex.getMessage());
+        }
+        List<String> aborted = new ArrayList<>();
+        CancellationHandle handle = new CancellationHandle();
+        AutoCloseable registration = handle.register(() -> aborted.add("first"));
+        handle.register(() -> aborted.add("second")).close();
+        Assert.assertTrue("Can't cancel", handle.cancel());
+        Assert.assertFalse("Cancelled twice", handle.cancel());
+        registration.close();
+        handle.register(() -> aborted.add("late"));
+        Assert.assertEquals("In-flight executions are not aborted", Arrays.asList("first", "late"), aborted);
+
+        Assert.assertEquals("Can't fetch async", 50, new Qrsql.Builder<>(config).selectFrom(Car.class)
+                .where("name=like='Béla%'").build().fetchAsync(Runnable::run).get(10, TimeUnit.SECONDS).size());
+        List<Runnable> tasks = new ArrayList<>();
+        CancellationHandle asyncHandle = new CancellationHandle();
+        Qrsql<Car> asyncQuery = new Qrsql.Builder<>(config).selectFrom(Car.class)
+                .where("name=like='Béla%'").cancellation(asyncHandle).build();
+        CompletableFuture<List<Car>> future = asyncQuery.fetchAsync(tasks::add);
+        Assert.assertTrue("Can't cancel async query", future.cancel(true));
+        tasks.forEach(Runnable::run);
+        tasks.clear();
+        Assert.assertFalse("Cancelled future cancelled the query", asyncHandle.isCancelled());
+        Assert.assertEquals("Cancelled future cancelled the query", 50,
+                asyncQuery.fetchAsync(Runnable::run).get(10, TimeUnit.SECONDS).size());
+        CompletableFuture<List<Car>> linked = asyncQuery.fetchAsync(tasks::add);
+        asyncHandle.cancel();
+        tasks.forEach(Runnable::run);
+        tasks.clear();
+        try {
+            linked.get(10, TimeUnit.SECONDS);
+            Assert.fail("Query cancellation is not propagated to the async call");
+        } catch (java.util.concurrent.ExecutionException ex) {
+            Assert.assertTrue("Wrong failure of the cancelled async call", ex.getCause() instanceof QueryCancelledException);
+        }
+        Qrsql<Car> unlinkedQuery = new Qrsql.Builder<>(config).selectFrom(Car.class).where("name=like='Béla%'").build();
+        Assert.assertTrue("Can't cancel async query", unlinkedQuery.fetchAsync(tasks::add).cancel(true));
+        tasks.clear();
+        Assert.assertEquals("Cancelled future cancelled the query", 50, unlinkedQuery.fetch().size());
+
+        QrsqlPage<Car> page = new Qrsql.Builder<>(config).selectFrom(Car.class).where("name=like='Béla%'")
+                .page(0L, 10L).deadline(QueryDeadline.after(10, TimeUnit.SECONDS)).build()
+                .fetchPage(1, TimeUnit.MILLISECONDS);
+        Assert.assertEquals("Can't fetch page", 10, page.getContent().size());
+        Assert.assertEquals("Can't count page", Long.valueOf(50), page.getTotal());
+        page = new Qrsql.Builder<>(config).selectFrom(Car.class).where("name=like='Béla%'")
+                .page(0L, 10L).deadline(QueryDeadline.after(10, TimeUnit.SECONDS)).build()
+                .fetchPage(1, TimeUnit.HOURS);
+        Assert.assertFalse("Count is not skipped", page.hasTotal());
+        page = new Qrsql.Builder<>(config).selectFrom(Car.class).where("name=like='Béla%'").page(0L, 100L).build()
+                .fetchPage(1, TimeUnit.HOURS);
+        Assert.assertEquals("Can't count partial first page", Long.valueOf(50), page.getTotal());
+
+        SQLQueryFactory queryFactory = new SQLQueryFactory(new Configuration(H2Templates.builder().build()), dataSource);
+        Assert.assertEquals("Can't fetch with sql deadline", 1, new SqlQrsql.Builder<Car>(queryFactory, null, config)
+                .from(Car.class).where("name==Béla1").deadline(QueryDeadline.after(10, TimeUnit.SECONDS))
+                .cancellation(new CancellationHandle()).build().fetch().size());
+        thrown.expect(QueryCancelledException.class);
+        new SqlQrsql.Builder<Car>(queryFactory, null, config).from(Car.class).where("name==Béla1")
+                .cancellation(cancelled).build().fetchCount();
+    }
+
+    private static final CountDownLatch slowQueryStarted = new CountDownLatch(1);
+
+    public static int slowQueryStarted(String name) {
+        slowQueryStarted.countDown();
+        return 0;
+    }
+
+    @Test
+    public void shouldCancelRunningFetchFromAnotherThread() throws Exception {
+        try (java.sql.Connection connection = dataSource.getConnection();
+             java.sql.Statement statement = connection.createStatement()) {
+            statement.execute("create alias if not exists slow_query_started for \"" + QrsqlTest.class.getName() +
+                    ".slowQueryStarted\"");
+        }
+        QrsqlOperator slow = new QrsqlOperator("=slow=");
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).queryTimeout(30, TimeUnit.SECONDS)
+                .operator(slow).fieldTypeHandler(new StringFieldTypeHandler() {
+                    @Override
+                    public BooleanExpression getExpression(com.querydsl.core.types.Path path,
+                                                           FieldMetadata fieldMetadata, Object value,
+                                                           QrsqlOperator operator, QrsqlConfig qrsqlConfig) {
+                        if (!slow.equals(operator)) {
+                            return super.getExpression(path, fieldMetadata, value, operator, qrsqlConfig);
+                        }
+                        JPQLQuery<Integer> crossJoin = JPAExpressions.selectOne();
+                        NumberExpression<Long> sizes = null;
+                        StringPath screwName = null;
+                        for (int i = 0; i < 5; i++) {
+                            PathBuilder<Screw> screw = new PathBuilder<>(Screw.class, "slow" + i);
+                            crossJoin.from(screw);
+                            NumberPath<Long> size = screw.getNumber("size", Long.class);
+                            sizes = sizes == null ? size : sizes.add(size);
+                            screwName = screwName == null ? screw.getString("name") : screwName;
+                        }
+                        return crossJoin.where(Expressions.numberTemplate(Integer.class,
+                                "function('slow_query_started', {0})", screwName).eq(0), sizes.lt(0L),
+                                screwName.ne((StringPath) path)).exists();
+                    }
+                }).build();
+        CancellationHandle handle = new CancellationHandle();
+        Qrsql<Car> qrsql = new Qrsql.Builder<>(config).selectFrom(Car.class).where("name=slow=x")
+                .cancellation(handle).build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> cancel = executor.submit(() ->
+                    slowQueryStarted.await(10, TimeUnit.SECONDS) && handle.cancel());
+            long startTime = System.nanoTime();
+            try {
+                qrsql.fetch();
+                Assert.fail("Running query is not cancelled");
+            } catch (QueryCancelledException ex) {
+                Assert.assertTrue("Query is cancelled before its statement is running", cancel.get());
+                Assert.assertTrue("Running statement is not aborted",
+                        System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(10));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldExplainQuery() {
+        QrsqlExplanation explanation = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name==Béla1;engine.name=like='Eng%'").sort("name.asc").build().explain(true);
+        Assert.assertEquals("Wrong parsed tree", "(name=='Béla1';engine.name=like='Eng%')", explanation.getParsedTree());
+        Assert.assertTrue("Wrong jpql", explanation.getJpql().contains("order by car.name asc"));
+        Assert.assertEquals("Wrong parameters", Arrays.asList("Béla1", "Eng%"),
+                new ArrayList<>(explanation.getParameters().values()));
+        Assert.assertEquals("Wrong sql", 1, explanation.getSql().size());
+        Assert.assertTrue("Wrong sql", explanation.getSql().get(0).toLowerCase().contains("from car"));
+        Assert.assertFalse("Database plan is missing", explanation.getDatabasePlan().isEmpty());
+        Assert.assertNull("Database plan is not requested", new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name==Béla1").build().explain().getDatabasePlan());
+    }
+
+    @Test
+    public void shouldUpdateAndDeleteInBulk() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            Map<String, Object> inactive = new HashMap<>();
+            inactive.put("active", false);
+            Assert.assertEquals("Can't update with collection predicate", 50, new Qrsql.Builder<Car>(entityManager)
+                    .selectFrom(Car.class).where("screws.name=like='Screw%'").build().update(inactive));
+            Assert.assertEquals("Records are not updated", 50, new Qrsql.Builder<Car>(entityManager)
+                    .selectFrom(Car.class).where("active=isfalse=''").build().fetchCount());
+            Map<String, Object> values = new HashMap<>();
+            values.put("active", true);
+            values.put("description", null);
+            Assert.assertEquals("Can't update with association predicate", 1, new Qrsql.Builder<Car>(entityManager)
+                    .selectFrom(Car.class).where("name==Béla1;engine.name=like='Engine%'").build().update(values));
+            Assert.assertEquals("Can't update with basic predicate", 1, new Qrsql.Builder<Car>(entityManager)
+                    .selectFrom(Car.class).where("name==Béla2").build().update(values));
+            Assert.assertEquals("Records are not updated", 2, new Qrsql.Builder<Car>(entityManager)
+                    .selectFrom(Car.class).where("active=istrue='';description=isnull=''").build().fetchCount());
+            try {
+                new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class).where("name==Béla1").build()
+                        .update(Collections.singletonMap("engine.name", "x"));
+                Assert.fail("Association field is updated");
+            } catch (QrsqlException ex) {
+                Assert.assertNotNull(ex.getMessage());
+            }
+
+            Car car = new Car();
+            car.setName("Bulk");
+            carRepository.save(car);
+            entityManager.flush();
+            Assert.assertEquals("Can't delete", 1, new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                    .where("name==Bulk").build().delete());
+            Assert.assertEquals("Record is not deleted", 0, new Qrsql.Builder<Car>(entityManager)
+                    .selectFrom(Car.class).where("name==Bulk").build().fetchCount());
+            status.setRollbackOnly();
+            return null;
+        });
+        Assert.assertEquals("Bulk statements are not rolled back", 0, new Qrsql.Builder<Car>(entityManager)
+                .selectFrom(Car.class).where("description=isnull=''").build().fetchCount());
+    }
+
+    @Test
+    public void shouldAggregateInDatabase() {
+        List<Map<String, Object>> rows = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=like='Béla%'").groupBy("engine.name")
+                .aggregate("count(), avg(engine.screws.size), max(name)").sort("count.desc").build().fetchAggregate();
+        Assert.assertFalse("Can't aggregate", rows.isEmpty());
+        Assert.assertEquals("Wrong aliases", Arrays.asList("engine.name", "count", "avg_engine.screws.size", "max_name"),
+                new ArrayList<>(rows.get(0).keySet()));
+        long total = 0;
+        long previous = Long.MAX_VALUE;
+        for (Map<String, Object> row : rows) {
+            long count = (Long) row.get("count");
+            Assert.assertTrue("Summary rows are not sorted", count <= previous);
+            Assert.assertNotNull("Average is missing", row.get("avg_engine.screws.size"));
+            previous = count;
+            total += count;
+        }
+        Assert.assertEquals("Collection join inflates count", 50, total);
+
+        List<Map<String, Object>> having = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=like='Béla%'").groupBy("engine.name").aggregate("count()").having("count=gt=1")
+                .build().fetchAggregate();
+        for (Map<String, Object> row : having) {
+            Assert.assertTrue("Having is not applied", (Long) row.get("count") > 1);
+        }
+
+        List<Map<String, Object>> summary = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=like='Béla%'").aggregate("count(),sum(screws.size),min(name)").build().fetchAggregate();
+        Assert.assertEquals("Can't aggregate without group by", 1, summary.size());
+        Assert.assertEquals("Wrong count", 50L, summary.get(0).get("count"));
+        Assert.assertEquals("Wrong min", "Béla0", summary.get(0).get("min_name"));
+
+        thrown.expect(QrsqlException.class);
+        new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class).where("name==Béla1").aggregate("median(name)").build().fetchAggregate();
+    }
+
+    @Test
+    public void shouldParseHavingValuesWithFieldTypeHandlers() {
+        List<Map<String, Object>> registered = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=like='Béla%'").groupBy("registered").aggregate("count()")
+                .having("registered=lt=2018-01-05").build().fetchAggregate();
+        Assert.assertEquals("LocalDate having is not parsed", 4, registered.size());
+        List<Map<String, Object>> latest = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=like='Béla%'").groupBy("name").aggregate("max(mfgdt)")
+                .having("max_mfgdt=gt=01/01/2000").dateFormat("MM/dd/yyyy").build().fetchAggregate();
+        Assert.assertEquals("Date format is not applied to having", 50, latest.size());
+    }
+
+    @Test
+    public void shouldRejectAggregatesInflatedByCollectionJoin() {
+        List<Map<String, Object>> rows = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=like='Béla%'").aggregate("count(),countDistinct(name),max(name),sum(screws.size)")
+                .build().fetchAggregate();
+        Assert.assertEquals("Count is inflated by the join", 50L, rows.get(0).get("count"));
+        Assert.assertEquals("Distinct count is inflated by the join", 50L, rows.get(0).get("countDistinct_name"));
+
+        thrown.expect(QrsqlException.class);
+        thrown.expectMessage("sum(id)");
+        new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class).where("name=like='Béla%'")
+                .aggregate("sum(id),avg(engine.screws.size)").build().fetchAggregate();
+    }
+
+    @Test
+    public void shouldFetchIdsAndExists() {
+        Assert.assertTrue("Record should exist", new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("screws.name=like='Screw name%'").build().exists());
+        Assert.assertFalse("Record should not exist", new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name==Missing").build().exists());
+
+        List<Car> cars = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class).where("name=like='Béla%'")
+                .sort("name.desc").size(10L).build().fetch();
+        long[] ids = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class).where("name=like='Béla%'")
+                .sort("name.desc").size(10L).build().fetchIds();
+        Assert.assertEquals("Wrong id count", cars.size(), ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            Assert.assertEquals("Ids are not sorted", cars.get(i).getId().longValue(), ids[i]);
+        }
+
+        SortedIdSet idSet = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=like='Béla%'").sort("name.desc").build().fetchIdSet();
+        Assert.assertEquals("Wrong id set size", 50, idSet.size());
+        for (long id : ids) {
+            Assert.assertTrue("Id is missing", idSet.contains(id));
+        }
+        for (int i = 1; i < idSet.size(); i++) {
+            Assert.assertTrue("Id set is not sorted", idSet.get(i - 1) < idSet.get(i));
+        }
+        Assert.assertEquals("Duplicates are kept", 3, SortedIdSet.of(3L, 1L, 3L, 2L, 1L).size());
+    }
+
+    @Test
+    public void shouldFetchFacets() throws Exception {
+        Map<String, Map<Object, Long>> facets = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("name=like='Béla%'").build().fetchFacets("active, engine.name:3, screws.name");
+        Assert.assertEquals("Wrong facets", Arrays.asList("active", "engine.name", "screws.name"),
+                new ArrayList<>(facets.keySet()));
+        Assert.assertEquals("Wrong active counts", 50L,
+                facets.get("active").values().stream().mapToLong(Long::longValue).sum());
+        Assert.assertTrue("Limit is not applied", facets.get("engine.name").size() <= 3);
+        long previous = Long.MAX_VALUE;
+        for (Long count : facets.get("engine.name").values()) {
+            Assert.assertTrue("Facet values are not sorted", count <= previous);
+            previous = count;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Map<String, Map<Object, Long>> parallel = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                    .where("name=like='Béla%'").build().fetchFacets("active, engine.name:3, screws.name", executor);
+            Assert.assertEquals("Parallel facets differ", facets, parallel);
+        } finally {
+            executor.shutdown();
+        }
+
+        thrown.expect(QrsqlException.class);
+        new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class).where("name==Béla1").build().fetchFacets("name:x");
+    }
+
+    @Test
+    public void shouldParseWithBuiltInParser() {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).builtInParser(true).build();
+        String where = "name=like='Béla%' and (engine.name==\"Engine\\\"1\",screws.size=in=(1,2 or 3));active!=true";
+        Assert.assertEquals("Syntax trees differ", config.getParser().parse(where), config.getBuiltInParser().parse(where));
+        Assert.assertEquals("Can't fetch with built-in parser", 50, new Qrsql.Builder<>(config).selectFrom(Car.class)
+                .where("name=like='Béla%';description=notnull=''").build().fetch().size());
+
+        thrown.expectCause(isA(QrsqlException.class));
+        thrown.expectMessage("Unknown operator: =customnotempty=");
+        new Qrsql.Builder<>(config).selectFrom(Car.class).where("description=customnotempty=''").build().fetch();
+    }
+
+    @Test
+    public void shouldInternSelectorPaths() {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).build();
+        QrsqlPathCache pathCache = config.getPathCache();
+        com.querydsl.core.types.Path name = pathCache.getPath(Car.class, config.getFieldMetadata(Car.class, "engine.name"), config);
+        com.querydsl.core.types.Path id = pathCache.getPath(Car.class, config.getFieldMetadata(Car.class, "engine.id"), config);
+        Assert.assertSame("Path is not interned", name,
+                pathCache.getPath(Car.class, config.getFieldMetadata(Car.class, "engine.name"), config));
+        Assert.assertSame("Sub-path is not shared", name.getMetadata().getParent(), id.getMetadata().getParent());
+        Assert.assertEquals("Wrong alias", "car", pathCache.getAlias(Car.class));
+
+        List<Car> cars = new Qrsql.Builder<>(config).selectFrom(Car.class).where("engine.name=like='Engine%'")
+                .sort("engine.name.asc").build().fetch();
+        Assert.assertEquals("Can't fetch with interned paths", 50, cars.size());
+        Assert.assertSame("Config overlay doesn't share paths", pathCache,
+                config.withDateFormat("yyyy-MM-dd").getPathCache());
+    }
+
+    @Test
+    public void shouldBindTypedTemporalAndUuidValues() {
+        List<Car> registered = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("registered=ge=2018-01-11;registered=lt=2018-01-21").build().fetch();
+        Assert.assertEquals("Wrong LocalDate range", 10, registered.size());
+        Assert.assertEquals("Wrong LocalDateTime range", 39, new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("serviced=after='2018-01-01 20:00'").build().fetchCount());
+        Assert.assertEquals("Wrong Instant values", 2, new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("created=in=(2018-01-01T00:00:00Z,1514768400000)").build().fetchCount());
+        List<Car> serial = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("serial=in=(00000000-0000-0000-0000-000000000005)").build().fetch();
+        Assert.assertEquals("Wrong UUID match", "Béla4", serial.get(0).getName());
+
+        QrsqlExplanation explanation = new Qrsql.Builder<Car>(entityManager).selectFrom(Car.class)
+                .where("registered==2018-01-05,serial==00000000-0000-0000-0000-000000000005").build().explain();
+        Assert.assertEquals("LocalDate is not bound typed", LocalDate.of(2018, 1, 5), explanation.getParameters().get("?1"));
+        Assert.assertEquals("UUID is not bound typed", new UUID(0L, 5L), explanation.getParameters().get("?2"));
+
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).build();
+        Assert.assertTrue("OffsetDateTime is not handled",
+                config.getFieldTypeHandler(OffsetDateTime.class) instanceof TemporalFieldTypeHandler);
+    }
+
+    @Test
+    public void shouldQueryInMemoryEntityStore() {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).build();
+        try (QrsqlEntityStore<Car> store = new QrsqlEntityStore.Builder<>(config, Car.class).listen(true).build()) {
+            Assert.assertEquals("Entities are not loaded", 50, store.size());
+            String[][] queries = {
+                    {"name=like='Béla1%'", null, null},
+                    {"active==true;registered=ge=2018-01-11", "registered.desc", "5"},
+                    {"name=in=(Béla1,Béla2,Béla30),serial==00000000-0000-0000-0000-000000000011", "name.asc", null},
+                    {"active!=true,name=notlike='Béla_'", "serviced.asc", "10"},
+                    {"name=startsWith=Béla2;created<2018-01-02T12:00:00Z", "id.desc", "3"},
+                    {"name=likeic='bÉLA4_';registered=notin=(2018-02-11,2018-02-12)", "active.desc,name.asc", null},
+                    {"description=isnull='',mfgdt=before='2000-01-01'", null, null}
+            };
+            for (String[] query : queries) {
+                Qrsql.Builder.BuildBuilder<Car> builder = new Qrsql.Builder<>(config).selectFrom(Car.class)
+                        .where(query[0]).limit(1L, query[2] != null ? Long.valueOf(query[2]) : null);
+                Qrsql<Car> qrsql = (query[1] != null ? builder.sort(query[1]) : builder).build();
+                List<Long> expected = getIds(qrsql.fetch());
+                List<Long> actual = getIds(qrsql.fetchFrom(store));
+                if (query[1] == null) {
+                    Collections.sort(expected);
+                }
+                Assert.assertEquals("Wrong result of " + query[0], expected, actual);
+                Assert.assertEquals("Wrong count of " + query[0], qrsql.fetchCount(), qrsql.fetchCountFrom(store));
+            }
+            try {
+                new Qrsql.Builder<>(config).selectFrom(Car.class).where("engine.name==Engine1").build()
+                        .fetchFrom(store);
+                Assert.fail("Association selector is evaluated in memory");
+            } catch (QrsqlException ex) {
+                Assert.assertTrue(ex.getMessage().contains("engine.name"));
+            }
+
+            new TransactionTemplate(transactionManager).execute(status -> {
+                Car car = new Car();
+                car.setName("Memory");
+                car.setActive(true);
+                carRepository.save(car);
+                entityManager.flush();
+                status.setRollbackOnly();
+                return null;
+            });
+            Qrsql<Car> memory = new Qrsql.Builder<>(config).selectFrom(Car.class).where("name==Memory").build();
+            Assert.assertEquals("Rolled back event is applied", 0, memory.fetchCountFrom(store));
+
+            Car saved = new TransactionTemplate(transactionManager).execute(status -> {
+                Car car = new Car();
+                car.setName("Memory");
+                car.setActive(true);
+                carRepository.save(car);
+                entityManager.flush();
+                Assert.assertEquals("Event is applied before commit", 0, memory.fetchCountFrom(store));
+                return car;
+            });
+            saved.setName("Changed");
+            List<Car> stored = memory.fetchFrom(store);
+            Assert.assertEquals("Listener event is not applied", 1, stored.size());
+            Assert.assertNotSame("Managed entity is stored", saved, stored.get(0));
+            Assert.assertEquals("Stored entity is changed by the writer", "Memory", stored.get(0).getName());
+            carRepository.deleteById(saved.getId());
+            Assert.assertEquals("Remove event is not applied", 0, memory.fetchCountFrom(store));
+            store.refresh();
+            Assert.assertEquals("Store is not refreshed", 0, memory.fetchCountFrom(store));
+        }
+    }
+
+    @Test
+    public void shouldCountFromColumnSnapshot() {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).build();
+        QrsqlColumnSnapshot<Car> snapshot = new QrsqlColumnSnapshot.Builder<>(config, Car.class)
+                .columns("id", "name", "description", "active", "mfgdt", "registered", "serviced", "created").build();
+        Assert.assertEquals("Rows are not loaded", 50, snapshot.size());
+        String[] queries = {
+                "active==true",
+                "active=isfalse='';registered=ge=2018-01-11",
+                "name=like='Béla1%',id=in=(1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20)",
+                "name!=Béla1;serviced=lt='2018-01-02 05:00'",
+                "name=notlike='Béla_';created=gt=2018-01-01T12:00:00Z,description=isnull=''",
+                "name=likeic='bÉLA4_';registered=notin=(2018-02-11,2018-02-12)",
+                "mfgdt=after='2000-01-01';description=containsIgnoreCase=CAR"
+        };
+        for (String where : queries) {
+            Qrsql<Car> qrsql = new Qrsql.Builder<>(config).selectFrom(Car.class).where(where).build();
+            Assert.assertEquals("Wrong count of " + where, qrsql.fetchCount(), qrsql.fetchCountFrom(snapshot));
+        }
+        try {
+            new QrsqlColumnSnapshot.Builder<>(config, Car.class).columns("engine").build();
+            Assert.fail("Association is stored in the snapshot");
+        } catch (QrsqlException ex) {
+            Assert.assertTrue(ex.getMessage().contains("engine"));
+        }
+        try {
+            new Qrsql.Builder<>(config).selectFrom(Car.class).where("serial==00000000-0000-0000-0000-000000000001")
+                    .build().fetchCountFrom(snapshot);
+            Assert.fail("Missing column is evaluated");
+        } catch (QrsqlException ex) {
+            Assert.assertTrue(ex.getMessage().contains("serial"));
+        }
+    }
+
+    @Test
+    public void shouldMatchSubscriptions() {
+        QrsqlConfig<Car> config = new QrsqlConfig.Builder<Car>(entityManager).build();
+        QrsqlSubscriptionMatcher<Car, String> matcher = new QrsqlSubscriptionMatcher<>(config, Car.class);
+        String[] filters = {
+                "name==Béla1",
+                "name=in=(Béla2,Béla3);active==true",
+                "registered=ge=2018-01-11;registered=lt=2018-01-21",
+                "name=like='Béla4%',serviced=after='2018-01-02 20:00'",
+                "engine.name=like='Engine%';created=le=2018-01-01T05:00:00Z",
+                "active=isfalse='',name=endsWith=9",
+                "description=isnull=''"
+        };
+        for (int i = 0; i < filters.length; i++) {
+            matcher.add("filter" + i, filters[i]);
+        }
+        Assert.assertEquals("Filters are not added", filters.length, matcher.size());
+        List<Car> cars = carRepository.findAll();
+        List<Set<String>> matches = matcher.match(cars);
+        for (int i = 0; i < filters.length; i++) {
+            List<Long> expected = getIds(new Qrsql.Builder<>(config).selectFrom(Car.class).where(filters[i]).build()
+                    .fetch());
+            List<Long> actual = new ArrayList<>();
+            for (int j = 0; j < cars.size(); j++) {
+                if (matches.get(j).contains("filter" + i)) {
+                    actual.add(cars.get(j).getId());
+                }
+            }
+            Collections.sort(expected);
+            Collections.sort(actual);
+            Assert.assertEquals("Wrong matches of " + filters[i], expected, actual);
+        }
+
+        Car car = cars.stream().filter(item -> "Béla1".equals(item.getName())).findFirst().get();
+        Assert.assertTrue("Single entity is not matched", matcher.match(car).contains("filter0"));
+        Assert.assertTrue("Filter is not removed", matcher.remove("filter0"));
+        Assert.assertFalse("Removed filter is matched", matcher.match(car).contains("filter0"));
+        matcher.add("filter1", "name==Béla1");
+        Assert.assertTrue("Filter is not replaced", matcher.match(car).contains("filter1"));
+        Assert.assertEquals("Wrong size after replace", filters.length - 1, matcher.size());
+    }
+
+    private static List<Long> getIds(List<Car> cars) {
+        List<Long> ids = new ArrayList<>(cars.size());
+        cars.forEach(car -> ids.add(car.getId()));
+        return ids;
+    }
+
+    public static class CarDto {
+        private String name;
+        private String engineName;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getEngineName() {
+            return engineName;
+        }
+
+        public void setEngineName(String engineName) {
+            this.engineName = engineName;
+        }
+    }
+
+}
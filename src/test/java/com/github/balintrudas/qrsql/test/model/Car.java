@@ -1,11 +1,17 @@
 package com.github.balintrudas.qrsql.test.model;
 
+import com.github.balintrudas.qrsql.memory.QrsqlEntityStoreListener;
 
 import javax.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 
 @Entity
+@EntityListeners(QrsqlEntityStoreListener.class)
 public class Car {
 
     @Id
@@ -24,6 +30,18 @@ public class Car {
     @Column
     private Date mfgdt;
 
+    @Column
+    private LocalDate registered;
+
+    @Column
+    private LocalDateTime serviced;
+
+    @Column
+    private Instant created;
+
+    @Column(columnDefinition = "uuid")
+    private UUID serial;
+
     @OneToOne
     private Engine engine;
 
@@ -70,6 +88,38 @@ public class Car {
         this.mfgdt = mfgdt;
     }
 
+    public LocalDate getRegistered() {
+        return registered;
+    }
+
+    public void setRegistered(LocalDate registered) {
+        this.registered = registered;
+    }
+
+    public LocalDateTime getServiced() {
+        return serviced;
+    }
+
+    public void setServiced(LocalDateTime serviced) {
+        this.serviced = serviced;
+    }
+
+    public Instant getCreated() {
+        return created;
+    }
+
+    public void setCreated(Instant created) {
+        this.created = created;
+    }
+
+    public UUID getSerial() {
+        return serial;
+    }
+
+    public void setSerial(UUID serial) {
+        this.serial = serial;
+    }
+
     public List<Screw> getScrews() {
         return screws;
     }